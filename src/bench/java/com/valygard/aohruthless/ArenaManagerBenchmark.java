@@ -0,0 +1,127 @@
+/**
+ * ArenaManagerBenchmark.java is a part of Joystick
+ *
+ * Copyright (c) 2016 Anand Kumar
+ *
+ * Joystick is a free software: You can redistribute it or modify it
+ * under the terms of the GNU General Public License published by the Free
+ * Software Foundation, either version 3 of the license of any later version.
+ * 
+ * Joystick is distributed in the intent of being useful. However, there
+ * is NO WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You can view a copy of the GNU General Public License at 
+ * <http://www.gnu.org/licenses/> if you have not received a copy.
+ */
+package com.valygard.aohruthless;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Server;
+import org.bukkit.World;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.PluginManager;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.valygard.aohruthless.framework.Arena;
+import com.valygard.aohruthless.framework.ArenaManager;
+
+/**
+ * Loads every arena section of a config through
+ * {@link ArenaManager#loadArenas()}, which looks up each section in the
+ * arena registry before loading it.
+ * 
+ * @author Anand
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ArenaManagerBenchmark {
+
+	@Param({ "1250", "2500", "5000" })
+	public int sections;
+
+	private ArenaManager manager;
+
+	@Setup
+	public void setUp() {
+		World world = Mockito.mock(World.class);
+		Mockito.when(world.getName()).thenReturn("world");
+
+		Logger logger = Logger.getLogger("ArenaManagerBenchmark");
+		logger.setLevel(Level.OFF);
+
+		Server server = Mockito.mock(Server.class);
+		Mockito.when(server.getLogger()).thenReturn(logger);
+		Mockito.when(server.getWorld("world")).thenReturn(world);
+		Mockito.when(server.getWorlds()).thenReturn(Arrays.asList(world));
+		Mockito.when(server.getPluginManager()).thenReturn(
+				Mockito.mock(PluginManager.class));
+		if (Bukkit.getServer() == null) Bukkit.setServer(server);
+
+		YamlConfiguration config = new YamlConfiguration();
+		final Map<String, Arena> arenas = new HashMap<>();
+		for (int i = 0; i < sections; i++) {
+			String name = "Arena" + i;
+			config.set("arenas." + name + ".settings.world", "world");
+
+			Arena arena = Mockito.mock(Arena.class);
+			Mockito.when(arena.getName()).thenReturn(name);
+			arenas.put(name, arena);
+		}
+
+		Plugin plugin = Mockito.mock(Plugin.class);
+		Mockito.when(plugin.getConfig()).thenReturn(config);
+		Mockito.when(plugin.getServer()).thenReturn(server);
+		Mockito.when(plugin.getLogger()).thenReturn(logger);
+		Mockito.when(plugin.getResource(Mockito.anyString())).thenAnswer(
+				new Answer<InputStream>() {
+
+					@Override
+					public InputStream answer(InvocationOnMock invocation) {
+						return new ByteArrayInputStream(new byte[0]);
+					}
+				});
+
+		manager = new ArenaManager(plugin) {
+
+			@Override
+			public Arena initArena(String arenaName) {
+				return arenas.get(arenaName);
+			}
+		};
+	}
+
+	@Benchmark
+	public int loadArenas() {
+		manager.loadArenas();
+		return manager.getArenas().size();
+	}
+}
@@ -0,0 +1,166 @@
+/**
+ * CommandHandlerBenchmark.java is a part of Joystick
+ *
+ * Copyright (c) 2016 Anand Kumar
+ *
+ * Joystick is a free software: You can redistribute it or modify it
+ * under the terms of the GNU General Public License published by the Free
+ * Software Foundation, either version 3 of the license of any later version.
+ * 
+ * Joystick is distributed in the intent of being useful. However, there
+ * is NO WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You can view a copy of the GNU General Public License at 
+ * <http://www.gnu.org/licenses/> if you have not received a copy.
+ */
+package com.valygard.aohruthless;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
+
+import org.bukkit.command.CommandSender;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.valygard.aohruthless.command.Command;
+import com.valygard.aohruthless.command.CommandHandler;
+import com.valygard.aohruthless.command.CommandInfo;
+import com.valygard.aohruthless.command.CommandPermission;
+import com.valygard.aohruthless.command.CommandUsage;
+
+/**
+ * Dispatches the same arguments through the compiled syntaxes of a
+ * CommandHandler and through the regex scan it used before.
+ * 
+ * @author Anand
+ * 
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CommandHandlerBenchmark {
+
+	private static final String[] ARGS = { "create", "NEW", "Join", "j",
+			"kick", "KICKALL", "stats", "statistics", "stat", "leave", "",
+			"crea", "spectate", "spec" };
+
+	@CommandInfo(name = "create", desc = "create an arena",
+			syntax = "(create|new)")
+	@CommandPermission("joystick.create")
+	@CommandUsage("/js create <arena>")
+	public static class CreateCommand extends BenchCommand {
+	}
+
+	@CommandInfo(name = "join", desc = "join an arena", syntax = "join|j")
+	@CommandPermission("joystick.join")
+	@CommandUsage("/js join <arena>")
+	public static class JoinCommand extends BenchCommand {
+	}
+
+	@CommandInfo(name = "kick", desc = "kick a player", syntax = "kick")
+	@CommandPermission("joystick.kick")
+	@CommandUsage("/js kick <player>")
+	public static class KickCommand extends BenchCommand {
+	}
+
+	@CommandInfo(name = "kickall", desc = "kick everyone", syntax = "k.*")
+	@CommandPermission("joystick.kickall")
+	@CommandUsage("/js kickall <arena>")
+	public static class KickAllCommand extends BenchCommand {
+	}
+
+	@CommandInfo(name = "stats", desc = "view stats",
+			syntax = "stat(s|istics)?")
+	@CommandPermission("joystick.stats")
+	@CommandUsage("/js stats")
+	public static class StatsCommand extends BenchCommand {
+	}
+
+	@CommandInfo(name = "spectate", desc = "spectate an arena",
+			syntax = "spec(tate)?")
+	@CommandPermission("joystick.spectate")
+	@CommandUsage("/js spectate <arena>")
+	public static class SpectateCommand extends BenchCommand {
+	}
+
+	public static class BenchCommand implements Command {
+
+		@Override
+		public boolean execute(CommandSender sender, String[] args) {
+			return true;
+		}
+	}
+
+	private static class BenchHandler extends CommandHandler {
+
+		private BenchHandler() {
+			super(null, "js");
+		}
+
+		@Override
+		protected boolean execute(Command cmd, CommandSender sender,
+				String[] params) {
+			return cmd.execute(sender, params);
+		}
+
+		@Override
+		public void registerCommands() {
+			register(CreateCommand.class);
+			register(JoinCommand.class);
+			register(KickAllCommand.class);
+			register(KickCommand.class);
+			register(StatsCommand.class);
+			register(SpectateCommand.class);
+		}
+
+		@Override
+		public List<Command> getMatchingCommands(String arg) {
+			return super.getMatchingCommands(arg);
+		}
+
+		/**
+		 * The lookup CommandHandler used before syntaxes were compiled.
+		 */
+		private List<Command> scan(String arg) {
+			List<Command> result = new ArrayList<Command>();
+			for (Entry<String, Command> entry : commands.entrySet()) {
+				if (arg.matches("(?i)" + entry.getKey())) {
+					result.add(entry.getValue());
+				}
+			}
+			return result;
+		}
+	}
+
+	private BenchHandler handler;
+	private int next;
+
+	@Setup
+	public void setUp() {
+		handler = new BenchHandler();
+	}
+
+	@Benchmark
+	public List<Command> compiled() {
+		return handler.getMatchingCommands(ARGS[next++ % ARGS.length]);
+	}
+
+	@Benchmark
+	public List<Command> regexScan() {
+		return handler.scan(ARGS[next++ % ARGS.length]);
+	}
+}
@@ -0,0 +1,98 @@
+/**
+ * InventoryCodecBenchmark.java is a part of Joystick
+ *
+ * Copyright (c) 2016 Anand Kumar
+ *
+ * Joystick is a free software: You can redistribute it or modify it
+ * under the terms of the GNU General Public License published by the Free
+ * Software Foundation, either version 3 of the license of any later version.
+ * 
+ * Joystick is distributed in the intent of being useful. However, there
+ * is NO WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You can view a copy of the GNU General Public License at 
+ * <http://www.gnu.org/licenses/> if you have not received a copy.
+ */
+package com.valygard.aohruthless;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.valygard.aohruthless.utils.inventory.InventoryCodec;
+import com.valygard.aohruthless.utils.inventory.InventorySnapshot;
+
+/**
+ * Encodes and decodes the inventory of a player, as a server-wide event does
+ * for every player at once.
+ * 
+ * @author Anand
+ * 
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class InventoryCodecBenchmark {
+
+	private InventorySnapshot snapshot;
+	private byte[] record;
+
+	@Setup
+	public void setUp() throws IOException {
+		ItemStack[] items = new ItemStack[36];
+		items[0] = stack(Material.DIAMOND_SWORD, 1, 12);
+		items[1] = stack(Material.ARROW, 64, 0);
+		items[35] = stack(Material.WOOL, 3, 14);
+
+		ItemStack[] armor = new ItemStack[4];
+		armor[3] = stack(Material.IRON_HELMET, 1, 0);
+		snapshot = new InventorySnapshot(UUID.randomUUID(), "AoH_Ruthless",
+				items, armor);
+		record = InventoryCodec.encode(snapshot);
+	}
+
+	@Benchmark
+	public byte[] encode() throws IOException {
+		return InventoryCodec.encode(snapshot);
+	}
+
+	@Benchmark
+	public InventorySnapshot decode() throws IOException {
+		return InventoryCodec.decode(record);
+	}
+
+	/**
+	 * Mocks a stack by its serialized map, since the maps of real stacks are
+	 * built by the server's item factory.
+	 */
+	private static ItemStack stack(Material type, int amount, int damage) {
+		Map<String, Object> map = new LinkedHashMap<>();
+		map.put("type", type.name());
+		if (damage != 0) map.put("damage", (short) damage);
+		if (amount != 1) map.put("amount", amount);
+
+		ItemStack stack = Mockito.mock(ItemStack.class);
+		Mockito.when(stack.serialize()).thenReturn(map);
+		return stack;
+	}
+}
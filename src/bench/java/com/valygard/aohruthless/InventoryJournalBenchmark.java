@@ -0,0 +1,116 @@
+/**
+ * InventoryJournalBenchmark.java is a part of Joystick
+ *
+ * Copyright (c) 2016 Anand Kumar
+ *
+ * Joystick is a free software: You can redistribute it or modify it
+ * under the terms of the GNU General Public License published by the Free
+ * Software Foundation, either version 3 of the license of any later version.
+ * 
+ * Joystick is distributed in the intent of being useful. However, there
+ * is NO WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You can view a copy of the GNU General Public License at 
+ * <http://www.gnu.org/licenses/> if you have not received a copy.
+ */
+package com.valygard.aohruthless;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.UUID;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import org.bukkit.inventory.ItemStack;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.valygard.aohruthless.utils.inventory.InventoryCodec;
+import com.valygard.aohruthless.utils.inventory.InventoryJournal;
+import com.valygard.aohruthless.utils.inventory.InventorySnapshot;
+
+/**
+ * Journals the inventories of the players joining an arena in the same tick
+ * and waits until all of them are synced, which group commit does in a few
+ * syncs rather than one per player.
+ * 
+ * @author Anand
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class InventoryJournalBenchmark {
+
+	@Param({ "1", "10", "100" })
+	public int players;
+
+	private File dir;
+	private InventoryJournal journal;
+	private UUID[] uuids;
+	private byte[][] records;
+	private Future<?>[] commits;
+
+	@Setup
+	public void setUp() throws Exception {
+		Logger logger = Logger.getLogger("InventoryJournalBenchmark");
+		logger.setLevel(java.util.logging.Level.OFF);
+
+		dir = Files.createTempDirectory("journal").toFile();
+		journal = new InventoryJournal(new File(dir, "journal.dat"), logger);
+
+		uuids = new UUID[players];
+		records = new byte[players][];
+		commits = new Future<?>[players];
+		for (int i = 0; i < players; i++) {
+			uuids[i] = UUID.randomUUID();
+			records[i] = InventoryCodec.encode(new InventorySnapshot(uuids[i],
+					"AoH_Ruthless", new ItemStack[36], new ItemStack[4]));
+		}
+	}
+
+	@Benchmark
+	public int store() throws Exception {
+		for (int i = 0; i < players; i++) {
+			commits[i] = journal.store(uuids[i], records[i]);
+		}
+		for (Future<?> commit : commits) {
+			commit.get();
+		}
+		return journal.getSyncs();
+	}
+
+	/**
+	 * Keeps the journal from growing across iterations.
+	 */
+	@TearDown(Level.Iteration)
+	public void compact() throws Exception {
+		for (UUID uuid : uuids) {
+			journal.clear(uuid);
+		}
+		journal.compact().get();
+	}
+
+	@TearDown
+	public void tearDown() {
+		journal.close();
+		new File(dir, "journal.dat").delete();
+		dir.delete();
+	}
+}
@@ -0,0 +1,77 @@
+/**
+ * ItemParserBenchmark.java is a part of Joystick
+ *
+ * Copyright (c) 2016 Anand Kumar
+ *
+ * Joystick is a free software: You can redistribute it or modify it
+ * under the terms of the GNU General Public License published by the Free
+ * Software Foundation, either version 3 of the license of any later version.
+ * 
+ * Joystick is distributed in the intent of being useful. However, there
+ * is NO WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You can view a copy of the GNU General Public License at 
+ * <http://www.gnu.org/licenses/> if you have not received a copy.
+ */
+package com.valygard.aohruthless;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.bukkit.inventory.ItemStack;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.valygard.aohruthless.utils.items.ItemParser;
+
+/**
+ * Reloads the items of a few typical classes, once parsing every string and
+ * once cloning the memoized templates.
+ * 
+ * @author Anand
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ItemParserBenchmark {
+
+	// item strings of a few typical classes, as loadClass reads them
+	private static final String[] CLASSES = { "diamond_sword", "bow",
+			"arrow:64", "bread:16", "iron_helmet", "iron_chestplate",
+			"iron_leggings", "iron_boots", "stone_sword", "wool:red:1",
+			"wool:blue:1", "golden_apple:2", "ender_pearl:4", "tnt:8",
+			"flint_and_steel", "leather_helmet", "leather_boots",
+			"cooked_beef:32", "fishing_rod", "snow_ball:16", "wood:64" };
+
+	@Benchmark
+	public List<ItemStack> parsed() {
+		ItemParser.clearTemplates();
+		return reload();
+	}
+
+	@Benchmark
+	public List<ItemStack> templates() {
+		return reload();
+	}
+
+	private static List<ItemStack> reload() {
+		List<ItemStack> items = new ArrayList<>(CLASSES.length);
+		for (String item : CLASSES) {
+			items.add(ItemParser.parseItem(item));
+		}
+		return items;
+	}
+}
@@ -0,0 +1,89 @@
+/**
+ * LeaderboardBenchmark.java is a part of Joystick
+ *
+ * Copyright (c) 2016 Anand Kumar
+ *
+ * Joystick is a free software: You can redistribute it or modify it
+ * under the terms of the GNU General Public License published by the Free
+ * Software Foundation, either version 3 of the license of any later version.
+ * 
+ * Joystick is distributed in the intent of being useful. However, there
+ * is NO WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You can view a copy of the GNU General Public License at 
+ * <http://www.gnu.org/licenses/> if you have not received a copy.
+ */
+package com.valygard.aohruthless;
+
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.valygard.aohruthless.player.Leaderboard.Entry;
+import com.valygard.aohruthless.player.LeaderboardType;
+import com.valygard.aohruthless.player.Leaderboards;
+import com.valygard.aohruthless.player.StatsRecord;
+
+/**
+ * Reads the top of a leaderboard, which is cached between changes, and ranks
+ * random kills of the players of an arena.
+ * 
+ * @author Anand
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LeaderboardBenchmark {
+
+	@Param({ "1000", "10000" })
+	public int players;
+
+	private Leaderboards leaderboards;
+	private StatsRecord[] records;
+	private Random random;
+
+	@Setup
+	public void setUp() {
+		leaderboards = new Leaderboards(10);
+		records = new StatsRecord[players];
+		random = new Random(42);
+		for (int i = 0; i < players; i++) {
+			StatsRecord record = new StatsRecord(UUID.randomUUID(), "arena");
+			record.setPlayerName("player" + i);
+			record.setKills(random.nextInt(500));
+			records[i] = record;
+			leaderboards.update(record);
+		}
+	}
+
+	@Benchmark
+	public List<Entry> getTop() {
+		return leaderboards.getTop("arena", LeaderboardType.KILLS);
+	}
+
+	@Benchmark
+	public StatsRecord update() {
+		StatsRecord record = records[random.nextInt(players)];
+		record.setKills(record.getKills() + 1);
+		leaderboards.update(record);
+		return record;
+	}
+}
@@ -0,0 +1,101 @@
+/**
+ * PrefixIndexBenchmark.java is a part of Joystick
+ *
+ * Copyright (c) 2016 Anand Kumar
+ *
+ * Joystick is a free software: You can redistribute it or modify it
+ * under the terms of the GNU General Public License published by the Free
+ * Software Foundation, either version 3 of the license of any later version.
+ * 
+ * Joystick is distributed in the intent of being useful. However, there
+ * is NO WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You can view a copy of the GNU General Public License at 
+ * <http://www.gnu.org/licenses/> if you have not received a copy.
+ */
+package com.valygard.aohruthless;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.valygard.aohruthless.utils.PrefixIndex;
+
+/**
+ * Completes random names one keystroke at a time, the way clients ask for
+ * completions, through a PrefixIndex and through a scan over every name.
+ * 
+ * @author Anand
+ * 
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PrefixIndexBenchmark {
+
+	// keystrokes prepared ahead, cycled through by the benchmarks
+	private static final int KEYSTROKES = 4096;
+
+	@Param({ "500", "5000" })
+	public int names;
+
+	private PrefixIndex index;
+	private List<String> list;
+	private String[] prefixes;
+	private int next;
+
+	@Setup
+	public void setUp() {
+		Random random = new Random(names);
+		index = new PrefixIndex();
+		list = new ArrayList<>(names);
+		for (int i = 0; i < names; i++) {
+			String name = Long.toString(random.nextLong() >>> 1, 36);
+			list.add(name);
+			index.add(name);
+		}
+
+		prefixes = new String[KEYSTROKES];
+		for (int i = 0; i < KEYSTROKES;) {
+			String name = list.get(random.nextInt(names));
+			for (int k = 0; k <= name.length() && i < KEYSTROKES; k++) {
+				prefixes[i++] = name.substring(0, k);
+			}
+		}
+	}
+
+	@Benchmark
+	public List<String> index() {
+		return index.complete(prefixes[next++ % KEYSTROKES], 100);
+	}
+
+	@Benchmark
+	public List<String> linearScan() {
+		String prefix = prefixes[next++ % KEYSTROKES];
+		List<String> result = new ArrayList<>();
+		for (String name : list) {
+			if (result.size() >= 100) break;
+			if (name.regionMatches(true, 0, prefix, 0, prefix.length())) {
+				result.add(name);
+			}
+		}
+		return result;
+	}
+}
@@ -0,0 +1,77 @@
+/**
+ * StatsRecordBenchmark.java is a part of Joystick
+ *
+ * Copyright (c) 2016 Anand Kumar
+ *
+ * Joystick is a free software: You can redistribute it or modify it
+ * under the terms of the GNU General Public License published by the Free
+ * Software Foundation, either version 3 of the license of any later version.
+ * 
+ * Joystick is distributed in the intent of being useful. However, there
+ * is NO WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You can view a copy of the GNU General Public License at 
+ * <http://www.gnu.org/licenses/> if you have not received a copy.
+ */
+package com.valygard.aohruthless;
+
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.valygard.aohruthless.player.StatsRecord;
+
+/**
+ * Computes the kill-death ratio of a record as its kills change, against the
+ * DecimalFormat rounding the ratios used before.
+ * 
+ * @author Anand
+ * 
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StatsRecordBenchmark {
+
+	private StatsRecord record;
+	private DecimalFormat format;
+	private int kills;
+
+	@Setup
+	public void setUp() {
+		record = new StatsRecord(UUID.randomUUID(), "arena");
+		record.setDeaths(7);
+		format = new DecimalFormat("#.###",
+				DecimalFormatSymbols.getInstance(Locale.ENGLISH));
+	}
+
+	@Benchmark
+	public double getKDR() {
+		record.setKills(kills++);
+		return record.getKDR();
+	}
+
+	@Benchmark
+	public double decimalFormat() {
+		record.setKills(kills++);
+		return Double.valueOf(format.format(record.getKills()
+				/ (record.getDeaths() * 1.0)));
+	}
+}
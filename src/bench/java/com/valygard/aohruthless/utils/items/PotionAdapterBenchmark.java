@@ -0,0 +1,121 @@
+/**
+ * PotionAdapterBenchmark.java is a part of Joystick
+ *
+ * Copyright (c) 2016 Anand Kumar
+ *
+ * Joystick is a free software: You can redistribute it or modify it
+ * under the terms of the GNU General Public License published by the Free
+ * Software Foundation, either version 3 of the license of any later version.
+ * 
+ * Joystick is distributed in the intent of being useful. However, there
+ * is NO WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You can view a copy of the GNU General Public License at 
+ * <http://www.gnu.org/licenses/> if you have not received a copy.
+ */
+package com.valygard.aohruthless.utils.items;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.bukkit.potion.PotionData;
+import org.bukkit.potion.PotionType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Serializes and parses a potion a player can hold, as ItemParser does, once
+ * through the indexes of PotionAdapter and once by scanning every value the
+ * way the adapter used to. Kept in the adapter's package, as the scan needs
+ * its identifiers.
+ * 
+ * @author Anand
+ * 
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PotionAdapterBenchmark {
+
+	private PotionAdapter[] adapters;
+	private PotionData[] data;
+	private PotionData[] potions;
+	private int next;
+
+	@Setup
+	public void setUp() {
+		adapters = PotionAdapter.values();
+		data = new PotionData[adapters.length];
+		for (int i = 0; i < adapters.length; i++) {
+			try {
+				data[i] = adapters[i].buildPotionData();
+			}
+			catch (IllegalArgumentException e) {}
+		}
+
+		List<PotionData> list = new ArrayList<>();
+		for (PotionType type : PotionType.values()) {
+			list.add(new PotionData(type, false, false));
+			if (type.isExtendable()) {
+				list.add(new PotionData(type, true, false));
+			}
+			if (type.isUpgradeable()) {
+				list.add(new PotionData(type, false, true));
+			}
+		}
+		potions = list.toArray(new PotionData[list.size()]);
+	}
+
+	@Benchmark
+	public PotionAdapter indexed() {
+		PotionData potion = potions[next++ % potions.length];
+		String handle = PotionAdapter.matchData(potion).getIdentifiers()
+				.get(0);
+		return PotionAdapter.matchHandle(handle);
+	}
+
+	@Benchmark
+	public PotionAdapter linearScan() {
+		PotionData potion = potions[next++ % potions.length];
+		String handle = scanData(potion).getIdentifiers().get(0);
+		return scanHandle(handle);
+	}
+
+	/**
+	 * The data lookup PotionAdapter used before it was indexed.
+	 */
+	private PotionAdapter scanData(PotionData potion) {
+		for (int i = 0; i < adapters.length; i++) {
+			PotionData other = data[i];
+			if (other != null && other.getType() == potion.getType()
+					&& other.isExtended() == potion.isExtended()
+					&& other.isUpgraded() == potion.isUpgraded())
+				return adapters[i];
+		}
+		return null;
+	}
+
+	/**
+	 * The identifier lookup PotionAdapter used before it was indexed.
+	 */
+	private PotionAdapter scanHandle(String handle) {
+		for (PotionAdapter pm : adapters) {
+			if (pm.getIdentifiers().contains(
+					handle.toLowerCase().replace("_", "-"))) return pm;
+		}
+		return null;
+	}
+}
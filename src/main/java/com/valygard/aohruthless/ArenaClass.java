@@ -38,6 +38,9 @@ import org.bukkit.inventory.PlayerInventory;
  */
 public class ArenaClass {
 
+	// slots of a player inventory, not counting armor
+	private static final int STORAGE_SIZE = 36;
+
 	private String name, lowercaseName;
 
 	private ItemStack helmet, chestplate, leggings, boots;
@@ -45,6 +48,9 @@ public class ArenaClass {
 
 	private boolean unbreakableWeapons, unbreakableArmor;
 
+	// the items laid out by slot, as giveItems hands them out; null if stale
+	private ItemStack[] loadout, armorLoadout;
+
 	/**
 	 * Singular constructor initializes a unique ArenaClass instance by three
 	 * parameters; a unique string identifer which will serve as the name of the
@@ -75,12 +81,27 @@ public class ArenaClass {
 	 * armor contents and regular inventory contents, and gives both separately.
 	 * Forks through all the inventory contents and adds helmet, chestplate,
 	 * etc.. manually.
+	 * <p>
+	 * The items are laid out by slot once, the first time they are given. A
+	 * player with an empty inventory, such as one who just picked the class,
+	 * receives the whole layout in one contents write and one armor write.
+	 * Otherwise the items are added one at a time around what the player
+	 * already carries.
+	 * </p>
 	 * 
 	 * @param p
 	 *            a Player
 	 */
 	public void giveItems(Player p) {
 		PlayerInventory inv = p.getInventory();
+		if (isEmpty(inv.getContents()) && isEmpty(inv.getArmorContents())) {
+			if (loadout == null) buildLoadout();
+
+			inv.setContents(loadout);
+			inv.setArmorContents(armorLoadout);
+			return;
+		}
+
 		// Loop through all the items
 		for (ItemStack is : items) {
 			p.getInventory().addItem(is);
@@ -120,6 +141,76 @@ public class ArenaClass {
 		if (boots != null) inv.setBoots(boots);
 	}
 
+	/**
+	 * Lays the items and armor out by slot, the way giving them one at a time
+	 * fills an empty inventory. Items merge into similar stacks before taking
+	 * an empty slot, and items that do not fit are left out.
+	 */
+	private void buildLoadout() {
+		ItemStack[] slots = new ItemStack[STORAGE_SIZE];
+		for (ItemStack is : items) {
+			place(slots, is);
+		}
+
+		// armor contents run from boots to helmet
+		ItemStack[] armorSlots = new ItemStack[4];
+		for (ItemStack is : armor) {
+			ArmorType type = ArmorType.getType(is);
+			if (type != null) armorSlots[type.getSlot()] = is;
+		}
+
+		if (helmet != null) armorSlots[ArmorType.HELMET.getSlot()] = helmet;
+
+		if (chestplate != null)
+			armorSlots[ArmorType.CHESTPLATE.getSlot()] = chestplate;
+
+		if (leggings != null)
+			armorSlots[ArmorType.LEGGINGS.getSlot()] = leggings;
+
+		if (boots != null) armorSlots[ArmorType.BOOTS.getSlot()] = boots;
+
+		this.loadout = slots;
+		this.armorLoadout = armorSlots;
+	}
+
+	/**
+	 * Places an item into the slots, first topping up similar stacks and
+	 * then taking the first empty slots.
+	 */
+	private static void place(ItemStack[] slots, ItemStack is) {
+		int max = (is.getMaxStackSize() < 0 ? 64 : is.getMaxStackSize());
+		int amount = is.getAmount();
+
+		for (int i = 0; i < slots.length && amount > 0; i++) {
+			ItemStack slot = slots[i];
+			if (slot == null || slot.getAmount() >= max || !slot.isSimilar(is))
+				continue;
+
+			int added = Math.min(amount, max - slot.getAmount());
+			slot.setAmount(slot.getAmount() + added);
+			amount -= added;
+		}
+
+		for (int i = 0; i < slots.length && amount > 0; i++) {
+			if (slots[i] != null) continue;
+
+			ItemStack stack = is.clone();
+			stack.setAmount(Math.min(amount, max));
+			slots[i] = stack;
+			amount -= stack.getAmount();
+		}
+	}
+
+	/**
+	 * Checks if an inventory holds no items.
+	 */
+	private static boolean isEmpty(ItemStack[] contents) {
+		for (ItemStack is : contents) {
+			if (is != null && is.getType() != Material.AIR) return false;
+		}
+		return true;
+	}
+
 	/**
 	 * Adds an itemstack to the items list.
 	 * 
@@ -138,6 +229,7 @@ public class ArenaClass {
 			}
 		}
 		items.add(stack);
+		loadout = null;
 	}
 
 	/**
@@ -159,7 +251,9 @@ public class ArenaClass {
 	}
 
 	/**
-	 * Gets the inventory contents.
+	 * Gets the inventory contents. Items must be changed with
+	 * {@link #addItem(ItemStack)} or {@link #setItems(List)}, which lay them
+	 * out again for {@link #giveItems(Player)}.
 	 * 
 	 * @return the items list
 	 */
@@ -222,6 +316,7 @@ public class ArenaClass {
 	 */
 	public void setHelmet(ItemStack helmet) {
 		this.helmet = helmet;
+		this.loadout = null;
 	}
 
 	/**
@@ -232,6 +327,7 @@ public class ArenaClass {
 	 */
 	public void setChestplate(ItemStack chestplate) {
 		this.chestplate = chestplate;
+		this.loadout = null;
 	}
 
 	/**
@@ -242,6 +338,7 @@ public class ArenaClass {
 	 */
 	public void setLeggings(ItemStack leggings) {
 		this.leggings = leggings;
+		this.loadout = null;
 	}
 
 	/**
@@ -252,6 +349,7 @@ public class ArenaClass {
 	 */
 	public void setBoots(ItemStack boots) {
 		this.boots = boots;
+		this.loadout = null;
 	}
 
 	/**
@@ -262,6 +360,7 @@ public class ArenaClass {
 	 */
 	public void setArmor(List<ItemStack> armor) {
 		this.armor = armor;
+		this.loadout = null;
 	}
 
 	/**
@@ -277,6 +376,7 @@ public class ArenaClass {
 		for (ItemStack stack : stacks) {
 			addItem(stack);
 		}
+		this.loadout = null;
 	}
 
 	/**
@@ -288,23 +388,37 @@ public class ArenaClass {
 		LEGGINGS(Material.LEATHER_LEGGINGS, Material.CHAINMAIL_LEGGINGS, Material.IRON_LEGGINGS, Material.GOLD_LEGGINGS, Material.DIAMOND_LEGGINGS),
 		BOOTS(Material.LEATHER_BOOTS, Material.CHAINMAIL_BOOTS, Material.IRON_BOOTS, Material.GOLD_BOOTS, Material.DIAMOND_BOOTS);
 
+		// armor types by material ordinal
+		private static final ArmorType[] BY_MATERIAL = new ArmorType[Material
+				.values().length];
+
+		static {
+			for (ArmorType armorType : values()) {
+				for (Material type : armorType.types) {
+					BY_MATERIAL[type.ordinal()] = armorType;
+				}
+			}
+		}
+
 		private Material[] types;
 
 		private ArmorType(Material... types) {
 			this.types = types;
 		}
 
+		/**
+		 * Grabs the index of this armor type in armor contents, which run
+		 * from boots to helmet.
+		 * 
+		 * @return an index between 0 and 3
+		 */
+		public int getSlot() {
+			return BOOTS.ordinal() - ordinal();
+		}
+
 		public static ArmorType getType(ItemStack stack) {
 			Material m = stack.getType();
-
-			for (ArmorType armorType : ArmorType.values()) {
-				for (Material type : armorType.types) {
-					if (m == type) {
-						return armorType;
-					}
-				}
-			}
-			return null;
+			return (m == null ? null : BY_MATERIAL[m.ordinal()]);
 		}
 	}
 
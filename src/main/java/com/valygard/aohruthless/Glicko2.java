@@ -0,0 +1,195 @@
+/**
+ * Glicko2.java is a part of Joystick
+ *
+ * Copyright (c) 2016 Anand Kumar
+ *
+ * Joystick is a free software: You can redistribute it or modify it
+ * under the terms of the GNU General Public License published by the Free
+ * Software Foundation, either version 3 of the license of any later version.
+ * 
+ * Joystick is distributed in the intent of being useful. However, there
+ * is NO WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You can view a copy of the GNU General Public License at 
+ * <http://www.gnu.org/licenses/> if you have not received a copy.
+ */
+package com.valygard.aohruthless;
+
+/**
+ * The Glicko-2 rating system by Mark Glickman. Besides a rating, every player
+ * has a rating deviation, which is how uncertain the rating is, and a
+ * volatility, which is how erratic their results are. Players with a high
+ * deviation move quickly; established players move slowly.
+ * <p>
+ * Ratings are mapped onto the Glicko-2 scale around the starting MMR, with
+ * the same spread the Elo expected score of the {@link RatingSystem} uses.
+ * Unrated players start with a deviation of {@link #DEFAULT_DEVIATION} MMR,
+ * converted with that scale.
+ * Every match is rated as a single game against the pooled opponents.
+ * Updates run over primitive arrays, so a whole match is rated in one pass.
+ * </p>
+ * 
+ * @author Anand
+ * 
+ */
+public class Glicko2 {
+
+	// defaults of unrated players, the deviation in MMR
+	public static final double DEFAULT_DEVIATION = 350D;
+	public static final double DEFAULT_VOLATILITY = 0.06D;
+
+	// convergence tolerance of the volatility iteration
+	private static final double EPSILON = 0.000001D;
+
+	private final double center;
+	private final double scale;
+	private final double tau;
+
+	/**
+	 * Constructor initializes the scale of the system.
+	 * 
+	 * @param startingMMR
+	 *            the rating of new players, the center of the scale
+	 * @param tau
+	 *            the system constant, which limits how fast volatility
+	 *            changes; usually between 0.3 and 1.2
+	 */
+	public Glicko2(int startingMMR, double tau) {
+		this.center = startingMMR;
+		this.scale = (startingMMR / 2D) / Math.log(10D);
+		this.tau = tau;
+	}
+
+	/**
+	 * Converts an MMR to the glicko-2 scale.
+	 * 
+	 * @param rating
+	 *            the MMR
+	 * @return the rating on the glicko-2 scale
+	 */
+	public double toMu(double rating) {
+		return (rating - center) / scale;
+	}
+
+	/**
+	 * Converts a rating on the glicko-2 scale to an MMR.
+	 * 
+	 * @param mu
+	 *            the rating on the glicko-2 scale
+	 * @return the MMR
+	 */
+	public double toRating(double mu) {
+		return mu * scale + center;
+	}
+
+	/**
+	 * Converts a deviation in MMR to the glicko-2 scale. A deviation of 0 is
+	 * treated as an unrated player.
+	 * 
+	 * @param deviation
+	 *            the rating deviation in MMR
+	 * @return the deviation on the glicko-2 scale
+	 */
+	public double toPhi(double deviation) {
+		return (deviation > 0D ? deviation : DEFAULT_DEVIATION) / scale;
+	}
+
+	/**
+	 * Converts a deviation on the glicko-2 scale to MMR.
+	 * 
+	 * @param phi
+	 *            the deviation on the glicko-2 scale
+	 * @return the rating deviation in MMR
+	 */
+	public double toDeviation(double phi) {
+		return phi * scale;
+	}
+
+	/**
+	 * Rates the first {@code n} players of a match. The rating, deviation and
+	 * volatility of every player are replaced in place.
+	 * 
+	 * @param mu
+	 *            the ratings on the glicko-2 scale
+	 * @param phi
+	 *            the deviations on the glicko-2 scale
+	 * @param sigma
+	 *            the volatilities, 0 for unrated players
+	 * @param opponentMu
+	 *            the pooled rating of each player's opponents
+	 * @param opponentPhi
+	 *            the pooled deviation of each player's opponents
+	 * @param score
+	 *            the score of each player: 0=Loss 0.5=Draw 1.0=Win
+	 * @param n
+	 *            the amount of players
+	 */
+	public void update(double[] mu, double[] phi, double[] sigma,
+			double[] opponentMu, double[] opponentPhi, double[] score, int n) {
+		for (int i = 0; i < n; i++) {
+			double g = g(opponentPhi[i]);
+			double e = 1D / (1D + Math.exp(-g * (mu[i] - opponentMu[i])));
+			double v = 1D / (g * g * e * (1D - e));
+			double delta = v * g * (score[i] - e);
+
+			double vol = volatility(phi[i], sigma[i] > 0D ? sigma[i]
+					: DEFAULT_VOLATILITY, v, delta);
+			double pre = Math.sqrt(phi[i] * phi[i] + vol * vol);
+
+			phi[i] = 1D / Math.sqrt(1D / (pre * pre) + 1D / v);
+			mu[i] += phi[i] * phi[i] * g * (score[i] - e);
+			sigma[i] = vol;
+		}
+	}
+
+	/**
+	 * Reduces the impact of a game by the deviation of the opponent.
+	 */
+	private static double g(double phi) {
+		return 1D / Math.sqrt(1D + 3D * phi * phi / (Math.PI * Math.PI));
+	}
+
+	/**
+	 * Finds the new volatility with the Illinois algorithm, as described in
+	 * step 5 of the Glicko-2 paper.
+	 */
+	private double volatility(double phi, double sigma, double v, double delta) {
+		double a = Math.log(sigma * sigma);
+		double phi2 = phi * phi, delta2 = delta * delta;
+
+		double lower = a, upper;
+		if (delta2 > phi2 + v) {
+			upper = Math.log(delta2 - phi2 - v);
+		} else {
+			int k = 1;
+			while (f(a - k * tau, a, phi2, v, delta2) < 0D) {
+				k++;
+			}
+			upper = a - k * tau;
+		}
+
+		double fLower = f(lower, a, phi2, v, delta2);
+		double fUpper = f(upper, a, phi2, v, delta2);
+		while (Math.abs(upper - lower) > EPSILON) {
+			double c = lower + (lower - upper) * fLower / (fUpper - fLower);
+			double fc = f(c, a, phi2, v, delta2);
+			if (fc * fUpper <= 0D) {
+				lower = upper;
+				fLower = fUpper;
+			} else {
+				fLower /= 2D;
+			}
+			upper = c;
+			fUpper = fc;
+		}
+		return Math.exp(lower / 2D);
+	}
+
+	private double f(double x, double a, double phi2, double v, double delta2) {
+		double ex = Math.exp(x);
+		double d = phi2 + v + ex;
+		return ex * (delta2 - phi2 - v - ex) / (2D * d * d) - (x - a)
+				/ (tau * tau);
+	}
+}
@@ -29,6 +29,7 @@ import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.FileHandler;
 import java.util.logging.LogRecord;
 import java.util.logging.SimpleFormatter;
@@ -46,6 +47,13 @@ import org.bukkit.plugin.ServicesManager;
 import org.bukkit.plugin.java.JavaPlugin;
 
 import com.valygard.aohruthless.messenger.Messenger;
+import com.valygard.aohruthless.player.JsonStatsBackend;
+import com.valygard.aohruthless.player.StatsBackend;
+import com.valygard.aohruthless.player.StatsStore;
+import com.valygard.aohruthless.timer.TimerWheel;
+import com.valygard.aohruthless.timer.WorkScheduler;
+import com.valygard.aohruthless.utils.config.JsonConfiguration;
+import com.valygard.aohruthless.utils.inventory.InventoryHandler;
 
 /**
  * @author Anand
@@ -67,6 +75,15 @@ public class Joystick extends JavaPlugin implements PluginBase {
 	// messenger
 	private Messenger messenger;
 
+	// player stats
+	private StatsStore statsStore;
+
+	// budgeted main-thread work
+	private WorkScheduler workScheduler;
+
+	// journaled inventories of players in arenas
+	private InventoryHandler inventoryHandler;
+
 	public Economy getEconomy() {
 		return econ;
 	}
@@ -79,6 +96,18 @@ public class Joystick extends JavaPlugin implements PluginBase {
 		return messenger;
 	}
 
+	public StatsStore getStatsStore() {
+		return statsStore;
+	}
+
+	public WorkScheduler getWorkScheduler() {
+		return workScheduler;
+	}
+
+	public InventoryHandler getInventoryHandler() {
+		return inventoryHandler;
+	}
+
 	@Override
 	public void onEnable() {
 		fileHandler = setupLogger();
@@ -89,10 +118,26 @@ public class Joystick extends JavaPlugin implements PluginBase {
 
 		reloadConfig();
 		saveConfig();
+
+		workScheduler = new WorkScheduler(this);
+		inventoryHandler = new InventoryHandler(this);
+
+		loadStats();
+		statsStore.start();
 	}
 
 	@Override
 	public void onDisable() {
+		// restores may still be queued, unless enabling failed
+		if (workScheduler != null) workScheduler.shutdown();
+		TimerWheel.shutdown(this);
+		if (inventoryHandler != null) inventoryHandler.close();
+
+		// the background json writer does not keep the server alive
+		if (!JsonConfiguration.awaitWrites(30, TimeUnit.SECONDS)) {
+			getLogger().severe("Timed out while saving json files!");
+		}
+		if (statsStore != null) statsStore.close();
 		closeLogger();
 	}
 
@@ -154,6 +199,26 @@ public class Joystick extends JavaPlugin implements PluginBase {
 		}
 	}
 
+	/**
+	 * Opens the stats backend chosen in the config. If it cannot be opened,
+	 * stats are kept in the json files instead. The stored stats are then
+	 * ranked on the leaderboards in the background.
+	 */
+	private void loadStats() {
+		StatsBackend backend;
+		try {
+			backend = StatsStore.createBackend(this);
+		}
+		catch (IOException | RuntimeException e) {
+			getLogger().severe(
+					"Could not open the stats backend, using json files!");
+			e.printStackTrace();
+			backend = new JsonStatsBackend(new File(getDataFolder(), "stats"));
+		}
+		statsStore = new StatsStore(this, backend);
+		statsStore.loadLeaderboards();
+	}
+
 	/**
 	 * Serves as an initializer for member variables.
 	 */
@@ -25,9 +25,20 @@ import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.plugin.PluginDescriptionFile;
 
 import com.valygard.aohruthless.messenger.Messenger;
+import com.valygard.aohruthless.player.StatsStore;
+import com.valygard.aohruthless.timer.WorkScheduler;
+import com.valygard.aohruthless.utils.inventory.InventoryHandler;
 
 /**
  * Provides a base for all Joystick plugins.
+ * <p>
+ * {@link #getStatsStore()}, {@link #getWorkScheduler()} and
+ * {@link #getInventoryHandler()} were added after the first release, which
+ * breaks existing implementations: they no longer compile until the three
+ * methods are added. An implementation without these services may return
+ * null from them. Arenas then write stats and inventories as before and run
+ * scheduled work as plain Bukkit tasks.
+ * </p>
  * 
  * @author Anand
  * 
@@ -40,6 +51,27 @@ public interface PluginBase {
 
 	public Messenger getMessenger();
 
+	/**
+	 * Grabs the write-behind store of player stats.
+	 * 
+	 * @return the StatsStore, or null to not track stats
+	 */
+	public StatsStore getStatsStore();
+
+	/**
+	 * Grabs the scheduler arena work is spread across ticks with.
+	 * 
+	 * @return the WorkScheduler, or null to run work as Bukkit tasks
+	 */
+	public WorkScheduler getWorkScheduler();
+
+	/**
+	 * Grabs the handler journaling the inventories of players in arenas.
+	 * 
+	 * @return the InventoryHandler, or null to keep inventories in memory
+	 */
+	public InventoryHandler getInventoryHandler();
+
 	public FileConfiguration getConfig();
 
 	public void saveConfig();
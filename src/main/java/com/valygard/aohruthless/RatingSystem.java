@@ -16,6 +16,12 @@
  */
 package com.valygard.aohruthless;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 import org.bukkit.entity.Player;
 
 import com.valygard.aohruthless.framework.Arena;
@@ -30,6 +36,13 @@ import com.valygard.aohruthless.player.PlayerStats;
  * <p>
  * Note that the RatingSystem cannot be initialized and is specialized for each
  * Minigame implementation
+ * <p>
+ * A finished match is best rated with {@link #rateMatch(Arena)}, which
+ * resolves every participant once, computes the MMR of each team once and
+ * rates everyone in a single pass. With {@code global.rating-system} set to
+ * {@code glicko2}, matches are rated by {@link Glicko2}, which also keeps a
+ * rating deviation and volatility per player.
+ * </p>
  * 
  * @author Anand
  * 
@@ -44,6 +57,10 @@ public abstract class RatingSystem {
 	// arena manager
 	private ArenaManager manager;
 
+	// config constants
+	private int startingMMR, minimumMMR;
+	private Glicko2 glicko;
+
 	/**
 	 * Constructor to rating system initializes by arenamanager
 	 * 
@@ -51,6 +68,25 @@ public abstract class RatingSystem {
 	 */
 	public RatingSystem(ArenaManager manager) {
 		this.manager = manager;
+		loadConstants();
+	}
+
+	/**
+	 * Reads the rating constants from the config. They are cached, so the
+	 * {@link ArenaManager} calls this again whenever it reloads the config.
+	 */
+	public void loadConstants() {
+		this.startingMMR = manager.getConfig().getInt("global.starting-mmr",
+				1000);
+		this.minimumMMR = manager.getConfig().getInt("global.minimum-mmr");
+
+		if ("glicko2".equalsIgnoreCase(manager.getConfig().getString(
+				"global.rating-system", "elo"))) {
+			this.glicko = new Glicko2(startingMMR, manager.getConfig()
+					.getDouble("global.glicko-tau", 0.5D));
+		} else {
+			this.glicko = null;
+		}
 	}
 
 	/**
@@ -74,6 +110,161 @@ public abstract class RatingSystem {
 	 */
 	protected abstract int getOpponentMMR(Player player);
 
+	/**
+	 * Grabs the team of a player. Players of the same team share their team
+	 * and opponent MMR, so {@link #rateMatch(Arena)} only computes those once
+	 * per team. By default every player is their own team, as in a free for
+	 * all.
+	 * 
+	 * @param player
+	 *            the Player
+	 * @return an object identifying the team
+	 */
+	protected Object getTeam(Player player) {
+		return player;
+	}
+
+	/**
+	 * Rates everyone who took part in a finished match and updates their
+	 * MMR.
+	 * 
+	 * @param arena
+	 *            the Arena
+	 * @return the new ratings, in the order of {@code arena.getPlayers()}
+	 */
+	public int[] rateMatch(Arena arena) {
+		return rateMatch(arena, new ArrayList<>(arena.getPlayers()));
+	}
+
+	/**
+	 * Rates the given players of a finished match and updates their MMR. All
+	 * ratings are computed from the ratings before the match, then applied.
+	 * Players whose stats cannot be loaded keep their rating and are given
+	 * -1.
+	 * 
+	 * @param arena
+	 *            the Arena
+	 * @param players
+	 *            the participants
+	 * @return the new ratings, in the order of {@code players}
+	 */
+	public int[] rateMatch(Arena arena, List<Player> players) {
+		int n = players.size();
+		PlayerStats[] stats = new PlayerStats[n];
+		int[] ratings = new int[n], played = new int[n];
+		int[] teamMMR = new int[n], opponentMMR = new int[n];
+		Object[] teams = new Object[n];
+		double[] scores = new double[n];
+
+		Set<Player> winner = arena.getWinner();
+		Map<Object, int[]> cache = new HashMap<>();
+		for (int i = 0; i < n; i++) {
+			Player p = players.get(i);
+			stats[i] = arena.getStats(p);
+			if (stats[i] == null) continue;
+
+			ratings[i] = stats[i].getMMR();
+			played[i] = stats[i].getGamesPlayed();
+			if (winner == null) {
+				scores[i] = DRAW;
+			} else {
+				scores[i] = (winner.contains(p) ? WIN : LOSS);
+			}
+
+			teams[i] = getTeam(p);
+			int[] mmr = cache.get(teams[i]);
+			if (mmr == null) {
+				mmr = new int[] { getTeamMMR(p), getOpponentMMR(p) };
+				cache.put(teams[i], mmr);
+			}
+			teamMMR[i] = mmr[0];
+			opponentMMR[i] = mmr[1];
+		}
+
+		int[] result;
+		if (glicko != null) {
+			result = rateGlicko(stats, teams, ratings, teamMMR, opponentMMR,
+					scores);
+		} else {
+			result = new int[n];
+			for (int i = 0; i < n; i++) {
+				if (stats[i] == null) continue;
+
+				result[i] = calculateNewRating(ratings[i], scores[i],
+						getExpectedScore(teamMMR[i], opponentMMR[i]),
+						getScoreConstant(ratings[i], played[i]));
+			}
+		}
+
+		for (int i = 0; i < n; i++) {
+			if (stats[i] == null) {
+				result[i] = -1;
+			} else {
+				stats[i].setMMR(result[i]);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Rates a match with Glicko-2. Each player is rated against their pooled
+	 * opponents, placed as far from the player as the opponent MMR is from
+	 * the team MMR. The deviation and volatility of every player are updated
+	 * right away; their MMR is returned.
+	 */
+	private int[] rateGlicko(PlayerStats[] stats, Object[] teams,
+			int[] ratings, int[] teamMMR, int[] opponentMMR, double[] scores) {
+		int n = stats.length;
+		double[] mu = new double[n], phi = new double[n], sigma = new double[n];
+		double[] opponentMu = new double[n], opponentPhi = new double[n];
+
+		// squared deviations, in total and per team, to pool the opponents
+		double total = 0D;
+		int counted = 0;
+		Map<Object, double[]> pooled = new HashMap<>();
+		for (int i = 0; i < n; i++) {
+			if (stats[i] == null) continue;
+
+			mu[i] = glicko.toMu(ratings[i]);
+			phi[i] = glicko.toPhi(stats[i].getDeviation());
+			sigma[i] = stats[i].getVolatility();
+			opponentMu[i] = mu[i] + glicko.toMu(opponentMMR[i])
+					- glicko.toMu(teamMMR[i]);
+
+			double[] team = pooled.get(teams[i]);
+			if (team == null) {
+				team = new double[2];
+				pooled.put(teams[i], team);
+			}
+			team[0] += phi[i] * phi[i];
+			team[1]++;
+			total += phi[i] * phi[i];
+			counted++;
+		}
+
+		for (int i = 0; i < n; i++) {
+			if (stats[i] == null) continue;
+
+			double[] team = pooled.get(teams[i]);
+			int opponents = counted - (int) team[1];
+			opponentPhi[i] = (opponents > 0 ? Math.sqrt((total - team[0])
+					/ opponents) : glicko.toPhi(Glicko2.DEFAULT_DEVIATION));
+		}
+
+		glicko.update(mu, phi, sigma, opponentMu, opponentPhi, scores, n);
+
+		int[] result = new int[n];
+		for (int i = 0; i < n; i++) {
+			if (stats[i] == null) continue;
+
+			result[i] = Math.max(minimumMMR,
+					(int) Math.round(glicko.toRating(mu[i])));
+			stats[i].setDeviation(glicko.toDeviation(phi[i]));
+			stats[i].setVolatility(sigma[i]);
+		}
+		return result;
+	}
+
 	/**
 	 * Calculates the updated rating for a player.
 	 * 
@@ -102,12 +293,13 @@ public abstract class RatingSystem {
 	 * @return the new rating
 	 */
 	public int getNewRating(Player player, double score) {
-		Arena arena = manager.getArenaWithPlayer(player);
-		double kFactor = getScoreConstant(player);
+		PlayerStats stats = manager.getArenaWithPlayer(player).getStats(player);
+		double kFactor = getScoreConstant(stats.getMMR(),
+				stats.getGamesPlayed());
 		double expectedScore = getExpectedScore(getTeamMMR(player),
 				getOpponentMMR(player));
-		return calculateNewRating(arena.getStats(player).getMMR(), score,
-				expectedScore, kFactor);
+		return calculateNewRating(stats.getMMR(), score, expectedScore,
+				kFactor);
 	}
 
 	/**
@@ -129,8 +321,8 @@ public abstract class RatingSystem {
 		int newRating = oldRating + (int) (constant * (score - expectedScore));
 
 		// soft-cap the player's minimum mmr.
-		if (newRating < manager.getConfig().getInt("global.minimum-mmr")) {
-			newRating = manager.getConfig().getInt("global.minimum-mmr");
+		if (newRating < minimumMMR) {
+			newRating = minimumMMR;
 		}
 
 		return newRating;
@@ -142,23 +334,18 @@ public abstract class RatingSystem {
 	 * chess, rating is more volatile for newer players and less for veterans.
 	 * Stronger players lose and gain less rating than weaker players do.
 	 * 
-	 * @param player
+	 * @param rating
+	 *            the player's current rating
+	 * @param played
+	 *            the player's games played
 	 * @return the given player's score constant, based on current rating, base
 	 *         rating, and games played
 	 */
-	private double getScoreConstant(Player player) {
-		Arena arena = manager.getArenaWithPlayer(player);
-		PlayerStats stats = arena.getStats(player);
-
-		int rating = stats.getMMR();
-		int played = stats.getGamesPlayed();
-
-		int base = manager.getConfig().getInt("global.starting-mmr");
-
-		double scoreFactor = (rating * 1D) / (base * 1D);
+	private double getScoreConstant(int rating, int played) {
+		double scoreFactor = (rating * 1D) / (startingMMR * 1D);
 		double playFactor = played * 0.01D;
 
-		if (rating >= base) {
+		if (rating >= startingMMR) {
 			return 0.04D / (scoreFactor + playFactor);
 		}
 		if (rating >= 0) {
@@ -181,7 +368,6 @@ public abstract class RatingSystem {
 	 */
 	public double getExpectedScore(int rating, int opponentRating) {
 		return 1.0 / (1.0 + Math.pow(10.0,
-				((double) (opponentRating - rating) / (manager.getConfig()
-						.getInt("global.starting-mmr") / 2D))));
+				((double) (opponentRating - rating) / (startingMMR / 2D))));
 	}
 }
\ No newline at end of file
@@ -18,22 +18,28 @@ package com.valygard.aohruthless.command;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
-import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
-import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.apache.commons.lang.Validate;
 import org.bukkit.ChatColor;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
+import org.bukkit.command.TabCompleter;
 import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
 
 import com.valygard.aohruthless.PluginBase;
 import com.valygard.aohruthless.messenger.Msg;
+import com.valygard.aohruthless.player.OnlinePlayerIndex;
 import com.valygard.aohruthless.utils.PermissionUtils;
+import com.valygard.aohruthless.utils.PrefixIndex;
 
 /**
  * Handler to process all commands. All commands are processed through
@@ -52,17 +58,70 @@ import com.valygard.aohruthless.utils.PermissionUtils;
  * subclasses will not be parsed. Similarly, commands are processed using
  * no-args constructors, so be sure not to use injectors which may violate this.
  * </p>
+ * <p>
+ * Syntaxes are compiled when they are registered. A syntax which is only a
+ * list of literal alternatives, such as {@code (create|new)}, is dispatched
+ * through a hash lookup; any other syntax keeps a precompiled pattern. The
+ * annotations of every command are read once, at registration.
+ * </p>
+ * <p>
+ * The handler is also the tab completer of its command. The first argument
+ * completes to the subcommands the sender may use. Later arguments complete
+ * by the placeholders in the {@link CommandUsage} of the subcommand: the
+ * second argument of {@code /js join <arena>} completes from the index added
+ * for {@code "arena"} with {@link #addCompletions(String, PrefixIndex)}.
+ * Online players are always indexed as {@code "player"}, and a player only
+ * completes the names of the players they can see.
+ * </p>
  * 
  * @author Anand
  * 
  */
-public abstract class CommandHandler implements CommandExecutor {
+public abstract class CommandHandler implements CommandExecutor, TabCompleter {
+
+	private static final Pattern RESERVED = Pattern.compile(
+			"version|plugin|\\?|help", Pattern.CASE_INSENSITIVE);
+	private static final Pattern VERSION = Pattern.compile("version|plugin",
+			Pattern.CASE_INSENSITIVE);
+	private static final Pattern HELP = Pattern.compile("\\?|help",
+			Pattern.CASE_INSENSITIVE);
+	private static final Pattern NO_PAGE = Pattern.compile("\\D*|-\\d*");
+
+	// a syntax of literal alternatives, optionally in one group
+	private static final Pattern LITERALS = Pattern
+			.compile("\\(?([\\w-]+(\\|[\\w-]+)*)\\)?");
+
+	// an argument placeholder of a usage, such as <arena> or [player]
+	private static final Pattern PLACEHOLDER = Pattern
+			.compile("[<\\[]([^>\\]]+)[>\\]]");
+
+	// the most names sent back for one completion
+	private static final int MAX_COMPLETIONS = 100;
+
+	// registration order, for syntaxes matched by both index and pattern
+	private static final Comparator<Registration> ORDER = new Comparator<Registration>() {
+
+		@Override
+		public int compare(Registration a, Registration b) {
+			return Integer.compare(a.order, b.order);
+		}
+	};
 
 	protected PluginBase plugin;
 	protected String cmdBase;
 
 	protected Map<String, Command> commands = new LinkedHashMap<>();
 
+	// compiled registrations, by syntax, in order of registration
+	private final Map<String, Registration> registered = new LinkedHashMap<>();
+	private final Map<String, List<Registration>> literals = new HashMap<>();
+	private final List<Registration> patterns = new ArrayList<>();
+
+	// completion of subcommand names and of usage placeholders
+	private final PrefixIndex names = new PrefixIndex();
+	private final Map<String, Registration> named = new HashMap<>();
+	private final Map<String, PrefixIndex> completions = new HashMap<>();
+
 	/**
 	 * Constructor for Joystick command manager initializes by main class
 	 * instance
@@ -76,6 +135,9 @@ public abstract class CommandHandler implements CommandExecutor {
 		this.plugin = plugin;
 		this.cmdBase = cmdBase;
 
+		if (plugin instanceof Plugin) {
+			addCompletions("player", new OnlinePlayerIndex((Plugin) plugin));
+		}
 		registerCommands();
 	}
 
@@ -85,15 +147,15 @@ public abstract class CommandHandler implements CommandExecutor {
 		String first = (args.length > 0 ? args[0] : "");
 		String last = (args.length > 0 ? args[args.length - 1] : "");
 
-		if (first.matches("(?i)(version|plugin)")) {
+		if (VERSION.matcher(first).matches()) {
 			plugin.getMessenger().tell(sender, Msg.CMD_VERSION,
 					"for " + cmdBase + ": " + getPluginInfo());
 			return true;
 		}
 
-		if (first.matches("(?i)(\\?|help)")) {
+		if (HELP.matcher(first).matches()) {
 			String second = (args.length > 1 ? args[1] : "");
-			if (second.matches("\\D*|-\\d*")) {
+			if (NO_PAGE.matcher(second).matches()) {
 				showHelp(sender);
 				return true;
 			}
@@ -107,13 +169,13 @@ public abstract class CommandHandler implements CommandExecutor {
 			return true;
 		}
 
-		List<Command> matches = getMatchingCommands(first);
+		List<Registration> matches = match(first);
 
 		// Eliminate duplicate matches by sending error message
 		if (matches.size() > 1) {
 			plugin.getMessenger().tell(sender, Msg.CMD_MULTIPLE_MATCHES);
-			for (Command command : matches) {
-				showUsage(command, sender, false);
+			for (Registration match : matches) {
+				showUsage(match, sender, false);
 			}
 			return true;
 		}
@@ -123,40 +185,97 @@ public abstract class CommandHandler implements CommandExecutor {
 			return true;
 		}
 
-		Command command = matches.get(0);
-		CommandPermission perm = command.getClass().getAnnotation(
-				CommandPermission.class);
-		CommandInfo info = command.getClass().getAnnotation(CommandInfo.class);
+		Registration match = matches.get(0);
 
-		if (info.playerOnly() && !(sender instanceof Player)) {
+		if (match.info.playerOnly() && !(sender instanceof Player)) {
 			plugin.getMessenger().tell(sender, Msg.CMD_NOT_FROM_CONSOLE);
 			return true;
 		}
 
-		if (last.matches("(?i)(\\?|help)")) {
-			showUsage(command, sender, false);
+		if (HELP.matcher(last).matches()) {
+			showUsage(match, sender, false);
 			return true;
 		}
 
-		if (!PermissionUtils.has(sender, perm.value())) {
+		if (!PermissionUtils.has(sender, match.perm.value())) {
 			plugin.getMessenger().tell(sender, Msg.CMD_NO_PERMISSION);
 			return true;
 		}
 
 		String[] params = trimFirstArg(args);
 
-		if (params.length < info.argsRequired()) {
+		if (params.length < match.info.argsRequired()) {
 			plugin.getMessenger().tell(sender, Msg.CMD_NOT_ENOUGH_ARGS);
-			showUsage(command, sender, true);
+			showUsage(match, sender, true);
 			return true;
 		}
 
-		if (!execute(command, sender, params)) {
-			showUsage(command, sender, true);
+		if (!execute(match.command, sender, params)) {
+			showUsage(match, sender, true);
 		}
 		return false;
 	}
 
+	@Override
+	public List<String> onTabComplete(CommandSender sender,
+			org.bukkit.command.Command cmd, String alias, String[] args) {
+		if (args.length <= 1) {
+			String prefix = (args.length > 0 ? args[0] : "");
+			List<String> result = names.complete(prefix, MAX_COMPLETIONS);
+			for (int i = result.size() - 1; i >= 0; i--) {
+				Registration r = named.get(lower(result.get(i)));
+				if (!PermissionUtils.has(sender, r.perm.value())) {
+					result.remove(i);
+				}
+			}
+			return result;
+		}
+
+		List<Registration> matches = match(args[0]);
+		if (matches.size() != 1) return Collections.emptyList();
+
+		Registration match = matches.get(0);
+		int param = args.length - 2;
+		if (param >= match.params.length
+				|| !PermissionUtils.has(sender, match.perm.value())) {
+			return Collections.emptyList();
+		}
+
+		PrefixIndex index = completions.get(match.params[param]);
+		if (index == null) return Collections.emptyList();
+
+		String prefix = args[args.length - 1];
+		if (index instanceof OnlinePlayerIndex) {
+			return ((OnlinePlayerIndex) index).complete(sender, prefix,
+					MAX_COMPLETIONS);
+		}
+		return index.complete(prefix, MAX_COMPLETIONS);
+	}
+
+	/**
+	 * Adds the names completed for a usage placeholder. The index is kept by
+	 * reference, so names added to or removed from it later are completed as
+	 * well. Placeholders are matched without their brackets and ignoring
+	 * case.
+	 * <p>
+	 * Typically, a handler adds the arena and class names of its
+	 * ArenaManager:
+	 * </p>
+	 * 
+	 * <pre>
+	 * addCompletions(&quot;arena&quot;, manager.getArenaNames());
+	 * addCompletions(&quot;class&quot;, manager.getClassNames());
+	 * </pre>
+	 * 
+	 * @param placeholder
+	 *            the placeholder name, such as "arena" for {@code <arena>}
+	 * @param index
+	 *            the names to complete
+	 */
+	protected void addCompletions(String placeholder, PrefixIndex index) {
+		completions.put(lower(placeholder), index);
+	}
+
 	/**
 	 * Handles command execution. The reason this is not handled internally in
 	 * {@link #onCommand(CommandSender, org.bukkit.command.Command, String, String[])}
@@ -213,60 +332,96 @@ public abstract class CommandHandler implements CommandExecutor {
 	 * Shows the usage information of a command to a sender upon incorrect usage
 	 * or when assistance is requested.
 	 * 
-	 * @param command
-	 *            the Command given
+	 * @param match
+	 *            the registered command
 	 * @param sender
 	 *            a CommandSender
 	 * @param prefix
 	 *            a boolean: if true, we attach "Usage : " before the usage.
 	 */
-	private void showUsage(Command command, CommandSender sender, boolean prefix) {
-		CommandInfo info = command.getClass().getAnnotation(CommandInfo.class);
-		CommandPermission perm = command.getClass().getAnnotation(
-				CommandPermission.class);
-		CommandUsage usage = command.getClass().getAnnotation(
-				CommandUsage.class);
-
-		if (!PermissionUtils.has(sender, perm.value())) return;
+	private void showUsage(Registration match, CommandSender sender,
+			boolean prefix) {
+		if (!PermissionUtils.has(sender, match.perm.value())) return;
 
-		sender.sendMessage((prefix ? "Usage: " : "") + usage.value() + " "
-				+ ChatColor.YELLOW + info.desc());
+		sender.sendMessage((prefix ? "Usage: " : "") + match.usage.value()
+				+ " " + ChatColor.YELLOW + match.info.desc());
 	}
 
 	/**
 	 * Gets a list of commands matching a string given. Because the command
 	 * system uses regex patterns rather than the conventional
 	 * {@link #equals(Object)}, this helps ensures a command sent has no
-	 * conflicting commands.
+	 * conflicting commands. Commands are returned in order of registration.
 	 * 
 	 * @param arg
 	 *            a string representing the first argument in a command
 	 * @return a list of matching commands.
 	 */
-	private List<Command> getMatchingCommands(String arg) {
-		List<Command> result = new ArrayList<Command>();
-		for (Entry<String, Command> entry : commands.entrySet()) {
-			if (arg.matches("(?i)" + entry.getKey())) {
-				result.add(entry.getValue());
-			}
+	protected List<Command> getMatchingCommands(String arg) {
+		List<Registration> matches = match(arg);
+		List<Command> result = new ArrayList<>(matches.size());
+		for (Registration match : matches) {
+			result.add(match.command);
 		}
 		return result;
 	}
 
 	/**
-	 * Grabs a set of commands that a given CommandSender has access to. Checks
-	 * against permission values and if the sender has access to each command.
+	 * Finds the registrations matching the first argument of a command. The
+	 * literal index is consulted first; only syntaxes which are not literal
+	 * are matched against their pattern.
+	 * 
+	 * @param arg
+	 *            the first argument
+	 * @return the matching registrations, in order of registration
+	 */
+	private List<Registration> match(String arg) {
+		List<Registration> exact = literals.get(lower(arg));
+		if (patterns.isEmpty()) {
+			return (exact == null ? Collections.<Registration> emptyList()
+					: exact);
+		}
+
+		List<Registration> result = new ArrayList<>();
+		if (exact != null) result.addAll(exact);
+		for (Registration r : patterns) {
+			if (r.pattern.matcher(arg).matches()) result.add(r);
+		}
+
+		if (exact != null && result.size() > exact.size()) {
+			Collections.sort(result, ORDER);
+		}
+		return result;
+	}
+
+	/**
+	 * Lower cases the ASCII letters of a string, which is all a
+	 * case-insensitive pattern folds without {@link Pattern#UNICODE_CASE}.
+	 */
+	private static String lower(String arg) {
+		char[] chars = null;
+		for (int i = 0; i < arg.length(); i++) {
+			char c = arg.charAt(i);
+			if (c < 'A' || c > 'Z') continue;
+			if (chars == null) chars = arg.toCharArray();
+			chars[i] = (char) (c + ('a' - 'A'));
+		}
+		return (chars == null ? arg : new String(chars));
+	}
+
+	/**
+	 * Grabs a list of commands that a given CommandSender has access to.
+	 * Checks against permission values and if the sender has access to each
+	 * command.
 	 * 
 	 * @param sender
 	 *            the CommandSender to check permissions for
-	 * @return a LinkedHashSet of Commands
+	 * @return a list of registered commands
 	 */
-	private Set<Command> getAllowedCommands(CommandSender sender) {
-		Set<Command> result = new LinkedHashSet<>();
-		for (Command cmd : commands.values()) {
-			CommandPermission perm = cmd.getClass().getAnnotation(
-					CommandPermission.class);
-			if (PermissionUtils.has(sender, perm.value())) result.add(cmd);
+	private List<Registration> getAllowedCommands(CommandSender sender) {
+		List<Registration> result = new ArrayList<>();
+		for (Registration r : registered.values()) {
+			if (PermissionUtils.has(sender, r.perm.value())) result.add(r);
 		}
 		return result;
 	}
@@ -295,7 +450,7 @@ public abstract class CommandHandler implements CommandExecutor {
 	 *            an integer representing which commands to show to the player.
 	 */
 	private void showHelp(CommandSender sender, int page) {
-		Set<Command> allowed = getAllowedCommands(sender);
+		List<Registration> allowed = getAllowedCommands(sender);
 		int cmds = allowed.size();
 
 		if (Math.ceil(cmds / 6.0) < page) {
@@ -307,14 +462,10 @@ public abstract class CommandHandler implements CommandExecutor {
 		}
 
 		StringBuilder builder = new StringBuilder();
-		CommandInfo info;
-		CommandUsage usage;
 
 		int counter = 0;
-		for (Command cmd : allowed) {
+		for (Registration r : allowed) {
 			counter++;
-			info = cmd.getClass().getAnnotation(CommandInfo.class);
-			usage = cmd.getClass().getAnnotation(CommandUsage.class);
 
 			// get to correct page
 			if ((page * 6) - 5 > counter) continue;
@@ -322,8 +473,9 @@ public abstract class CommandHandler implements CommandExecutor {
 			// break after threshold
 			if (page * 6 < counter) break;
 
-			builder.append("\n").append(ChatColor.RESET).append(usage.value())
-					.append(" ").append(ChatColor.YELLOW).append(info.desc());
+			builder.append("\n").append(ChatColor.RESET)
+					.append(r.usage.value()).append(" ")
+					.append(ChatColor.YELLOW).append(r.info.desc());
 		}
 
 		plugin.getMessenger().tell(
@@ -358,12 +510,93 @@ public abstract class CommandHandler implements CommandExecutor {
 		if (info == null) return;
 
 		try {
-			Validate.isTrue(!info.syntax().matches(
-					"(?i)(version|plugin|\\?|help)"));
-			commands.put(info.syntax(), c.newInstance());
+			Validate.isTrue(!RESERVED.matcher(info.syntax()).matches());
+			Registration r = new Registration(c.newInstance(), info,
+					c.getAnnotation(CommandPermission.class),
+					c.getAnnotation(CommandUsage.class));
+
+			commands.put(info.syntax(), r.command);
+			registered.put(info.syntax(), r);
+			index();
 		}
 		catch (Exception e) {
 			e.printStackTrace();
 		}
 	}
+
+	/**
+	 * Rebuilds the dispatch index from the registered commands. A syntax
+	 * registered again replaces the old command in its original position.
+	 */
+	private void index() {
+		literals.clear();
+		patterns.clear();
+		names.clear();
+		named.clear();
+
+		int order = 0;
+		for (Registration r : registered.values()) {
+			r.order = order++;
+			if (r.literals == null) {
+				patterns.add(r);
+				names.add(r.info.name());
+				named.put(lower(r.info.name()), r);
+				continue;
+			}
+			for (String literal : r.literals) {
+				List<Registration> list = literals.get(literal);
+				if (list == null) {
+					list = new ArrayList<>(1);
+					literals.put(literal, list);
+				}
+				if (!list.contains(r)) list.add(r);
+				names.add(literal);
+				named.put(literal, r);
+			}
+		}
+	}
+
+	/**
+	 * A registered command with its annotations and compiled syntax.
+	 */
+	private static class Registration {
+
+		private final Command command;
+		private final CommandInfo info;
+		private final CommandPermission perm;
+		private final CommandUsage usage;
+		private final Pattern pattern;
+		private final String[] literals;
+		private final String[] params;
+		private int order;
+
+		private Registration(Command command, CommandInfo info,
+				CommandPermission perm, CommandUsage usage) {
+			this.command = command;
+			this.info = info;
+			this.perm = perm;
+			this.usage = usage;
+			this.pattern = Pattern.compile(info.syntax(),
+					Pattern.CASE_INSENSITIVE);
+
+			String syntax = info.syntax();
+			boolean grouped = syntax.startsWith("(") == syntax.endsWith(")");
+			if (grouped && LITERALS.matcher(syntax).matches()) {
+				String group = syntax.startsWith("(") ? syntax.substring(1,
+						syntax.length() - 1) : syntax;
+				this.literals = lower(group).split("\\|");
+			} else {
+				this.literals = null;
+			}
+
+			List<String> params = new ArrayList<>();
+			if (usage != null) {
+				Matcher m = PLACEHOLDER.matcher(usage.value());
+				while (m.find()) {
+					params.add(lower(m.group(1).trim()));
+				}
+			}
+			this.params = params.toArray(new String[params.size()]);
+		}
+	}
 }
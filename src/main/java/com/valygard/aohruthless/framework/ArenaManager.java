@@ -18,11 +18,15 @@ package com.valygard.aohruthless.framework;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.bukkit.Bukkit;
 import org.bukkit.World;
@@ -35,7 +39,12 @@ import org.bukkit.plugin.Plugin;
 
 import com.valygard.aohruthless.ArenaClass;
 import com.valygard.aohruthless.ArenaClass.ArmorType;
+import com.valygard.aohruthless.PluginBase;
+import com.valygard.aohruthless.RatingSystem;
+import com.valygard.aohruthless.player.JoinPipeline;
+import com.valygard.aohruthless.timer.WorkScheduler;
 import com.valygard.aohruthless.utils.PermissionUtils;
+import com.valygard.aohruthless.utils.PrefixIndex;
 import com.valygard.aohruthless.utils.config.ConfigUtils;
 import com.valygard.aohruthless.utils.items.ItemParser;
 
@@ -49,11 +58,24 @@ public abstract class ArenaManager {
 	private Plugin plugin;
 	private FileConfiguration config;
 
-	// getting arenas
-	private List<Arena> arenas;
+	// getting arenas, keyed by lowercase name
+	private final ArenaRegistry arenas;
+
+	// player index, maps each participating player to their arena
+	private final ConcurrentMap<UUID, Arena> players;
+
+	// lobby joins, spread across ticks
+	private final JoinPipeline joins;
+
+	// players queued for a match
+	private final Matchmaker matchmaker;
+
+	// arenas still restoring their players after they ended
+	private final List<ArenaTeardown> teardowns;
 
 	// Arena Classes
 	private Map<String, ArenaClass> classes;
+	private final PrefixIndex classNames;
 
 	// we have to make sure the Minigame is even enabled
 	private boolean enabled;
@@ -71,9 +93,14 @@ public abstract class ArenaManager {
 		this.plugin = plugin;
 		this.config = plugin.getConfig();
 
-		this.arenas = new ArrayList<Arena>();
+		this.arenas = new ArenaRegistry();
+		this.players = new ConcurrentHashMap<UUID, Arena>();
+		this.joins = new JoinPipeline(plugin);
+		this.matchmaker = new Matchmaker(this);
+		this.teardowns = new ArrayList<ArenaTeardown>();
 
 		this.classes = new HashMap<String, ArenaClass>();
+		this.classNames = new PrefixIndex();
 
 		this.enabled = config.getBoolean("global.enabled", true);
 
@@ -119,7 +146,9 @@ public abstract class ArenaManager {
 			createArena(section, "default", false);
 		}
 
-		arenas = new ArrayList<Arena>();
+		// the player index points into the arenas being replaced
+		arenas.clear();
+		players.clear();
 		for (World world : Bukkit.getServer().getWorlds()) {
 			loadArenasInWorld(world.getName());
 		}
@@ -150,13 +179,18 @@ public abstract class ArenaManager {
 	}
 
 	/**
-	 * Unload all arenas in a specified world.
+	 * Unload all arenas in a specified world. The arenas are ended through
+	 * {@link #endArena(Arena)}, so their players are restored over the next
+	 * ticks.
+	 * 
+	 * @return the teardowns of the unloaded arenas
 	 */
-	public void unloadArenasInWorld(String worldName) {
+	public List<ArenaTeardown> unloadArenasInWorld(String worldName) {
+		List<ArenaTeardown> ended = new ArrayList<ArenaTeardown>();
 		Set<String> arenaNames = config.getConfigurationSection("arenas")
 				.getKeys(false);
 		if (arenaNames == null || arenaNames.isEmpty()) {
-			return;
+			return ended;
 		}
 		for (String arenaName : arenaNames) {
 			Arena arena = getArenaWithName(arenaName);
@@ -165,9 +199,11 @@ public abstract class ArenaManager {
 			String arenaWorld = arena.getWorld().getName();
 			if (!arenaWorld.equals(worldName)) continue;
 
-			arena.forceEnd();
-			arenas.remove(arena);
+			ended.add(endArena(arena));
+			unindexArena(arena);
+			arenas.unregister(arena);
 		}
+		return ended;
 	}
 
 	/**
@@ -201,8 +237,11 @@ public abstract class ArenaManager {
 		settings.set("world", world.getName());
 
 		Arena arena = initArena(arenaName);
+		if (arena instanceof ArenaTemplate) {
+			((ArenaTemplate) arena).setManager(this);
+		}
 
-		arenas.add(arena);
+		arenas.register(arena);
 		plugin.getLogger().info(
 				"Loaded arena '" + arenaName + "' in world '" + worldName
 						+ "'.");
@@ -263,7 +302,8 @@ public abstract class ArenaManager {
 
 		if (arena != null && arena.isRunning()) arena.forceEnd();
 
-		arenas.remove(arena);
+		if (arena != null) unindexArena(arena);
+		arenas.unregister(arena);
 		config.set("arenas." + name, null);
 		plugin.saveConfig();
 
@@ -279,12 +319,14 @@ public abstract class ArenaManager {
 		if (arena == null) return false;
 
 		arena.forceEnd();
-		arenas.remove(arena);
+		unindexArena(arena);
+		arenas.unregister(arena);
 
 		plugin.reloadConfig();
 		config = plugin.getConfig();
 
 		loadArena(name);
+		reloadRatings();
 		return true;
 	}
 
@@ -303,21 +345,86 @@ public abstract class ArenaManager {
 	}
 
 	/**
-	 * Reload the config.
+	 * Reload the config. Running arenas are ended through
+	 * {@link #endArena(Arena)}, so the arenas are reloaded right away while
+	 * their players are restored over the next ticks.
+	 * 
+	 * @return the teardowns of the arenas which were running
 	 */
-	public void reloadConfig() {
+	public List<ArenaTeardown> reloadConfig() {
 		boolean wasEnabled = isEnabled();
 
 		if (wasEnabled) setEnabled(false);
 
+		List<ArenaTeardown> ended = new ArrayList<ArenaTeardown>();
 		for (Arena arena : arenas) {
-			if (arena.isRunning()) arena.forceEnd();
+			if (arena.isRunning()) ended.add(endArena(arena));
 		}
 		plugin.reloadConfig();
 		config = plugin.getConfig();
 		initialize();
+		matchmaker.reload();
+		reloadRatings();
 
 		if (wasEnabled) setEnabled(true);
+		return ended;
+	}
+
+	/**
+	 * Helper method to reread the constants of every arena's rating system
+	 * after the config was reloaded. A rating system may be shared by several
+	 * arenas or outlive them, and caches its constants.
+	 */
+	private void reloadRatings() {
+		for (Arena arena : arenas) {
+			RatingSystem rating = arena.getRatingSystem();
+			if (rating != null) rating.loadConstants();
+		}
+	}
+
+	/**
+	 * Ends an arena in stages. Its players are removed right away, but
+	 * restored and teleported over the next ticks within the budget of the
+	 * plugin's {@link WorkScheduler}, and its stats and inventories are
+	 * written in the background afterwards. Ending many arenas at once
+	 * therefore no longer stalls a single tick.
+	 * 
+	 * @param arena
+	 *            the Arena
+	 * @return the ArenaTeardown, done once the arena is fully reset
+	 */
+	public ArenaTeardown endArena(Arena arena) {
+		WorkScheduler scheduler = null;
+		if (plugin instanceof PluginBase) {
+			scheduler = ((PluginBase) plugin).getWorkScheduler();
+		}
+
+		final ArenaTeardown teardown = new ArenaTeardown(arena, scheduler);
+		teardowns.add(teardown);
+		teardown.whenDone(new Runnable() {
+
+			@Override
+			public void run() {
+				teardowns.remove(teardown);
+			}
+		});
+		teardown.start();
+		return teardown;
+	}
+
+	/**
+	 * Restores a player right away if the teardown of an arena they were in
+	 * still has them queued.
+	 * 
+	 * @param player
+	 *            the Player
+	 * @return true if the player was restored
+	 */
+	public boolean restoreNow(Player player) {
+		for (ArenaTeardown teardown : new ArrayList<>(teardowns)) {
+			if (teardown.restoreNow(player.getUniqueId())) return true;
+		}
+		return false;
 	}
 
 	/**
@@ -330,10 +437,10 @@ public abstract class ArenaManager {
 
 		// Establish the map.
 		classes = new HashMap<String, ArenaClass>();
-		Set<String> classNames = section.getKeys(false);
+		classNames.clear();
 
 		// Load each individual class.
-		for (String className : classNames) {
+		for (String className : section.getKeys(false)) {
 			loadClass(className);
 		}
 	}
@@ -404,6 +511,7 @@ public abstract class ArenaManager {
 
 		// Finally add the class to the classes map.
 		classes.put(lowercase, arenaClass);
+		classNames.add(classname);
 		return arenaClass;
 	}
 
@@ -462,6 +570,7 @@ public abstract class ArenaManager {
 
 		// Remove the class from the map.
 		classes.remove(lowercase);
+		classNames.remove(lowercase);
 	}
 
 	// --------------------------- //
@@ -478,12 +587,31 @@ public abstract class ArenaManager {
 	}
 
 	/**
-	 * Get all the arenas in list format.
+	 * Get the pipeline that spreads lobby joins across ticks.
+	 * 
+	 * @return
+	 */
+	public JoinPipeline getJoinPipeline() {
+		return joins;
+	}
+
+	/**
+	 * Get the matchmaker which places queued players in the enabled arenas.
+	 * 
+	 * @return
+	 */
+	public Matchmaker getMatchmaker() {
+		return matchmaker;
+	}
+
+	/**
+	 * Get all the arenas in list format, in the order they were loaded. The
+	 * list is a copy; use {@link #getArenaWithName(String)} for lookups.
 	 * 
 	 * @return
 	 */
 	public List<Arena> getArenas() {
-		return arenas;
+		return arenas.asList();
 	}
 
 	/**
@@ -495,6 +623,26 @@ public abstract class ArenaManager {
 		return classes;
 	}
 
+	/**
+	 * Get the prefix index of all loaded arena names, for completion. The
+	 * index follows arenas as they are loaded and unloaded.
+	 * 
+	 * @return
+	 */
+	public PrefixIndex getArenaNames() {
+		return arenas.getNames();
+	}
+
+	/**
+	 * Get the prefix index of all loaded class names, for completion. The
+	 * index follows classes as they are loaded and removed.
+	 * 
+	 * @return
+	 */
+	public PrefixIndex getClassNames() {
+		return classNames;
+	}
+
 	/**
 	 * Is the plugin enabled?
 	 * 
@@ -603,28 +751,63 @@ public abstract class ArenaManager {
 	}
 
 	/**
-	 * Get a specific arena with a player.
+	 * Get a specific arena with a player. The lookup is backed by the player
+	 * index, so it runs in constant time regardless of the amount of arenas.
 	 * 
 	 * @param player
-	 * @return
+	 * @return the Arena the player is in, null if they are in no arena
 	 */
 	public Arena getArenaWithPlayer(Player player) {
-		for (Arena arena : arenas) {
-			if (arena.getPlayersInArena().contains(player)
-					|| arena.getPlayersInLobby().contains(player)
-					|| arena.getSpectators().contains(player)) return arena;
-		}
-		return null;
+		return players.get(player.getUniqueId());
+	}
+
+	/**
+	 * Associates a player with an arena in the player index. Arenas extending
+	 * {@link ArenaTemplate} do this automatically whenever a player joins the
+	 * lobby, the arena or the spectators; other Arena implementations must call
+	 * this themselves.
+	 * 
+	 * @param player
+	 *            the Player
+	 * @param arena
+	 *            the Arena the player now belongs to
+	 */
+	public void indexPlayer(Player player, Arena arena) {
+		players.put(player.getUniqueId(), arena);
+	}
+
+	/**
+	 * Removes a player from the player index, but only if they are still
+	 * associated with the given arena.
+	 * 
+	 * @param player
+	 *            the Player
+	 * @param arena
+	 *            the Arena the player is leaving
+	 */
+	public void unindexPlayer(Player player, Arena arena) {
+		players.remove(player.getUniqueId(), arena);
+	}
+
+	/**
+	 * Drops every index entry of an arena which is being unloaded.
+	 * 
+	 * @param arena
+	 *            the Arena
+	 */
+	private void unindexArena(Arena arena) {
+		players.values().removeAll(Collections.singleton(arena));
 	}
 
 	/**
-	 * Get an arena with it's config-name.
+	 * Get an arena with it's config-name. Names are case-insensitive and the
+	 * lookup is a single hash probe.
 	 * 
 	 * @param arenaName
 	 * @return
 	 */
 	public Arena getArenaWithName(String arenaName) {
-		return getArenaWithName(this.arenas, arenaName);
+		return arenas.get(arenaName);
 	}
 
 	/**
@@ -687,7 +870,7 @@ public abstract class ArenaManager {
 	 * @return
 	 */
 	public Arena getOnlyArena() {
-		if (hasOneArena()) return arenas.get(0);
+		if (hasOneArena()) return arenas.first();
 		return null;
 	}
 }
@@ -0,0 +1,190 @@
+/**
+ * ArenaRegistry.java is a part of Joystick
+ *
+ * Copyright (c) 2016 Anand Kumar
+ *
+ * Joystick is a free software: You can redistribute it or modify it
+ * under the terms of the GNU General Public License published by the Free
+ * Software Foundation, either version 3 of the license of any later version.
+ * 
+ * Joystick is distributed in the intent of being useful. However, there
+ * is NO WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You can view a copy of the GNU General Public License at 
+ * <http://www.gnu.org/licenses/> if you have not received a copy.
+ */
+package com.valygard.aohruthless.framework;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import com.valygard.aohruthless.utils.PrefixIndex;
+
+/**
+ * Name-keyed registry of loaded arenas. Arena names are case-insensitive, so
+ * every name is normalized to lowercase before it is hashed. Iteration follows
+ * the order in which the arenas were registered, which keeps arena listings
+ * stable between reloads. The names are also kept in a {@link PrefixIndex}
+ * for completion.
+ * 
+ * @author Anand
+ * 
+ */
+public class ArenaRegistry implements Iterable<Arena> {
+
+	private final Map<String, Arena> arenas;
+	private final PrefixIndex names;
+
+	/**
+	 * Constructor creates an empty registry.
+	 */
+	public ArenaRegistry() {
+		this.arenas = new LinkedHashMap<>();
+		this.names = new PrefixIndex();
+	}
+
+	/**
+	 * Registers an arena under its name. An arena already registered with the
+	 * same name is replaced but keeps its listing position.
+	 * 
+	 * @param arena
+	 *            the Arena to register
+	 * @return the replaced Arena, null if there was none
+	 */
+	public Arena register(Arena arena) {
+		names.add(arena.getName());
+		return arenas.put(normalize(arena.getName()), arena);
+	}
+
+	/**
+	 * Unregisters the arena with the given name.
+	 * 
+	 * @param name
+	 *            the arena name, in any case
+	 * @return the removed Arena, null if there was none
+	 */
+	public Arena unregister(String name) {
+		Arena arena = arenas.remove(normalize(name));
+		if (arena != null) names.remove(name);
+		return arena;
+	}
+
+	/**
+	 * Unregisters an arena, but only if it is the arena registered under its
+	 * name.
+	 * 
+	 * @param arena
+	 *            the Arena to unregister
+	 * @return true if the arena was removed
+	 */
+	public boolean unregister(Arena arena) {
+		if (arena == null) return false;
+
+		String key = normalize(arena.getName());
+		if (arenas.get(key) != arena) return false;
+
+		arenas.remove(key);
+		names.remove(key);
+		return true;
+	}
+
+	/**
+	 * Grabs the arena with a given name.
+	 * 
+	 * @param name
+	 *            the arena name, in any case
+	 * @return the Arena, null if none is registered under the name
+	 */
+	public Arena get(String name) {
+		if (name == null) return null;
+		return arenas.get(normalize(name));
+	}
+
+	/**
+	 * Checks if an arena is registered under the given name.
+	 * 
+	 * @param name
+	 *            the arena name, in any case
+	 * @return true if the name is taken
+	 */
+	public boolean contains(String name) {
+		return name != null && arenas.containsKey(normalize(name));
+	}
+
+	/**
+	 * Grabs the first registered arena.
+	 * 
+	 * @return the Arena, null if the registry is empty
+	 */
+	public Arena first() {
+		Iterator<Arena> it = arenas.values().iterator();
+		return it.hasNext() ? it.next() : null;
+	}
+
+	/**
+	 * Grabs the amount of registered arenas.
+	 * 
+	 * @return an int
+	 */
+	public int size() {
+		return arenas.size();
+	}
+
+	/**
+	 * Checks if no arenas are registered.
+	 * 
+	 * @return true if empty
+	 */
+	public boolean isEmpty() {
+		return arenas.isEmpty();
+	}
+
+	/**
+	 * Unregisters all arenas.
+	 */
+	public void clear() {
+		arenas.clear();
+		names.clear();
+	}
+
+	/**
+	 * Grabs a copy of all registered arenas in registration order.
+	 * 
+	 * @return an Arena List
+	 */
+	public List<Arena> asList() {
+		return new ArrayList<>(arenas.values());
+	}
+
+	/**
+	 * Grabs the prefix index of the registered arena names. The index is kept
+	 * up to date as arenas are registered and unregistered.
+	 * 
+	 * @return the PrefixIndex
+	 */
+	public PrefixIndex getNames() {
+		return names;
+	}
+
+	@Override
+	public Iterator<Arena> iterator() {
+		return Collections.unmodifiableCollection(arenas.values()).iterator();
+	}
+
+	/**
+	 * Normalizes an arena name into its registry key.
+	 * 
+	 * @param name
+	 *            the arena name
+	 * @return the lowercase key
+	 */
+	private static String normalize(String name) {
+		return name.toLowerCase(Locale.ENGLISH);
+	}
+}
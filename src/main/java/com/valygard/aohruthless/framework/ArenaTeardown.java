@@ -0,0 +1,265 @@
+/**
+ * ArenaTeardown.java is a part of Joystick
+ *
+ * Copyright (c) 2016 Anand Kumar
+ *
+ * Joystick is a free software: You can redistribute it or modify it
+ * under the terms of the GNU General Public License published by the Free
+ * Software Foundation, either version 3 of the license of any later version.
+ * 
+ * Joystick is distributed in the intent of being useful. However, there
+ * is NO WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You can view a copy of the GNU General Public License at 
+ * <http://www.gnu.org/licenses/> if you have not received a copy.
+ */
+package com.valygard.aohruthless.framework;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import com.valygard.aohruthless.timer.WorkScheduler;
+import com.valygard.aohruthless.timer.WorkScheduler.Priority;
+import com.valygard.aohruthless.timer.WorkScheduler.Work;
+
+/**
+ * Ends an arena in stages, for when many arenas end at once such as on a
+ * config reload or world unload. The arena is ended right away: its players
+ * are removed and the data to give back to them is taken in the same tick.
+ * Giving it back, which restores and teleports each player, is queued per
+ * player on the {@link WorkScheduler}, so ending many arenas is spread over
+ * the next ticks within its budget. Once every player is restored, the
+ * arena's stats and inventory journal are written by their background
+ * writers.
+ * <p>
+ * The teardown is a Future of its arena, done once all of that finished. Its
+ * restores run on the main thread, so it must not be waited on there; use
+ * {@link #whenDone(Runnable)} instead. Without a scheduler every stage runs
+ * at once.
+ * </p>
+ * 
+ * @author Anand
+ * 
+ */
+public class ArenaTeardown extends FutureTask<Arena> {
+
+	private static final Runnable NONE = new Runnable() {
+
+		@Override
+		public void run() {
+		}
+	};
+
+	private final Arena arena;
+	private final WorkScheduler scheduler;
+
+	// queued restores, by player
+	private final Map<UUID, Restore> restores;
+	private final List<Runnable> callbacks;
+
+	// the background writes, once every player is restored
+	private List<Future<?>> writes;
+	private boolean ended;
+
+	/**
+	 * Constructor initializes the teardown of an arena, which is started by
+	 * {@link #start()}.
+	 * 
+	 * @param arena
+	 *            the Arena
+	 * @param scheduler
+	 *            the WorkScheduler restores are queued on, may be null
+	 */
+	public ArenaTeardown(Arena arena, WorkScheduler scheduler) {
+		super(NONE, arena);
+		this.arena = arena;
+		this.scheduler = scheduler;
+
+		this.restores = new LinkedHashMap<>();
+		this.callbacks = new ArrayList<>();
+	}
+
+	/**
+	 * Ends the arena. Restores queued while it ends run over the next ticks.
+	 * Must be called from the main thread, once.
+	 */
+	public void start() {
+		try {
+			if (arena instanceof ArenaTemplate) {
+				((ArenaTemplate) arena).forceEnd(this);
+			} else {
+				arena.forceEnd();
+			}
+		}
+		finally {
+			ended = true;
+			advance();
+		}
+	}
+
+	/**
+	 * Queues the restore of a player, run on one of the next ticks with high
+	 * priority.
+	 * 
+	 * @param uuid
+	 *            the UUID of the player
+	 * @param restore
+	 *            the Runnable giving the player's data back
+	 */
+	public void defer(UUID uuid, Runnable restore) {
+		Restore r = new Restore(uuid, restore);
+		Restore old = restores.put(uuid, r);
+		if (old != null && old.work != null) old.work.cancel();
+
+		if (scheduler == null) {
+			r.run();
+		} else {
+			r.work = scheduler.submit(arena.getName(), Priority.HIGH, r);
+		}
+	}
+
+	/**
+	 * Restores a player right away if their restore is still queued, for
+	 * example when they join another arena before their turn.
+	 * 
+	 * @param uuid
+	 *            the UUID of the player
+	 * @return true if the player was restored
+	 */
+	public boolean restoreNow(UUID uuid) {
+		Restore r = restores.get(uuid);
+		if (r == null) return false;
+
+		if (r.work != null) r.work.cancel();
+		r.run();
+		return true;
+	}
+
+	/**
+	 * Runs a callback on the main thread once the teardown is done, or right
+	 * away if it already is.
+	 * 
+	 * @param callback
+	 *            the Runnable
+	 */
+	public void whenDone(Runnable callback) {
+		if (isDone()) {
+			callback.run();
+		} else {
+			callbacks.add(callback);
+		}
+	}
+
+	/**
+	 * A teardown cannot be cancelled, since its players were already removed.
+	 */
+	@Override
+	public boolean cancel(boolean mayInterruptIfRunning) {
+		return false;
+	}
+
+	@Override
+	protected void done() {
+		for (Runnable callback : callbacks) {
+			callback.run();
+		}
+		callbacks.clear();
+	}
+
+	public Arena getArena() {
+		return arena;
+	}
+
+	/**
+	 * Grabs the amount of players who are still to be restored.
+	 * 
+	 * @return the amount of queued restores
+	 */
+	public int getPending() {
+		return restores.size();
+	}
+
+	/**
+	 * Helper method to move on to the writes once the arena has ended and
+	 * every player is restored.
+	 */
+	private void advance() {
+		if (!ended || !restores.isEmpty() || writes != null) return;
+
+		if (arena instanceof ArenaTemplate) {
+			writes = ((ArenaTemplate) arena).persist();
+		} else {
+			writes = Collections.emptyList();
+		}
+		awaitWrites();
+	}
+
+	/**
+	 * Helper method to complete the teardown once the background writes are
+	 * done. They are checked once per tick rather than waited on.
+	 */
+	private void awaitWrites() {
+		for (Future<?> write : writes) {
+			if (write.isDone()) continue;
+
+			if (scheduler != null) {
+				scheduler.schedule(arena.getName(), Priority.LOW,
+						new Runnable() {
+
+							@Override
+							public void run() {
+								awaitWrites();
+							}
+						}, 1L);
+				return;
+			}
+
+			try {
+				write.get();
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			catch (ExecutionException e) {
+				// already logged by the writer
+			}
+		}
+		set(arena);
+	}
+
+	/**
+	 * The queued restore of a player, which runs once.
+	 */
+	private class Restore implements Runnable {
+
+		private final UUID uuid;
+		private final Runnable restore;
+		private Work work;
+
+		private Restore(UUID uuid, Runnable restore) {
+			this.uuid = uuid;
+			this.restore = restore;
+		}
+
+		@Override
+		public void run() {
+			if (restores.get(uuid) != this) return;
+
+			try {
+				restore.run();
+			}
+			finally {
+				restores.remove(uuid);
+				advance();
+			}
+		}
+	}
+}
@@ -17,9 +17,16 @@
 package com.valygard.aohruthless.framework;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.lang.Validate;
 import org.bukkit.Bukkit;
@@ -28,15 +35,25 @@ import org.bukkit.World;
 import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.plugin.Plugin;
 
 import com.valygard.aohruthless.ArenaClass;
 import com.valygard.aohruthless.PluginBase;
 import com.valygard.aohruthless.RatingSystem;
 import com.valygard.aohruthless.framework.spawn.Spawn;
 import com.valygard.aohruthless.framework.spawn.Spawnpoint;
+import com.valygard.aohruthless.player.JoinPipeline;
+import com.valygard.aohruthless.player.PlayTimeTracker;
 import com.valygard.aohruthless.player.PlayerData;
 import com.valygard.aohruthless.player.PlayerStats;
+import com.valygard.aohruthless.player.StatsCache;
+import com.valygard.aohruthless.timer.WorkScheduler;
+import com.valygard.aohruthless.timer.WorkScheduler.Priority;
+import com.valygard.aohruthless.timer.WorkScheduler.Work;
 import com.valygard.aohruthless.utils.config.LocationSerializer;
+import com.valygard.aohruthless.utils.inventory.InventoryHandler;
+import com.valygard.aohruthless.utils.inventory.InventorySnapshot;
 import com.valygard.aohruthless.utils.inventory.InventoryUtils;
 
 /**
@@ -47,6 +64,7 @@ public abstract class ArenaTemplate implements Arena {
 
 	// general attributes
 	private PluginBase plugin;
+	private ArenaManager manager;
 	private String arenaName;
 	private World world;
 
@@ -71,8 +89,12 @@ public abstract class ArenaTemplate implements Arena {
 	// private AutoEndTimer endTimer;
 
 	// player-related data
-	private Set<PlayerData> data;
-	private Set<PlayerStats> stats;
+	private Map<UUID, PlayerData> data;
+	private StatsCache stats;
+	private PlayTimeTracker playTime;
+
+	// set while the arena is ended by a teardown
+	private ArenaTeardown teardown;
 
 	/**
 	 * Constructor initializes arenas through a provided plugin instance and a
@@ -111,6 +133,12 @@ public abstract class ArenaTemplate implements Arena {
 		this.lobbyPlayers = new HashSet<>();
 		this.specPlayers = new HashSet<>();
 
+		this.data = new HashMap<>();
+		this.stats = new StatsCache(config.getInt("global.stats-cache-size",
+				256), config.getInt("global.stats-cache-ttl", 600),
+				TimeUnit.SECONDS);
+		this.playTime = new PlayTimeTracker(this);
+
 		this.running = false;
 		this.enabled = settings.getBoolean("enabled", true);
 		this.ready = false;
@@ -121,6 +149,17 @@ public abstract class ArenaTemplate implements Arena {
 		return plugin;
 	}
 
+	/**
+	 * Attaches the ArenaManager which loaded this arena, so the player index
+	 * can be kept up to date. Called by {@link ArenaManager#loadArena(String)}.
+	 * 
+	 * @param manager
+	 *            the ArenaManager
+	 */
+	void setManager(ArenaManager manager) {
+		this.manager = manager;
+	}
+
 	@Override
 	public String getName() {
 		return arenaName;
@@ -224,6 +263,119 @@ public abstract class ArenaTemplate implements Arena {
 		return Collections.unmodifiableSet(specPlayers);
 	}
 
+	/**
+	 * Puts a player in the lobby. Implementations of
+	 * {@link #addPlayer(Player)} should call this to keep the player sets and
+	 * the ArenaManager player index consistent. The player's stats are loaded
+	 * in the background while they wait, so the match starts without reading
+	 * from disk.
+	 * 
+	 * @param p
+	 *            the Player
+	 */
+	protected void joinLobby(Player p) {
+		lobbyPlayers.add(p);
+		index(p);
+
+		if (settings.getBoolean("player-stats")
+				&& plugin.getStatsStore() != null) {
+			plugin.getStatsStore().preload(p.getUniqueId(), arenaName);
+		}
+	}
+
+	/**
+	 * Moves a player from the lobby into the arena. Usually called for every
+	 * lobby player in {@link #startArena()}. If the arena tracks stats, the
+	 * player's play time is timed from here on.
+	 * 
+	 * @param p
+	 *            the Player
+	 */
+	protected void joinArena(Player p) {
+		lobbyPlayers.remove(p);
+		arenaPlayers.add(p);
+		index(p);
+
+		if (settings.getBoolean("player-stats")) {
+			PlayerStats ps = getStats(p);
+			if (ps != null) playTime.start(ps);
+		}
+	}
+
+	/**
+	 * Moves a player from the lobby or the arena to the spectators.
+	 * Implementations of {@link #moveToSpec(Player)} should call this.
+	 * 
+	 * @param p
+	 *            the Player
+	 */
+	protected void joinSpectators(Player p) {
+		lobbyPlayers.remove(p);
+		arenaPlayers.remove(p);
+		specPlayers.add(p);
+		index(p);
+	}
+
+	/**
+	 * Removes a player from every player set and from the ArenaManager player
+	 * index. Implementations of {@link #removePlayer(Player, boolean)} should
+	 * call this.
+	 * 
+	 * @param p
+	 *            the Player
+	 */
+	protected void leaveArena(Player p) {
+		lobbyPlayers.remove(p);
+		arenaPlayers.remove(p);
+		specPlayers.remove(p);
+		playTime.stop(p.getUniqueId());
+		if (manager != null) {
+			manager.getJoinPipeline().cancel(p);
+			manager.unindexPlayer(p, this);
+		}
+	}
+
+	/**
+	 * Queues a player to join the lobby. Their data is captured by the
+	 * manager's {@link JoinPipeline} within the next few ticks, after which
+	 * they are put in the lobby and {@code joined} is run. Without a manager
+	 * the player joins right away.
+	 * 
+	 * @param p
+	 *            the Player
+	 * @param joined
+	 *            run once the player is in the lobby, may be null
+	 */
+	protected void queueJoin(final Player p, final Runnable joined) {
+		JoinPipeline.Callback callback = new JoinPipeline.Callback() {
+
+			@Override
+			public void joined(PlayerData pd) {
+				putData(p, pd);
+				joinLobby(p);
+				if (joined != null) joined.run();
+			}
+		};
+
+		if (manager == null) {
+			callback.joined(new PlayerData(p));
+		} else {
+			// a restore still queued by a teardown must not be captured
+			manager.restoreNow(p);
+			manager.getJoinPipeline().submit(p, this, callback);
+		}
+	}
+
+	/**
+	 * Helper method to update the player index, if a manager is attached.
+	 * 
+	 * @param p
+	 *            the Player
+	 */
+	private void index(Player p) {
+		if (manager != null) manager.indexPlayer(p, this);
+	}
+
 	@Override
 	public boolean isRunning() {
 		return running;
@@ -231,7 +383,32 @@ public abstract class ArenaTemplate implements Arena {
 
 	@Override
 	public void setRunning(boolean running) {
+		boolean ended = this.running && !running;
 		this.running = running;
+		if (ended) playTime.stopAll();
+
+		// a teardown writes once its players are restored
+		if (ended && teardown == null) persist();
+	}
+
+	/**
+	 * Writes the match results without waiting for the flush interval and
+	 * drops the inventories given back during the match from the journal.
+	 * Both are written in the background.
+	 * 
+	 * @return the background writes
+	 */
+	List<Future<?>> persist() {
+		List<Future<?>> writes = new ArrayList<>(2);
+		if (plugin.getStatsStore() != null) {
+			Future<?> write = plugin.getStatsStore().flush();
+			if (write != null) writes.add(write);
+		}
+		if (plugin.getInventoryHandler() != null) {
+			Future<?> write = plugin.getInventoryHandler().compact();
+			if (write != null) writes.add(write);
+		}
+		return writes;
 	}
 
 	@Override
@@ -268,15 +445,12 @@ public abstract class ArenaTemplate implements Arena {
 
 	@Override
 	public PlayerStats getStats(Player p) {
-		for (PlayerStats ps : stats) {
-			if (ps.getPlayer().equals(p)) {
-				return ps;
-			}
-		}
+		PlayerStats ps = stats.get(p.getUniqueId());
+		if (ps != null) return ps;
 
 		try {
 			PlayerStats stat = new PlayerStats(p, this);
-			stats.add(stat);
+			stats.put(p.getUniqueId(), stat);
 			return stat;
 		}
 		catch (IOException e) {
@@ -289,15 +463,131 @@ public abstract class ArenaTemplate implements Arena {
 
 	@Override
 	public Set<PlayerStats> getStats() {
-		return Collections.unmodifiableSet(stats);
+		return Collections.unmodifiableSet(new HashSet<>(stats.values()));
+	}
+
+	/**
+	 * Grabs the tracker timing the players of this arena. Players are timed
+	 * from {@link #joinArena(Player)} until they leave or the arena ends.
+	 * 
+	 * @return the PlayTimeTracker
+	 */
+	public PlayTimeTracker getPlayTime() {
+		return playTime;
 	}
 
 	@Override
 	public PlayerData getData(Player p) {
-		for (PlayerData pd : data) {
-			if (pd.getPlayer().equals(p)) return pd;
+		return data.get(p.getUniqueId());
+	}
+
+	/**
+	 * Captures the state of a player before they join, so it can be restored
+	 * when they leave. Any data captured earlier is discarded.
+	 * 
+	 * @param p
+	 *            the Player
+	 * @return the captured PlayerData
+	 */
+	protected PlayerData storeData(Player p) {
+		PlayerData pd = new PlayerData(p);
+		putData(p, pd);
+		return pd;
+	}
+
+	/**
+	 * Helper method to store captured data, releasing any data it replaces.
+	 * The player's inventory is journaled, so it is given back even if the
+	 * server stops before they leave.
+	 * 
+	 * @param p
+	 *            the Player
+	 * @param pd
+	 *            the PlayerData
+	 */
+	private void putData(Player p, PlayerData pd) {
+		PlayerData old = data.put(p.getUniqueId(), pd);
+		if (old != null) old.release();
+
+		InventoryHandler inventories = plugin.getInventoryHandler();
+		if (inventories != null) inventories.journalInventory(p);
+	}
+
+	/**
+	 * Restores the state a player had before they joined and releases their
+	 * data. Unless {@code global.delta-restore} is turned off, only the slots
+	 * and stats that changed during the match are restored.
+	 * <p>
+	 * While the arena is ended by an {@link ArenaTeardown}, the data is taken
+	 * right away but given back on one of the next ticks.
+	 * </p>
+	 * 
+	 * @param p
+	 *            the Player
+	 * @param teleport
+	 *            true to teleport the player back to where they joined from
+	 * @return true if the player had data to restore
+	 */
+	protected boolean restoreData(final Player p, final boolean teleport) {
+		final PlayerData pd = data.remove(p.getUniqueId());
+		if (pd == null) return false;
+
+		if (teardown == null) {
+			restore(p, pd, teleport);
+			return true;
 		}
-		return null;
+
+		teardown.defer(p.getUniqueId(), new Runnable() {
+
+			@Override
+			public void run() {
+				if (p.isOnline()) {
+					restore(p, pd, teleport);
+				} else {
+					keepInventory(p, pd);
+				}
+			}
+		});
+		return true;
+	}
+
+	/**
+	 * Helper method to give a player their data back and release it.
+	 * 
+	 * @param p
+	 *            the Player
+	 * @param pd
+	 *            the PlayerData
+	 * @param teleport
+	 *            true to teleport the player back to where they joined from
+	 */
+	private void restore(Player p, PlayerData pd, boolean teleport) {
+		pd.restoreData(teleport,
+				plugin.getConfig().getBoolean("global.delta-restore", true));
+		pd.release();
+
+		InventoryHandler inventories = plugin.getInventoryHandler();
+		if (inventories != null) inventories.releaseInventory(p.getUniqueId());
+	}
+
+	/**
+	 * Helper method to keep the inventory of a player who left before their
+	 * queued restore ran, so it is given back when they join again.
+	 * 
+	 * @param p
+	 *            the Player
+	 * @param pd
+	 *            the PlayerData
+	 */
+	private void keepInventory(Player p, PlayerData pd) {
+		InventoryHandler inventories = plugin.getInventoryHandler();
+		if (inventories != null) {
+			inventories.restoreOnJoin(new InventorySnapshot(p.getUniqueId(), p
+					.getName(), pd.getContents(), new ItemStack[] {
+					pd.getBoots(), pd.getLeggings(), pd.getChestplate(),
+					pd.getHelmet() }));
+		}
+		pd.release();
 	}
 
 	@Override
@@ -308,13 +598,13 @@ public abstract class ArenaTemplate implements Arena {
 	@Override
 	public ArenaClass getClass(Player p) {
 		PlayerData data = getData(p);
-		return data.getArenaClass();
+		return (data != null ? data.getArenaClass() : null);
 	}
 
 	@Override
 	public void setArenaClass(Player p, ArenaClass arenaClass) {
 		PlayerData data = getData(p);
-		data.setArenaClass(arenaClass);
+		if (data != null) data.setArenaClass(arenaClass);
 	}
 
 	@Override
@@ -359,6 +649,23 @@ public abstract class ArenaTemplate implements Arena {
 		// TODO: stop end timer
 	}
 
+	/**
+	 * Ends the arena as part of a teardown, which restores its players over
+	 * the next ticks and writes once they all are.
+	 * 
+	 * @param teardown
+	 *            the ArenaTeardown
+	 */
+	void forceEnd(ArenaTeardown teardown) {
+		this.teardown = teardown;
+		try {
+			forceEnd();
+		}
+		finally {
+			this.teardown = null;
+		}
+	}
+
 	@Override
 	public boolean kickPlayer(Player p) {
 		removePlayer(p, false);
@@ -399,8 +706,43 @@ public abstract class ArenaTemplate implements Arena {
 	@Override
 	public abstract void giveRandomClass(Player p);
 
+	/**
+	 * Schedules work on the plugin's {@link WorkScheduler} with normal
+	 * priority, so it shares the per-tick budget with all other arenas.
+	 */
 	@Override
-	public abstract void schedule(Runnable r, long delay);
+	public void schedule(Runnable r, long delay) {
+		schedule(r, delay, Priority.NORMAL);
+	}
+
+	/**
+	 * Schedules work on the plugin's {@link WorkScheduler}, owned by this
+	 * arena. Work such as teleporting or restoring every player should be
+	 * scheduled per player, so it can be spread across ticks. A plugin without
+	 * a scheduler runs the work as a Bukkit task after the delay instead.
+	 * 
+	 * @param r
+	 *            a Runnable instance
+	 * @param delay
+	 *            a long timer delay in server ticks
+	 * @param priority
+	 *            the Priority
+	 * @return the scheduled Work, null if the plugin has no scheduler
+	 */
+	protected Work schedule(Runnable r, long delay, Priority priority) {
+		WorkScheduler scheduler = plugin.getWorkScheduler();
+		if (scheduler != null) {
+			return scheduler.schedule(arenaName, priority, r, delay);
+		}
+
+		if (plugin instanceof Plugin) {
+			Bukkit.getScheduler().runTaskLater((Plugin) plugin, r,
+					Math.max(0L, delay));
+		} else {
+			r.run();
+		}
+		return null;
+	}
 
 	@Override
 	public int hashCode() {
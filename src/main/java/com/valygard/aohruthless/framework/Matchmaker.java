@@ -0,0 +1,560 @@
+/**
+ * Matchmaker.java is a part of Joystick
+ *
+ * Copyright (c) 2016 Anand Kumar
+ *
+ * Joystick is a free software: You can redistribute it or modify it
+ * under the terms of the GNU General Public License published by the Free
+ * Software Foundation, either version 3 of the license of any later version.
+ * 
+ * Joystick is distributed in the intent of being useful. However, there
+ * is NO WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You can view a copy of the GNU General Public License at 
+ * <http://www.gnu.org/licenses/> if you have not received a copy.
+ */
+package com.valygard.aohruthless.framework;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.MemoryConfiguration;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.plugin.Plugin;
+
+import com.valygard.aohruthless.player.JoinPipeline;
+import com.valygard.aohruthless.timer.TimerWheel;
+
+/**
+ * Pools players looking for a match across every enabled arena and places
+ * them in lobbies of players with a similar MMR.
+ * <p>
+ * Queued players are indexed in buckets of {@code bucket-size} MMR, so the
+ * players within reach of a rating are found in O(log n) no matter how many
+ * are queued. Players are placed oldest first: the longest waiting player is
+ * matched with the closest rated players within {@code spread} MMR, and the
+ * spread widens by {@code spread-per-second} for every second they wait, so
+ * nobody waits forever. Matching runs every {@code interval} ticks while
+ * players are queued. All settings are read from
+ * {@code global.matchmaking} and reread by {@link #reload()}. Players who
+ * quit, or who joined an arena in the meantime, are dequeued, and players
+ * still joining an arena through the {@link JoinPipeline} count towards it.
+ * Must only be used from the main thread.
+ * </p>
+ * 
+ * @author Anand
+ * 
+ */
+public class Matchmaker implements Listener {
+
+	/**
+	 * Receives every lobby the matchmaker forms.
+	 */
+	public interface Callback {
+
+		/**
+		 * Called once a lobby has been formed. The players are no longer
+		 * queued.
+		 * 
+		 * @param lobby
+		 *            the Lobby
+		 */
+		public void matched(Lobby lobby);
+	}
+
+	private final ArenaManager manager;
+
+	// settings
+	private int bucketSize, spread, spreadPerSecond, anchors;
+	private long interval;
+
+	// queued players in the order they joined, and indexed by mmr
+	private final Map<UUID, Entry> queue;
+	private final NavigableMap<Integer, Set<Entry>> buckets;
+
+	private Callback callback;
+	private final Timeout timeout;
+
+	// metrics
+	private long lobbies, matched;
+	private long totalWait, totalSpread;
+
+	/**
+	 * Constructor initializes an empty queue for the arenas of a manager and
+	 * registers the matchmaker for quit events.
+	 * 
+	 * @param manager
+	 *            the ArenaManager
+	 */
+	public Matchmaker(ArenaManager manager) {
+		this.manager = manager;
+
+		this.queue = new LinkedHashMap<>();
+		this.buckets = new TreeMap<>();
+		reload();
+
+		this.callback = new Callback() {
+
+			@Override
+			public void matched(Lobby lobby) {
+				for (Player p : lobby.getPlayers()) {
+					lobby.getArena().addPlayer(p);
+				}
+			}
+		};
+		this.timeout = new Timeout();
+
+		Plugin plugin = manager.getPlugin();
+		plugin.getServer().getPluginManager().registerEvents(this, plugin);
+	}
+
+	/**
+	 * Reads the settings from the manager's config. Queued players stay
+	 * queued, and are indexed again if the bucket size changed.
+	 */
+	public void reload() {
+		ConfigurationSection section = manager.getConfig()
+				.getConfigurationSection("global.matchmaking");
+		if (section == null) section = new MemoryConfiguration();
+
+		int oldBucketSize = bucketSize;
+		this.bucketSize = Math.max(1, section.getInt("bucket-size", 50));
+		this.spread = Math.max(0, section.getInt("spread", 100));
+		this.spreadPerSecond = Math.max(0,
+				section.getInt("spread-per-second", 10));
+		this.anchors = Math.max(1, section.getInt("anchors", 8));
+		this.interval = Math.max(1L, section.getLong("interval", 20L));
+
+		if (bucketSize == oldBucketSize) return;
+
+		buckets.clear();
+		for (Entry entry : queue.values()) {
+			entry.bucket = bucket(entry.mmr);
+			index(entry);
+		}
+	}
+
+	/**
+	 * Replaces what happens to formed lobbies. By default every player is
+	 * added to the arena with {@link Arena#addPlayer(Player)}.
+	 * 
+	 * @param callback
+	 *            the Callback
+	 */
+	public void setCallback(Callback callback) {
+		this.callback = callback;
+	}
+
+	/**
+	 * Queues a player for a match.
+	 * 
+	 * @param player
+	 *            the Player
+	 * @param mmr
+	 *            the player's MMR
+	 * @return false if the player is already queued, in an arena or joining
+	 *         one
+	 */
+	public boolean enqueue(Player player, int mmr) {
+		if (queue.containsKey(player.getUniqueId())) return false;
+		if (isPlaying(player)) return false;
+
+		Entry entry = new Entry(player, mmr, now());
+		queue.put(player.getUniqueId(), entry);
+		index(entry);
+
+		if (!timeout.isScheduled()) {
+			TimerWheel.get(manager.getPlugin()).schedule(timeout, interval);
+		}
+		return true;
+	}
+
+	/**
+	 * Removes a player from the queue.
+	 * 
+	 * @param player
+	 *            the Player
+	 * @return true if the player was queued
+	 */
+	public boolean dequeue(Player player) {
+		Entry entry = queue.get(player.getUniqueId());
+		if (entry == null) return false;
+
+		remove(entry);
+		return true;
+	}
+
+	@EventHandler(priority = EventPriority.MONITOR)
+	public void onQuit(PlayerQuitEvent e) {
+		dequeue(e.getPlayer());
+	}
+
+	public boolean isQueued(Player player) {
+		return queue.containsKey(player.getUniqueId());
+	}
+
+	public int size() {
+		return queue.size();
+	}
+
+	/**
+	 * Forms as many lobbies as possible, at most one per arena. Every enabled
+	 * arena which is not running and has room is offered the longest waiting
+	 * players, up to {@code anchors} of them, until one of them brings enough
+	 * players within their spread to fill the arena's minimum. Players still
+	 * joining an arena count as present in it.
+	 * 
+	 * @return the amount of lobbies formed
+	 */
+	public int match() {
+		long now = now();
+		int formed = 0;
+		JoinPipeline joins = manager.getJoinPipeline();
+		List<Entry> stale = new ArrayList<>();
+
+		for (Arena arena : manager.getEnabledArenas(manager.getArenas())) {
+			if (queue.isEmpty()) break;
+			if (arena.isRunning()) continue;
+
+			int present = arena.getPlayers().size() + joins.getPending(arena);
+			int room = arena.getMaxPlayers() - present;
+			int needed = Math.max(1, arena.getMinPlayers() - present);
+			if (room <= 0 || needed > room) continue;
+
+			int tried = 0;
+			Iterator<Entry> it = queue.values().iterator();
+			while (it.hasNext() && tried < anchors) {
+				Entry anchor = it.next();
+				if (!isAvailable(anchor.player)) {
+					it.remove();
+					unindex(anchor);
+					continue;
+				}
+				tried++;
+
+				List<Entry> picked = pick(anchor, room, now, stale);
+				if (picked.size() < needed) continue;
+
+				// the queue changes, so stop iterating right away
+				form(arena, picked, now);
+				formed++;
+				break;
+			}
+
+			// players found unavailable while picking
+			for (Entry entry : stale) {
+				remove(entry);
+			}
+			stale.clear();
+		}
+		return formed;
+	}
+
+	/**
+	 * Helper method to pick the players closest to an anchor's MMR within
+	 * the anchor's spread. Buckets are visited outwards from the anchor's,
+	 * nearest first, and only until no bucket left can hold a closer player
+	 * than the ones picked.
+	 * 
+	 * @param anchor
+	 *            the longest waiting player
+	 * @param room
+	 *            the most players to pick
+	 * @param now
+	 *            the current time
+	 * @param stale
+	 *            collects the players who can no longer be matched
+	 * @return the picked players, the anchor first
+	 */
+	private List<Entry> pick(final Entry anchor, int room, long now,
+			List<Entry> stale) {
+		long waited = TimeUnit.MILLISECONDS.toSeconds(now - anchor.since);
+		long reach = spread + spreadPerSecond * waited;
+		long low = anchor.mmr - reach, high = anchor.mmr + reach;
+
+		Comparator<Entry> closest = new Comparator<Entry>() {
+
+			@Override
+			public int compare(Entry e1, Entry e2) {
+				int d1 = Math.abs(e1.mmr - anchor.mmr);
+				int d2 = Math.abs(e2.mmr - anchor.mmr);
+				if (d1 != d2) return (d1 < d2 ? -1 : 1);
+				return (e1.since < e2.since ? -1 : (e1.since > e2.since ? 1 : 0));
+			}
+		};
+
+		List<Entry> candidates = new ArrayList<>();
+		int wanted = room - 1;
+		long worst = Long.MAX_VALUE;
+
+		Integer below = buckets.floorKey(anchor.bucket);
+		Integer above = buckets.higherKey(anchor.bucket);
+		while (wanted > 0) {
+			// the closest a player of the next bucket on either side can be
+			long toBelow = Long.MAX_VALUE, toAbove = Long.MAX_VALUE;
+			if (below != null && below >= bucket(low)) {
+				long top = (below + 1L) * bucketSize - 1;
+				toBelow = Math.max(0L, anchor.mmr - top);
+			}
+			if (above != null && above <= bucket(high)) {
+				toAbove = Math.max(0L, above * (long) bucketSize - anchor.mmr);
+			}
+			if (Math.min(toBelow, toAbove) > worst
+					|| Math.min(toBelow, toAbove) == Long.MAX_VALUE) break;
+
+			Integer key;
+			if (toBelow <= toAbove) {
+				key = below;
+				below = buckets.lowerKey(below);
+			} else {
+				key = above;
+				above = buckets.higherKey(above);
+			}
+
+			for (Entry entry : buckets.get(key)) {
+				if (entry == anchor || entry.mmr < low || entry.mmr > high) {
+					continue;
+				}
+				if (isAvailable(entry.player)) {
+					candidates.add(entry);
+				} else {
+					stale.add(entry);
+				}
+			}
+
+			if (candidates.size() >= wanted) {
+				Collections.sort(candidates, closest);
+				candidates.subList(wanted, candidates.size()).clear();
+				worst = Math.abs(candidates.get(wanted - 1).mmr - anchor.mmr);
+			}
+		}
+		Collections.sort(candidates, closest);
+
+		List<Entry> picked = new ArrayList<>(candidates.size() + 1);
+		picked.add(anchor);
+		picked.addAll(candidates);
+		return picked;
+	}
+
+	private void form(Arena arena, List<Entry> picked, long now) {
+		Collections.sort(picked, new Comparator<Entry>() {
+
+			@Override
+			public int compare(Entry e1, Entry e2) {
+				return (e1.mmr > e2.mmr ? -1 : (e1.mmr < e2.mmr ? 1 : 0));
+			}
+		});
+
+		List<Player> players = new ArrayList<>(picked.size());
+		int[] ratings = new int[picked.size()];
+		for (int i = 0; i < picked.size(); i++) {
+			Entry entry = picked.get(i);
+			remove(entry);
+			players.add(entry.player);
+			ratings[i] = entry.mmr;
+			totalWait += now - entry.since;
+		}
+
+		Lobby lobby = new Lobby(arena, players, ratings);
+		lobbies++;
+		matched += players.size();
+		totalSpread += lobby.getSpread();
+
+		callback.matched(lobby);
+	}
+
+	/**
+	 * Helper method to check if a queued player can still be matched, that
+	 * is if they are online and neither in an arena nor joining one.
+	 * 
+	 * @param player
+	 *            the Player
+	 * @return true if the player can be matched
+	 */
+	private boolean isAvailable(Player player) {
+		return player.isOnline() && !isPlaying(player);
+	}
+
+	private boolean isPlaying(Player player) {
+		return manager.getArenaWithPlayer(player) != null
+				|| manager.getJoinPipeline().isQueued(player);
+	}
+
+	private void remove(Entry entry) {
+		queue.remove(entry.player.getUniqueId());
+		unindex(entry);
+	}
+
+	private void index(Entry entry) {
+		Set<Entry> bucket = buckets.get(entry.bucket);
+		if (bucket == null) {
+			bucket = new LinkedHashSet<>();
+			buckets.put(entry.bucket, bucket);
+		}
+		bucket.add(entry);
+	}
+
+	private void unindex(Entry entry) {
+		Set<Entry> bucket = buckets.get(entry.bucket);
+		if (bucket != null && bucket.remove(entry) && bucket.isEmpty()) {
+			buckets.remove(entry.bucket);
+		}
+	}
+
+	private int bucket(long mmr) {
+		return (int) Math.floor(mmr / (double) bucketSize);
+	}
+
+	/**
+	 * Grabs the average time matched players spent in the queue.
+	 * 
+	 * @param unit
+	 *            the TimeUnit to convert to
+	 * @return the average queue time
+	 */
+	public long getAverageQueueTime(TimeUnit unit) {
+		return (matched > 0 ? unit.convert(totalWait / matched,
+				TimeUnit.MILLISECONDS) : 0L);
+	}
+
+	/**
+	 * Grabs how long the longest waiting player has been queued.
+	 * 
+	 * @param unit
+	 *            the TimeUnit to convert to
+	 * @return the longest queue time, 0 if nobody is queued
+	 */
+	public long getLongestWait(TimeUnit unit) {
+		if (queue.isEmpty()) return 0L;
+
+		Entry oldest = queue.values().iterator().next();
+		return unit.convert(now() - oldest.since, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Grabs the average difference between the highest and lowest MMR of the
+	 * formed lobbies.
+	 * 
+	 * @return the average rating spread
+	 */
+	public double getAverageSpread() {
+		return (lobbies > 0 ? totalSpread / (double) lobbies : 0D);
+	}
+
+	public long getLobbiesFormed() {
+		return lobbies;
+	}
+
+	/**
+	 * Grabs the current time in milliseconds.
+	 * 
+	 * @return the current time
+	 */
+	protected long now() {
+		return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+	}
+
+	/**
+	 * A lobby formed by the matchmaker: the arena and the matched players,
+	 * highest MMR first.
+	 */
+	public static class Lobby {
+
+		private final Arena arena;
+		private final List<Player> players;
+		private final int[] ratings;
+
+		private Lobby(Arena arena, List<Player> players, int[] ratings) {
+			this.arena = arena;
+			this.players = Collections.unmodifiableList(players);
+			this.ratings = ratings;
+		}
+
+		/**
+		 * Splits the players into teams of a similar total MMR, by drafting
+		 * the players in snake order: 1-2-2-1 for two teams.
+		 * 
+		 * @param count
+		 *            the amount of teams
+		 * @return the teams
+		 */
+		public List<List<Player>> getTeams(int count) {
+			List<List<Player>> teams = new ArrayList<>(count);
+			for (int i = 0; i < count; i++) {
+				teams.add(new ArrayList<Player>());
+			}
+
+			for (int i = 0; i < players.size(); i++) {
+				int round = i / count, pick = i % count;
+				int team = (round % 2 == 0 ? pick : count - 1 - pick);
+				teams.get(team).add(players.get(i));
+			}
+			return teams;
+		}
+
+		public Arena getArena() {
+			return arena;
+		}
+
+		public List<Player> getPlayers() {
+			return players;
+		}
+
+		/**
+		 * Grabs the MMR each player was queued with, in the order of
+		 * {@link #getPlayers()}.
+		 * 
+		 * @return the ratings
+		 */
+		public int[] getRatings() {
+			return ratings.clone();
+		}
+
+		public int getSpread() {
+			return ratings[0] - ratings[ratings.length - 1];
+		}
+	}
+
+	private class Timeout extends TimerWheel.Timeout {
+
+		@Override
+		protected void expire() {
+			match();
+			if (!queue.isEmpty()) {
+				TimerWheel.get(manager.getPlugin()).schedule(this, interval);
+			}
+		}
+	}
+
+	private class Entry {
+
+		private final Player player;
+		private final int mmr;
+		private final long since;
+		private int bucket;
+
+		private Entry(Player player, int mmr, long since) {
+			this.player = player;
+			this.mmr = mmr;
+			this.bucket = bucket(mmr);
+			this.since = since;
+		}
+	}
+}
@@ -0,0 +1,271 @@
+/**
+ * JoinPipeline.java is a part of Joystick
+ *
+ * Copyright (c) 2016 Anand Kumar
+ *
+ * Joystick is a free software: You can redistribute it or modify it
+ * under the terms of the GNU General Public License published by the Free
+ * Software Foundation, either version 3 of the license of any later version.
+ * 
+ * Joystick is distributed in the intent of being useful. However, there
+ * is NO WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You can view a copy of the GNU General Public License at 
+ * <http://www.gnu.org/licenses/> if you have not received a copy.
+ */
+package com.valygard.aohruthless.player;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import com.valygard.aohruthless.framework.Arena;
+
+/**
+ * Spreads lobby joins across ticks. Joining players are queued and, once per
+ * tick, captured into {@link PlayerData} in the order they joined until the
+ * tick budget ({@code global.join-tick-budget}, in milliseconds) is used up.
+ * At least one player is captured every tick, so the queue always drains.
+ * <p>
+ * Visibility is computed through a {@link VisibilityIndex} in one pass over
+ * the online players for a batch of queued players, rather than one pass per
+ * join. A batch holds as many players as were captured in the previous tick,
+ * and is only indexed within the budget, so players who are not captured
+ * this tick cost nothing. When an event opens to a hundred players at once,
+ * the work is therefore spread over several ticks instead of spiking a
+ * single one.
+ * </p>
+ * <p>
+ * Players queued for an arena are counted as pending joins of that arena
+ * until they are captured, so the arena can account for them before they
+ * are in its lobby.
+ * </p>
+ * 
+ * @author Anand
+ * 
+ */
+public class JoinPipeline {
+
+	/**
+	 * Receives the data of a player once it has been captured.
+	 */
+	public interface Callback {
+
+		/**
+		 * Called on the main thread once the player's data is captured.
+		 * 
+		 * @param data
+		 *            the captured PlayerData
+		 */
+		public void joined(PlayerData data);
+	}
+
+	private final Plugin plugin;
+	private final long budget;
+
+	// queued players in join order
+	private final Map<UUID, Entry> queue;
+	private final VisibilityIndex visibility;
+
+	// queued players by the arena they join
+	private final Map<Arena, Integer> pending;
+
+	// players captured in the last tick, the size of the next batch
+	private int captured = 1;
+
+	private BukkitTask task;
+
+	/**
+	 * Constructor initializes an idle pipeline. The task only runs while
+	 * players are queued.
+	 * 
+	 * @param plugin
+	 *            the Plugin instance
+	 */
+	public JoinPipeline(Plugin plugin) {
+		this.plugin = plugin;
+		this.budget = TimeUnit.MILLISECONDS.toNanos(Math.max(0, plugin
+				.getConfig().getInt("global.join-tick-budget", 5)));
+
+		this.queue = new LinkedHashMap<>();
+		this.visibility = new VisibilityIndex();
+		this.pending = new HashMap<>();
+	}
+
+	/**
+	 * Queues a player to be captured.
+	 * 
+	 * @param player
+	 *            the Player
+	 * @param callback
+	 *            the Callback to run once captured
+	 * @return false if the player was already queued
+	 */
+	public boolean submit(Player player, Callback callback) {
+		return submit(player, null, callback);
+	}
+
+	/**
+	 * Queues a player to be captured for an arena. The player counts towards
+	 * the arena's {@link #getPending(Arena) pending joins} until captured.
+	 * 
+	 * @param player
+	 *            the Player
+	 * @param arena
+	 *            the Arena the player joins, may be null
+	 * @param callback
+	 *            the Callback to run once captured
+	 * @return false if the player was already queued
+	 */
+	public boolean submit(Player player, Arena arena, Callback callback) {
+		if (queue.containsKey(player.getUniqueId())) return false;
+
+		queue.put(player.getUniqueId(), new Entry(player, arena, callback));
+		if (arena != null) {
+			Integer count = pending.get(arena);
+			pending.put(arena, (count == null ? 1 : count + 1));
+		}
+		if (task == null) {
+			task = plugin.getServer().getScheduler()
+					.runTaskTimer(plugin, new Runnable() {
+
+						@Override
+						public void run() {
+							tick();
+						}
+					}, 1L, 1L);
+		}
+		return true;
+	}
+
+	/**
+	 * Removes a player from the queue, for example when they leave before
+	 * they were captured.
+	 * 
+	 * @param player
+	 *            the Player
+	 * @return true if the player was queued
+	 */
+	public boolean cancel(Player player) {
+		visibility.remove(player);
+		Entry entry = queue.remove(player.getUniqueId());
+		if (entry == null) return false;
+
+		release(entry);
+		return true;
+	}
+
+	public boolean isQueued(Player player) {
+		return queue.containsKey(player.getUniqueId());
+	}
+
+	/**
+	 * Grabs the amount of players queued to join an arena.
+	 * 
+	 * @param arena
+	 *            the Arena
+	 * @return the amount of pending joins
+	 */
+	public int getPending(Arena arena) {
+		Integer count = pending.get(arena);
+		return (count == null ? 0 : count);
+	}
+
+	public int size() {
+		return queue.size();
+	}
+
+	/**
+	 * Runs one tick of the pipeline: captures queued players until the budget
+	 * is used up, indexing their visibility in batches as they come up. Called
+	 * every tick by the pipeline's task while players are queued.
+	 */
+	public void tick() {
+		long deadline = System.nanoTime() + budget;
+		int batch = captured;
+		captured = 0;
+
+		// callbacks may queue or cancel players, so take one entry at a time
+		while (!queue.isEmpty()) {
+			Iterator<Entry> it = queue.values().iterator();
+			Entry entry = it.next();
+			it.remove();
+			release(entry);
+
+			if (!entry.player.isOnline()) {
+				visibility.remove(entry.player);
+				continue;
+			}
+
+			if (!visibility.isIndexed(entry.player)) {
+				index(entry.player, batch);
+			}
+			List<Player> blind = visibility.remove(entry.player);
+
+			entry.callback.joined(new PlayerData(entry.player, blind));
+			captured++;
+			if (System.nanoTime() >= deadline) break;
+		}
+		captured = Math.max(1, captured);
+
+		if (queue.isEmpty() && task != null) {
+			task.cancel();
+			task = null;
+		}
+	}
+
+	/**
+	 * Helper method to index a player along with the next queued players who
+	 * are not indexed yet, up to the batch size, in one pass.
+	 * 
+	 * @param player
+	 *            the Player about to be captured
+	 * @param batch
+	 *            the amount of players to index
+	 */
+	private void index(Player player, int batch) {
+		List<Player> targets = new ArrayList<>(batch);
+		targets.add(player);
+		for (Entry entry : queue.values()) {
+			if (targets.size() >= batch) break;
+			if (!visibility.isIndexed(entry.player)) {
+				targets.add(entry.player);
+			}
+		}
+		visibility.index(targets, plugin.getServer().getOnlinePlayers());
+	}
+
+	private void release(Entry entry) {
+		if (entry.arena == null) return;
+
+		int count = pending.get(entry.arena) - 1;
+		if (count > 0) {
+			pending.put(entry.arena, count);
+		} else {
+			pending.remove(entry.arena);
+		}
+	}
+
+	private static class Entry {
+
+		private final Player player;
+		private final Arena arena;
+		private final Callback callback;
+
+		private Entry(Player player, Arena arena, Callback callback) {
+			this.player = player;
+			this.arena = arena;
+			this.callback = callback;
+		}
+	}
+}
@@ -0,0 +1,232 @@
+/**
+ * JsonStatsBackend.java is a part of Joystick
+ *
+ * Copyright (c) 2016 Anand Kumar
+ *
+ * Joystick is a free software: You can redistribute it or modify it
+ * under the terms of the GNU General Public License published by the Free
+ * Software Foundation, either version 3 of the license of any later version.
+ * 
+ * Joystick is distributed in the intent of being useful. However, there
+ * is NO WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You can view a copy of the GNU General Public License at 
+ * <http://www.gnu.org/licenses/> if you have not received a copy.
+ */
+package com.valygard.aohruthless.player;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+
+import com.valygard.aohruthless.utils.config.JsonConfiguration;
+
+/**
+ * Stores stats in one json file per player, in the {@code stats} folder of the
+ * plugin. Every arena is a {@code _<arena>} array of the file, whose first
+ * element holds the counters. The player's MMR, rating deviation and
+ * volatility are kept once at the top level, shared by all arenas.
+ * <p>
+ * This is the original storage format of Joystick. It remains the default and
+ * serves as the import and export format of other backends.
+ * </p>
+ * 
+ * @author Anand
+ * 
+ */
+@SuppressWarnings("unchecked")
+public class JsonStatsBackend implements StatsBackend {
+
+	private final File dir;
+
+	/**
+	 * Constructor initializes the backend by the stats folder.
+	 * 
+	 * @param dir
+	 *            the directory holding the json files
+	 */
+	public JsonStatsBackend(File dir) {
+		this.dir = dir;
+		this.dir.mkdirs();
+	}
+
+	@Override
+	public synchronized StatsRecord load(UUID uuid, String arena) {
+		if (!new File(dir, uuid + ".json").exists()) return null;
+
+		JsonConfiguration config = new JsonConfiguration(dir, uuid.toString());
+		if (config.getValue("mmr") == null
+				&& config.getValue("_" + arena) == null) {
+			return null;
+		}
+		return read(uuid, arena, config);
+	}
+
+	@Override
+	public synchronized List<StatsRecord> loadAll(String arena) {
+		List<StatsRecord> result = new ArrayList<>();
+		File[] files = dir.listFiles(new FilenameFilter() {
+
+			@Override
+			public boolean accept(File dir, String name) {
+				return name.endsWith(".json");
+			}
+		});
+		if (files == null) return result;
+
+		for (File file : files) {
+			UUID uuid;
+			try {
+				uuid = UUID.fromString(file.getName().replace(".json", ""));
+			}
+			catch (IllegalArgumentException e) {
+				continue;
+			}
+
+			JsonConfiguration config = new JsonConfiguration(dir,
+					file.getName());
+			if (arena != null) {
+				if (config.getValue("_" + arena) != null) {
+					result.add(read(uuid, arena, config));
+				}
+				continue;
+			}
+			for (String key : config.getKeys()) {
+				if (key.startsWith("_")) {
+					result.add(read(uuid, key.substring(1), config));
+				}
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public synchronized void save(Collection<StatsRecord> records)
+			throws IOException {
+		// group the records by file, so each file is written once
+		Map<UUID, JsonConfiguration> configs = new LinkedHashMap<>();
+		for (StatsRecord record : records) {
+			JsonConfiguration config = configs.get(record.getUniqueId());
+			if (config == null) {
+				config = new JsonConfiguration(dir, record.getUniqueId()
+						.toString());
+				configs.put(record.getUniqueId(), config);
+			}
+			write(record, config);
+		}
+
+		for (JsonConfiguration config : configs.values()) {
+			if (!config.save()) {
+				throw new IOException("Could not write "
+						+ config.getFile().getName());
+			}
+		}
+	}
+
+	@Override
+	public void close() {}
+
+	/**
+	 * Reads a record from the contents of a player's file.
+	 * 
+	 * @param uuid
+	 *            the player's UUID
+	 * @param arena
+	 *            the arena name
+	 * @param config
+	 *            the player's file
+	 * @return a StatsRecord
+	 */
+	private StatsRecord read(UUID uuid, String arena, JsonConfiguration config) {
+		StatsRecord record = new StatsRecord(uuid, arena);
+		record.setPlayerName(config.getString("playerName"));
+		record.setMMR(intValue(config.getValue("mmr")));
+		record.setDeviation(doubleValue(config.getValue("ratingDeviation")));
+		record.setVolatility(doubleValue(config.getValue("ratingVolatility")));
+
+		JSONArray array = config.getArray("_" + arena);
+		if (array == null || array.isEmpty()
+				|| !(array.get(0) instanceof JSONObject)) {
+			return record;
+		}
+
+		JSONObject contents = (JSONObject) array.get(0);
+		record.setKills(intValue(contents.get("kills")));
+		record.setDeaths(intValue(contents.get("deaths")));
+		record.setWins(intValue(contents.get("wins")));
+		record.setLosses(intValue(contents.get("losses")));
+		record.setDraws(intValue(contents.get("draws")));
+		record.setKillstreak(intValue(contents.get("killstreak")));
+		record.setWinstreak(intValue(contents.get("winstreak")));
+		record.setTimeSpent(intValue(contents.get("timeSpent")));
+		return record;
+	}
+
+	/**
+	 * Writes a record into the contents of a player's file. Any other element
+	 * of the arena array, such as class data, is left untouched.
+	 * 
+	 * @param record
+	 *            the StatsRecord
+	 * @param config
+	 *            the player's file
+	 */
+	private void write(StatsRecord record, JsonConfiguration config) {
+		JSONObject contents = new JSONObject();
+		contents.put("kills", record.getKills());
+		contents.put("deaths", record.getDeaths());
+		contents.put("killDeathRatio", record.getKDR());
+		contents.put("wins", record.getWins());
+		contents.put("losses", record.getLosses());
+		contents.put("draws", record.getDraws());
+		contents.put("winRatio", record.getWLR());
+		contents.put("killstreak", record.getKillstreak());
+		contents.put("winstreak", record.getWinstreak());
+		contents.put("timeSpent", record.getTimeSpent());
+
+		String key = "_" + record.getArena();
+		JSONArray array = config.getArray(key);
+		if (array == null) array = new JSONArray();
+
+		if (array.isEmpty()) {
+			array.add(contents);
+		} else {
+			array.set(0, contents);
+		}
+
+		if (!record.getPlayerName().isEmpty()) {
+			config.setValue("playerName", record.getPlayerName());
+		}
+		config.setValue("mmr", record.getMMR());
+		if (record.getDeviation() > 0D) {
+			config.setValue("ratingDeviation", record.getDeviation());
+			config.setValue("ratingVolatility", record.getVolatility());
+		}
+		config.setValue(key, array);
+	}
+
+	/**
+	 * Json numbers are parsed as longs, so values are read as any Number.
+	 * 
+	 * @param obj
+	 *            the json value
+	 * @return the int value, 0 if the value is not a number
+	 */
+	private static int intValue(Object obj) {
+		return (obj instanceof Number ? ((Number) obj).intValue() : 0);
+	}
+
+	private static double doubleValue(Object obj) {
+		return (obj instanceof Number ? ((Number) obj).doubleValue() : 0D);
+	}
+}
@@ -0,0 +1,282 @@
+/**
+ * Leaderboard.java is a part of Joystick
+ *
+ * Copyright (c) 2016 Anand Kumar
+ *
+ * Joystick is a free software: You can redistribute it or modify it
+ * under the terms of the GNU General Public License published by the Free
+ * Software Foundation, either version 3 of the license of any later version.
+ * 
+ * Joystick is distributed in the intent of being useful. However, there
+ * is NO WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You can view a copy of the GNU General Public License at 
+ * <http://www.gnu.org/licenses/> if you have not received a copy.
+ */
+package com.valygard.aohruthless.player;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.UUID;
+
+/**
+ * Ranks the players of one arena by one {@link LeaderboardType}. Only the best
+ * players are kept, twice as many as the top shows, in an ordered ranking
+ * which is updated in O(log n) whenever their record changes. Players ranking
+ * below all of them are not kept; the best of those is remembered as a
+ * threshold, and kept players ranking below it are no longer shown. Once
+ * fewer than a full top rank above it, as when many leaders lose their
+ * streak, the board is incomplete and must be built again from every record.
+ * <p>
+ * The top entries are cached as an immutable list that is only rebuilt when a
+ * change reaches the top, so reading the top from signs or scoreboards every
+ * second allocates nothing.
+ * </p>
+ * <p>
+ * Leaderboards are not thread-safe and must only be used from the main
+ * thread.
+ * </p>
+ * 
+ * @author Anand
+ * 
+ */
+public class Leaderboard {
+
+	// highest score first, ties by uuid for a total order
+	private static final Comparator<Entry> ORDER = new Comparator<Entry>() {
+
+		@Override
+		public int compare(Entry a, Entry b) {
+			int result = Double.compare(b.score, a.score);
+			return (result != 0 ? result : a.uuid.compareTo(b.uuid));
+		}
+	};
+
+	// how many times the top size of players are kept
+	private static final int HEADROOM = 2;
+
+	private final LeaderboardType type;
+	private final int size, capacity;
+
+	// the best players, at most capacity of them
+	private final TreeSet<Entry> ranking;
+	private final Map<UUID, Entry> entries;
+
+	// the best player who is not kept, null if every player is
+	private Entry threshold;
+
+	// cached top entries
+	private List<Entry> top;
+	private boolean stale;
+
+	/**
+	 * Constructor initializes an empty leaderboard.
+	 * 
+	 * @param type
+	 *            the LeaderboardType to rank by
+	 * @param size
+	 *            the amount of top entries to cache
+	 */
+	public Leaderboard(LeaderboardType type, int size) {
+		this.type = type;
+		this.size = Math.max(1, size);
+		this.capacity = this.size * HEADROOM;
+
+		this.ranking = new TreeSet<>(ORDER);
+		this.entries = new HashMap<>();
+
+		this.top = Collections.emptyList();
+		this.stale = false;
+	}
+
+	/**
+	 * Updates the rank of a player from their record. Nothing changes if the
+	 * score and name of the player are unchanged, and players ranking below
+	 * every kept player are not kept.
+	 * 
+	 * @param record
+	 *            the StatsRecord
+	 */
+	public void update(StatsRecord record) {
+		double score = type.score(record);
+		Entry old = entries.get(record.getUniqueId());
+		if (old != null && old.score == score
+				&& old.name.equals(record.getPlayerName())) {
+			return;
+		}
+
+		Entry entry = new Entry(record.getUniqueId(), record.getPlayerName(),
+				score);
+		if (old == null && ranking.size() >= capacity
+				&& ORDER.compare(entry, ranking.last()) > 0) {
+			drop(entry);
+			return;
+		}
+		if (!stale) {
+			stale = (old != null && inTop(old)) || inTop(entry);
+		}
+
+		if (old != null) ranking.remove(old);
+		ranking.add(entry);
+		entries.put(entry.uuid, entry);
+
+		if (ranking.size() > capacity) {
+			Entry last = ranking.pollLast();
+			entries.remove(last.uuid);
+			drop(last);
+		}
+	}
+
+	/**
+	 * Grabs the top entries, best first. The list is immutable and the same
+	 * instance is returned until the top changes. Only players known to rank
+	 * above every player who is not kept are included, so the list is short
+	 * while the board is incomplete.
+	 * 
+	 * @return an Entry List of at most {@code size} entries
+	 */
+	public List<Entry> getTop() {
+		if (stale) {
+			List<Entry> result = new ArrayList<>(Math.min(size,
+					ranking.size()));
+			Iterator<Entry> it = ranking.iterator();
+			while (it.hasNext() && result.size() < size) {
+				Entry entry = it.next();
+				if (!isKnown(entry)) break;
+				result.add(entry);
+			}
+			top = Collections.unmodifiableList(result);
+			stale = false;
+		}
+		return top;
+	}
+
+	/**
+	 * Grabs the entry at a rank.
+	 * 
+	 * @param rank
+	 *            the rank, starting at 1
+	 * @return the Entry, null if the rank is not in the top
+	 */
+	public Entry getEntry(int rank) {
+		List<Entry> top = getTop();
+		return (rank >= 1 && rank <= top.size() ? top.get(rank - 1) : null);
+	}
+
+	/**
+	 * Grabs the rank of a player. Ranks below the top are counted among the
+	 * kept players, so this is meant for single lookups rather than every
+	 * tick.
+	 * 
+	 * @param uuid
+	 *            the player's UUID
+	 * @return the rank, starting at 1, or 0 if the player's rank is not known
+	 */
+	public int getRank(UUID uuid) {
+		Entry entry = entries.get(uuid);
+		if (entry == null || !isKnown(entry)) return 0;
+		return ranking.headSet(entry).size() + 1;
+	}
+
+	/**
+	 * Grabs the amount of kept players.
+	 * 
+	 * @return the size of the ranking
+	 */
+	public int getRanked() {
+		return ranking.size();
+	}
+
+	/**
+	 * Checks if the top is full, or holds every player. An incomplete board
+	 * has to be built again from every record.
+	 * 
+	 * @return true if complete
+	 */
+	public boolean isComplete() {
+		return threshold == null || getTop().size() == size;
+	}
+
+	public LeaderboardType getType() {
+		return type;
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * Helper method to remember a player who is not kept, if they rank above
+	 * the current threshold.
+	 * 
+	 * @param entry
+	 *            the Entry of the player
+	 */
+	private void drop(Entry entry) {
+		if (threshold != null && ORDER.compare(entry, threshold) >= 0) return;
+
+		threshold = entry;
+		if (!stale) stale = inTop(entry);
+	}
+
+	/**
+	 * Checks if a kept entry ranks above every player who is not kept.
+	 * 
+	 * @param entry
+	 *            the Entry
+	 * @return true if its rank is known
+	 */
+	private boolean isKnown(Entry entry) {
+		return threshold == null || ORDER.compare(entry, threshold) < 0;
+	}
+
+	/**
+	 * Checks if an entry would be part of the cached top.
+	 * 
+	 * @param entry
+	 *            the Entry
+	 * @return true if it ranks at or above the last cached entry
+	 */
+	private boolean inTop(Entry entry) {
+		if (top.size() < size) return true;
+		return ORDER.compare(entry, top.get(top.size() - 1)) <= 0;
+	}
+
+	/**
+	 * An immutable position on a leaderboard.
+	 * 
+	 * @author Anand
+	 * 
+	 */
+	public static class Entry {
+
+		private final UUID uuid;
+		private final String name;
+		private final double score;
+
+		private Entry(UUID uuid, String name, double score) {
+			this.uuid = uuid;
+			this.name = name;
+			this.score = score;
+		}
+
+		public UUID getUniqueId() {
+			return uuid;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public double getScore() {
+			return score;
+		}
+	}
+}
@@ -0,0 +1,55 @@
+/**
+ * LeaderboardType.java is a part of Joystick
+ *
+ * Copyright (c) 2016 Anand Kumar
+ *
+ * Joystick is a free software: You can redistribute it or modify it
+ * under the terms of the GNU General Public License published by the Free
+ * Software Foundation, either version 3 of the license of any later version.
+ * 
+ * Joystick is distributed in the intent of being useful. However, there
+ * is NO WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You can view a copy of the GNU General Public License at 
+ * <http://www.gnu.org/licenses/> if you have not received a copy.
+ */
+package com.valygard.aohruthless.player;
+
+/**
+ * The statistics players are ranked by on a {@link Leaderboard}.
+ * 
+ * @author Anand
+ * 
+ */
+public enum LeaderboardType {
+	KILLS,
+	WINS,
+	KDR,
+	WINSTREAK,
+	MMR;
+
+	/**
+	 * Grabs the value of this statistic from a record.
+	 * 
+	 * @param record
+	 *            the StatsRecord
+	 * @return the score to rank the record by
+	 */
+	public double score(StatsRecord record) {
+		switch (this) {
+		case KILLS:
+			return record.getKills();
+		case WINS:
+			return record.getWins();
+		case KDR:
+			return record.getKDR();
+		case WINSTREAK:
+			return record.getWinstreak();
+		case MMR:
+			return record.getMMR();
+		default:
+			throw new AssertionError(this);
+		}
+	}
+}
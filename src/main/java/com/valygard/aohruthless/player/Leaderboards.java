@@ -0,0 +1,152 @@
+/**
+ * Leaderboards.java is a part of Joystick
+ *
+ * Copyright (c) 2016 Anand Kumar
+ *
+ * Joystick is a free software: You can redistribute it or modify it
+ * under the terms of the GNU General Public License published by the Free
+ * Software Foundation, either version 3 of the license of any later version.
+ * 
+ * Joystick is distributed in the intent of being useful. However, there
+ * is NO WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You can view a copy of the GNU General Public License at 
+ * <http://www.gnu.org/licenses/> if you have not received a copy.
+ */
+package com.valygard.aohruthless.player;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.valygard.aohruthless.player.Leaderboard.Entry;
+
+/**
+ * Holds a {@link Leaderboard} of every {@link LeaderboardType} for every
+ * arena. The {@link StatsStore} feeds every changed record in here, so the
+ * leaderboards follow {@link PlayerStats#evaluate(String)} and
+ * {@link PlayerStats#setMMR(int)} without ever reading from disk. A player has
+ * one rating for all arenas, so MMR is ranked on a single board which every
+ * arena shares.
+ * 
+ * @author Anand
+ * 
+ */
+public class Leaderboards {
+
+	private final int size;
+	private final Map<String, Map<LeaderboardType, Leaderboard>> arenas;
+	private final Leaderboard mmr;
+
+	// set once an updated board became incomplete
+	private boolean incomplete;
+
+	/**
+	 * Constructor initializes the leaderboards by the amount of top entries
+	 * each one caches.
+	 * 
+	 * @param size
+	 *            the top size
+	 */
+	public Leaderboards(int size) {
+		this.size = size;
+		this.arenas = new HashMap<>();
+		this.mmr = new Leaderboard(LeaderboardType.MMR, size);
+	}
+
+	/**
+	 * Updates every leaderboard of the record's arena, and the MMR board.
+	 * 
+	 * @param record
+	 *            the changed StatsRecord
+	 */
+	public void update(StatsRecord record) {
+		Map<LeaderboardType, Leaderboard> boards = arenas.get(record
+				.getArena());
+		if (boards == null) {
+			boards = new EnumMap<>(LeaderboardType.class);
+			for (LeaderboardType type : LeaderboardType.values()) {
+				if (type != LeaderboardType.MMR) {
+					boards.put(type, new Leaderboard(type, size));
+				}
+			}
+			arenas.put(record.getArena(), boards);
+		}
+
+		for (Leaderboard board : boards.values()) {
+			update(board, record);
+		}
+		update(mmr, record);
+	}
+
+	/**
+	 * Checks if every leaderboard was complete after its updates. Once one is
+	 * not, the leaderboards have to be built again from every record.
+	 * 
+	 * @return true if complete
+	 */
+	public boolean isComplete() {
+		return !incomplete;
+	}
+
+	/**
+	 * Grabs the leaderboard of an arena. The MMR leaderboard is shared by
+	 * every arena.
+	 * 
+	 * @param arena
+	 *            the arena name
+	 * @param type
+	 *            the LeaderboardType
+	 * @return the Leaderboard, null if nobody in the arena has stats
+	 */
+	public Leaderboard getLeaderboard(String arena, LeaderboardType type) {
+		if (type == LeaderboardType.MMR) return mmr;
+
+		Map<LeaderboardType, Leaderboard> boards = arenas.get(arena);
+		return (boards != null ? boards.get(type) : null);
+	}
+
+	/**
+	 * Grabs the top entries of an arena, best first.
+	 * 
+	 * @param arena
+	 *            the arena name
+	 * @param type
+	 *            the LeaderboardType
+	 * @return an immutable Entry List, empty if nobody in the arena has stats
+	 */
+	public List<Entry> getTop(String arena, LeaderboardType type) {
+		Leaderboard board = getLeaderboard(arena, type);
+		if (board == null) return Collections.emptyList();
+		return board.getTop();
+	}
+
+	/**
+	 * Grabs the MMR leaderboard shared by all arenas.
+	 * 
+	 * @return the Leaderboard
+	 */
+	public Leaderboard getMMRLeaderboard() {
+		return mmr;
+	}
+
+	/**
+	 * Grabs the amount of top entries each leaderboard caches.
+	 * 
+	 * @return the top size
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * Helper method to update a board and remember if it became incomplete.
+	 */
+	private void update(Leaderboard board, StatsRecord record) {
+		board.update(record);
+		if (!board.isComplete()) incomplete = true;
+	}
+}
@@ -0,0 +1,110 @@
+/**
+ * OnlinePlayerIndex.java is a part of Joystick
+ *
+ * Copyright (c) 2016 Anand Kumar
+ *
+ * Joystick is a free software: You can redistribute it or modify it
+ * under the terms of the GNU General Public License published by the Free
+ * Software Foundation, either version 3 of the license of any later version.
+ * 
+ * Joystick is distributed in the intent of being useful. However, there
+ * is NO WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You can view a copy of the GNU General Public License at 
+ * <http://www.gnu.org/licenses/> if you have not received a copy.
+ */
+package com.valygard.aohruthless.player;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.plugin.Plugin;
+
+import com.valygard.aohruthless.utils.PrefixIndex;
+
+/**
+ * Prefix index of the names of online players. The index is seeded with the
+ * players online when it is created, then kept up to date as players join and
+ * quit. Players completing names only get the players they can see, which
+ * is checked against the indexed players themselves.
+ * 
+ * @author Anand
+ * 
+ */
+public class OnlinePlayerIndex extends PrefixIndex implements Listener {
+
+	// the online players by their index key
+	private final Map<String, Player> players;
+
+	/**
+	 * Constructor indexes all online players and registers the index for
+	 * join and quit events.
+	 * 
+	 * @param plugin
+	 *            the plugin to register events for
+	 */
+	public OnlinePlayerIndex(Plugin plugin) {
+		this.players = new HashMap<>();
+		for (Player p : plugin.getServer().getOnlinePlayers()) {
+			index(p);
+		}
+		plugin.getServer().getPluginManager().registerEvents(this, plugin);
+	}
+
+	/**
+	 * Finds the names of the online players starting with a prefix which the
+	 * sender can see. Players hidden from a player sender are left out, as
+	 * vanished players should not be revealed by completion. Names are
+	 * visited in order and only until the limit is reached.
+	 * 
+	 * @param sender
+	 *            the CommandSender completing
+	 * @param prefix
+	 *            the prefix, empty for all names
+	 * @param limit
+	 *            the most names to return
+	 * @return a new list of the matching names
+	 */
+	public List<String> complete(CommandSender sender, String prefix, int limit) {
+		if (!(sender instanceof Player)) return complete(prefix, limit);
+
+		Player viewer = (Player) sender;
+		List<String> result = new ArrayList<>();
+		Iterator<String> it = iterator(prefix);
+		while (it.hasNext() && result.size() < limit) {
+			String name = it.next();
+			Player p = players.get(normalize(name));
+			if (p == null || viewer.canSee(p)) {
+				result.add(name);
+			}
+		}
+		return result;
+	}
+
+	@EventHandler(priority = EventPriority.MONITOR)
+	public void onJoin(PlayerJoinEvent e) {
+		index(e.getPlayer());
+	}
+
+	@EventHandler(priority = EventPriority.MONITOR)
+	public void onQuit(PlayerQuitEvent e) {
+		remove(e.getPlayer().getName());
+		players.remove(normalize(e.getPlayer().getName()));
+	}
+
+	private void index(Player p) {
+		add(p.getName());
+		players.put(normalize(p.getName()), p);
+	}
+}
@@ -0,0 +1,154 @@
+/**
+ * PlayTimeTracker.java is a part of Joystick
+ *
+ * Copyright (c) 2016 Anand Kumar
+ *
+ * Joystick is a free software: You can redistribute it or modify it
+ * under the terms of the GNU General Public License published by the Free
+ * Software Foundation, either version 3 of the license of any later version.
+ * 
+ * Joystick is distributed in the intent of being useful. However, there
+ * is NO WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You can view a copy of the GNU General Public License at 
+ * <http://www.gnu.org/licenses/> if you have not received a copy.
+ */
+package com.valygard.aohruthless.player;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.bukkit.entity.Player;
+
+import com.valygard.aohruthless.framework.Arena;
+
+/**
+ * Accounts for the time players spend in an arena. Instead of a task per
+ * player counting up every second, the tracker remembers when each player
+ * started playing and credits the elapsed whole seconds to their stats when
+ * they stop. The stats are looked up from the arena when the time is
+ * credited, as the stats a player started with may have been dropped from the
+ * arena's cache during a long match. The time spent so far can be computed at
+ * any moment with {@link #getTimeSpent(PlayerStats)}. Must only be used from
+ * the main thread.
+ * 
+ * @author Anand
+ * 
+ */
+public class PlayTimeTracker {
+
+	private final Arena arena;
+
+	// when each playing player started, in milliseconds
+	private final Map<UUID, Session> sessions;
+
+	/**
+	 * Constructor initializes a tracker with nobody playing.
+	 * 
+	 * @param arena
+	 *            the Arena whose stats are credited
+	 */
+	public PlayTimeTracker(Arena arena) {
+		this.arena = arena;
+		this.sessions = new HashMap<>();
+	}
+
+	/**
+	 * Starts timing a player. Players who are already timed, or whose stats
+	 * are not tracked, are ignored.
+	 * 
+	 * @param stats
+	 *            the PlayerStats of the player
+	 * @return true if the player is now timed
+	 */
+	public boolean start(PlayerStats stats) {
+		if (!stats.isTracking()) return false;
+
+		Player player = stats.getPlayer();
+		if (sessions.containsKey(player.getUniqueId())) return false;
+
+		sessions.put(player.getUniqueId(), new Session(player, now()));
+		return true;
+	}
+
+	/**
+	 * Stops timing a player and credits the whole seconds they played to
+	 * their current stats in the arena.
+	 * 
+	 * @param uuid
+	 *            the UUID of the player
+	 * @return the seconds credited, 0 if the player was not timed
+	 */
+	public int stop(UUID uuid) {
+		Session session = sessions.remove(uuid);
+		if (session == null) return 0;
+
+		PlayerStats stats = arena.getStats(session.player);
+		if (stats == null) return 0;
+
+		int seconds = session.elapsed(now());
+		stats.addTimeSpent(seconds);
+		return seconds;
+	}
+
+	/**
+	 * Stops timing every player, usually when the arena ends.
+	 */
+	public void stopAll() {
+		for (UUID uuid : new ArrayList<>(sessions.keySet())) {
+			stop(uuid);
+		}
+	}
+
+	/**
+	 * Computes the total time a player has spent in the arena, including the
+	 * time of a session which has not been stopped yet.
+	 * 
+	 * @param stats
+	 *            the PlayerStats of the player
+	 * @return the time spent in seconds
+	 */
+	public int getTimeSpent(PlayerStats stats) {
+		Session session = sessions.get(stats.getPlayer().getUniqueId());
+		int seconds = stats.getRawTimeSpent();
+		return (session != null ? seconds + session.elapsed(now()) : seconds);
+	}
+
+	public boolean isTiming(UUID uuid) {
+		return sessions.containsKey(uuid);
+	}
+
+	public int size() {
+		return sessions.size();
+	}
+
+	/**
+	 * Grabs the current time in milliseconds. Uses a monotonic clock, so
+	 * changes to the system time do not affect the time spent.
+	 * 
+	 * @return the current time
+	 */
+	protected long now() {
+		return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+	}
+
+	private static class Session {
+
+		private final Player player;
+		private final long since;
+
+		private Session(Player player, long since) {
+			this.player = player;
+			this.since = since;
+		}
+
+		private int elapsed(long now) {
+			return (int) TimeUnit.MILLISECONDS.toSeconds(Math.max(0L, now
+					- since));
+		}
+	}
+}
@@ -16,21 +16,18 @@
  */
 package com.valygard.aohruthless.player;
 
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 
 import org.bukkit.Bukkit;
 import org.bukkit.GameMode;
 import org.bukkit.Location;
-import org.bukkit.enchantments.Enchantment;
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.ItemStack;
-import org.bukkit.inventory.PlayerInventory;
-import org.bukkit.inventory.meta.ItemMeta;
 import org.bukkit.potion.PotionEffect;
 
 import com.valygard.aohruthless.ArenaClass;
@@ -41,104 +38,85 @@ import com.valygard.aohruthless.ArenaClass;
  */
 public class PlayerData {
 
+	// snapshots are shared by all arenas, only used from the main thread
+	private static final SnapshotPool pool = new SnapshotPool(64);
+
 	private final Player player;
 
-	private final Map<ItemStack, Integer> contents;
-	private final ItemStack head, chest, legs, feet;
-	private final ItemStack main, off;
-	private final Location loc;
-	
-	private final Collection<PotionEffect> potions;
-	private final boolean flying, collidable;
+	private PlayerSnapshot snapshot;
 	private final Set<Player> blind;
-	
-	private double health;
-	private int level, food;
-	private float exp;
-	private GameMode mode = null;
 
 	// Although it isn't necessary data, this is the fitting place for the
 	// player's class.
 	private ArenaClass arenaClass;
 
 	/**
-	 * Constructor to initialize all the variables.
+	 * Constructor to initialize all the variables. The player's state is
+	 * captured into a pooled snapshot.
 	 */
 	public PlayerData(Player player) {
-		this.player = player;
-
-		PlayerInventory inv = player.getInventory();
-
-		this.contents = new HashMap<ItemStack, Integer>();
-		for (int i = 0; i < 36; i++) {
-			contents.put(inv.getItem(i), i);
-		}
-
-		this.head = inv.getHelmet();
-		this.chest = inv.getChestplate();
-		this.legs = inv.getLeggings();
-		this.feet = inv.getBoots();
-
-		this.main = inv.getItemInMainHand();
-		this.off = inv.getItemInOffHand();
+		this(player, hiddenFrom(player));
+	}
 
-		this.loc = player.getLocation();
-		this.mode = player.getGameMode();
-		this.potions = player.getActivePotionEffects();
+	/**
+	 * Constructor for players whose visibility is already known, such as
+	 * players captured by the {@link JoinPipeline}.
+	 * 
+	 * @param player
+	 *            the Player
+	 * @param blind
+	 *            the players who cannot see {@code player}
+	 */
+	public PlayerData(Player player, Collection<Player> blind) {
+		this.player = player;
 
-		this.food = player.getFoodLevel();
-		this.health = player.getHealth();
-		this.level = player.getLevel();
-		this.exp = player.getExp();
+		this.snapshot = pool.acquire();
+		snapshot.capture(player);
 
-		this.flying = player.isFlying();
-		this.collidable = player.isCollidable();
+		this.blind = new HashSet<Player>(blind);
+		this.arenaClass = null;
+	}
 
-		this.blind = new HashSet<Player>();
+	/**
+	 * Grabs every online player who cannot see a player.
+	 * 
+	 * @param player
+	 *            the Player
+	 * @return a Player List
+	 */
+	private static List<Player> hiddenFrom(Player player) {
+		List<Player> result = new ArrayList<>();
 		for (Player p : Bukkit.getOnlinePlayers()) {
 			if (!p.canSee(player)) {
-				blind.add(p);
+				result.add(p);
 			}
 		}
-
-		this.arenaClass = null;
+		return result;
 	}
 
 	/**
 	 * Restores health, food, and experience when a player exits the arena, as
 	 * per the stored data.
 	 */
-	@SuppressWarnings("deprecation")
 	public void restoreData(boolean teleportToPriorLoc) {
-		player.setHealth(health);
-		player.setFoodLevel(food);
-
-		player.setLevel(level);
-		player.setExp(exp);
-		if (teleportToPriorLoc) {
-			player.teleport(loc);
-		}
-		PlayerInventory inv = player.getInventory();
+		restoreData(teleportToPriorLoc, false);
+	}
 
-		for (ItemStack i : contents.keySet()) {
-			parseItem(i);
-			inv.setItem(contents.get(i), i);
-		}
-		inv.setHelmet(parseItem(head));
-		inv.setChestplate(parseItem(chest));
-		inv.setLeggings(parseItem(legs));
-		inv.setBoots(parseItem(feet));
-		inv.setItemInMainHand(parseItem(main));
-		inv.setItemInOffHand(parseItem(off));
-
-		player.setGameMode(mode);
-		player.addPotionEffects(potions);
-		player.updateInventory();
-
-		player.setCollidable(collidable);
-		// In case they are no longer allowed to fly, even if they were flying
-		// they cannot anymore.
-		player.setFlying(!flying ? false : player.getAllowFlight());
+	/**
+	 * Restores the stored data when a player exits the arena. In delta mode
+	 * only what changed since the player joined is set, and the inventory is
+	 * only sent again if a slot changed.
+	 * 
+	 * @param teleportToPriorLoc
+	 *            true to teleport the player back to where they joined from
+	 * @param delta
+	 *            true to only restore what changed
+	 * @see PlayerSnapshot#restore(Player, boolean, boolean)
+	 */
+	@SuppressWarnings("deprecation")
+	public void restoreData(boolean teleportToPriorLoc, boolean delta) {
+		int set = snapshot.restore(player, teleportToPriorLoc, delta);
+		if (set > 0) player.updateInventory();
 
 		for (Player p : blind) {
 			p.hidePlayer(player);
@@ -148,105 +126,112 @@ public class PlayerData {
 		setArenaClass(null);
 	}
 
-	private ItemStack parseItem(ItemStack i) {
-		if (i == null) return null;
-		ItemMeta im = i.getItemMeta();
-
-		Map<Enchantment, Integer> enchants;
-		String name;
-		List<String> lore;
-
-		if (im != null) {
-			enchants = (im.hasEnchants() ? im.getEnchants() : null);
-			name = (im.hasDisplayName() ? im.getDisplayName() : null);
-			lore = (im.hasLore() ? im.getLore() : null);
+	/**
+	 * Returns the snapshot to the pool once the data has been restored. The
+	 * data must not be used afterwards.
+	 */
+	public void release() {
+		if (snapshot == null) return;
 
-			if (enchants != null) i.addEnchantments(enchants);
-			if (name != null) im.setDisplayName(name);
-			if (lore != null) im.setLore(lore);
-			i.setItemMeta(im);
-		}
-		return i;
+		pool.release(snapshot);
+		snapshot = null;
 	}
 
 	public Player getPlayer() {
 		return player;
 	}
 
+	public PlayerSnapshot getSnapshot() {
+		return snapshot;
+	}
+
+	/**
+	 * Grabs the players who could not see this player when they joined.
+	 * 
+	 * @return an unmodifiable Player Set
+	 */
+	public Set<Player> getBlind() {
+		return Collections.unmodifiableSet(blind);
+	}
+
 	public Set<ItemStack> getItems() {
-		return contents.keySet();
+		Set<ItemStack> items = new HashSet<>();
+		for (ItemStack item : snapshot.getContents()) {
+			if (item != null) items.add(item);
+		}
+		return items;
 	}
 
-	public Map<ItemStack, Integer> getContents() {
-		return contents;
+	public ItemStack[] getContents() {
+		return snapshot.getContents();
 	}
 
 	public ItemStack getHelmet() {
-		return head;
+		return snapshot.getHelmet();
 	}
 
 	public ItemStack getChestplate() {
-		return chest;
+		return snapshot.getChestplate();
 	}
 
 	public ItemStack getLeggings() {
-		return legs;
+		return snapshot.getLeggings();
 	}
 
 	public ItemStack getBoots() {
-		return feet;
+		return snapshot.getBoots();
 	}
 
 	public Location getLocation() {
-		return loc;
+		return snapshot.getLocation();
 	}
 
 	public double health() {
-		return health;
+		return snapshot.getHealth();
 	}
 
 	public void setHealth(int health) {
-		this.health = health;
+		snapshot.setHealth(health);
 	}
 
 	public int food() {
-		return food;
+		return snapshot.getFoodLevel();
 	}
 
 	public void setFood(int food) {
-		this.food = food;
+		snapshot.setFoodLevel(food);
 	}
 
 	public int level() {
-		return level;
+		return snapshot.getLevel();
 	}
 
 	public void setLevel(int level) {
-		this.level = level;
+		snapshot.setLevel(level);
 	}
 
 	public float exp() {
-		return exp;
+		return snapshot.getExp();
 	}
 
 	public void setExp(int exp) {
-		this.exp = exp;
+		snapshot.setExp(exp);
 	}
 
 	public GameMode getMode() {
-		return mode;
+		return snapshot.getGameMode();
 	}
 
 	public Collection<PotionEffect> getPotionEffects() {
-		return potions;
+		return snapshot.getPotionEffects();
 	}
 
 	public void setMode(GameMode mode) {
-		this.mode = mode;
+		snapshot.setGameMode(mode);
 	}
 
 	public boolean isFlying() {
-		return flying;
+		return snapshot.isFlying();
 	}
 
 	public ArenaClass getArenaClass() {
@@ -0,0 +1,359 @@
+/**
+ * PlayerSnapshot.java is a part of Joystick
+ *
+ * Copyright (c) 2016 Anand Kumar
+ *
+ * Joystick is a free software: You can redistribute it or modify it
+ * under the terms of the GNU General Public License published by the Free
+ * Software Foundation, either version 3 of the license of any later version.
+ * 
+ * Joystick is distributed in the intent of being useful. However, there
+ * is NO WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You can view a copy of the GNU General Public License at 
+ * <http://www.gnu.org/licenses/> if you have not received a copy.
+ */
+package com.valygard.aohruthless.player;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.bukkit.GameMode;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.PlayerInventory;
+import org.bukkit.potion.PotionEffect;
+
+/**
+ * The state of a player before they joined an arena: inventory, armor,
+ * potion effects, location and stats such as health and experience.
+ * <p>
+ * Snapshots are reusable. Every array and list is allocated once and filled
+ * again by {@link #capture(Player)}, so a snapshot taken from a
+ * {@link SnapshotPool} costs no allocations beyond what Bukkit itself hands
+ * out. Items are kept by reference rather than copied; the inventory is
+ * cleared or replaced after the capture, never changed in place.
+ * </p>
+ * 
+ * @author Anand
+ * 
+ */
+public class PlayerSnapshot {
+
+	// slots of the main inventory, including the hotbar
+	public static final int STORAGE_SIZE = 36;
+
+	// inventory
+	private final ItemStack[] contents;
+	private ItemStack helmet, chestplate, leggings, boots;
+	private ItemStack offHand;
+
+	// effects and position
+	private final List<PotionEffect> potions;
+	private Location location;
+
+	// stats
+	private double health;
+	private int food, level;
+	private float exp;
+	private GameMode mode;
+	private boolean flying, collidable;
+
+	private boolean captured;
+
+	/**
+	 * Constructor creates an empty snapshot.
+	 */
+	public PlayerSnapshot() {
+		this.contents = new ItemStack[STORAGE_SIZE];
+		this.potions = new ArrayList<>();
+		this.captured = false;
+	}
+
+	/**
+	 * Captures the current state of a player, replacing anything this
+	 * snapshot held before.
+	 * 
+	 * @param player
+	 *            the Player
+	 */
+	public void capture(Player player) {
+		PlayerInventory inv = player.getInventory();
+		for (int i = 0; i < STORAGE_SIZE; i++) {
+			contents[i] = inv.getItem(i);
+		}
+
+		this.helmet = inv.getHelmet();
+		this.chestplate = inv.getChestplate();
+		this.leggings = inv.getLeggings();
+		this.boots = inv.getBoots();
+		this.offHand = inv.getItemInOffHand();
+
+		potions.clear();
+		potions.addAll(player.getActivePotionEffects());
+
+		if (location == null) {
+			this.location = player.getLocation();
+		} else {
+			player.getLocation(location);
+		}
+
+		this.health = player.getHealth();
+		this.food = player.getFoodLevel();
+		this.level = player.getLevel();
+		this.exp = player.getExp();
+		this.mode = player.getGameMode();
+		this.flying = player.isFlying();
+		this.collidable = player.isCollidable();
+
+		this.captured = true;
+	}
+
+	/**
+	 * Restores the captured state to a player.
+	 * 
+	 * @param player
+	 *            the Player
+	 * @param teleport
+	 *            true to teleport the player back to the captured location
+	 */
+	public void restore(Player player, boolean teleport) {
+		restore(player, teleport, false);
+	}
+
+	/**
+	 * Restores the captured state to a player. In delta mode, the current
+	 * state is compared to the captured one first, and only the slots and
+	 * stats that differ are set. Each slot set is sent to the client, so a
+	 * player who only lost a few items is restored with a few updates rather
+	 * than a full reset.
+	 * 
+	 * @param player
+	 *            the Player
+	 * @param teleport
+	 *            true to teleport the player back to the captured location
+	 * @param delta
+	 *            true to only restore what changed since the capture
+	 * @return the amount of inventory slots which were set
+	 */
+	public int restore(Player player, boolean teleport, boolean delta) {
+		if (!delta || player.getHealth() != health) {
+			player.setHealth(health);
+		}
+		if (!delta || player.getFoodLevel() != food) {
+			player.setFoodLevel(food);
+		}
+
+		if (!delta || player.getLevel() != level) {
+			player.setLevel(level);
+		}
+		if (!delta || player.getExp() != exp) {
+			player.setExp(exp);
+		}
+		if (teleport && (!delta || !location.equals(player.getLocation()))) {
+			player.teleport(location);
+		}
+
+		PlayerInventory inv = player.getInventory();
+		int set = 0;
+		for (int i = 0; i < STORAGE_SIZE; i++) {
+			if (!delta || !same(inv.getItem(i), contents[i])) {
+				inv.setItem(i, contents[i]);
+				set++;
+			}
+		}
+		if (!delta || !same(inv.getHelmet(), helmet)) {
+			inv.setHelmet(helmet);
+			set++;
+		}
+		if (!delta || !same(inv.getChestplate(), chestplate)) {
+			inv.setChestplate(chestplate);
+			set++;
+		}
+		if (!delta || !same(inv.getLeggings(), leggings)) {
+			inv.setLeggings(leggings);
+			set++;
+		}
+		if (!delta || !same(inv.getBoots(), boots)) {
+			inv.setBoots(boots);
+			set++;
+		}
+		if (!delta || !same(inv.getItemInOffHand(), offHand)) {
+			inv.setItemInOffHand(offHand);
+			set++;
+		}
+
+		if (!delta || player.getGameMode() != mode) {
+			player.setGameMode(mode);
+		}
+		if (!delta) {
+			player.addPotionEffects(potions);
+		} else if (!potions.isEmpty()) {
+			// effects still running need not be sent again
+			Collection<PotionEffect> active = player.getActivePotionEffects();
+			for (PotionEffect effect : potions) {
+				if (!isActive(active, effect)) player.addPotionEffect(effect);
+			}
+		}
+
+		if (!delta || player.isCollidable() != collidable) {
+			player.setCollidable(collidable);
+		}
+		// In case they are no longer allowed to fly, even if they were flying
+		// they cannot anymore.
+		boolean fly = flying && player.getAllowFlight();
+		if (!delta || player.isFlying() != fly) {
+			player.setFlying(fly);
+		}
+		return set;
+	}
+
+	/**
+	 * Helper method to compare a slot to its captured item. Empty slots may
+	 * hold null or air.
+	 * 
+	 * @param current
+	 *            the item in the slot
+	 * @param captured
+	 *            the captured item
+	 * @return true if the slot need not be set
+	 */
+	private static boolean same(ItemStack current, ItemStack captured) {
+		boolean empty = current == null || current.getType() == Material.AIR;
+		if (captured == null || captured.getType() == Material.AIR) {
+			return empty;
+		}
+		return !empty && (current == captured || current.equals(captured));
+	}
+
+	/**
+	 * Helper method to check if a captured effect is still running. Effects
+	 * are compared by type and amplifier only, as the remaining duration of
+	 * a running effect goes down every tick.
+	 * 
+	 * @param active
+	 *            the player's active effects
+	 * @param effect
+	 *            the captured effect
+	 * @return true if the effect need not be added
+	 */
+	private static boolean isActive(Collection<PotionEffect> active,
+			PotionEffect effect) {
+		for (PotionEffect running : active) {
+			if (running.getType().equals(effect.getType())
+					&& running.getAmplifier() == effect.getAmplifier()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Drops every reference this snapshot holds, so a pooled snapshot does
+	 * not keep items or worlds in memory. The arrays and lists are kept for
+	 * the next capture.
+	 */
+	public void clear() {
+		Arrays.fill(contents, null);
+		helmet = chestplate = leggings = boots = offHand = null;
+		potions.clear();
+		if (location != null) location.setWorld(null);
+		mode = null;
+		captured = false;
+	}
+
+	public boolean isCaptured() {
+		return captured;
+	}
+
+	/**
+	 * Grabs the captured main inventory, indexed by slot. The array belongs
+	 * to this snapshot and is reused once the snapshot is released.
+	 * 
+	 * @return an ItemStack array of {@code STORAGE_SIZE} slots
+	 */
+	public ItemStack[] getContents() {
+		return contents;
+	}
+
+	public ItemStack getHelmet() {
+		return helmet;
+	}
+
+	public ItemStack getChestplate() {
+		return chestplate;
+	}
+
+	public ItemStack getLeggings() {
+		return leggings;
+	}
+
+	public ItemStack getBoots() {
+		return boots;
+	}
+
+	public ItemStack getItemInOffHand() {
+		return offHand;
+	}
+
+	public List<PotionEffect> getPotionEffects() {
+		return potions;
+	}
+
+	public Location getLocation() {
+		return location;
+	}
+
+	public double getHealth() {
+		return health;
+	}
+
+	public void setHealth(double health) {
+		this.health = health;
+	}
+
+	public int getFoodLevel() {
+		return food;
+	}
+
+	public void setFoodLevel(int food) {
+		this.food = food;
+	}
+
+	public int getLevel() {
+		return level;
+	}
+
+	public void setLevel(int level) {
+		this.level = level;
+	}
+
+	public float getExp() {
+		return exp;
+	}
+
+	public void setExp(float exp) {
+		this.exp = exp;
+	}
+
+	public GameMode getGameMode() {
+		return mode;
+	}
+
+	public void setGameMode(GameMode mode) {
+		this.mode = mode;
+	}
+
+	public boolean isFlying() {
+		return flying;
+	}
+
+	public boolean isCollidable() {
+		return collidable;
+	}
+}
@@ -16,26 +16,19 @@
  */
 package com.valygard.aohruthless.player;
 
-import java.io.File;
 import java.io.IOException;
-import java.text.DecimalFormat;
 
-import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 import org.bukkit.plugin.Plugin;
-import org.bukkit.scheduler.BukkitTask;
-import org.json.simple.JSONArray;
-import org.json.simple.JSONObject;
 
 import com.valygard.aohruthless.framework.Arena;
+import com.valygard.aohruthless.framework.ArenaTemplate;
 import com.valygard.aohruthless.timer.Conversion;
-import com.valygard.aohruthless.utils.config.JsonConfiguration;
 
 /**
  * @author Anand
  * 
  */
-@SuppressWarnings("unchecked")
 public class PlayerStats {
 
 	// The player
@@ -45,31 +38,11 @@ public class PlayerStats {
 	private final Arena arena;
 	private final String name;
 
-	// Their kills, deaths, wins, losses, and ties.
-	private int kills, deaths;
-	private int wins, losses, draws;
-
-	// Killstreak and winstreak
-	private int killstreak, winstreak;
-
-	// kill-death ratio, win-loss ratio.
-	private double kdr, wlr;
-
-	// Time spent in the arena
-	private int timespent;
-	private BukkitTask task;
-
-	// Directory where stats are stored.
-	private File dir;
-
-	// config
-	private JsonConfiguration config;
-	private JSONObject arenaContents, classData;
-	private JSONArray arenaArray;
-
-	// The player's matchmaking rating. This is not used in this class but is
-	// setup by the player's configuration file.
-	private int mmr;
+	// Their kills, deaths, wins, losses, ties, streaks, time spent and MMR,
+	// written behind by the stats store.
+	private StatsStore store;
+	private StatsRecord record;
+	private boolean released;
 
 	// Only track stats if enabled in the arena-settings.
 	private boolean tracking;
@@ -88,98 +61,37 @@ public class PlayerStats {
 
 		this.tracking = arena.getSettings().getBoolean("player-stats");
 
-		this.dir = new File(arena.getPlugin().getDataFolder(), "stats");
-		this.dir.mkdir();
-
-		// Go no further if the arena is not meant to track results.
-		if (!tracking) {
+		// Go no further if the arena is not meant to track results, or the
+		// plugin keeps no stats.
+		this.store = arena.getPlugin().getStatsStore();
+		if (!tracking || store == null) {
+			this.store = null;
+			this.record = new StatsRecord(player.getUniqueId(), name);
 			return;
 		}
 
-		// create JSON disk file
-		this.config = new JsonConfiguration(dir, player.getUniqueId()
-				.toString());
-
-		this.arenaArray = (JSONArray) config.getValue("_" + name);
-		this.arenaContents = new JSONObject();
-		this.classData = new JSONObject();
-
-		// update initialization based on file status
-		if (arenaArray == null) {
-			arenaArray = new JSONArray();
-		} else {
-			arenaContents = (JSONObject) arenaArray.get(0);
-			if (arenaArray.size() > 1) {
-				classData = (JSONObject) arenaArray.get(1);
-			}
-		}
-
-		this.kills = parseValue("kills");
-		this.deaths = parseValue("deaths");
-
-		this.wins = parseValue("wins");
-		this.losses = parseValue("losses");
-		this.draws = parseValue("draws");
-
-		this.kdr = calculateRatio(kills, deaths);
-		this.wlr = calculateRatio(wins, draws + losses);
-
-		this.killstreak = parseValue("killstreak");
-		this.winstreak = parseValue("winstreak");
-
-		this.timespent = parseValue("timeSpent");
-
-		config.writeString("playerName", player.getName());
-		if (config.getValue("mmr") == null) {
-			config.writeInt(
-					"mmr",
-					arena.getPlugin().getConfig()
-							.getInt("global.starting-mmr", 1000));
-		}
-		this.mmr = (int) config.getValue("mmr");
-
-		config.writeObject("_" + name, reload());
+		// grab the record from the store
+		this.record = store.open(player.getUniqueId(), name, player.getName());
 	}
 
 	/**
-	 * Reloads disk file
-	 * 
-	 * @return the updated JSONArray
+	 * Hands the record to the stats store, which writes it to disk with its
+	 * next flush.
 	 */
-	private JSONArray reload() {
-		arenaContents.clear();
-		arenaContents.put("kills", kills);
-		arenaContents.put("deaths", deaths);
-		arenaContents.put("killDeathRatio", kdr);
-		arenaContents.put("wins", wins);
-		arenaContents.put("losses", losses);
-		arenaContents.put("draws", draws);
-		arenaContents.put("winRatio", wlr);
-		arenaContents.put("killstreak", killstreak);
-		arenaContents.put("winstreak", winstreak);
-		arenaContents.put("timeSpent", timespent);
-
-		// TODO: reload class data
-		if (arenaArray.size() < 1) {
-			arenaArray.add(arenaContents);
-		} else {
-			arenaArray.set(0, arenaContents);
-		}
-		return arenaArray;
+	private void markDirty() {
+		if (store != null) store.markDirty(record);
 	}
 
 	/**
-	 * Convenience method to assist integer parsing
-	 * 
-	 * @param key
-	 * @return
+	 * Releases the record in the stats store once these stats are dropped, so
+	 * it can be evicted after its last changes were written. Changes made
+	 * afterwards are still written.
 	 */
-	private int parseValue(String key) {
-		Object obj = config.getValue(arenaContents.get(key));
-		if (obj == null || !(obj instanceof Integer)) {
-			return 0;
-		}
-		return (int) obj;
+	public void release() {
+		if (store == null || released) return;
+
+		released = true;
+		store.release(record);
 	}
 
 	/**
@@ -188,7 +100,7 @@ public class PlayerStats {
 	 * @return
 	 */
 	public int getMMR() {
-		return mmr;
+		return record.getMMR();
 	}
 
 	/**
@@ -197,28 +109,62 @@ public class PlayerStats {
 	 * @param value
 	 */
 	public void setMMR(int value) {
-		mmr = value;
-		config.writeInt("mmr", value);
+		record.setMMR(value);
+		if (!tracking) return;
+
+		markDirty();
+	}
+
+	/**
+	 * Grabs the player's Glicko-2 rating deviation.
+	 * 
+	 * @return the deviation in MMR, 0 if the player is unrated
+	 */
+	public double getDeviation() {
+		return record.getDeviation();
+	}
+
+	public void setDeviation(double value) {
+		record.setDeviation(value);
+		if (!tracking) return;
+
+		markDirty();
 	}
 
 	/**
-	 * Resets killstreak and writes changes to config.
+	 * Grabs the player's Glicko-2 volatility.
+	 * 
+	 * @return the volatility, 0 if the player is unrated
+	 */
+	public double getVolatility() {
+		return record.getVolatility();
+	}
+
+	public void setVolatility(double value) {
+		record.setVolatility(value);
+		if (!tracking) return;
+
+		markDirty();
+	}
+
+	/**
+	 * Resets killstreak and queues changes for the stats store.
 	 */
 	public void resetKillstreak() {
-		killstreak = 0;
-		arenaContents.put("killstreak", 0);
-		arenaArray.set(0, arenaContents);
-		config.writeObject("_" + name, arenaArray);
+		record.setKillstreak(0);
+		if (!tracking) return;
+
+		markDirty();
 	}
 
 	/**
-	 * Resets winstreak and writes changes to config.
+	 * Resets winstreak and queues changes for the stats store.
 	 */
 	public void resetWinstreak() {
-		winstreak = 0;
-		arenaContents.put("winstreak", 0);
-		arenaArray.set(0, arenaContents);
-		config.writeObject("_" + name, arenaArray);
+		record.setWinstreak(0);
+		if (!tracking) return;
+
+		markDirty();
 	}
 
 	/**
@@ -237,49 +183,31 @@ public class PlayerStats {
 
 		switch (key) {
 		case "kills":
-			kills += 1;
-			killstreak += 1;
-
-			arenaContents.put("kills", kills);
-			arenaContents.put("killstreak", killstreak);
+			record.setKills(record.getKills() + 1);
+			record.setKillstreak(record.getKillstreak() + 1);
 			break;
 		case "deaths":
-			deaths += 1;
-			killstreak = 0;
-
-			arenaContents.put("deaths", deaths);
-			arenaContents.put("killstreak", killstreak);
+			record.setDeaths(record.getDeaths() + 1);
+			record.setKillstreak(0);
 			break;
 		case "wins":
-			wins += 1;
-			winstreak += 1;
-
-			arenaContents.put("wins", wins);
-			arenaContents.put("winstreak", winstreak);
+			record.setWins(record.getWins() + 1);
+			record.setWinstreak(record.getWinstreak() + 1);
 			break;
 		case "losses":
-			losses += 1;
-			winstreak = 0;
-
-			arenaContents.put("losses", losses);
-			arenaContents.put("winstreak", winstreak);
+			record.setLosses(record.getLosses() + 1);
+			record.setWinstreak(0);
 			break;
 		case "draws":
-			draws += 1;
-			winstreak = 0;
-
-			arenaContents.put("draws", draws);
-			arenaContents.put("winstreak", winstreak);
+			record.setDraws(record.getDraws() + 1);
+			record.setWinstreak(0);
 			break;
 		default:
 			throw new IllegalArgumentException(
 					"Expected: kills, deaths, wins, losses, or draws");
 		}
-		// Recalculate the ratios of the kdr and wlr.
-		recalibrate();
-		// write changes to file
-		arenaArray.set(0, arenaContents);
-		config.writeObject("_" + name, arenaArray);
+		// queue changes for the next flush
+		markDirty();
 	}
 
 	/**
@@ -294,46 +222,37 @@ public class PlayerStats {
 	 * @return a double quotient
 	 */
 	public double calculateRatio(int dividend, int divisor) {
-		if (divisor <= 1) return dividend * 1D;
-		if (dividend / divisor < 0) return 0D;
-		DecimalFormat df = new DecimalFormat("#.###");
-		return Double.valueOf(df.format(dividend / (divisor * 1.0)));
+		return StatsRecord.ratio(dividend, divisor);
 	}
 
 	/**
-	 * Helper method to reevaluate {@code kdr} and {@code wlr}
+	 * Starts timing the player on the arena's {@link PlayTimeTracker}. Arenas
+	 * extending {@link ArenaTemplate} already time players from when they
+	 * join the arena until they leave or the arena ends.
+	 * 
+	 * @deprecated time is accounted for by the arena, no task is needed
 	 */
-	private void recalibrate() {
-		kdr = calculateRatio(kills, deaths);
-		arenaContents.put("killDeathRatio", kdr);
+	@Deprecated
+	public void startTiming(Plugin plugin) {
+		if (!tracking) return;
 
-		wlr = calculateRatio(wins, draws + losses);
-		arenaContents.put("winRatio", wlr);
+		if (arena instanceof ArenaTemplate) {
+			((ArenaTemplate) arena).getPlayTime().start(this);
+		}
 	}
 
 	/**
-	 * Increments time played by appropriate amount. Called every 20 ticks.
-	 * <p>
-	 * Note that changes to config are not written until the timer is
-	 * terminated. Only the time-cycle in memory is updated every second, with
-	 * changes to config being written after the conclusion of the arena.
+	 * Adds to the time played and queues changes for the stats store. Called
+	 * by the {@link PlayTimeTracker} when a player stops playing.
+	 * 
+	 * @param seconds
+	 *            the seconds played
 	 */
-	public void startTiming(Plugin plugin) {
-		if (!tracking) return;
+	public void addTimeSpent(int seconds) {
+		if (!tracking || seconds <= 0) return;
 
-		task = Bukkit.getScheduler().runTaskTimer(plugin, new Runnable() {
-
-			public void run() {
-				timespent++;
-				if (!arena.isRunning()) {
-					task.cancel();
-					arenaContents.put("timeSpent", timespent);
-					arenaArray.set(0, arenaContents);
-					config.writeObject("_" + name, arenaArray);
-					return;
-				}
-			}
-		}, 20l, 20l);
+		record.setTimeSpent(record.getTimeSpent() + seconds);
+		markDirty();
 	}
 
 	// TODO: Accurately handle class data and document
@@ -348,51 +267,51 @@ public class PlayerStats {
 	}
 
 	public int getKills() {
-		return kills;
+		return record.getKills();
 	}
 
 	public int getDeaths() {
-		return deaths;
+		return record.getDeaths();
 	}
 
 	public int getWins() {
-		return wins;
+		return record.getWins();
 	}
 
 	public int getLosses() {
-		return losses;
+		return record.getLosses();
 	}
 
 	public int getDraws() {
-		return draws;
+		return record.getDraws();
 	}
 
 	public int getGamesPlayed() {
-		return wins + losses + draws;
+		return record.getWins() + record.getLosses() + record.getDraws();
 	}
 
 	public double getKDR() {
-		return kdr;
+		return record.getKDR();
 	}
 
 	public double getWLR() {
-		return wlr;
+		return record.getWLR();
 	}
 
 	public int getKillstreak() {
-		return killstreak;
+		return record.getKillstreak();
 	}
 
 	public int getWinstreak() {
-		return winstreak;
+		return record.getWinstreak();
 	}
 
 	public int getRawTimeSpent() {
-		return timespent;
+		return record.getTimeSpent();
 	}
 
 	public String getTimeSpent() {
-		return Conversion.formatIntoSentence(timespent);
+		return Conversion.formatIntoSentence(record.getTimeSpent());
 	}
 
 	public boolean isTracking() {
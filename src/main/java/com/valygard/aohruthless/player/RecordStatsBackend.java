@@ -0,0 +1,643 @@
+/**
+ * RecordStatsBackend.java is a part of Joystick
+ *
+ * Copyright (c) 2016 Anand Kumar
+ *
+ * Joystick is a free software: You can redistribute it or modify it
+ * under the terms of the GNU General Public License published by the Free
+ * Software Foundation, either version 3 of the license of any later version.
+ * 
+ * Joystick is distributed in the intent of being useful. However, there
+ * is NO WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You can view a copy of the GNU General Public License at 
+ * <http://www.gnu.org/licenses/> if you have not received a copy.
+ */
+package com.valygard.aohruthless.player;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+/**
+ * Stores the stats of all players in a single file of fixed-size records. The
+ * file starts with a header, followed by one 128 byte record per player and
+ * arena:
+ * 
+ * <pre>
+ *   0  uuid          16 bytes, most then least significant bits
+ *  16  arena id      int, 0 for the player's rating
+ *  20  reserved
+ *  64  player name   16 bytes, UTF-8, zero padded
+ *  80  counters      9 ints: kills, deaths, wins, losses, draws,
+ *                    killstreak, winstreak, time spent, mmr
+ * 116  rating        2 floats: glicko-2 deviation, volatility
+ * 124  reserved
+ * </pre>
+ * <p>
+ * Arena names are kept once, in name records with a zero uuid, so a name can
+ * be of any length. A name record holds the arena id at 16, the length of the
+ * name in bytes at 20, the index of the part at 22 and up to 104 bytes of the
+ * name at 24. A name written in several parts is given several records.
+ * </p>
+ * <p>
+ * The rating of a player is kept once, in the record of arena id 0. The
+ * rating fields of the player's arena records are written along but not read.
+ * </p>
+ * <p>
+ * Records are aligned to their size, so no record ever straddles a disk
+ * sector. The position of every record is indexed in memory when the file is
+ * opened, which makes a lookup a single positional read. A batch of records
+ * is written in place and synced once, so a flush costs one fsync no matter
+ * how many players changed.
+ * </p>
+ * 
+ * @author Anand
+ * 
+ */
+public class RecordStatsBackend implements StatsBackend {
+
+	// file layout
+	private static final int MAGIC = 0x4A53544B;
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 128;
+	private static final int RECORD_SIZE = 128;
+
+	// record layout
+	private static final int ARENA_OFFSET = 16;
+	private static final int NAME_OFFSET = 64;
+	private static final int NAME_LENGTH = 16;
+	private static final int COUNTER_OFFSET = 80;
+
+	// name record layout
+	private static final int PART_OFFSET = 24;
+	private static final int PART_LENGTH = RECORD_SIZE - PART_OFFSET;
+
+	// records read at once when the file is scanned
+	private static final int SCAN_BATCH = 64;
+
+	// the arena name and id of the record holding a player's rating
+	private static final String RATING = "";
+	private static final int RATING_ID = 0;
+
+	private final File file;
+	private final Logger logger;
+	private final RandomAccessFile raf;
+	private final FileChannel channel;
+
+	// the slot of each record, by uuid and arena
+	private final Map<String, Integer> index;
+	private int count;
+
+	// the arena names and their ids
+	private final Map<String, Integer> arenaIds;
+	private final Map<Integer, String> arenaNames;
+	private int nextArenaId = RATING_ID + 1;
+
+	/**
+	 * Constructor opens the stats file, creating it if it does not exist, and
+	 * indexes every record in it.
+	 * 
+	 * @param file
+	 *            the stats file
+	 * @throws IOException
+	 *             if the file could not be opened or is not a stats file
+	 */
+	public RecordStatsBackend(File file) throws IOException {
+		this(file, Logger.getLogger(RecordStatsBackend.class.getName()));
+	}
+
+	/**
+	 * Constructor opens the stats file, creating it if it does not exist, and
+	 * indexes every record in it. Records which cannot be stored are reported
+	 * to the logger.
+	 * 
+	 * @param file
+	 *            the stats file
+	 * @param logger
+	 *            the Logger
+	 * @throws IOException
+	 *             if the file could not be opened or is not a stats file
+	 */
+	public RecordStatsBackend(File file, Logger logger) throws IOException {
+		this.file = file;
+		this.logger = logger;
+		if (file.getParentFile() != null) {
+			file.getParentFile().mkdirs();
+		}
+
+		this.raf = new RandomAccessFile(file, "rw");
+		this.channel = raf.getChannel();
+		this.index = new HashMap<>();
+		this.arenaIds = new HashMap<>();
+		this.arenaNames = new HashMap<>();
+		arenaIds.put(RATING, RATING_ID);
+		arenaNames.put(RATING_ID, RATING);
+
+		try {
+			if (channel.size() == 0) {
+				writeHeader();
+			} else {
+				readHeader();
+				scan();
+			}
+		}
+		catch (IOException e) {
+			raf.close();
+			throw e;
+		}
+	}
+
+	@Override
+	public synchronized StatsRecord load(UUID uuid, String arena)
+			throws IOException {
+		StatsRecord rating = read(uuid, RATING);
+		StatsRecord record = read(uuid, arena);
+		if (record == null) {
+			// like a json file holding only the rating
+			if (rating == null) return null;
+			record = new StatsRecord(uuid, arena);
+			record.setPlayerName(rating.getPlayerName());
+		}
+		if (rating != null) record.setRating(rating.getRating());
+		return record;
+	}
+
+	@Override
+	public synchronized List<StatsRecord> loadAll(String arena)
+			throws IOException {
+		List<StatsRecord> result = new ArrayList<>(count);
+		Map<UUID, StatsRecord> ratings = new HashMap<>();
+		ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE * SCAN_BATCH);
+		for (int slot = 0; slot < count; slot += SCAN_BATCH) {
+			int records = Math.min(SCAN_BATCH, count - slot);
+			buffer.clear().limit(records * RECORD_SIZE);
+			read(buffer, position(slot));
+			buffer.flip();
+
+			for (int i = 0; i < records; i++) {
+				buffer.position(i * RECORD_SIZE);
+				StatsRecord record = decode(buffer);
+				if (record == null) continue;
+
+				if (record.getArena().equals(RATING)) {
+					ratings.put(record.getUniqueId(), record);
+				} else if (arena == null || arena.equals(record.getArena())) {
+					result.add(record);
+				}
+			}
+		}
+
+		for (StatsRecord record : result) {
+			StatsRecord rating = ratings.get(record.getUniqueId());
+			if (rating != null) record.setRating(rating.getRating());
+		}
+		return result;
+	}
+
+	/**
+	 * Saves a batch of records. A record whose arena name cannot be stored is
+	 * reported and left out, while the rest of the batch is still saved.
+	 */
+	@Override
+	public synchronized void save(Collection<StatsRecord> records)
+			throws IOException {
+		if (records.isEmpty()) return;
+
+		// arena names first seen in this batch, by their new id
+		Map<String, Integer> added = new LinkedHashMap<>();
+		// each player's rating is written once, along with their records
+		Map<UUID, StatsRecord> ratings = new LinkedHashMap<>();
+		List<StatsRecord> rows = new ArrayList<>(records.size() * 2);
+		for (StatsRecord record : records) {
+			if (arenaId(record.getArena(), added) < 0) {
+				logger.warning("Could not save the stats of "
+						+ record.getUniqueId() + ", the name of their arena is "
+						+ record.getArena().length() + " characters long");
+				continue;
+			}
+			rows.add(record);
+			ratings.put(record.getUniqueId(), rating(record));
+		}
+		rows.addAll(ratings.values());
+
+		int next = count;
+		ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE);
+		for (Map.Entry<String, Integer> e : added.entrySet()) {
+			byte[] name = e.getKey().getBytes(StandardCharsets.UTF_8);
+			for (int part = 0; part * PART_LENGTH < name.length; part++) {
+				buffer.clear();
+				encodeName(e.getValue(), name, part, buffer);
+				buffer.flip();
+				write(buffer, position(next++));
+			}
+		}
+
+		// slots are only indexed once the whole batch is on disk
+		Map<String, Integer> slots = new HashMap<>();
+		for (StatsRecord record : rows) {
+			String key = key(record.getUniqueId(), record.getArena());
+			Integer slot = index.get(key);
+			if (slot == null) slot = slots.get(key);
+			if (slot == null) {
+				slot = next++;
+				slots.put(key, slot);
+			}
+
+			buffer.clear();
+			encode(record, arenaId(record.getArena(), added), buffer);
+			buffer.flip();
+			write(buffer, position(slot));
+		}
+		// one sync for the whole batch
+		channel.force(false);
+
+		count = next;
+		index.putAll(slots);
+		for (Map.Entry<String, Integer> e : added.entrySet()) {
+			arenaIds.put(e.getKey(), e.getValue());
+			arenaNames.put(e.getValue(), e.getKey());
+		}
+		nextArenaId += added.size();
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		raf.close();
+	}
+
+	/**
+	 * Grabs the amount of stats records in the file, which does not count
+	 * ratings or arena names.
+	 * 
+	 * @return the record count
+	 */
+	public synchronized int size() {
+		int size = 0;
+		for (String key : index.keySet()) {
+			if (!key.endsWith(":" + RATING)) size++;
+		}
+		return size;
+	}
+
+	/**
+	 * Grabs the stats file.
+	 * 
+	 * @return a File
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Writes the header of a new stats file.
+	 * 
+	 * @throws IOException
+	 *             if the header could not be written
+	 */
+	private void writeHeader() throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		header.putInt(MAGIC).putInt(VERSION).putInt(RECORD_SIZE);
+		header.clear();
+		write(header, 0);
+		channel.force(true);
+	}
+
+	/**
+	 * Validates the header of an existing stats file.
+	 * 
+	 * @throws IOException
+	 *             if the file is not a stats file of this version
+	 */
+	private void readHeader() throws IOException {
+		if (channel.size() < HEADER_SIZE) {
+			throw new IOException(file.getName() + " is not a stats file");
+		}
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		read(header, 0);
+		header.flip();
+
+		if (header.getInt() != MAGIC) {
+			throw new IOException(file.getName() + " is not a stats file");
+		}
+		int version = header.getInt();
+		if (version != VERSION || header.getInt() != RECORD_SIZE) {
+			throw new IOException("Unsupported version " + version + " of "
+					+ file.getName());
+		}
+	}
+
+	/**
+	 * Reads every record once to build the index. A partially written record
+	 * at the end of the file is ignored and overwritten by the next save, as
+	 * are records of an arena whose name was not written completely.
+	 * 
+	 * @throws IOException
+	 *             if the file could not be read
+	 */
+	private void scan() throws IOException {
+		int records = (int) ((channel.size() - HEADER_SIZE) / RECORD_SIZE);
+		// the records of players, by slot, and the arena names by part
+		Map<Integer, UUID> players = new LinkedHashMap<>();
+		Map<Integer, Integer> playerArenas = new HashMap<>();
+		Map<Integer, byte[]> names = new HashMap<>();
+		Map<Integer, Integer> parts = new HashMap<>();
+
+		ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE * SCAN_BATCH);
+		for (int slot = 0; slot < records; slot += SCAN_BATCH) {
+			int batch = Math.min(SCAN_BATCH, records - slot);
+			buffer.clear().limit(batch * RECORD_SIZE);
+			read(buffer, position(slot));
+			buffer.flip();
+
+			for (int i = 0; i < batch; i++) {
+				int base = i * RECORD_SIZE;
+				UUID uuid = new UUID(buffer.getLong(base),
+						buffer.getLong(base + 8));
+				int id = buffer.getInt(base + ARENA_OFFSET);
+				// ids of names not written completely are never reused
+				nextArenaId = Math.max(nextArenaId, id + 1);
+				if (!isName(uuid)) {
+					players.put(slot + i, uuid);
+					playerArenas.put(slot + i, id);
+					continue;
+				}
+
+				int length = buffer.getShort(base + ARENA_OFFSET + 4);
+				int part = buffer.getShort(base + ARENA_OFFSET + 6);
+				byte[] name = names.get(id);
+				if (name == null) {
+					name = new byte[length];
+					names.put(id, name);
+					parts.put(id, 0);
+				}
+				int start = part * PART_LENGTH;
+				if (length != name.length || start >= length) continue;
+
+				buffer.position(base + PART_OFFSET);
+				buffer.get(name, start, Math.min(PART_LENGTH, length - start));
+				parts.put(id, parts.get(id) + 1);
+			}
+		}
+		count = records;
+
+		for (Map.Entry<Integer, byte[]> e : names.entrySet()) {
+			byte[] name = e.getValue();
+			int expected = (name.length + PART_LENGTH - 1) / PART_LENGTH;
+			if (parts.get(e.getKey()) != expected) continue;
+
+			String arena = new String(name, StandardCharsets.UTF_8);
+			arenaIds.put(arena, e.getKey());
+			arenaNames.put(e.getKey(), arena);
+		}
+		for (Map.Entry<Integer, UUID> e : players.entrySet()) {
+			String arena = arenaNames.get(playerArenas.get(e.getKey()));
+			if (arena != null) index.put(key(e.getValue(), arena), e.getKey());
+		}
+	}
+
+	/**
+	 * Grabs the id of an arena name, giving a new name the next free id.
+	 * 
+	 * @param arena
+	 *            the arena name
+	 * @param added
+	 *            the names given an id in the current batch
+	 * @return the id, or -1 if the name is too long to be stored
+	 */
+	private int arenaId(String arena, Map<String, Integer> added) {
+		Integer id = arenaIds.get(arena);
+		if (id == null) id = added.get(arena);
+		if (id != null) return id;
+
+		if (arena.getBytes(StandardCharsets.UTF_8).length > Short.MAX_VALUE) {
+			return -1;
+		}
+		id = nextArenaId + added.size();
+		added.put(arena, id);
+		return id;
+	}
+
+	/**
+	 * Reads the record of a player in an arena.
+	 * 
+	 * @param uuid
+	 *            the player's UUID
+	 * @param arena
+	 *            the arena name
+	 * @return the StatsRecord, null if there is none
+	 * @throws IOException
+	 *             if the file could not be read
+	 */
+	private StatsRecord read(UUID uuid, String arena) throws IOException {
+		Integer slot = index.get(key(uuid, arena));
+		if (slot == null) return null;
+
+		ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE);
+		read(buffer, position(slot));
+		buffer.flip();
+		return decode(buffer);
+	}
+
+	/**
+	 * Decodes the record at the position of a buffer.
+	 * 
+	 * @param buffer
+	 *            the ByteBuffer
+	 * @return a StatsRecord, null for an arena name or a record of an unknown
+	 *         arena
+	 */
+	private StatsRecord decode(ByteBuffer buffer) {
+		int base = buffer.position();
+		UUID uuid = new UUID(buffer.getLong(), buffer.getLong());
+		String arena = arenaNames.get(buffer.getInt());
+		if (isName(uuid) || arena == null) return null;
+
+		StatsRecord record = new StatsRecord(uuid, arena);
+		buffer.position(base + NAME_OFFSET);
+		record.setPlayerName(getString(buffer, NAME_LENGTH));
+		decodeCounters(record, buffer);
+		return record;
+	}
+
+	/**
+	 * Encodes a record at the position of a buffer. The reserved bytes are
+	 * zeroed.
+	 * 
+	 * @param record
+	 *            the StatsRecord
+	 * @param arenaId
+	 *            the id of the record's arena
+	 * @param buffer
+	 *            the ByteBuffer
+	 */
+	private static void encode(StatsRecord record, int arenaId,
+			ByteBuffer buffer) {
+		int base = buffer.position();
+		buffer.putLong(record.getUniqueId().getMostSignificantBits());
+		buffer.putLong(record.getUniqueId().getLeastSignificantBits());
+		buffer.putInt(arenaId);
+		while (buffer.position() < base + NAME_OFFSET) {
+			buffer.put((byte) 0);
+		}
+		putString(buffer, record.getPlayerName(), NAME_LENGTH);
+
+		buffer.putInt(record.getKills());
+		buffer.putInt(record.getDeaths());
+		buffer.putInt(record.getWins());
+		buffer.putInt(record.getLosses());
+		buffer.putInt(record.getDraws());
+		buffer.putInt(record.getKillstreak());
+		buffer.putInt(record.getWinstreak());
+		buffer.putInt(record.getTimeSpent());
+		buffer.putInt(record.getMMR());
+		buffer.putFloat((float) record.getDeviation());
+		buffer.putFloat((float) record.getVolatility());
+
+		while (buffer.position() < base + RECORD_SIZE) {
+			buffer.put((byte) 0);
+		}
+	}
+
+	/**
+	 * Encodes one part of an arena name at the position of a buffer.
+	 * 
+	 * @param id
+	 *            the arena id
+	 * @param name
+	 *            the UTF-8 encoded name
+	 * @param part
+	 *            the index of the part
+	 * @param buffer
+	 *            the ByteBuffer
+	 */
+	private static void encodeName(int id, byte[] name, int part,
+			ByteBuffer buffer) {
+		int base = buffer.position();
+		buffer.putLong(0L).putLong(0L);
+		buffer.putInt(id);
+		buffer.putShort((short) name.length);
+		buffer.putShort((short) part);
+
+		int start = part * PART_LENGTH;
+		buffer.put(name, start, Math.min(PART_LENGTH, name.length - start));
+		while (buffer.position() < base + RECORD_SIZE) {
+			buffer.put((byte) 0);
+		}
+	}
+
+	private static void decodeCounters(StatsRecord record, ByteBuffer buffer) {
+		record.setKills(buffer.getInt());
+		record.setDeaths(buffer.getInt());
+		record.setWins(buffer.getInt());
+		record.setLosses(buffer.getInt());
+		record.setDraws(buffer.getInt());
+		record.setKillstreak(buffer.getInt());
+		record.setWinstreak(buffer.getInt());
+		record.setTimeSpent(buffer.getInt());
+		record.setMMR(buffer.getInt());
+		record.setDeviation(buffer.getFloat());
+		record.setVolatility(buffer.getFloat());
+	}
+
+	/**
+	 * Writes a zero padded string field. A string longer than the field is
+	 * cut short, which only happens to player names of other servers.
+	 * 
+	 * @param buffer
+	 *            the ByteBuffer
+	 * @param value
+	 *            the String to write
+	 * @param length
+	 *            the field length in bytes
+	 */
+	private static void putString(ByteBuffer buffer, String value, int length) {
+		String s = (value == null ? "" : value);
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		while (bytes.length > length) {
+			s = s.substring(0, s.length() - 1);
+			bytes = s.getBytes(StandardCharsets.UTF_8);
+		}
+		buffer.put(bytes);
+		for (int i = bytes.length; i < length; i++) {
+			buffer.put((byte) 0);
+		}
+	}
+
+	/**
+	 * Reads a zero padded string field.
+	 * 
+	 * @param buffer
+	 *            the ByteBuffer
+	 * @param length
+	 *            the field length in bytes
+	 * @return the String
+	 */
+	private static String getString(ByteBuffer buffer, int length) {
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+
+		int end = 0;
+		while (end < length && bytes[end] != 0) {
+			end++;
+		}
+		return new String(bytes, 0, end, StandardCharsets.UTF_8);
+	}
+
+	private void read(ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			int read = channel.read(buffer, position);
+			if (read < 0) {
+				throw new IOException("Unexpected end of " + file.getName());
+			}
+			position += read;
+		}
+	}
+
+	private void write(ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			position += channel.write(buffer, position);
+		}
+	}
+
+	/**
+	 * Creates the rating record of a record's player.
+	 * 
+	 * @param record
+	 *            the StatsRecord
+	 * @return the rating StatsRecord
+	 */
+	private static StatsRecord rating(StatsRecord record) {
+		StatsRecord rating = new StatsRecord(record.getUniqueId(), RATING);
+		rating.setPlayerName(record.getPlayerName());
+		rating.setMMR(record.getMMR());
+		rating.setDeviation(record.getDeviation());
+		rating.setVolatility(record.getVolatility());
+		return rating;
+	}
+
+	private static boolean isName(UUID uuid) {
+		return uuid.getMostSignificantBits() == 0L
+				&& uuid.getLeastSignificantBits() == 0L;
+	}
+
+	private static long position(int slot) {
+		return HEADER_SIZE + (long) slot * RECORD_SIZE;
+	}
+
+	private static String key(UUID uuid, String arena) {
+		return uuid + ":" + arena;
+	}
+}
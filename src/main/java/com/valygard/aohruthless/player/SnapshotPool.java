@@ -0,0 +1,80 @@
+/**
+ * SnapshotPool.java is a part of Joystick
+ *
+ * Copyright (c) 2016 Anand Kumar
+ *
+ * Joystick is a free software: You can redistribute it or modify it
+ * under the terms of the GNU General Public License published by the Free
+ * Software Foundation, either version 3 of the license of any later version.
+ * 
+ * Joystick is distributed in the intent of being useful. However, there
+ * is NO WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You can view a copy of the GNU General Public License at 
+ * <http://www.gnu.org/licenses/> if you have not received a copy.
+ */
+package com.valygard.aohruthless.player;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Keeps released {@link PlayerSnapshot}s for reuse, so rotation arenas which
+ * see the same players join and leave over and over stop allocating new
+ * snapshots. The pool is bounded; snapshots released into a full pool are
+ * left to the garbage collector. Must only be used from the main thread.
+ * 
+ * @author Anand
+ * 
+ */
+public class SnapshotPool {
+
+	private final int capacity;
+	private final Deque<PlayerSnapshot> free;
+
+	/**
+	 * Constructor initializes an empty pool.
+	 * 
+	 * @param capacity
+	 *            the maximum amount of idle snapshots kept
+	 */
+	public SnapshotPool(int capacity) {
+		this.capacity = capacity;
+		this.free = new ArrayDeque<>();
+	}
+
+	/**
+	 * Takes an idle snapshot from the pool, or creates one if the pool is
+	 * empty.
+	 * 
+	 * @return an empty PlayerSnapshot
+	 */
+	public PlayerSnapshot acquire() {
+		PlayerSnapshot snapshot = free.poll();
+		return (snapshot != null ? snapshot : new PlayerSnapshot());
+	}
+
+	/**
+	 * Clears a snapshot and returns it to the pool.
+	 * 
+	 * @param snapshot
+	 *            the PlayerSnapshot, which must not be used afterwards
+	 */
+	public void release(PlayerSnapshot snapshot) {
+		// released twice, or never used
+		if (!snapshot.isCaptured()) return;
+
+		snapshot.clear();
+		if (free.size() < capacity) free.push(snapshot);
+	}
+
+	/**
+	 * Grabs the amount of idle snapshots.
+	 * 
+	 * @return the idle count
+	 */
+	public int size() {
+		return free.size();
+	}
+}
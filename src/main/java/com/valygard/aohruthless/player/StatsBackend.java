@@ -0,0 +1,77 @@
+/**
+ * StatsBackend.java is a part of Joystick
+ *
+ * Copyright (c) 2016 Anand Kumar
+ *
+ * Joystick is a free software: You can redistribute it or modify it
+ * under the terms of the GNU General Public License published by the Free
+ * Software Foundation, either version 3 of the license of any later version.
+ * 
+ * Joystick is distributed in the intent of being useful. However, there
+ * is NO WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You can view a copy of the GNU General Public License at 
+ * <http://www.gnu.org/licenses/> if you have not received a copy.
+ */
+package com.valygard.aohruthless.player;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Storage backend for {@link StatsRecord}s. The {@link StatsStore} loads
+ * records on the main thread and saves batches of dirty records on its
+ * background writer, so implementations must be thread-safe.
+ * 
+ * @author Anand
+ * 
+ */
+public interface StatsBackend {
+
+	/**
+	 * Loads the record of a player in an arena.
+	 * 
+	 * @param uuid
+	 *            the player's UUID
+	 * @param arena
+	 *            the arena name
+	 * @return the StatsRecord, null if the player has no stats yet
+	 * @throws IOException
+	 *             if the storage could not be read
+	 */
+	public StatsRecord load(UUID uuid, String arena) throws IOException;
+
+	/**
+	 * Loads the records of every player. Used for queries across players and
+	 * to copy all stats from one backend to another.
+	 * 
+	 * @param arena
+	 *            the arena name, or null to load the records of all arenas
+	 * @return a StatsRecord List
+	 * @throws IOException
+	 *             if the storage could not be read
+	 */
+	public List<StatsRecord> loadAll(String arena) throws IOException;
+
+	/**
+	 * Saves a batch of records, replacing any stored record of the same
+	 * player and arena. The batch is durable once this method returns.
+	 * 
+	 * @param records
+	 *            the records to save
+	 * @throws IOException
+	 *             if the storage could not be written
+	 */
+	public void save(Collection<StatsRecord> records) throws IOException;
+
+	/**
+	 * Releases the underlying storage.
+	 * 
+	 * @throws IOException
+	 *             if the storage could not be closed
+	 */
+	public void close() throws IOException;
+}
@@ -0,0 +1,189 @@
+/**
+ * StatsCache.java is a part of Joystick
+ *
+ * Copyright (c) 2016 Anand Kumar
+ *
+ * Joystick is a free software: You can redistribute it or modify it
+ * under the terms of the GNU General Public License published by the Free
+ * Software Foundation, either version 3 of the license of any later version.
+ * 
+ * Joystick is distributed in the intent of being useful. However, there
+ * is NO WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You can view a copy of the GNU General Public License at 
+ * <http://www.gnu.org/licenses/> if you have not received a copy.
+ */
+package com.valygard.aohruthless.player;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caches the {@link PlayerStats} of an arena by UUID. The cache holds at most
+ * a fixed amount of players and drops the least recently used one when it is
+ * full. Players who have not been looked up for longer than the time-to-live
+ * are dropped as well, so players who left the server do not stay in memory.
+ * <p>
+ * Dropping a player is always safe: their counters live in the
+ * {@link StatsStore}, so a new PlayerStats continues where the old one
+ * stopped. Dropped stats are released in the store, which may then evict
+ * their record. Must only be used from the main thread.
+ * </p>
+ * 
+ * @author Anand
+ * 
+ */
+public class StatsCache {
+
+	private final int maxSize;
+	private final long ttl;
+
+	// access ordered, least recently used first
+	private final LinkedHashMap<UUID, Entry> entries;
+
+	/**
+	 * Constructor initializes an empty cache.
+	 * 
+	 * @param maxSize
+	 *            the maximum amount of players
+	 * @param ttl
+	 *            the time a player is kept without being looked up
+	 * @param unit
+	 *            the TimeUnit of {@code ttl}
+	 */
+	public StatsCache(final int maxSize, long ttl, TimeUnit unit) {
+		this.maxSize = Math.max(1, maxSize);
+		this.ttl = unit.toMillis(ttl);
+		this.entries = new LinkedHashMap<UUID, Entry>(16, 0.75F, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<UUID, Entry> eldest) {
+				if (size() <= StatsCache.this.maxSize) return false;
+
+				eldest.getValue().stats.release();
+				return true;
+			}
+		};
+	}
+
+	/**
+	 * Grabs the stats of a player and marks them as recently used.
+	 * 
+	 * @param uuid
+	 *            the player's UUID
+	 * @return the PlayerStats, null if not cached
+	 */
+	public PlayerStats get(UUID uuid) {
+		long now = now();
+		expire(now);
+
+		Entry entry = entries.get(uuid);
+		if (entry == null) return null;
+
+		entry.accessed = now;
+		return entry.stats;
+	}
+
+	/**
+	 * Caches the stats of a player, dropping the least recently used player
+	 * if the cache is full.
+	 * 
+	 * @param uuid
+	 *            the player's UUID
+	 * @param stats
+	 *            the PlayerStats
+	 */
+	public void put(UUID uuid, PlayerStats stats) {
+		long now = now();
+		expire(now);
+		Entry old = entries.put(uuid, new Entry(stats, now));
+		if (old != null && old.stats != stats) old.stats.release();
+	}
+
+	/**
+	 * Drops the stats of a player.
+	 * 
+	 * @param uuid
+	 *            the player's UUID
+	 * @return the dropped PlayerStats, null if not cached
+	 */
+	public PlayerStats remove(UUID uuid) {
+		Entry entry = entries.remove(uuid);
+		if (entry == null) return null;
+
+		entry.stats.release();
+		return entry.stats;
+	}
+
+	/**
+	 * Grabs the stats of every cached player.
+	 * 
+	 * @return a PlayerStats List
+	 */
+	public List<PlayerStats> values() {
+		expire(now());
+
+		List<PlayerStats> result = new ArrayList<>(entries.size());
+		for (Entry entry : entries.values()) {
+			result.add(entry.stats);
+		}
+		return result;
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	public void clear() {
+		for (Entry entry : entries.values()) {
+			entry.stats.release();
+		}
+		entries.clear();
+	}
+
+	/**
+	 * Grabs the current time in milliseconds.
+	 * 
+	 * @return the time
+	 */
+	protected long now() {
+		return System.currentTimeMillis();
+	}
+
+	/**
+	 * Drops every player whose time-to-live ran out. The least recently used
+	 * players come first, so this stops at the first live player.
+	 * 
+	 * @param now
+	 *            the current time
+	 */
+	private void expire(long now) {
+		Iterator<Entry> it = entries.values().iterator();
+		while (it.hasNext()) {
+			Entry entry = it.next();
+			if (now - entry.accessed < ttl) break;
+
+			it.remove();
+			entry.stats.release();
+		}
+	}
+
+	private static class Entry {
+
+		private final PlayerStats stats;
+		private long accessed;
+
+		private Entry(PlayerStats stats, long accessed) {
+			this.stats = stats;
+			this.accessed = accessed;
+		}
+	}
+}
@@ -0,0 +1,260 @@
+/**
+ * StatsRecord.java is a part of Joystick
+ *
+ * Copyright (c) 2016 Anand Kumar
+ *
+ * Joystick is a free software: You can redistribute it or modify it
+ * under the terms of the GNU General Public License published by the Free
+ * Software Foundation, either version 3 of the license of any later version.
+ * 
+ * Joystick is distributed in the intent of being useful. However, there
+ * is NO WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You can view a copy of the GNU General Public License at 
+ * <http://www.gnu.org/licenses/> if you have not received a copy.
+ */
+package com.valygard.aohruthless.player;
+
+import java.util.UUID;
+
+/**
+ * The persisted statistics of one player in one arena. A record only holds
+ * primitive counters, which every {@link StatsBackend} can store in its own
+ * format.
+ * <p>
+ * The rating, which is the MMR along with the glicko-2 deviation and
+ * volatility, belongs to the player rather than the arena. Backends store it
+ * once per player, and the {@link StatsStore} lets all loaded records of a
+ * player share it, so a rating change in one arena is seen in every other.
+ * </p>
+ * 
+ * @author Anand
+ * 
+ */
+public class StatsRecord {
+
+	// identity
+	private final UUID uuid;
+	private final String arena;
+	private String playerName;
+
+	// counters
+	private int kills, deaths;
+	private int wins, losses, draws;
+	private int killstreak, winstreak;
+	private int timespent;
+
+	// the player's rating, shared by all of their loaded records
+	private Rating rating;
+
+	/**
+	 * Constructor creates an empty record for a player in an arena.
+	 * 
+	 * @param uuid
+	 *            the player's UUID
+	 * @param arena
+	 *            the arena name
+	 */
+	public StatsRecord(UUID uuid, String arena) {
+		this.uuid = uuid;
+		this.arena = arena;
+		this.playerName = "";
+		this.rating = new Rating();
+	}
+
+	/**
+	 * Copies every value of this record into a new record. Used to hand
+	 * records to a background writer while the original keeps changing.
+	 * 
+	 * @return a StatsRecord
+	 */
+	public StatsRecord copy() {
+		StatsRecord copy = new StatsRecord(uuid, arena);
+		copy.playerName = playerName;
+		copy.kills = kills;
+		copy.deaths = deaths;
+		copy.wins = wins;
+		copy.losses = losses;
+		copy.draws = draws;
+		copy.killstreak = killstreak;
+		copy.winstreak = winstreak;
+		copy.timespent = timespent;
+		copy.rating = rating.copy();
+		return copy;
+	}
+
+	/**
+	 * Calculates the ratio of two integers. If the divisor is less than or
+	 * equal to 1, the dividend is the ratio returned. If the dividend divided
+	 * by the divisor equates to a negative integer, 0.00 is returned. The
+	 * quotient is rounded to three decimals, half up.
+	 * 
+	 * @param dividend
+	 *            the int to divide
+	 * @param divisor
+	 *            the int to divide by
+	 * @return a double quotient
+	 */
+	public static double ratio(int dividend, int divisor) {
+		if (divisor <= 1) return dividend * 1D;
+		if (dividend / divisor < 0) return 0D;
+		return Math.round(dividend * 1000D / divisor) / 1000D;
+	}
+
+	/**
+	 * Calculates the kill-death ratio. Ratios are not stored, so they are
+	 * only computed when read.
+	 * 
+	 * @return the kill-death ratio
+	 */
+	public double getKDR() {
+		return ratio(kills, deaths);
+	}
+
+	/**
+	 * Calculates the ratio of wins to losses and draws.
+	 * 
+	 * @return the win ratio
+	 */
+	public double getWLR() {
+		return ratio(wins, draws + losses);
+	}
+
+	public UUID getUniqueId() {
+		return uuid;
+	}
+
+	public String getArena() {
+		return arena;
+	}
+
+	public String getPlayerName() {
+		return playerName;
+	}
+
+	public void setPlayerName(String playerName) {
+		this.playerName = (playerName != null ? playerName : "");
+	}
+
+	public int getKills() {
+		return kills;
+	}
+
+	public void setKills(int kills) {
+		this.kills = kills;
+	}
+
+	public int getDeaths() {
+		return deaths;
+	}
+
+	public void setDeaths(int deaths) {
+		this.deaths = deaths;
+	}
+
+	public int getWins() {
+		return wins;
+	}
+
+	public void setWins(int wins) {
+		this.wins = wins;
+	}
+
+	public int getLosses() {
+		return losses;
+	}
+
+	public void setLosses(int losses) {
+		this.losses = losses;
+	}
+
+	public int getDraws() {
+		return draws;
+	}
+
+	public void setDraws(int draws) {
+		this.draws = draws;
+	}
+
+	public int getKillstreak() {
+		return killstreak;
+	}
+
+	public void setKillstreak(int killstreak) {
+		this.killstreak = killstreak;
+	}
+
+	public int getWinstreak() {
+		return winstreak;
+	}
+
+	public void setWinstreak(int winstreak) {
+		this.winstreak = winstreak;
+	}
+
+	public int getTimeSpent() {
+		return timespent;
+	}
+
+	public void setTimeSpent(int timespent) {
+		this.timespent = timespent;
+	}
+
+	public int getMMR() {
+		return rating.mmr;
+	}
+
+	public void setMMR(int mmr) {
+		rating.mmr = mmr;
+	}
+
+	public double getDeviation() {
+		return rating.deviation;
+	}
+
+	public void setDeviation(double deviation) {
+		rating.deviation = deviation;
+	}
+
+	public double getVolatility() {
+		return rating.volatility;
+	}
+
+	public void setVolatility(double volatility) {
+		rating.volatility = volatility;
+	}
+
+	Rating getRating() {
+		return rating;
+	}
+
+	/**
+	 * Makes this record share the rating of another record of the player.
+	 * 
+	 * @param rating
+	 *            the shared Rating
+	 */
+	void setRating(Rating rating) {
+		this.rating = rating;
+	}
+
+	/**
+	 * The rating of a player, which is the same in every arena.
+	 */
+	static final class Rating {
+
+		private int mmr;
+
+		// glicko-2 rating deviation and volatility, 0 while unrated
+		private double deviation, volatility;
+
+		private Rating copy() {
+			Rating copy = new Rating();
+			copy.mmr = mmr;
+			copy.deviation = deviation;
+			copy.volatility = volatility;
+			return copy;
+		}
+	}
+}
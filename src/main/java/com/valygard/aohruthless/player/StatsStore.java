@@ -0,0 +1,585 @@
+/**
+ * StatsStore.java is a part of Joystick
+ *
+ * Copyright (c) 2016 Anand Kumar
+ *
+ * Joystick is a free software: You can redistribute it or modify it
+ * under the terms of the GNU General Public License published by the Free
+ * Software Foundation, either version 3 of the license of any later version.
+ * 
+ * Joystick is distributed in the intent of being useful. However, there
+ * is NO WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You can view a copy of the GNU General Public License at 
+ * <http://www.gnu.org/licenses/> if you have not received a copy.
+ */
+package com.valygard.aohruthless.player;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import com.valygard.aohruthless.timer.Conversion;
+
+/**
+ * Write-behind store for player statistics. Rather than writing a player's
+ * stats on every kill, {@link PlayerStats} changes its {@link StatsRecord} in
+ * memory and marks it dirty. Dirty records are flushed together on a
+ * configurable interval, when an arena ends and when the plugin is disabled,
+ * so any amount of updates between two flushes costs a single write.
+ * <p>
+ * Records are copied on the main thread, where the stats are changed, and
+ * saved as one batch by a background writer through the {@link StatsBackend}
+ * chosen by {@code global.stats-backend}. A batch which could not be saved
+ * is flushed again, with whatever changed since.
+ * </p>
+ * <p>
+ * Records stay in memory while a {@link PlayerStats} has them open. Once
+ * released, a record is dropped after two timed flushes found it saved, and
+ * is loaded again the next time it is opened.
+ * </p>
+ * 
+ * @author Anand
+ * 
+ */
+public class StatsStore {
+
+	private final Plugin plugin;
+	private final StatsBackend backend;
+
+	// loaded records by uuid and arena
+	private final ConcurrentMap<String, StatsRecord> records;
+	// records loaded in the background, not opened yet
+	private final ConcurrentMap<String, StatsRecord> preloaded;
+	// the rating the loaded records of each player share
+	private final Map<UUID, StatsRecord.Rating> ratings;
+	private final Set<StatsRecord> dirty;
+
+	// how often each record is open, and the records found idle by the last
+	// eviction; main thread only
+	private final Map<String, Integer> opened;
+	private Set<String> idle;
+
+	// the last batch handed to the writer
+	private Future<?> lastWrite;
+
+	// rankings, kept up to date with every change
+	private volatile Leaderboards leaderboards;
+	// the records ranked while the stored ones are loaded, main thread only
+	private Set<StatsRecord> ranked;
+
+	private final ExecutorService writer;
+	private BukkitTask task;
+
+	/**
+	 * Constructor initializes the store by a plugin, which owns the flush
+	 * task, and the backend the stats are kept in.
+	 * 
+	 * @param plugin
+	 *            the Plugin instance
+	 * @param backend
+	 *            the StatsBackend
+	 */
+	public StatsStore(Plugin plugin, StatsBackend backend) {
+		this.plugin = plugin;
+		this.backend = backend;
+
+		this.records = new ConcurrentHashMap<>();
+		this.preloaded = new ConcurrentHashMap<>();
+		this.ratings = new HashMap<>();
+		this.dirty = Collections
+				.newSetFromMap(new ConcurrentHashMap<StatsRecord, Boolean>());
+		this.opened = new HashMap<>();
+		this.leaderboards = new Leaderboards(plugin.getConfig().getInt(
+				"global.leaderboard-size", 10));
+
+		this.writer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "Joystick Stats Writer");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Creates the backend configured by {@code global.stats-backend}. The
+	 * default {@code json} keeps one file per player in the {@code stats}
+	 * folder, while {@code records} keeps all players in {@code stats.db}. A
+	 * new {@code stats.db} is filled with the stats of the json files.
+	 * 
+	 * @param plugin
+	 *            the Plugin instance
+	 * @return a StatsBackend
+	 * @throws IOException
+	 *             if the backend could not be opened
+	 */
+	public static StatsBackend createBackend(Plugin plugin) throws IOException {
+		JsonStatsBackend json = new JsonStatsBackend(new File(
+				plugin.getDataFolder(), "stats"));
+		String type = plugin.getConfig().getString("global.stats-backend",
+				"json");
+		if (!type.equalsIgnoreCase("records")) {
+			return json;
+		}
+
+		RecordStatsBackend records = new RecordStatsBackend(new File(
+				plugin.getDataFolder(), "stats.db"), plugin.getLogger());
+		try {
+			if (records.size() == 0) {
+				int imported = transfer(json, records);
+				if (imported > 0) {
+					plugin.getLogger().info(
+							"Imported " + imported + " player stats into "
+									+ records.getFile().getName());
+				}
+			}
+		}
+		catch (IOException | RuntimeException e) {
+			records.close();
+			throw e;
+		}
+		return records;
+	}
+
+	/**
+	 * Copies every record of one backend into another. Used to import the
+	 * json files into another backend, or to export it back into them.
+	 * 
+	 * @param from
+	 *            the StatsBackend to read
+	 * @param to
+	 *            the StatsBackend to write
+	 * @return the amount of records copied
+	 * @throws IOException
+	 *             if either backend failed
+	 */
+	public static int transfer(StatsBackend from, StatsBackend to)
+			throws IOException {
+		List<StatsRecord> all = from.loadAll(null);
+		to.save(all);
+		return all.size();
+	}
+
+	/**
+	 * Ranks every stored record on the leaderboards. Called once when the
+	 * plugin is enabled; afterwards the leaderboards are updated as the stats
+	 * change, and only built again once one of them is incomplete.
+	 * <p>
+	 * The stored records are loaded and ranked by the background writer. The
+	 * new leaderboards are handed to the main thread, which ranks the records
+	 * changed in the meantime on them as well before they replace the current
+	 * ones. Until then, the leaderboards only hold the records changed since
+	 * the plugin was enabled.
+	 * </p>
+	 * 
+	 * @return the queued load
+	 */
+	public Future<?> loadLeaderboards() {
+		ranked = new HashSet<>();
+		final int size = leaderboards.getSize();
+		return writer.submit(new Runnable() {
+
+			@Override
+			public void run() {
+				final Leaderboards loaded = new Leaderboards(size);
+				try {
+					for (StatsRecord record : backend.loadAll(null)) {
+						loaded.update(record);
+					}
+				}
+				catch (IOException | RuntimeException e) {
+					plugin.getLogger().severe(
+							"Could not load the leaderboards!");
+					e.printStackTrace();
+				}
+
+				plugin.getServer().getScheduler()
+						.runTask(plugin, new Runnable() {
+
+							@Override
+							public void run() {
+								for (StatsRecord record : ranked) {
+									loaded.update(record);
+								}
+								ranked = null;
+								leaderboards = loaded;
+							}
+						});
+			}
+		});
+	}
+
+	/**
+	 * Starts flushing dirty records every {@code global.stats-flush-interval}
+	 * seconds, 30 by default.
+	 */
+	public void start() {
+		if (task != null) return;
+
+		int interval = plugin.getConfig().getInt(
+				"global.stats-flush-interval", 30);
+		long ticks = Conversion.toTicks(Math.max(1, interval));
+		task = Bukkit.getScheduler().runTaskTimer(plugin, new Runnable() {
+
+			@Override
+			public void run() {
+				flush();
+				evict();
+			}
+		}, ticks, ticks);
+	}
+
+	/**
+	 * Opens the record of a player in an arena, loading it from the backend
+	 * the first time. A player without stats starts with the
+	 * {@code global.starting-mmr}. The record is kept in memory until it is
+	 * {@link #release(StatsRecord) released}. Must be called from the main
+	 * thread.
+	 * 
+	 * @param uuid
+	 *            the player's UUID
+	 * @param arena
+	 *            the arena name
+	 * @param playerName
+	 *            the player's current name, or null to leave it as is
+	 * @return a StatsRecord
+	 * @throws IOException
+	 *             if the record could not be loaded
+	 */
+	public StatsRecord open(UUID uuid, String arena, String playerName)
+			throws IOException {
+		String key = key(uuid, arena);
+		StatsRecord record = records.get(key);
+		boolean changed = false;
+
+		if (record == null) {
+			record = preloaded.remove(key);
+			if (record == null) record = backend.load(uuid, arena);
+			if (record == null) {
+				record = create(uuid, arena, startingMMR());
+				changed = true;
+			}
+			shareRating(record);
+			records.put(key, record);
+		}
+
+		Integer count = opened.get(key);
+		opened.put(key, (count == null ? 1 : count + 1));
+		if (idle != null) idle.remove(key);
+
+		if (playerName != null && !playerName.equals(record.getPlayerName())) {
+			record.setPlayerName(playerName);
+			changed = true;
+		}
+		if (changed) {
+			markDirty(record);
+		} else {
+			rank(record);
+		}
+		return record;
+	}
+
+	/**
+	 * Loads the record of a player in the background, so that a later
+	 * {@link #open(UUID, String, String)} finds it in memory and never reads
+	 * from disk on the main thread. The load is queued behind all pending
+	 * writes, so it never reads stats older than those in memory. Must be
+	 * called from the main thread.
+	 * 
+	 * @param uuid
+	 *            the player's UUID
+	 * @param arena
+	 *            the arena name
+	 */
+	public void preload(final UUID uuid, final String arena) {
+		final String key = key(uuid, arena);
+		if (records.containsKey(key) || preloaded.containsKey(key)
+				|| writer.isShutdown()) {
+			return;
+		}
+
+		final int mmr = startingMMR();
+		writer.execute(new Runnable() {
+
+			@Override
+			public void run() {
+				if (records.containsKey(key)) return;
+				try {
+					StatsRecord record = backend.load(uuid, arena);
+					if (record == null) record = create(uuid, arena, mmr);
+					// its rating is shared once opened, on the main thread
+					preloaded.putIfAbsent(key, record);
+				}
+				catch (IOException | RuntimeException e) {
+					plugin.getLogger().warning(
+							"Could not preload the stats of " + uuid + "!");
+					e.printStackTrace();
+				}
+			}
+		});
+	}
+
+	/**
+	 * Releases a record opened by {@link #open(UUID, String, String)}, once
+	 * for every time it was opened. A released record is evicted from memory
+	 * after it was saved. Must be called from the main thread.
+	 * 
+	 * @param record
+	 *            the StatsRecord
+	 */
+	public void release(StatsRecord record) {
+		String key = key(record.getUniqueId(), record.getArena());
+		Integer count = opened.get(key);
+		if (count == null) return;
+
+		if (count > 1) {
+			opened.put(key, count - 1);
+		} else {
+			opened.remove(key);
+		}
+	}
+
+	/**
+	 * Marks a record as changed. The changes are ranked on the leaderboards
+	 * immediately and written with the next flush. Must be called from the
+	 * main thread.
+	 * 
+	 * @param record
+	 *            the StatsRecord
+	 */
+	public void markDirty(StatsRecord record) {
+		dirty.add(record);
+		rank(record);
+	}
+
+	/**
+	 * Checks if a record has changes which were not flushed yet.
+	 * 
+	 * @param record
+	 *            the StatsRecord
+	 * @return true if dirty
+	 */
+	public boolean isDirty(StatsRecord record) {
+		return dirty.contains(record);
+	}
+
+	/**
+	 * Copies every dirty record and hands the copies to the background writer
+	 * as one batch. If the batch cannot be saved, its records are marked dirty
+	 * again, so the next flush saves them with any newer changes. Must be
+	 * called from the main thread.
+	 * 
+	 * @return the queued write, or null if no record was dirty
+	 */
+	public Future<?> flush() {
+		if (dirty.isEmpty()) return null;
+
+		final List<StatsRecord> flushed = new ArrayList<>(dirty.size());
+		final List<StatsRecord> batch = new ArrayList<>(dirty.size());
+		Iterator<StatsRecord> it = dirty.iterator();
+		while (it.hasNext()) {
+			StatsRecord record = it.next();
+			flushed.add(record);
+			batch.add(record.copy());
+			it.remove();
+		}
+
+		lastWrite = writer.submit(new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					backend.save(batch);
+				}
+				catch (IOException | RuntimeException e) {
+					plugin.getLogger().severe(
+							"Could not save the stats of " + batch.size()
+									+ " players, retrying with the next flush!");
+					e.printStackTrace();
+					// the records, not the copies, so newer changes are kept
+					dirty.addAll(flushed);
+				}
+			}
+		});
+		return lastWrite;
+	}
+
+	/**
+	 * Drops the records which are neither open, dirty nor being written from
+	 * memory, once two evictions in a row found them so. Ratings are dropped
+	 * with the last record of their player. Records are never dropped while a
+	 * write is pending, as a failed write marks them dirty again. Called after
+	 * every timed flush, from the main thread.
+	 */
+	public void evict() {
+		if (lastWrite != null && !lastWrite.isDone()) return;
+
+		Set<String> found = new HashSet<>();
+		evict(records, found);
+		evict(preloaded, found);
+		idle = found;
+
+		Set<UUID> players = new HashSet<>();
+		for (StatsRecord record : records.values()) {
+			players.add(record.getUniqueId());
+		}
+		ratings.keySet().retainAll(players);
+	}
+
+	/**
+	 * Stops the flush task, flushes all dirty records, waits for the
+	 * background writer to finish and closes the backend. Called when the
+	 * plugin is disabled.
+	 */
+	public void close() {
+		if (task != null) {
+			task.cancel();
+			task = null;
+		}
+		flush();
+
+		writer.shutdown();
+		try {
+			if (!writer.awaitTermination(30, TimeUnit.SECONDS)) {
+				plugin.getLogger().severe(
+						"Timed out while saving player stats!");
+			}
+			backend.close();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		catch (IOException e) {
+			plugin.getLogger().severe("Could not close the stats backend!");
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Creates the record of a player without stats.
+	 * 
+	 * @param uuid
+	 *            the player's UUID
+	 * @param arena
+	 *            the arena name
+	 * @param mmr
+	 *            the starting MMR
+	 * @return a StatsRecord
+	 */
+	private StatsRecord create(UUID uuid, String arena, int mmr) {
+		StatsRecord record = new StatsRecord(uuid, arena);
+		record.setMMR(mmr);
+		return record;
+	}
+
+	/**
+	 * Helper method to rank a record on the leaderboards, remembering it while
+	 * the stored records are loaded. Incomplete leaderboards are loaded again.
+	 * 
+	 * @param record
+	 *            the StatsRecord
+	 */
+	private void rank(StatsRecord record) {
+		leaderboards.update(record);
+		if (ranked != null) {
+			ranked.add(record);
+		} else if (!leaderboards.isComplete()) {
+			loadLeaderboards();
+		}
+	}
+
+	/**
+	 * Helper method to drop the idle records of a map which were idle at the
+	 * last eviction as well.
+	 * 
+	 * @param map
+	 *            the records by key
+	 * @param found
+	 *            the keys of the records found idle, which are kept
+	 */
+	private void evict(Map<String, StatsRecord> map, Set<String> found) {
+		Iterator<Map.Entry<String, StatsRecord>> it = map.entrySet()
+				.iterator();
+		while (it.hasNext()) {
+			Map.Entry<String, StatsRecord> e = it.next();
+			String key = e.getKey();
+			if (opened.containsKey(key) || dirty.contains(e.getValue())) {
+				continue;
+			}
+
+			if (idle != null && idle.contains(key)) {
+				it.remove();
+			} else {
+				found.add(key);
+			}
+		}
+	}
+
+	/**
+	 * Helper method to make a record share the rating of the player's other
+	 * loaded records. The rating in memory is never older than the stored one,
+	 * so it replaces the rating the record was loaded with. Must be called from
+	 * the main thread.
+	 * 
+	 * @param record
+	 *            the StatsRecord
+	 */
+	private void shareRating(StatsRecord record) {
+		StatsRecord.Rating shared = ratings.get(record.getUniqueId());
+		if (shared != null) {
+			record.setRating(shared);
+		} else {
+			ratings.put(record.getUniqueId(), record.getRating());
+		}
+	}
+
+	private int startingMMR() {
+		return plugin.getConfig().getInt("global.starting-mmr", 1000);
+	}
+
+	private static String key(UUID uuid, String arena) {
+		return uuid + ":" + arena;
+	}
+
+	/**
+	 * Grabs the leaderboards of all arenas. They are replaced once the stored
+	 * records are ranked, so they should not be kept.
+	 * 
+	 * @return the Leaderboards
+	 */
+	public Leaderboards getLeaderboards() {
+		return leaderboards;
+	}
+
+	/**
+	 * Grabs the backend the stats are kept in.
+	 * 
+	 * @return a StatsBackend
+	 */
+	public StatsBackend getBackend() {
+		return backend;
+	}
+}
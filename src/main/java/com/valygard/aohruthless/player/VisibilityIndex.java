@@ -0,0 +1,108 @@
+/**
+ * VisibilityIndex.java is a part of Joystick
+ *
+ * Copyright (c) 2016 Anand Kumar
+ *
+ * Joystick is a free software: You can redistribute it or modify it
+ * under the terms of the GNU General Public License published by the Free
+ * Software Foundation, either version 3 of the license of any later version.
+ * 
+ * Joystick is distributed in the intent of being useful. However, there
+ * is NO WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You can view a copy of the GNU General Public License at 
+ * <http://www.gnu.org/licenses/> if you have not received a copy.
+ */
+package com.valygard.aohruthless.player;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.bukkit.entity.Player;
+
+/**
+ * Remembers which online players cannot see a joining player. Instead of
+ * walking every online player once per join, all players joining in the same
+ * tick are indexed together in a single pass over the online players. Must
+ * only be used from the main thread.
+ * 
+ * @author Anand
+ * 
+ */
+public class VisibilityIndex {
+
+	// viewers that cannot see each indexed player
+	private final Map<UUID, List<Player>> hidden;
+
+	/**
+	 * Constructor initializes an empty index.
+	 */
+	public VisibilityIndex() {
+		this.hidden = new HashMap<>();
+	}
+
+	/**
+	 * Indexes a batch of players in one pass over the viewers. Players that
+	 * are already indexed are indexed again.
+	 * 
+	 * @param targets
+	 *            the players to index
+	 * @param viewers
+	 *            the online players
+	 */
+	public void index(Collection<Player> targets,
+			Collection<? extends Player> viewers) {
+		if (targets.isEmpty()) return;
+
+		for (Player target : targets) {
+			hidden.put(target.getUniqueId(), Collections.<Player> emptyList());
+		}
+
+		for (Player viewer : viewers) {
+			for (Player target : targets) {
+				if (viewer == target || viewer.canSee(target)) continue;
+
+				List<Player> blind = hidden.get(target.getUniqueId());
+				if (blind.isEmpty()) {
+					blind = new ArrayList<>(4);
+					hidden.put(target.getUniqueId(), blind);
+				}
+				blind.add(viewer);
+			}
+		}
+	}
+
+	/**
+	 * Checks if a player has been indexed.
+	 * 
+	 * @param target
+	 *            the Player
+	 * @return true if indexed
+	 */
+	public boolean isIndexed(Player target) {
+		return hidden.containsKey(target.getUniqueId());
+	}
+
+	/**
+	 * Removes a player from the index.
+	 * 
+	 * @param target
+	 *            the Player
+	 * @return the players who could not see the target, empty if the target
+	 *         was visible to all or not indexed
+	 */
+	public List<Player> remove(Player target) {
+		List<Player> blind = hidden.remove(target.getUniqueId());
+		return (blind != null ? blind : Collections.<Player> emptyList());
+	}
+
+	public int size() {
+		return hidden.size();
+	}
+}
@@ -17,7 +17,6 @@
 package com.valygard.aohruthless.timer;
 
 import org.bukkit.plugin.Plugin;
-import org.bukkit.scheduler.BukkitTask;
 
 /**
  * Generic countdown timer with an initial duration and with varying
@@ -28,6 +27,10 @@ import org.bukkit.scheduler.BukkitTask;
  * <p>
  * When the duration of the timer has passed, {@code onStop()} in the underlying
  * {@link TimerEvent} is called
+ * <p>
+ * All timers of a plugin run on its shared {@link TimerWheel}, so a running
+ * timer costs one wheel entry instead of a new Bukkit task every second.
+ * Timers must be started and stopped from the main thread.
  * 
  * @author Anand
  * 
@@ -35,6 +38,7 @@ import org.bukkit.scheduler.BukkitTask;
 public class CountdownTimer {
 
 	private Plugin plugin;
+	private TimerWheel wheel;
 	private long duration;
 	private long remaining;
 
@@ -53,6 +57,7 @@ public class CountdownTimer {
 	 */
 	public CountdownTimer(Plugin plugin, long duration) {
 		this.plugin = plugin;
+		this.wheel = TimerWheel.get(plugin);
 		this.duration = duration;
 		this.remaining = 0l;
 
@@ -125,16 +130,16 @@ public class CountdownTimer {
 		this.duration = duration;
 	}
 
-	private class Timer implements Runnable {
+	private class Timer extends TimerWheel.Timeout {
 
-		private BukkitTask task;
+		private boolean stopped;
 
 		public Timer() {
 			scheduleNext();
 		}
 
 		@Override
-		public void run() {
+		protected void expire() {
 			synchronized (CountdownTimer.this) {
 				remaining -= 20l;
 
@@ -146,21 +151,20 @@ public class CountdownTimer {
 
 				event.onTick();
 
-				if (task != null) {
+				if (!stopped) {
 					scheduleNext();
 				}
 			}
 		}
 
-		private synchronized void stop() {
-			task.cancel();
-			task = null;
+		private void stop() {
+			stopped = true;
+			wheel.cancel(this);
 		}
 
-		private synchronized void scheduleNext() {
+		private void scheduleNext() {
 			long nextInterval = (remaining < 20) ? remaining : 20l;
-			task = plugin.getServer().getScheduler().runTaskLater(plugin, this,
-					nextInterval);
+			wheel.schedule(this, nextInterval);
 		}
 	}
 }
@@ -0,0 +1,312 @@
+/**
+ * TimerWheel.java is a part of Joystick
+ *
+ * Copyright (c) 2016 Anand Kumar
+ *
+ * Joystick is a free software: You can redistribute it or modify it
+ * under the terms of the GNU General Public License published by the Free
+ * Software Foundation, either version 3 of the license of any later version.
+ * 
+ * Joystick is distributed in the intent of being useful. However, there
+ * is NO WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You can view a copy of the GNU General Public License at 
+ * <http://www.gnu.org/licenses/> if you have not received a copy.
+ */
+package com.valygard.aohruthless.timer;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+/**
+ * A hierarchical timer wheel driven by a single repeating task. Every level
+ * has 64 slots; level 0 counts single ticks and every level above counts 64
+ * times the ticks of the level below it, so four levels cover about nine
+ * days. A timeout sits in the level matching how far away it is, and moves
+ * down a level each time the level below it wraps around.
+ * <p>
+ * Scheduling and cancelling a {@link Timeout} are O(1): timeouts link
+ * themselves into their slot, so a timeout can be scheduled again and again
+ * without allocating. Each tick only visits the slots that are due. All
+ * timers of a plugin share one wheel, see {@link #get(Plugin)}, which is
+ * dropped by {@link #shutdown(Plugin)} when the plugin is disabled. Must only
+ * be used from the main thread.
+ * </p>
+ * 
+ * @author Anand
+ * 
+ */
+public class TimerWheel {
+
+	private static final int BITS = 6;
+	private static final int SLOTS = 1 << BITS;
+	private static final int MASK = SLOTS - 1;
+	private static final int LEVELS = 4;
+
+	// the furthest delay a timeout can be placed at directly
+	private static final long SPAN = 1L << (BITS * LEVELS);
+
+	// one wheel per enabled plugin
+	private static final Map<Plugin, TimerWheel> wheels = new HashMap<>();
+
+	private final Plugin plugin;
+
+	// the first timeout of every slot
+	private final Timeout[][] slots;
+
+	private BukkitTask task;
+	private long now;
+	private int size;
+
+	/**
+	 * Constructor initializes an idle wheel. Its task only runs while
+	 * timeouts are scheduled.
+	 * 
+	 * @param plugin
+	 *            the Plugin instance
+	 */
+	public TimerWheel(Plugin plugin) {
+		this.plugin = plugin;
+		this.slots = new Timeout[LEVELS][SLOTS];
+	}
+
+	/**
+	 * Grabs the wheel shared by all timers of a plugin, creating it if
+	 * needed.
+	 * 
+	 * @param plugin
+	 *            the Plugin instance
+	 * @return the TimerWheel
+	 */
+	public static synchronized TimerWheel get(Plugin plugin) {
+		TimerWheel wheel = wheels.get(plugin);
+		if (wheel == null) {
+			wheel = new TimerWheel(plugin);
+			wheels.put(plugin, wheel);
+		}
+		return wheel;
+	}
+
+	/**
+	 * Drops the wheel of a plugin, usually when it is disabled. Its task is
+	 * cancelled and its timeouts are no longer scheduled, so a plugin enabled
+	 * again starts with a new wheel.
+	 * 
+	 * @param plugin
+	 *            the Plugin instance
+	 */
+	public static synchronized void shutdown(Plugin plugin) {
+		TimerWheel wheel = wheels.remove(plugin);
+		if (wheel != null) wheel.clear();
+	}
+
+	/**
+	 * Schedules a timeout. A timeout which is already scheduled is moved to
+	 * the new delay.
+	 * 
+	 * @param timeout
+	 *            the Timeout
+	 * @param delay
+	 *            a long delay in server ticks, at least one tick
+	 */
+	public void schedule(Timeout timeout, long delay) {
+		if (timeout.wheel != null) {
+			timeout.wheel.cancel(timeout);
+		}
+
+		timeout.deadline = now + Math.max(1L, delay);
+		timeout.wheel = this;
+		insert(timeout);
+		size++;
+
+		if (task == null) {
+			task = plugin.getServer().getScheduler()
+					.runTaskTimer(plugin, new Runnable() {
+
+						@Override
+						public void run() {
+							tick();
+						}
+					}, 1L, 1L);
+		}
+	}
+
+	/**
+	 * Cancels a timeout.
+	 * 
+	 * @param timeout
+	 *            the Timeout
+	 * @return true if the timeout was scheduled on this wheel
+	 */
+	public boolean cancel(Timeout timeout) {
+		if (timeout.wheel != this) return false;
+
+		unlink(timeout);
+		timeout.wheel = null;
+		size--;
+		return true;
+	}
+
+	/**
+	 * Advances the wheel by one tick: moves timeouts down from the levels
+	 * which wrapped around, then expires the timeouts due this tick. Called
+	 * every tick by the wheel's task while timeouts are scheduled.
+	 */
+	public void tick() {
+		now++;
+
+		for (int level = LEVELS - 1; level > 0; level--) {
+			if ((now & ((1L << (BITS * level)) - 1)) != 0) continue;
+
+			int slot = (int) (now >>> (BITS * level)) & MASK;
+			Timeout timeout;
+			while ((timeout = slots[level][slot]) != null) {
+				unlink(timeout);
+				insert(timeout);
+			}
+		}
+
+		// expired timeouts may schedule themselves again, but never into
+		// the slot being expired
+		int slot = (int) now & MASK;
+		Timeout timeout;
+		while ((timeout = slots[0][slot]) != null) {
+			unlink(timeout);
+			timeout.wheel = null;
+			size--;
+			try {
+				timeout.expire();
+			}
+			catch (RuntimeException e) {
+				plugin.getLogger().log(Level.SEVERE, "A timer failed", e);
+			}
+		}
+
+		if (size == 0 && task != null) {
+			task.cancel();
+			task = null;
+		}
+	}
+
+	/**
+	 * Cancels every timeout and the wheel's task.
+	 */
+	public void clear() {
+		for (Timeout[] level : slots) {
+			for (int slot = 0; slot < SLOTS; slot++) {
+				Timeout timeout;
+				while ((timeout = level[slot]) != null) {
+					unlink(timeout);
+					timeout.wheel = null;
+				}
+			}
+		}
+		size = 0;
+
+		if (task != null) {
+			task.cancel();
+			task = null;
+		}
+	}
+
+	/**
+	 * Grabs the amount of scheduled timeouts.
+	 * 
+	 * @return the size of the wheel
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Grabs the current tick of the wheel, which only advances while
+	 * timeouts are scheduled.
+	 * 
+	 * @return the current tick
+	 */
+	public long getTick() {
+		return now;
+	}
+
+	/**
+	 * Helper method to link a timeout into the slot matching its deadline.
+	 * Timeouts beyond the span of the wheel are parked in the slot of the top
+	 * level which is visited last, and placed again from there.
+	 * 
+	 * @param timeout
+	 *            the Timeout
+	 */
+	private void insert(Timeout timeout) {
+		long remaining = timeout.deadline - now;
+
+		int level, slot;
+		if (remaining >= SPAN) {
+			level = LEVELS - 1;
+			slot = (int) ((now >>> (BITS * level)) - 1) & MASK;
+		} else {
+			level = 0;
+			while (remaining >= (1L << (BITS * (level + 1)))) {
+				level++;
+			}
+			slot = (int) (timeout.deadline >>> (BITS * level)) & MASK;
+		}
+
+		Timeout head = slots[level][slot];
+		timeout.prev = null;
+		timeout.next = head;
+		if (head != null) head.prev = timeout;
+		slots[level][slot] = timeout;
+
+		timeout.level = level;
+		timeout.slot = slot;
+	}
+
+	private void unlink(Timeout timeout) {
+		if (timeout.prev != null) {
+			timeout.prev.next = timeout.next;
+		} else {
+			slots[timeout.level][timeout.slot] = timeout.next;
+		}
+		if (timeout.next != null) {
+			timeout.next.prev = timeout.prev;
+		}
+		timeout.prev = timeout.next = null;
+	}
+
+	/**
+	 * Something which happens once its delay on a {@link TimerWheel} has
+	 * passed. A timeout can be scheduled any number of times, but is on at
+	 * most one wheel at once.
+	 */
+	public static abstract class Timeout {
+
+		private TimerWheel wheel;
+		private Timeout prev, next;
+		private int level, slot;
+		private long deadline;
+
+		/**
+		 * Called on the main thread once the timeout's delay has passed. The
+		 * timeout is no longer scheduled, so it may schedule itself again.
+		 */
+		protected abstract void expire();
+
+		public boolean isScheduled() {
+			return wheel != null;
+		}
+
+		/**
+		 * Grabs the tick of the wheel this timeout expires on.
+		 * 
+		 * @return the deadline, only meaningful while scheduled
+		 */
+		public long getDeadline() {
+			return deadline;
+		}
+	}
+}
@@ -0,0 +1,357 @@
+/**
+ * WorkScheduler.java is a part of Joystick
+ *
+ * Copyright (c) 2016 Anand Kumar
+ *
+ * Joystick is a free software: You can redistribute it or modify it
+ * under the terms of the GNU General Public License published by the Free
+ * Software Foundation, either version 3 of the license of any later version.
+ * 
+ * Joystick is distributed in the intent of being useful. However, there
+ * is NO WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You can view a copy of the GNU General Public License at 
+ * <http://www.gnu.org/licenses/> if you have not received a copy.
+ */
+package com.valygard.aohruthless.timer;
+
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import org.apache.commons.lang.Validate;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+/**
+ * Runs main-thread work within a per-tick time budget. Work is submitted by
+ * an owner, usually an arena name, with a {@link Priority} and an optional
+ * delay in server ticks. Every tick, due work is run highest priority first
+ * until the budget ({@code global.work-tick-budget}, in milliseconds) is used
+ * up; whatever is left waits for the next tick. At least one piece of work is
+ * run every tick, so the queue always drains.
+ * <p>
+ * Mass teleports, class handouts and inventory restores submitted here are
+ * therefore spread over several ticks under load instead of stalling one.
+ * Queue depth and the time spent running work are tracked per owner. Must
+ * only be used from the main thread.
+ * </p>
+ * 
+ * @author Anand
+ * 
+ */
+public class WorkScheduler {
+
+	/**
+	 * The order in which due work is run within a tick.
+	 */
+	public enum Priority {
+		HIGH, NORMAL, LOW;
+	}
+
+	private final Plugin plugin;
+	private final long budget;
+
+	// due work, per priority, in submission order
+	private final Map<Priority, Deque<Work>> ready;
+	// work waiting for its tick
+	private final PriorityQueue<Work> delayed;
+
+	private final Map<String, Usage> usage;
+
+	private BukkitTask task;
+	private long ticks, sequence;
+	private long lastTickTime;
+
+	/**
+	 * Constructor initializes an idle scheduler. Its task only runs while
+	 * work is queued.
+	 * 
+	 * @param plugin
+	 *            the Plugin instance
+	 */
+	public WorkScheduler(Plugin plugin) {
+		this.plugin = plugin;
+		this.budget = TimeUnit.MILLISECONDS.toNanos(Math.max(0, plugin
+				.getConfig().getInt("global.work-tick-budget", 10)));
+
+		this.ready = new EnumMap<>(Priority.class);
+		for (Priority priority : Priority.values()) {
+			ready.put(priority, new ArrayDeque<Work>());
+		}
+		this.delayed = new PriorityQueue<>(16, new Comparator<Work>() {
+
+			@Override
+			public int compare(Work w1, Work w2) {
+				if (w1.due != w2.due) return (w1.due < w2.due ? -1 : 1);
+				return (w1.sequence < w2.sequence ? -1 : 1);
+			}
+		});
+		this.usage = new HashMap<>();
+	}
+
+	/**
+	 * Queues work to run on one of the next ticks.
+	 * 
+	 * @param owner
+	 *            the owner, such as an arena name
+	 * @param priority
+	 *            the Priority
+	 * @param r
+	 *            the Runnable
+	 * @return the queued Work
+	 */
+	public Work submit(String owner, Priority priority, Runnable r) {
+		return schedule(owner, priority, r, 0L);
+	}
+
+	/**
+	 * Queues work to run once a delay has passed. The work may run later than
+	 * that if the budget of its tick is used up.
+	 * 
+	 * @param owner
+	 *            the owner, such as an arena name
+	 * @param priority
+	 *            the Priority
+	 * @param r
+	 *            the Runnable
+	 * @param delay
+	 *            a long delay in server ticks
+	 * @return the queued Work
+	 */
+	public Work schedule(String owner, Priority priority, Runnable r,
+			long delay) {
+		Validate.notNull(owner, "Work must have an owner");
+		Validate.notNull(priority, "Work must have a priority");
+		Validate.notNull(r, "Work must have a runnable");
+
+		Work work = new Work(owner, priority, r, ticks + Math.max(0L, delay),
+				sequence++);
+		if (work.due <= ticks) {
+			ready.get(priority).add(work);
+		} else {
+			delayed.add(work);
+		}
+		usage(owner).depth++;
+
+		if (task == null) {
+			task = plugin.getServer().getScheduler()
+					.runTaskTimer(plugin, new Runnable() {
+
+						@Override
+						public void run() {
+							tick();
+						}
+					}, 1L, 1L);
+		}
+		return work;
+	}
+
+	/**
+	 * Runs one tick of the scheduler: moves work that has become due to the
+	 * ready queues, then runs ready work until the budget is used up. Called
+	 * every tick by the scheduler's task while work is queued.
+	 */
+	public void tick() {
+		long start = System.nanoTime();
+		long deadline = start + budget;
+		ticks++;
+
+		while (!delayed.isEmpty() && delayed.peek().due <= ticks) {
+			Work work = delayed.poll();
+			ready.get(work.priority).add(work);
+		}
+
+		Work work;
+		while ((work = next()) != null) {
+			run(work);
+			if (System.nanoTime() >= deadline) break;
+		}
+		lastTickTime = System.nanoTime() - start;
+
+		if (getQueueDepth() == 0 && task != null) {
+			task.cancel();
+			task = null;
+		}
+	}
+
+	/**
+	 * Runs all ready work regardless of the budget and drops delayed work.
+	 * Called when the plugin is disabled.
+	 */
+	public void shutdown() {
+		Work work;
+		while ((work = next()) != null) {
+			run(work);
+		}
+
+		// cancelled work was already taken off its owner's depth
+		for (Work w : delayed) {
+			if (!w.cancelled) usage(w.owner).depth--;
+		}
+		delayed.clear();
+
+		if (task != null) {
+			task.cancel();
+			task = null;
+		}
+	}
+
+	/**
+	 * Grabs the amount of queued work of an owner, delayed work included.
+	 * 
+	 * @param owner
+	 *            the owner
+	 * @return the queue depth
+	 */
+	public int getQueueDepth(String owner) {
+		Usage u = usage.get(owner);
+		return (u != null ? u.depth : 0);
+	}
+
+	/**
+	 * Grabs the total amount of queued work, delayed work included.
+	 * 
+	 * @return the queue depth
+	 */
+	public int getQueueDepth() {
+		int depth = 0;
+		for (Usage u : usage.values()) {
+			depth += u.depth;
+		}
+		return depth;
+	}
+
+	/**
+	 * Grabs the time spent running the work of an owner since the scheduler
+	 * was created.
+	 * 
+	 * @param owner
+	 *            the owner
+	 * @param unit
+	 *            the TimeUnit to convert to
+	 * @return the time used
+	 */
+	public long getTimeUsed(String owner, TimeUnit unit) {
+		Usage u = usage.get(owner);
+		return (u != null ? unit.convert(u.time, TimeUnit.NANOSECONDS) : 0L);
+	}
+
+	/**
+	 * Grabs the time the last tick took, in nanoseconds.
+	 * 
+	 * @return the time of the last tick
+	 */
+	public long getLastTickTime() {
+		return lastTickTime;
+	}
+
+	public long getBudget() {
+		return budget;
+	}
+
+	/**
+	 * Helper method to take the next ready work, highest priority first.
+	 * Cancelled work is discarded.
+	 * 
+	 * @return the next Work, null if none is ready
+	 */
+	private Work next() {
+		for (Deque<Work> queue : ready.values()) {
+			Work work;
+			while ((work = queue.poll()) != null) {
+				if (!work.cancelled) return work;
+			}
+		}
+		return null;
+	}
+
+	private void run(Work work) {
+		Usage u = usage(work.owner);
+		u.depth--;
+		work.done = true;
+
+		long start = System.nanoTime();
+		try {
+			work.runnable.run();
+		}
+		catch (RuntimeException e) {
+			plugin.getLogger().log(Level.SEVERE,
+					"Scheduled work of " + work.owner + " failed", e);
+		}
+		u.time += System.nanoTime() - start;
+	}
+
+	private Usage usage(String owner) {
+		Usage u = usage.get(owner);
+		if (u == null) {
+			u = new Usage();
+			usage.put(owner, u);
+		}
+		return u;
+	}
+
+	/**
+	 * A piece of queued work, which can be cancelled until it has run.
+	 */
+	public class Work {
+
+		private final String owner;
+		private final Priority priority;
+		private final Runnable runnable;
+		private final long due, sequence;
+
+		private boolean cancelled, done;
+
+		private Work(String owner, Priority priority, Runnable runnable,
+				long due, long sequence) {
+			this.owner = owner;
+			this.priority = priority;
+			this.runnable = runnable;
+			this.due = due;
+			this.sequence = sequence;
+		}
+
+		/**
+		 * Cancels the work if it has not run yet.
+		 * 
+		 * @return true if the work was cancelled
+		 */
+		public boolean cancel() {
+			if (cancelled || done) return false;
+
+			cancelled = true;
+			usage(owner).depth--;
+			return true;
+		}
+
+		public boolean isCancelled() {
+			return cancelled;
+		}
+
+		public boolean isDone() {
+			return done;
+		}
+
+		public String getOwner() {
+			return owner;
+		}
+
+		public Priority getPriority() {
+			return priority;
+		}
+	}
+
+	private static class Usage {
+
+		private int depth;
+		private long time;
+	}
+}
@@ -0,0 +1,172 @@
+/**
+ * PrefixIndex.java is a part of Joystick
+ *
+ * Copyright (c) 2016 Anand Kumar
+ *
+ * Joystick is a free software: You can redistribute it or modify it
+ * under the terms of the GNU General Public License published by the Free
+ * Software Foundation, either version 3 of the license of any later version.
+ * 
+ * Joystick is distributed in the intent of being useful. However, there
+ * is NO WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You can view a copy of the GNU General Public License at 
+ * <http://www.gnu.org/licenses/> if you have not received a copy.
+ */
+package com.valygard.aohruthless.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+
+/**
+ * Sorted, case-insensitive index of names for prefix lookups. Names are kept
+ * in a tree by their lowercase key, so finding every name starting with a
+ * prefix costs a single descent plus one step per result, however many names
+ * are indexed. Names are added and removed one at a time as the things they
+ * name come and go.
+ * <p>
+ * The index is not thread-safe, and is meant to be used from the main thread.
+ * </p>
+ * 
+ * @author Anand
+ * 
+ */
+public class PrefixIndex {
+
+	private final TreeMap<String, String> names = new TreeMap<>();
+
+	/**
+	 * Adds a name to the index. A name already indexed in a different case is
+	 * replaced.
+	 * 
+	 * @param name
+	 *            the name
+	 */
+	public void add(String name) {
+		names.put(normalize(name), name);
+	}
+
+	/**
+	 * Removes a name from the index.
+	 * 
+	 * @param name
+	 *            the name, in any case
+	 * @return true if the name was indexed
+	 */
+	public boolean remove(String name) {
+		return names.remove(normalize(name)) != null;
+	}
+
+	/**
+	 * Checks if a name is indexed.
+	 * 
+	 * @param name
+	 *            the name, in any case
+	 * @return true if indexed
+	 */
+	public boolean contains(String name) {
+		return names.containsKey(normalize(name));
+	}
+
+	/**
+	 * Removes all names.
+	 */
+	public void clear() {
+		names.clear();
+	}
+
+	/**
+	 * Grabs the amount of indexed names.
+	 * 
+	 * @return an int
+	 */
+	public int size() {
+		return names.size();
+	}
+
+	/**
+	 * Finds the names starting with a prefix, ignoring case, in alphabetical
+	 * order.
+	 * 
+	 * @param prefix
+	 *            the prefix, empty for all names
+	 * @param limit
+	 *            the most names to return
+	 * @return a new list of the matching names, as they were added
+	 */
+	public List<String> complete(String prefix, int limit) {
+		if (limit <= 0) return Collections.emptyList();
+
+		List<String> result = new ArrayList<>();
+		Iterator<String> it = iterator(prefix);
+		while (it.hasNext() && result.size() < limit) {
+			result.add(it.next());
+		}
+		return result;
+	}
+
+	/**
+	 * Walks the names starting with a prefix, ignoring case, in alphabetical
+	 * order. The names are looked up one step at a time as the iterator
+	 * advances, so a caller which filters them only visits as many as it
+	 * needs. The index must not change while the iterator is in use.
+	 * 
+	 * @param prefix
+	 *            the prefix, empty for all names
+	 * @return an Iterator over the matching names, as they were added
+	 */
+	protected Iterator<String> iterator(String prefix) {
+		final String key = normalize(prefix);
+		final Iterator<Map.Entry<String, String>> it = names
+				.tailMap(key, true).entrySet().iterator();
+
+		return new Iterator<String>() {
+
+			private String next = advance();
+
+			private String advance() {
+				if (!it.hasNext()) return null;
+
+				Map.Entry<String, String> e = it.next();
+				return (e.getKey().startsWith(key) ? e.getValue() : null);
+			}
+
+			@Override
+			public boolean hasNext() {
+				return next != null;
+			}
+
+			@Override
+			public String next() {
+				if (next == null) throw new NoSuchElementException();
+
+				String name = next;
+				next = advance();
+				return name;
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	/**
+	 * Normalizes a name into its index key.
+	 * 
+	 * @param name
+	 *            the name
+	 * @return the lowercase key
+	 */
+	protected static String normalize(String name) {
+		return name.toLowerCase(Locale.ENGLISH);
+	}
+}
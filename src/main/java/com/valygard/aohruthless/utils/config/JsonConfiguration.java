@@ -17,12 +17,26 @@
 package com.valygard.aohruthless.utils.config;
 
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.bukkit.Bukkit;
 import org.json.simple.JSONArray;
@@ -38,25 +52,49 @@ import com.google.gson.GsonBuilder;
  * Utility for Json file creation. Allows for simple reading/writing of Json
  * files in lieu of Yaml configuration, which is severely underwhelming from a
  * performance standpoint in comparison.
+ * <p>
+ * Every write replaces the file through a temporary file and a rename, so a
+ * crash mid-write never leaves a truncated file behind. In
+ * {@link #setAsync(boolean) async mode} the contents are serialized on the
+ * calling thread and written by a shared background thread. Pending writes to
+ * the same file are coalesced, only the latest snapshot is written.
+ * </p>
  * 
  * @author Anand
  * 
  */
 public class JsonConfiguration {
 
+	// asynchronous writes, only the latest snapshot of each file is kept
+	private static final ConcurrentMap<File, String> pending;
+	private static final ExecutorService executor;
+
+	static {
+		pending = new ConcurrentHashMap<>();
+		executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "Joystick Json Writer");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	// formatting
+	private static final Gson gson = new GsonBuilder().setPrettyPrinting()
+			.create();
+
 	// file path
 	private final File file;
 	private final String fileName;
 
 	// json
-	private final JSONParser parser;
 	private JSONObject obj;
 
-	// formatting
-	private final Gson gson;
-
-	// file reader
-	private FileReader reader;
+	// write mode
+	private boolean async;
 
 	/**
 	 * Constructor initializes a new JSON file by a given directory and file
@@ -75,16 +113,18 @@ public class JsonConfiguration {
 		this.fileName = fileName;
 
 		dir.mkdirs();
-		this.file = new File(dir, fileName);
-		this.parser = new JSONParser();
-		this.gson = new GsonBuilder().setPrettyPrinting().create();
+		this.file = new File(dir, fileName).getAbsoluteFile();
+		this.async = false;
 
 		try {
 			// hacky operation to determine if file is blank
 			if (file.createNewFile() || file.length() <= 0) {
 				this.obj = new JSONObject();
 			} else {
-				this.obj = (JSONObject) parser.parse(initReader());
+				try (Reader reader = Files.newBufferedReader(file.toPath(),
+						StandardCharsets.UTF_8)) {
+					this.obj = (JSONObject) new JSONParser().parse(reader);
+				}
 			}
 		}
 		catch (IOException | ParseException e) {
@@ -92,26 +132,29 @@ public class JsonConfiguration {
 					"Could not parse JSON file '" + fileName + "'!");
 			this.obj = new JSONObject();
 		}
-		initReader();
 	}
 
 	/**
-	 * Initializes file reader if null
+	 * Checks if writes are handed to the background writer.
 	 * 
-	 * @return FileReader
+	 * @return true if async
 	 */
-	private FileReader initReader() {
-		if (reader == null) {
-			try {
-				this.reader = new FileReader(file);
-			}
-			catch (FileNotFoundException e) {
-				Bukkit.getLogger().severe(
-						"Could not read JSON file '" + fileName + "'!");
-				e.printStackTrace();
-			}
-		}
-		return reader;
+	public boolean isAsync() {
+		return async;
+	}
+
+	/**
+	 * Changes the write mode. When async, {@link #write(Map)} and all methods
+	 * built on it serialize the contents on the calling thread and return
+	 * before the file is written.
+	 * 
+	 * @param async
+	 *            a boolean flag
+	 * @return the JsonConfiguration instance
+	 */
+	public JsonConfiguration setAsync(boolean async) {
+		this.async = async;
+		return this;
 	}
 
 	/**
@@ -215,8 +258,9 @@ public class JsonConfiguration {
 
 	/**
 	 * Writes a map of keys and values to the Json file. The map is a collection
-	 * of any object type. The underlying FileWriter attempts to parse the
-	 * current JSONObject to {@code gson} pretty printing standards.
+	 * of any object type. The current JSONObject is serialized once, to
+	 * {@code gson} pretty printing standards, and written with {@link #save()}
+	 * or {@link #saveAsync()} depending on the write mode.
 	 * 
 	 * @param map
 	 *            a Map of object keys and values
@@ -226,15 +270,174 @@ public class JsonConfiguration {
 	public JsonConfiguration write(Map<?, ?> map) {
 		obj.putAll(map);
 
-		try (FileWriter writer = new FileWriter(file)) {
-			writer.write(gson.toJson(parser.parse(obj.toJSONString())));
+		if (async) {
+			saveAsync();
+		} else {
+			save();
 		}
-		catch (IOException | ParseException e) {
+		return this;
+	}
+
+	/**
+	 * Sets a value in memory only. Nothing is written to disk until
+	 * {@link #save()} is called, which allows callers to batch many changes
+	 * into a single write.
+	 * 
+	 * @param key
+	 *            the String path
+	 * @param value
+	 *            the Object value to be associated with specified {@code key}
+	 * @return the JsonConfiguration instance
+	 */
+	@SuppressWarnings("unchecked")
+	public JsonConfiguration setValue(String key, Object value) {
+		obj.put(key, value);
+		return this;
+	}
+
+	/**
+	 * Serializes the in-memory contents into a pretty printed JSON string. The
+	 * snapshot is detached from the configuration, so it can be handed to
+	 * {@link #save(String)} on another thread while the configuration keeps
+	 * changing.
+	 * 
+	 * @return a JSON String
+	 */
+	public String snapshot() {
+		return gson.toJson(obj);
+	}
+
+	/**
+	 * Writes the current in-memory contents to disk.
+	 * 
+	 * @return true if the file was written
+	 * @see #save(String)
+	 */
+	public boolean save() {
+		return save(snapshot());
+	}
+
+	/**
+	 * Writes a snapshot taken by {@link #snapshot()} to disk on the calling
+	 * thread.
+	 * 
+	 * @param snapshot
+	 *            the JSON String to write
+	 * @return true if the file was written
+	 * @see #writeFile(File, String)
+	 */
+	public boolean save(String snapshot) {
+		return writeFile(file, snapshot);
+	}
+
+	/**
+	 * Snapshots the current in-memory contents and hands them to the
+	 * background writer. If a snapshot of this file is still waiting to be
+	 * written, it is replaced, so a burst of changes costs a single write.
+	 */
+	public void saveAsync() {
+		if (pending.put(file, snapshot()) != null) {
+			return;
+		}
+
+		executor.execute(new Runnable() {
+
+			@Override
+			public void run() {
+				String latest = pending.remove(file);
+				if (latest != null) {
+					writeFile(file, latest);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Blocks until every asynchronous write submitted so far has been written.
+	 * Called when a plugin is disabled, as the background writer does not keep
+	 * the server alive.
+	 * 
+	 * @param timeout
+	 *            the maximum time to wait
+	 * @param unit
+	 *            the TimeUnit of {@code timeout}
+	 * @return true if all writes finished in time
+	 */
+	public static boolean awaitWrites(long timeout, TimeUnit unit) {
+		// the writer is single threaded, so this runs after all prior writes
+		Future<?> marker = executor.submit(new Runnable() {
+
+			@Override
+			public void run() {}
+		});
+		try {
+			marker.get(timeout, unit);
+			return true;
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+		catch (ExecutionException | TimeoutException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Writes contents to a file. The contents are written to a temporary file
+	 * next to the json file, which then replaces the json file by a rename. A
+	 * crash during the write therefore leaves the previous file intact instead
+	 * of a truncated one.
+	 * 
+	 * @param file
+	 *            the File to replace
+	 * @param json
+	 *            the String contents
+	 * @return true if the file was written
+	 */
+	private static boolean writeFile(File file, String json) {
+		File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+		try {
+			try (Writer writer = Files.newBufferedWriter(tmp.toPath(),
+					StandardCharsets.UTF_8)) {
+				writer.write(json);
+			}
+			try {
+				Files.move(tmp.toPath(), file.toPath(),
+						StandardCopyOption.REPLACE_EXISTING,
+						StandardCopyOption.ATOMIC_MOVE);
+			}
+			catch (AtomicMoveNotSupportedException e) {
+				Files.move(tmp.toPath(), file.toPath(),
+						StandardCopyOption.REPLACE_EXISTING);
+			}
+			return true;
+		}
+		catch (IOException e) {
 			Bukkit.getLogger().severe(
-					"Could not write to JSON file '" + fileName + "'!");
+					"Could not write to JSON file '" + file.getName() + "'!");
 			e.printStackTrace();
+			return false;
 		}
-		return this;
+	}
+
+	/**
+	 * Grabs the json file backing this configuration.
+	 * 
+	 * @return a File
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Grabs the top level keys of the json file.
+	 * 
+	 * @return a String Set
+	 */
+	@SuppressWarnings("unchecked")
+	public Set<String> getKeys() {
+		return Collections.unmodifiableSet(obj.keySet());
 	}
 
 	/**
@@ -0,0 +1,419 @@
+/**
+ * InventoryCodec.java is a part of Joystick
+ *
+ * Copyright (c) 2016 Anand Kumar
+ *
+ * Joystick is a free software: You can redistribute it or modify it
+ * under the terms of the GNU General Public License published by the Free
+ * Software Foundation, either version 3 of the license of any later version.
+ * 
+ * Joystick is distributed in the intent of being useful. However, there
+ * is NO WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You can view a copy of the GNU General Public License at 
+ * <http://www.gnu.org/licenses/> if you have not received a copy.
+ */
+package com.valygard.aohruthless.utils.inventory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+import org.bukkit.configuration.serialization.ConfigurationSerializable;
+import org.bukkit.configuration.serialization.ConfigurationSerialization;
+import org.bukkit.inventory.ItemStack;
+
+/**
+ * Binary format of stored inventories. A snapshot is written as one record:
+ * 
+ * <pre>
+ *   0  magic         int, "JINV"
+ *   4  version       byte
+ *   5  length        int, bytes of payload
+ *   9  checksum      int, CRC32 of payload
+ *  13  payload       uuid, name, contents and armor
+ * </pre>
+ * <p>
+ * Items are stored as the maps of {@link ItemStack#serialize()}, and anything
+ * nested in them, such as item meta, through its own
+ * {@link ConfigurationSerializable} map. Every value is tagged with its type,
+ * so a record reads back into the same maps Bukkit wrote, without a json or
+ * yaml round trip.
+ * </p>
+ * <p>
+ * Records are length-prefixed and checksummed, so a record cut short by a
+ * crash, or damaged on disk, is detected and refused rather than restored as
+ * a partial inventory.
+ * </p>
+ * 
+ * @author Anand
+ * 
+ */
+public class InventoryCodec {
+
+	// record layout
+	static final int HEADER = 13;
+	private static final int MAGIC = 0x4A494E56;
+	private static final int VERSION = 1;
+	private static final int MAX_LENGTH = 16 * 1024 * 1024;
+
+	// value tags
+	private static final int NULL = 0;
+	private static final int STRING = 1;
+	private static final int BOOLEAN = 2;
+	private static final int BYTE = 3;
+	private static final int SHORT = 4;
+	private static final int INT = 5;
+	private static final int LONG = 6;
+	private static final int FLOAT = 7;
+	private static final int DOUBLE = 8;
+	private static final int LIST = 9;
+	private static final int MAP = 10;
+	private static final int ITEM = 11;
+	private static final int SERIALIZABLE = 12;
+
+	/**
+	 * Prevent initialization of utility class.
+	 * 
+	 * @throws AssertionError
+	 *             if attempted access by reflection
+	 */
+	private InventoryCodec() {
+		throw new AssertionError("Cannot initialize utility constructor");
+	}
+
+	/**
+	 * Encodes a snapshot into a record.
+	 * 
+	 * @param snapshot
+	 *            the InventorySnapshot
+	 * @return the record bytes
+	 * @throws IOException
+	 *             if an item holds a value that cannot be encoded
+	 */
+	public static byte[] encode(InventorySnapshot snapshot) throws IOException {
+		ByteArrayOutputStream payload = new ByteArrayOutputStream(512);
+		DataOutputStream out = new DataOutputStream(payload);
+		out.writeLong(snapshot.getUniqueId().getMostSignificantBits());
+		out.writeLong(snapshot.getUniqueId().getLeastSignificantBits());
+		writeString(out, snapshot.getName());
+		writeItems(out, snapshot.getItems());
+		writeItems(out, snapshot.getArmor());
+
+		return frame(payload.toByteArray());
+	}
+
+	/**
+	 * Decodes a record into a snapshot.
+	 * 
+	 * @param record
+	 *            the record bytes
+	 * @return the InventorySnapshot
+	 * @throws IOException
+	 *             if the record is incomplete or damaged
+	 */
+	public static InventorySnapshot decode(byte[] record) throws IOException {
+		return read(new DataInputStream(new ByteArrayInputStream(record)));
+	}
+
+	/**
+	 * Reads the next record from an input without decoding its items, so it
+	 * can be kept or copied as it is and decoded later.
+	 * 
+	 * @param in
+	 *            the DataInput
+	 * @return the record bytes
+	 * @throws java.io.EOFException
+	 *             if the input ends before the record does
+	 * @throws IOException
+	 *             if the record is damaged or of an unknown version
+	 */
+	public static byte[] readRecord(DataInput in) throws IOException {
+		return frame(readPayload(in));
+	}
+
+	/**
+	 * Reads the next record from an input. Records can be read back to back,
+	 * as they are written.
+	 * 
+	 * @param in
+	 *            the DataInput
+	 * @return the InventorySnapshot
+	 * @throws java.io.EOFException
+	 *             if the input ends before the record does
+	 * @throws IOException
+	 *             if the record is damaged or of an unknown version
+	 */
+	public static InventorySnapshot read(DataInput in) throws IOException {
+		DataInputStream data = new DataInputStream(new ByteArrayInputStream(
+				readPayload(in)));
+		UUID uuid = new UUID(data.readLong(), data.readLong());
+		String name = readString(data);
+		ItemStack[] items = readItems(data);
+		ItemStack[] armor = readItems(data);
+		return new InventorySnapshot(uuid, name, items, armor);
+	}
+
+	/**
+	 * Puts the header in front of a payload.
+	 */
+	private static byte[] frame(byte[] payload) {
+		CRC32 crc = new CRC32();
+		crc.update(payload, 0, payload.length);
+
+		ByteBuffer record = ByteBuffer.allocate(HEADER + payload.length);
+		record.putInt(MAGIC).put((byte) VERSION).putInt(payload.length)
+				.putInt((int) crc.getValue()).put(payload);
+		return record.array();
+	}
+
+	/**
+	 * Reads the payload length from a record header, without checking the
+	 * payload. Used to skip a damaged record.
+	 * 
+	 * @param header
+	 *            the header bytes
+	 * @return the length, or -1 if the header is not a valid one
+	 */
+	static int readLength(ByteBuffer header) {
+		if (header.getInt() != MAGIC) return -1;
+		if ((header.get() & 0xFF) != VERSION) return -1;
+
+		int length = header.getInt();
+		return (length >= 0 && length <= MAX_LENGTH ? length : -1);
+	}
+
+	/**
+	 * Reads a header and the payload it describes, which is checked against
+	 * the checksum.
+	 */
+	private static byte[] readPayload(DataInput in) throws IOException {
+		if (in.readInt() != MAGIC) {
+			throw new IOException("Not an inventory record");
+		}
+		int version = in.readUnsignedByte();
+		if (version != VERSION) {
+			throw new IOException("Unknown inventory record version "
+					+ version);
+		}
+		int length = in.readInt();
+		if (length < 0 || length > MAX_LENGTH) {
+			throw new IOException("Invalid inventory record length " + length);
+		}
+		int checksum = in.readInt();
+
+		byte[] payload = new byte[length];
+		in.readFully(payload);
+
+		CRC32 crc = new CRC32();
+		crc.update(payload, 0, length);
+		if ((int) crc.getValue() != checksum) {
+			throw new IOException("Inventory record checksum mismatch");
+		}
+		return payload;
+	}
+
+	/**
+	 * Writes an item array as its length followed by each slot.
+	 */
+	private static void writeItems(DataOutputStream out, ItemStack[] items)
+			throws IOException {
+		if (items == null) {
+			out.writeShort(-1);
+			return;
+		}
+		out.writeShort(items.length);
+		for (ItemStack item : items) {
+			writeValue(out, item);
+		}
+	}
+
+	/**
+	 * Reads an item array written by {@link #writeItems}.
+	 */
+	private static ItemStack[] readItems(DataInputStream in)
+			throws IOException {
+		int length = in.readShort();
+		if (length < 0) return null;
+
+		ItemStack[] items = new ItemStack[length];
+		for (int i = 0; i < length; i++) {
+			Object value = readValue(in);
+			if (value != null && !(value instanceof ItemStack)) {
+				throw new IOException("Slot " + i + " does not hold an item");
+			}
+			items[i] = (ItemStack) value;
+		}
+		return items;
+	}
+
+	/**
+	 * Writes a tagged value.
+	 */
+	private static void writeValue(DataOutputStream out, Object value)
+			throws IOException {
+		if (value == null) {
+			out.writeByte(NULL);
+		} else if (value instanceof String) {
+			out.writeByte(STRING);
+			writeString(out, (String) value);
+		} else if (value instanceof Boolean) {
+			out.writeByte(BOOLEAN);
+			out.writeBoolean((Boolean) value);
+		} else if (value instanceof Byte) {
+			out.writeByte(BYTE);
+			out.writeByte((Byte) value);
+		} else if (value instanceof Short) {
+			out.writeByte(SHORT);
+			out.writeShort((Short) value);
+		} else if (value instanceof Integer) {
+			out.writeByte(INT);
+			out.writeInt((Integer) value);
+		} else if (value instanceof Long) {
+			out.writeByte(LONG);
+			out.writeLong((Long) value);
+		} else if (value instanceof Float) {
+			out.writeByte(FLOAT);
+			out.writeFloat((Float) value);
+		} else if (value instanceof Double) {
+			out.writeByte(DOUBLE);
+			out.writeDouble((Double) value);
+		} else if (value instanceof ItemStack) {
+			// the class of a stack may be a server implementation
+			out.writeByte(ITEM);
+			writeMap(out, ((ItemStack) value).serialize());
+		} else if (value instanceof ConfigurationSerializable) {
+			out.writeByte(SERIALIZABLE);
+			writeString(out,
+					ConfigurationSerialization.getAlias(value.getClass()));
+			writeMap(out, ((ConfigurationSerializable) value).serialize());
+		} else if (value instanceof Map) {
+			out.writeByte(MAP);
+			writeMap(out, (Map<?, ?>) value);
+		} else if (value instanceof Collection) {
+			Collection<?> list = (Collection<?>) value;
+			out.writeByte(LIST);
+			out.writeInt(list.size());
+			for (Object element : list) {
+				writeValue(out, element);
+			}
+		} else {
+			throw new IOException("Cannot encode "
+					+ value.getClass().getName());
+		}
+	}
+
+	/**
+	 * Reads a value written by {@link #writeValue}.
+	 */
+	private static Object readValue(DataInputStream in) throws IOException {
+		int tag = in.readUnsignedByte();
+		switch (tag) {
+		case NULL:
+			return null;
+		case STRING:
+			return readString(in);
+		case BOOLEAN:
+			return in.readBoolean();
+		case BYTE:
+			return in.readByte();
+		case SHORT:
+			return in.readShort();
+		case INT:
+			return in.readInt();
+		case LONG:
+			return in.readLong();
+		case FLOAT:
+			return in.readFloat();
+		case DOUBLE:
+			return in.readDouble();
+		case LIST:
+			int size = in.readInt();
+			List<Object> list = new ArrayList<>(Math.min(size, 64));
+			for (int i = 0; i < size; i++) {
+				list.add(readValue(in));
+			}
+			return list;
+		case MAP:
+			return readMap(in);
+		case ITEM:
+			return ItemStack.deserialize(readMap(in));
+		case SERIALIZABLE:
+			String alias = readString(in);
+			Map<String, Object> map = new LinkedHashMap<>();
+			map.put(ConfigurationSerialization.SERIALIZED_TYPE_KEY, alias);
+			map.putAll(readMap(in));
+
+			Object value = ConfigurationSerialization.deserializeObject(map);
+			if (value == null) {
+				throw new IOException("Could not deserialize " + alias);
+			}
+			return value;
+		default:
+			throw new IOException("Unknown value tag " + tag);
+		}
+	}
+
+	/**
+	 * Writes a map of string keys as its size followed by each entry.
+	 */
+	private static void writeMap(DataOutputStream out, Map<?, ?> map)
+			throws IOException {
+		out.writeInt(map.size());
+		for (Map.Entry<?, ?> e : map.entrySet()) {
+			writeString(out, String.valueOf(e.getKey()));
+			writeValue(out, e.getValue());
+		}
+	}
+
+	/**
+	 * Reads a map written by {@link #writeMap}, in its original order.
+	 */
+	private static Map<String, Object> readMap(DataInputStream in)
+			throws IOException {
+		int size = in.readInt();
+		Map<String, Object> map = new LinkedHashMap<>();
+		for (int i = 0; i < size; i++) {
+			String key = readString(in);
+			map.put(key, readValue(in));
+		}
+		return map;
+	}
+
+	/**
+	 * Writes a string as its UTF-8 length and bytes. Unlike
+	 * {@link DataOutputStream#writeUTF(String)}, lore of any length fits.
+	 */
+	private static void writeString(DataOutputStream out, String s)
+			throws IOException {
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	/**
+	 * Reads a string written by {@link #writeString}.
+	 */
+	private static String readString(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if (length < 0 || length > in.available()) {
+			throw new IOException("Invalid string length " + length);
+		}
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
@@ -17,42 +17,99 @@
 package com.valygard.aohruthless.utils.inventory;
 
 import java.io.File;
-import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Map;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import org.bukkit.entity.Player;
-import org.bukkit.inventory.ItemStack;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
 import org.bukkit.plugin.Plugin;
-import org.json.simple.JSONArray;
-
-import com.valygard.aohruthless.utils.config.JsonConfiguration;
 
 /**
  * Inventory manager for a given arena. Handles storage and restoration of
  * inventory to memory and disk locations. All inventories are stored in the
  * inventories folder which is located in the plugin data folder.
+ * <p>
+ * Inventories are encoded by the {@link InventoryCodec} on the main thread,
+ * where they are taken, and appended to an {@link InventoryJournal} in the
+ * background. When the handler is created, the inventories the journal still
+ * holds, those of players in an arena when the server stopped, are given back
+ * as their players join again.
+ * </p>
  * 
  * @author Anand
  * 
  */
-public class InventoryHandler {
+public class InventoryHandler implements Listener {
 
 	private final File dir;
+	private final Logger logger;
+	private final InventoryJournal journal;
+
+	// inventories of players in an arena
+	private final ConcurrentMap<UUID, InventorySnapshot> stored;
 
-	private final Map<String, ItemStack[]> items, armor;
+	// inventories left by the previous run
+	private final ConcurrentMap<UUID, byte[]> recovered;
 
 	public InventoryHandler(Plugin plugin) {
-		this(new File(plugin.getDataFolder(), "inventories"));
+		this(new File(plugin.getDataFolder(), "inventories"), plugin
+				.getLogger());
+		plugin.getServer().getPluginManager().registerEvents(this, plugin);
+
+		// players online through a reload will not join again
+		for (Player p : plugin.getServer().getOnlinePlayers()) {
+			recoverInventory(p);
+		}
 	}
 
 	public InventoryHandler(File dir) {
+		this(dir, Logger.getLogger(InventoryHandler.class.getName()));
+	}
+
+	private InventoryHandler(File dir, Logger logger) {
 		this.dir = dir;
-		this.dir.mkdir();
+		this.dir.mkdirs();
+		this.logger = logger;
 
-		this.items = new HashMap<>();
-		this.armor = new HashMap<>();
+		this.stored = new ConcurrentHashMap<>();
+		this.recovered = new ConcurrentHashMap<>();
+
+		// earlier versions kept items by their names, which cannot be restored
+		File[] files = dir.listFiles();
+		if (files != null) {
+			int unreadable = 0;
+			for (File file : files) {
+				if (file.getName().endsWith(".json")) unreadable++;
+			}
+			if (unreadable > 0) {
+				logger.warning(unreadable + " inventories stored by an earlier "
+						+ "version cannot be restored and were left in " + dir);
+			}
+		}
+
+		InventoryJournal journal = null;
+		try {
+			journal = new InventoryJournal(new File(dir, "journal.dat"), logger);
+			recovered.putAll(journal.getRecovered());
+		}
+		catch (IOException e) {
+			logger.log(Level.SEVERE, "Could not open the inventory journal, "
+					+ "inventories are only kept in memory!", e);
+		}
+		this.journal = journal;
 	}
 
 	/**
@@ -62,65 +119,221 @@ public class InventoryHandler {
 	 * 
 	 * @param p
 	 */
-	@SuppressWarnings("unchecked")
 	public void storeInventory(Player p) {
-		ItemStack[] items = p.getInventory().getContents();
-		ItemStack[] armor = p.getInventory().getArmorContents();
+		InventorySnapshot snapshot = InventorySnapshot.of(p);
+		stored.put(snapshot.getUniqueId(), snapshot);
+		journal(snapshot);
 
-		UUID uuid = p.getUniqueId();
-		String name = p.getName();
+		// And clear the inventory
+		InventoryUtils.clearInventory(p);
+	}
 
-		this.items.put(name, items);
-		this.armor.put(name, armor);
+	/**
+	 * Records a player's inventory in the journal only, for arenas which keep
+	 * their own copy of it in memory. Must be paired with
+	 * {@link #releaseInventory(UUID)} once the inventory is given back.
+	 * 
+	 * @param p
+	 *            the Player
+	 */
+	public void journalInventory(Player p) {
+		journal(InventorySnapshot.of(p));
+	}
 
-		JsonConfiguration json = new JsonConfiguration(dir, uuid.toString());
-		json.writeString("last-known-username", name).writeString("uuid",
-				uuid.toString());
+	/**
+	 * Marks a player's inventory as given back, so it is not restored after a
+	 * crash.
+	 * 
+	 * @param uuid
+	 *            the UUID of the player
+	 */
+	public void releaseInventory(UUID uuid) {
+		recovered.remove(uuid);
+		if (journal != null) journal.clear(uuid);
+	}
 
-		JSONArray contents = new JSONArray();
-		JSONArray armorContents = new JSONArray();
+	/**
+	 * Restore the player's inventory back to them. The inventory is taken
+	 * from memory if it was stored since the server started, or else from the
+	 * inventories left by the previous run.
+	 * 
+	 * @param p
+	 *            the Player
+	 * @return true if an inventory was restored
+	 */
+	public boolean restoreInventory(Player p) {
+		UUID uuid = p.getUniqueId();
 
-		contents.addAll(Arrays.asList(items));
-		armorContents.addAll(Arrays.asList(armor));
-		
-		json.writeArray("items", contents).writeArray("armor", armorContents);
+		// Try to grab the items from memory first
+		InventorySnapshot snapshot = stored.remove(uuid);
 
-		contents.clear();
-		armorContents.clear();
+		// If we can't restore from memory, restore from disk
+		if (snapshot == null) {
+			snapshot = load(uuid);
+		}
+		if (snapshot == null) return false;
 
-		// And clear the inventory
-		InventoryUtils.clearInventory(p);
+		snapshot.restore(p);
+		releaseInventory(uuid);
+		return true;
 	}
 
 	/**
-	 * Restore the player's inventory back to them.
+	 * Gives a player back an inventory left by the previous run, which
+	 * happens when the server stopped while they were in an arena.
+	 * Inventories stored since the server started are left to their arena.
+	 * 
+	 * @param p
+	 *            the Player
+	 * @return true if an inventory was recovered
 	 */
-	public void restoreInventory(Player p) {
+	public boolean recoverInventory(Player p) {
 		UUID uuid = p.getUniqueId();
+		if (stored.containsKey(uuid) || !recovered.containsKey(uuid)) {
+			return false;
+		}
 
-		// Grab disk file
-		File file = new File(dir, uuid.toString());
-		JsonConfiguration json = new JsonConfiguration(dir, uuid.toString());
+		if (restoreInventory(p)) {
+			logger.info("Restored the inventory " + p.getName()
+					+ " had when the server stopped");
+			return true;
+		}
+		return false;
+	}
 
-		// Try to grab the items from memory first
-		ItemStack[] items = this.items.remove(p.getName());
-		ItemStack[] armor = this.armor.remove(p.getName());
+	/**
+	 * Keeps an inventory to give back when its player joins again, for a
+	 * player who left before it could be restored. The inventory stays in the
+	 * journal until then.
+	 * 
+	 * @param snapshot
+	 *            the InventorySnapshot
+	 */
+	public void restoreOnJoin(InventorySnapshot snapshot) {
+		try {
+			recovered.put(snapshot.getUniqueId(),
+					InventoryCodec.encode(snapshot));
+		}
+		catch (IOException e) {
+			logger.log(Level.SEVERE, "Could not encode the inventory of "
+					+ snapshot.getName(), e);
+		}
+	}
+
+	@EventHandler(priority = EventPriority.MONITOR)
+	public void onJoin(PlayerJoinEvent e) {
+		recoverInventory(e.getPlayer());
+	}
+
+	/**
+	 * Checks if an inventory is stored for a player, in memory or left by the
+	 * previous run.
+	 * 
+	 * @param uuid
+	 *            the UUID of the player
+	 * @return true if stored
+	 */
+	public boolean hasInventory(UUID uuid) {
+		return stored.containsKey(uuid) || recovered.containsKey(uuid);
+	}
+
+	/**
+	 * Grabs the players with an inventory left by the previous run, who were
+	 * in an arena when the server stopped.
+	 * 
+	 * @return a new list of UUIDs
+	 */
+	public List<UUID> getStoredPlayers() {
+		return new ArrayList<>(recovered.keySet());
+	}
+
+	/**
+	 * Decodes an inventory left by the previous run.
+	 * 
+	 * @param uuid
+	 *            the UUID of the player
+	 * @return the InventorySnapshot, or null if none is left or it is damaged
+	 */
+	public InventorySnapshot load(UUID uuid) {
+		byte[] record = recovered.get(uuid);
+		if (record == null) return null;
 
-		// If we can't restore from memory, restore from file
-		if (items == null || armor == null) {
-			JSONArray itemsList = (JSONArray) json.getValue("items");
-			JSONArray armorList = (JSONArray) json.getValue("armor");
+		try {
+			return InventoryCodec.decode(record);
+		}
+		catch (IOException e) {
+			logger.log(Level.SEVERE, "Could not read the stored inventory of "
+					+ uuid, e);
+			return null;
+		}
+	}
+
+	/**
+	 * Rewrites the journal with only the inventories still stored. Called
+	 * when an arena ends, after its players got their inventories back.
+	 * 
+	 * @return the queued compaction, or null if there is no journal
+	 */
+	public Future<Void> compact() {
+		return (journal != null ? journal.compact() : null);
+	}
 
-			// Turn the lists into arrays
-			items = (ItemStack[]) itemsList.toArray();
-			armor = (ItemStack[]) armorList.toArray();
+	/**
+	 * Blocks until every inventory stored so far is on disk.
+	 * 
+	 * @param timeout
+	 *            the maximum time to wait
+	 * @param unit
+	 *            the TimeUnit of {@code timeout}
+	 * @return true if all writes finished in time
+	 */
+	public boolean awaitWrites(long timeout, TimeUnit unit) {
+		if (journal == null) return true;
+		try {
+			journal.sync().get(timeout, unit);
+			return true;
 		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+		catch (ExecutionException | TimeoutException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Writes the inventories still queued and closes the journal. Called when
+	 * the plugin is disabled.
+	 */
+	public void close() {
+		if (journal != null) journal.close();
+	}
 
-		// Set the player inventory contents
-		p.getInventory().setContents(items);
-		p.getInventory().setArmorContents(armor);
+	/**
+	 * Grabs the journal inventories are written to.
+	 * 
+	 * @return the InventoryJournal, or null if it could not be opened
+	 */
+	public InventoryJournal getJournal() {
+		return journal;
+	}
 
-		// Delete the file
-		file.delete();
+	/**
+	 * Helper method to append a snapshot to the journal.
+	 * 
+	 * @param snapshot
+	 *            the InventorySnapshot
+	 */
+	private void journal(InventorySnapshot snapshot) {
+		if (journal == null) return;
+		try {
+			journal.store(snapshot.getUniqueId(),
+					InventoryCodec.encode(snapshot));
+		}
+		catch (IOException e) {
+			logger.log(Level.SEVERE, "Could not encode the inventory of "
+					+ snapshot.getName(), e);
+		}
 	}
 }
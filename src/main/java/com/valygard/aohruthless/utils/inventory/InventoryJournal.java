@@ -0,0 +1,587 @@
+/**
+ * InventoryJournal.java is a part of Joystick
+ *
+ * Copyright (c) 2016 Anand Kumar
+ *
+ * Joystick is a free software: You can redistribute it or modify it
+ * under the terms of the GNU General Public License published by the Free
+ * Software Foundation, either version 3 of the license of any later version.
+ * 
+ * Joystick is distributed in the intent of being useful. However, there
+ * is NO WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You can view a copy of the GNU General Public License at 
+ * <http://www.gnu.org/licenses/> if you have not received a copy.
+ */
+package com.valygard.aohruthless.utils.inventory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Append-only journal of the inventories of players in an arena. A player's
+ * inventory is appended when they join and cleared when it is given back, so
+ * the players still in an arena when the server stopped are those stored and
+ * never cleared. Their inventories are read back when the journal is opened.
+ * Every entry is laid out as:
+ * 
+ * <pre>
+ *   0  type          byte, store or clear
+ *   1  uuid          16 bytes, most then least significant bits
+ *  17  record        an {@link InventoryCodec} record, store entries only
+ * </pre>
+ * <p>
+ * Entries are appended by a background committer. Everything queued while
+ * the committer is busy, or within a moment of the first entry of a batch,
+ * is written as one batch and synced once, so a whole arena starting in one
+ * tick costs a sync or two rather than one per player.
+ * Each append returns a Future which completes once its entry is on disk.
+ * </p>
+ * <p>
+ * An entry cut short by a crash is cut off when the journal is opened. A
+ * damaged entry followed by others is skipped by its length, after the
+ * journal was copied aside for recovery; if not even its length can be read,
+ * the journal is not opened at all and left as it is. The journal is
+ * compacted when an arena ends, rewriting it with only the players still
+ * stored.
+ * </p>
+ * 
+ * @author Anand
+ * 
+ */
+public class InventoryJournal implements Closeable {
+
+	// entry types, only store and clear are written
+	private static final int SYNC = 0;
+	private static final int STORE = 1;
+	private static final int CLEAR = 2;
+	private static final int COMPACT = 3;
+
+	// bytes of type and uuid in front of every entry
+	private static final int HEADER = 17;
+
+	// how long a batch stays open for more entries once it has one
+	private static final long GROUP_WINDOW = TimeUnit.MILLISECONDS.toNanos(2);
+
+	private final File file;
+	private final Logger logger;
+
+	// owned by the committer once the journal is open
+	private RandomAccessFile raf;
+	private FileChannel channel;
+	private final Map<UUID, byte[]> live;
+
+	// inventories still stored when the journal was opened
+	private final Map<UUID, byte[]> recovered;
+
+	// entries waiting for the next commit
+	private final Object lock = new Object();
+	private List<Entry> queue;
+	private boolean closed;
+
+	private final Thread committer;
+	private volatile int syncs;
+
+	/**
+	 * Constructor opens the journal, creating it if it does not exist, and
+	 * reads back the inventories still stored in it.
+	 * 
+	 * @param file
+	 *            the journal file
+	 * @param logger
+	 *            the Logger to report problems to
+	 * @throws IOException
+	 *             if the journal could not be opened
+	 */
+	public InventoryJournal(File file, Logger logger) throws IOException {
+		this.file = file;
+		this.logger = logger;
+		if (file.getParentFile() != null) {
+			file.getParentFile().mkdirs();
+		}
+
+		this.live = new HashMap<>();
+		this.queue = new ArrayList<>();
+		open();
+		try {
+			replay();
+		}
+		catch (IOException e) {
+			raf.close();
+			throw e;
+		}
+		this.recovered = Collections.unmodifiableMap(new HashMap<>(live));
+
+		this.committer = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				commitLoop();
+			}
+		}, "Joystick Inventory Journal");
+		committer.setDaemon(true);
+		committer.start();
+	}
+
+	/**
+	 * Grabs the inventories that were still stored when the journal was
+	 * opened, which belong to the players in an arena when the server
+	 * stopped.
+	 * 
+	 * @return an unmodifiable map of {@link InventoryCodec} records by UUID
+	 */
+	public Map<UUID, byte[]> getRecovered() {
+		return recovered;
+	}
+
+	/**
+	 * Appends the inventory of a player, replacing any stored before.
+	 * 
+	 * @param uuid
+	 *            the UUID of the player
+	 * @param record
+	 *            the {@link InventoryCodec} record
+	 * @return a Future completing once the entry is on disk
+	 */
+	public Future<Void> store(UUID uuid, byte[] record) {
+		return enqueue(new Entry(STORE, uuid, record));
+	}
+
+	/**
+	 * Appends the removal of a player's inventory, once it has been given
+	 * back.
+	 * 
+	 * @param uuid
+	 *            the UUID of the player
+	 * @return a Future completing once the entry is on disk
+	 */
+	public Future<Void> clear(UUID uuid) {
+		return enqueue(new Entry(CLEAR, uuid, null));
+	}
+
+	/**
+	 * Rewrites the journal with only the inventories still stored. Entries
+	 * appended before are written first.
+	 * 
+	 * @return a Future completing once the journal is compacted
+	 */
+	public Future<Void> compact() {
+		return enqueue(new Entry(COMPACT, null, null));
+	}
+
+	/**
+	 * Grabs a Future which completes once every entry appended so far is on
+	 * disk.
+	 * 
+	 * @return a Future
+	 */
+	public Future<Void> sync() {
+		return enqueue(new Entry(SYNC, null, null));
+	}
+
+	/**
+	 * Writes the entries still queued and closes the journal. Entries
+	 * appended afterwards fail.
+	 */
+	@Override
+	public void close() {
+		synchronized (lock) {
+			closed = true;
+			lock.notifyAll();
+		}
+		try {
+			committer.join();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Grabs the amount of syncs done since the journal was opened.
+	 * 
+	 * @return an int
+	 */
+	public int getSyncs() {
+		return syncs;
+	}
+
+	/**
+	 * Grabs the journal file.
+	 * 
+	 * @return a File
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Queues an entry for the committer.
+	 */
+	private Future<Void> enqueue(Entry entry) {
+		synchronized (lock) {
+			if (closed) {
+				entry.commit.fail(new IOException("The journal is closed"));
+			} else {
+				queue.add(entry);
+				lock.notifyAll();
+			}
+		}
+		return entry.commit;
+	}
+
+	/**
+	 * Commits batches of queued entries until the journal is closed and
+	 * nothing is left.
+	 */
+	private void commitLoop() {
+		while (true) {
+			List<Entry> batch;
+			synchronized (lock) {
+				while (queue.isEmpty() && !closed) {
+					try {
+						lock.wait();
+					}
+					catch (InterruptedException e) {
+						closed = true;
+					}
+				}
+				if (queue.isEmpty()) break;
+
+				// let the rest of the tick's entries join the batch
+				long deadline = System.nanoTime() + GROUP_WINDOW;
+				long left;
+				while (!closed && (left = deadline - System.nanoTime()) > 0) {
+					try {
+						TimeUnit.NANOSECONDS.timedWait(lock, left);
+					}
+					catch (InterruptedException e) {
+						closed = true;
+					}
+				}
+
+				batch = queue;
+				queue = new ArrayList<>();
+			}
+			commit(batch);
+		}
+
+		try {
+			raf.close();
+		}
+		catch (IOException e) {
+			logger.log(Level.WARNING, "Could not close the inventory journal",
+					e);
+		}
+	}
+
+	/**
+	 * Writes a batch of entries with a single sync. A compaction in the
+	 * batch first syncs the entries before it.
+	 */
+	private void commit(List<Entry> batch) {
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(buffer);
+		List<Commit> waiting = new ArrayList<>(batch.size());
+
+		for (Entry entry : batch) {
+			try {
+				switch (entry.type) {
+				case STORE:
+					writeHeader(out, STORE, entry.uuid);
+					out.write(entry.record);
+					live.put(entry.uuid, entry.record);
+					break;
+				case CLEAR:
+					writeHeader(out, CLEAR, entry.uuid);
+					live.remove(entry.uuid);
+					break;
+				case COMPACT:
+					flush(buffer, waiting);
+					rewrite();
+					break;
+				}
+				waiting.add(entry.commit);
+			}
+			catch (IOException e) {
+				logger.log(Level.SEVERE, "Could not " + describe(entry)
+						+ " the inventory journal", e);
+				entry.commit.fail(e);
+			}
+		}
+		flush(buffer, waiting);
+	}
+
+	/**
+	 * Describes the operation of an entry for the log.
+	 */
+	private static String describe(Entry entry) {
+		switch (entry.type) {
+		case STORE:
+			return "store the inventory of " + entry.uuid + " in";
+		case CLEAR:
+			return "clear the inventory of " + entry.uuid + " from";
+		case COMPACT:
+			return "compact";
+		default:
+			return "sync";
+		}
+	}
+
+	/**
+	 * Appends the buffered entries, syncs and completes the waiting commits.
+	 */
+	private void flush(ByteArrayOutputStream buffer, List<Commit> waiting) {
+		try {
+			if (buffer.size() > 0) {
+				ByteBuffer bytes = ByteBuffer.wrap(buffer.toByteArray());
+				while (bytes.hasRemaining()) {
+					channel.write(bytes);
+				}
+				channel.force(false);
+				syncs++;
+			}
+			for (Commit commit : waiting) {
+				commit.complete();
+			}
+		}
+		catch (IOException e) {
+			logger.log(Level.SEVERE, "Could not write to the inventory journal",
+					e);
+			for (Commit commit : waiting) {
+				commit.fail(e);
+			}
+		}
+		buffer.reset();
+		waiting.clear();
+	}
+
+	/**
+	 * Writes the stored inventories to a new journal, which then replaces
+	 * this one by a rename.
+	 */
+	private void rewrite() throws IOException {
+		File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+		try (RandomAccessFile out = new RandomAccessFile(tmp, "rw")) {
+			out.setLength(0);
+			ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+			DataOutputStream data = new DataOutputStream(buffer);
+			for (Map.Entry<UUID, byte[]> e : live.entrySet()) {
+				writeHeader(data, STORE, e.getKey());
+				data.write(e.getValue());
+			}
+			out.write(buffer.toByteArray());
+			out.getChannel().force(false);
+		}
+
+		raf.close();
+		try {
+			Files.move(tmp.toPath(), file.toPath(),
+					StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch (AtomicMoveNotSupportedException e) {
+			Files.move(tmp.toPath(), file.toPath(),
+					StandardCopyOption.REPLACE_EXISTING);
+		}
+		finally {
+			open();
+		}
+		syncs++;
+	}
+
+	/**
+	 * Opens the journal for appending.
+	 */
+	private void open() throws IOException {
+		this.raf = new RandomAccessFile(file, "rw");
+		this.channel = raf.getChannel();
+		channel.position(channel.size());
+	}
+
+	/**
+	 * Reads every entry to find the inventories still stored. The journal is
+	 * cut off after the last complete entry, and damaged entries before it
+	 * are skipped.
+	 * 
+	 * @throws IOException
+	 *             if the journal could not be read, or an entry before the
+	 *             end is damaged beyond its length
+	 */
+	private void replay() throws IOException {
+		long size = channel.size();
+		if (size > Integer.MAX_VALUE) {
+			throw new IOException("The inventory journal is too large");
+		}
+
+		ByteBuffer bytes = ByteBuffer.allocate((int) size);
+		while (bytes.hasRemaining()) {
+			if (channel.read(bytes, bytes.position()) < 0) break;
+		}
+		byte[] data = bytes.array();
+
+		List<UUID> damaged = new ArrayList<>();
+		int valid = 0;
+		while (valid < data.length) {
+			int length = length(data, valid);
+			if (length < 0) break;
+
+			ByteBuffer entry = ByteBuffer.wrap(data, valid, length);
+			int type = entry.get();
+			UUID uuid = new UUID(entry.getLong(), entry.getLong());
+			if (type == CLEAR) {
+				live.remove(uuid);
+			} else {
+				try {
+					DataInputStream in = new DataInputStream(
+							new ByteArrayInputStream(data, entry.position(),
+									entry.remaining()));
+					live.put(uuid, InventoryCodec.readRecord(in));
+				}
+				catch (IOException e) {
+					// a damaged last entry is one cut short by a crash
+					if (valid + length == data.length) break;
+
+					// an older inventory of the player is no longer theirs
+					live.remove(uuid);
+					damaged.add(uuid);
+				}
+			}
+			valid += length;
+		}
+
+		if (!damaged.isEmpty()) {
+			File copy = new File(file.getParentFile(), file.getName()
+					+ ".damaged");
+			Files.copy(file.toPath(), copy.toPath(),
+					StandardCopyOption.REPLACE_EXISTING);
+			logger.severe("Skipped the damaged inventories of " + damaged
+					+ " in the inventory journal, a copy of it was kept as "
+					+ copy.getName());
+		}
+		if (valid < data.length) {
+			// only the entries being written when the server stopped are lost
+			logger.warning("Discarded " + (data.length - valid)
+					+ " bytes at the end of the inventory journal");
+			channel.truncate(valid);
+			channel.force(false);
+		}
+		channel.position(valid);
+	}
+
+	/**
+	 * Finds the length of the entry at an offset from its header and the
+	 * length prefix of its record.
+	 * 
+	 * @param data
+	 *            the journal
+	 * @param offset
+	 *            the offset of the entry
+	 * @return the length, or -1 if the entry is cut short by the end of the
+	 *         journal
+	 * @throws IOException
+	 *             if the length cannot be read and more than zeros follow
+	 */
+	private int length(byte[] data, int offset) throws IOException {
+		int remaining = data.length - offset;
+		if (remaining < HEADER) return -1;
+
+		int type = data[offset];
+		if (type == CLEAR) return HEADER;
+
+		if (type == STORE) {
+			if (remaining < HEADER + InventoryCodec.HEADER) return -1;
+
+			int length = InventoryCodec.readLength(ByteBuffer.wrap(data, offset
+					+ HEADER, InventoryCodec.HEADER));
+			if (length >= 0) {
+				long total = (long) HEADER + InventoryCodec.HEADER + length;
+				return (total <= remaining ? (int) total : -1);
+			}
+		}
+
+		// space the file system allocated, but the crash left unwritten
+		for (int i = offset; i < data.length; i++) {
+			if (data[i] != 0) {
+				throw new IOException("The inventory journal is damaged at "
+						+ offset + " of " + data.length + " bytes");
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Writes the type and UUID of an entry.
+	 */
+	private static void writeHeader(DataOutputStream out, int type, UUID uuid)
+			throws IOException {
+		out.writeByte(type);
+		out.writeLong(uuid.getMostSignificantBits());
+		out.writeLong(uuid.getLeastSignificantBits());
+	}
+
+	/**
+	 * An entry waiting to be committed.
+	 */
+	private static class Entry {
+
+		private final int type;
+		private final UUID uuid;
+		private final byte[] record;
+		private final Commit commit;
+
+		private Entry(int type, UUID uuid, byte[] record) {
+			this.type = type;
+			this.uuid = uuid;
+			this.record = record;
+			this.commit = new Commit();
+		}
+	}
+
+	/**
+	 * Future of an entry, completed by the committer.
+	 */
+	private static class Commit extends FutureTask<Void> {
+
+		private static final Runnable NONE = new Runnable() {
+
+			@Override
+			public void run() {}
+		};
+
+		private Commit() {
+			super(NONE, null);
+		}
+
+		private void complete() {
+			set(null);
+		}
+
+		private void fail(Throwable t) {
+			setException(t);
+		}
+	}
+}
@@ -0,0 +1,100 @@
+/**
+ * InventorySnapshot.java is a part of Joystick
+ *
+ * Copyright (c) 2016 Anand Kumar
+ *
+ * Joystick is a free software: You can redistribute it or modify it
+ * under the terms of the GNU General Public License published by the Free
+ * Software Foundation, either version 3 of the license of any later version.
+ * 
+ * Joystick is distributed in the intent of being useful. However, there
+ * is NO WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You can view a copy of the GNU General Public License at 
+ * <http://www.gnu.org/licenses/> if you have not received a copy.
+ */
+package com.valygard.aohruthless.utils.inventory;
+
+import java.util.UUID;
+
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+
+/**
+ * The stored inventory of a player: the contents and armor taken when the
+ * player joined an arena, along with who they belong to.
+ * 
+ * @author Anand
+ * 
+ */
+public class InventorySnapshot {
+
+	private final UUID uuid;
+	private final String name;
+
+	private final ItemStack[] items;
+	private final ItemStack[] armor;
+
+	/**
+	 * Constructor initializes a snapshot by its owner and item arrays. The
+	 * arrays are kept as they are, not copied.
+	 * 
+	 * @param uuid
+	 *            the UUID of the player
+	 * @param name
+	 *            the last known name of the player
+	 * @param items
+	 *            the inventory contents
+	 * @param armor
+	 *            the armor contents
+	 */
+	public InventorySnapshot(UUID uuid, String name, ItemStack[] items,
+			ItemStack[] armor) {
+		this.uuid = uuid;
+		this.name = name;
+		this.items = items;
+		this.armor = armor;
+	}
+
+	/**
+	 * Takes a snapshot of a player's current inventory and armor.
+	 * 
+	 * @param p
+	 *            the Player
+	 * @return a new InventorySnapshot
+	 */
+	public static InventorySnapshot of(Player p) {
+		return new InventorySnapshot(p.getUniqueId(), p.getName(), p
+				.getInventory().getContents(), p.getInventory()
+				.getArmorContents());
+	}
+
+	/**
+	 * Gives the stored items back to a player, replacing their inventory and
+	 * armor.
+	 * 
+	 * @param p
+	 *            the Player
+	 */
+	public void restore(Player p) {
+		p.getInventory().setContents(items);
+		p.getInventory().setArmorContents(armor);
+	}
+
+	public UUID getUniqueId() {
+		return uuid;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public ItemStack[] getItems() {
+		return items;
+	}
+
+	public ItemStack[] getArmor() {
+		return armor;
+	}
+}
@@ -16,10 +16,14 @@
  */
 package com.valygard.aohruthless.utils.items;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.regex.Pattern;
 
 import org.bukkit.Bukkit;
 import org.bukkit.DyeColor;
@@ -31,11 +35,44 @@ import org.bukkit.inventory.meta.EnchantmentStorageMeta;
 import com.valygard.aohruthless.utils.StringUtils;
 
 /**
+ * Parses items from config strings and back.
+ * <p>
+ * Item strings are parsed once. The result is kept as a template keyed by the
+ * raw string, and every later parse of the same string returns a clone of
+ * the template. Class and prize configs repeat the same few strings on every
+ * reload, so these never reach the parser again.
+ * </p>
+ * 
  * @author Anand
  * 
  */
 public class ItemParser {
 
+	private static final Pattern MONEY = Pattern
+			.compile("\\$(([1-9]\\d*)|(\\d*.\\d\\d?))");
+	private static final Pattern MONEY_ITEM = Pattern
+			.compile("\\$(([1-9]\\d*)|(\\d*.\\d{2}))");
+	private static final Pattern WORD = Pattern.compile("[\\w[^d]]*");
+	private static final Pattern NUMBER = Pattern.compile("(-)?[0-9]+");
+	private static final Pattern AMOUNT = Pattern.compile("(-)?[1-9][0-9]*");
+
+	// the most item strings kept as templates
+	private static final int MAX_TEMPLATES = 1024;
+
+	// parsed items by raw string, least recently used first
+	private static final Map<String, ItemStack> templates = Collections
+			.synchronizedMap(new LinkedHashMap<String, ItemStack>(64, 0.75F,
+					true) {
+
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(
+						Map.Entry<String, ItemStack> eldest) {
+					return size() > MAX_TEMPLATES;
+				}
+			});
+
 	/**
 	 * Prevent initialization of utility class.
 	 * 
@@ -56,21 +93,15 @@ public class ItemParser {
 	 * @return
 	 */
 	public static String parseString(ItemStack... stacks) {
-		String result = "";
-
-		// Parse each stack
-		for (ItemStack stack : stacks) {
-			if (stack == null || stack.getType() == Material.AIR) continue;
-
-			result += ", " + parseString(stack);
+		StringBuilder builder = new StringBuilder(stacks.length * 16);
+		try {
+			appendItems(builder, stacks);
 		}
-
-		// Trim off the leading ', ' if it is there
-		if (!result.equals("")) {
-			result = result.substring(2);
+		catch (IOException e) {
+			// a StringBuilder does not throw
+			throw new AssertionError(e);
 		}
-
-		return result;
+		return builder.toString();
 	}
 
 	/**
@@ -81,78 +112,150 @@ public class ItemParser {
 	 * @return
 	 */
 	public static String parseString(ItemStack stack) {
-		if (stack.getType() == Material.AIR) return null;
+		StringBuilder builder = new StringBuilder(32);
+		try {
+			if (!appendItem(builder, stack)) return null;
+		}
+		catch (IOException e) {
+			// a StringBuilder does not throw
+			throw new AssertionError(e);
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Appends the string representation of an itemstack collection, as
+	 * {@link #parseString(ItemStack...)} returns it, without building any
+	 * intermediate strings. Null and air stacks are skipped.
+	 * 
+	 * @param out
+	 *            the Appendable to write to
+	 * @param stacks
+	 *            itemstacks to write
+	 * @return the amount of items written
+	 * @throws IOException
+	 *             if the Appendable throws
+	 */
+	public static int appendItems(Appendable out, ItemStack... stacks)
+			throws IOException {
+		int written = 0;
+		for (ItemStack stack : stacks) {
+			if (stack == null || stack.getType() == Material.AIR) continue;
+
+			if (written++ > 0) out.append(", ");
+			appendItem(out, stack);
+		}
+		return written;
+	}
+
+	/**
+	 * Appends the string representation of a single itemstack, as
+	 * {@link #parseString(ItemStack)} returns it, without building any
+	 * intermediate strings.
+	 * 
+	 * @param out
+	 *            the Appendable to write to
+	 * @param stack
+	 *            the ItemStack to write
+	 * @return false if the stack is null or air, and nothing was written
+	 * @throws IOException
+	 *             if the Appendable throws
+	 */
+	public static boolean appendItem(Appendable out, ItemStack stack)
+			throws IOException {
+		if (stack == null || stack.getType() == Material.AIR) return false;
 
-		// <item> part
-		String type = stack.getType().toString().toLowerCase();
+		Material type = stack.getType();
 
 		// <data> part
 		short durability = stack.getDurability();
 		short data = (durability > 0 ? durability : 0);
 
 		// potion related
-		String effect = "";
+		String effect = null;
 
 		// Take wool into account
-		if (stack.getType() == Material.WOOL) {
+		if (type == Material.WOOL) {
 			data = (byte) (15 - data);
 		}
 
 		// Take potions into account
 		else if (PotionUtils.isPotion(stack)) {
 			effect = PotionUtils.getHandle(stack);
+			if (effect != null && effect.isEmpty()) effect = null;
 		}
 
 		// <amount> part
 		int amount = stack.getAmount();
 
+		// <item>
+		appendLowerCase(out, type.name());
+
+		// <item>(:<data>) or item(:<effect>)
+		if (effect != null) {
+			out.append(':').append(effect);
+		} else if (data != 0) {
+			out.append(':');
+			appendInt(out, data);
+		}
+
+		// <item>(:<effect>|<data>):<amount> - force if data or potion
+		if (amount > 1 || data != 0 || effect != null) {
+			out.append(':');
+			appendInt(out, amount);
+		}
+
 		// Enchantments
 		Map<Enchantment, Integer> enchants = null;
-		if (stack.getType() == Material.ENCHANTED_BOOK) {
+		if (type == Material.ENCHANTED_BOOK) {
 			EnchantmentStorageMeta esm = (EnchantmentStorageMeta) stack
 					.getItemMeta();
 			enchants = esm.getStoredEnchants();
 		} else {
 			enchants = stack.getEnchantments();
 		}
-		String enchantments = "";
-		for (Entry<Enchantment, Integer> entry : enchants.entrySet()) {
-			String name = entry.getKey().getName();
-			int lvl = entry.getValue();
 
-			// <e>:<level>;
-			enchantments += ";" + name + ":" + lvl;
+		/*
+		 * <item>((:<effect>:<data>):<amount>) (<eid>:<level>(;<eid>:<level>(;
+		 * ... )))
+		 */
+		char separator = ' ';
+		for (Entry<Enchantment, Integer> entry : enchants.entrySet()) {
+			out.append(separator).append(entry.getKey().getName()).append(':');
+			appendInt(out, entry.getValue());
+			separator = ';';
 		}
+		return true;
+	}
 
-		// Trim off the leading ';' if it is there
-		if (!enchantments.equals("")) {
-			enchantments = enchantments.substring(1);
+	/**
+	 * Appends the lowercase form of an enum name.
+	 */
+	private static void appendLowerCase(Appendable out, String name)
+			throws IOException {
+		for (int i = 0; i < name.length(); i++) {
+			char c = name.charAt(i);
+			out.append(c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c);
 		}
+	}
 
-		// <item>
-		String result = type;
-
-		// <item>(:<data>) or item(:<effect>)
-		if (!effect.isEmpty()) {
-			result += ":" + effect;
-		} else if (data != 0) {
-			result += ":" + data;
+	/**
+	 * Appends the decimal digits of an integer.
+	 */
+	private static void appendInt(Appendable out, int n) throws IOException {
+		long value = n;
+		if (value < 0) {
+			out.append('-');
+			value = -value;
 		}
 
-		// <item>(:<effect>|<data>):<amount> - force if data or potion
-		if (amount > 1 || (data != 0 || !effect.isEmpty())) {
-			result += ":" + amount;
+		long divisor = 1;
+		while (divisor * 10 <= value) {
+			divisor *= 10;
 		}
-
-		/*
-		 * <item>((:<effect>:<data>):<amount>) (<eid>:<level>(;<eid>:<level>(;
-		 * ... )))
-		 */
-		if (!enchantments.equals("")) {
-			result += " " + enchantments;
+		for (; divisor > 0; divisor /= 10) {
+			out.append((char) ('0' + value / divisor % 10));
 		}
-
-		return result;
 	}
 
 	/**
@@ -189,7 +292,7 @@ public class ItemParser {
 	 * @return
 	 */
 	public static double parseMoney(String money) {
-		if (!money.matches("\\$(([1-9]\\d*)|(\\d*.\\d\\d?))")) {
+		if (!MONEY.matcher(money).matches()) {
 			return 0.00;
 		}
 		return Double.valueOf(money.substring(1));
@@ -198,6 +301,10 @@ public class ItemParser {
 	/**
 	 * Parse a single itemstack from a string. Uses various helper methods to
 	 * determine amount, enchantments, damage values
+	 * <p>
+	 * Every call returns a new ItemStack, which the caller is free to modify.
+	 * Strings parsed before are cloned from their template.
+	 * </p>
 	 * 
 	 * @param item
 	 *            the String to read.
@@ -206,6 +313,33 @@ public class ItemParser {
 	public static ItemStack parseItem(String item) {
 		if (item == null || item.equals("")) return null;
 
+		ItemStack template = templates.get(item);
+		if (template == null) {
+			template = compile(item);
+			if (template == null) return null;
+
+			templates.put(item, template);
+		}
+		return template.clone();
+	}
+
+	/**
+	 * Removes all item templates. Templates never go stale, so this only frees
+	 * their memory.
+	 */
+	public static void clearTemplates() {
+		templates.clear();
+	}
+
+	/**
+	 * Parses an item string into a new template.
+	 * 
+	 * @param item
+	 *            the String to read
+	 * @return the ItemStack, null if the string is not an item
+	 */
+	private static ItemStack compile(String item) {
+
 		// Check if the item has enchantments.
 		String[] space = item.split(" ");
 		String[] parts = (space.length == 2 ? space[0].split(":") : item
@@ -244,7 +378,7 @@ public class ItemParser {
 	 */
 	@SuppressWarnings("deprecation")
 	private static ItemStack singleItem(String item) {
-		if (item.matches("\\$(([1-9]\\d*)|(\\d*.\\d{2}))")) {
+		if (MONEY_ITEM.matcher(item).matches()) {
 			double amount = Double.parseDouble(item.substring(1));
 
 			int major = (int) amount;
@@ -297,7 +431,7 @@ public class ItemParser {
 	 * @return
 	 */
 	private static Material getType(String item) {
-		if (!item.matches("[\\w[^d]]*")) {
+		if (!WORD.matcher(item).matches()) {
 			Bukkit.getLogger().warning("Material Type must be a string!");
 			return null;
 		}
@@ -321,7 +455,7 @@ public class ItemParser {
 				dye = DyeColor.getByWoolData(Byte.parseByte(data));
 			return dye.getWoolData();
 		}
-		return (data.matches("(-)?[0-9]+") ? Short.parseShort(data)
+		return (NUMBER.matcher(data).matches() ? Short.parseShort(data)
 				: (PotionUtils.isPotion(name) ? Short.MIN_VALUE : 0));
 	}
 
@@ -332,7 +466,7 @@ public class ItemParser {
 	 * @return
 	 */
 	private static int getAmount(String amount) {
-		if (amount.matches("(-)?[1-9][0-9]*")) {
+		if (AMOUNT.matcher(amount).matches()) {
 			return Integer.parseInt(amount);
 		}
 
@@ -364,8 +498,8 @@ public class ItemParser {
 	private static void addEnchantment(ItemStack stack, String ench) {
 		String[] parts = ench.split(":");
 		if (parts.length != 2
-				|| !(parts[0].matches("[\\w[^d]]*") && parts[1]
-						.matches("[\\w[^d]]*"))) {
+				|| !(WORD.matcher(parts[0]).matches() && WORD.matcher(
+						parts[1]).matches())) {
 			return;
 		}
 
@@ -18,7 +18,10 @@ package com.valygard.aohruthless.utils.items;
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.bukkit.Bukkit;
 import org.bukkit.potion.PotionData;
@@ -29,6 +32,11 @@ import org.bukkit.potion.PotionType;
  * unique in its type, its level and its duration. Used for reading config
  * files, which is designed to be "kind" towards different user input for potion
  * building.
+ * <p>
+ * Both lookups are indexed once, when the enum is loaded: identifiers in a
+ * hash map, and potion data by type and then by its extended and upgraded
+ * flags.
+ * </p>
  * 
  * @author Anand
  * 
@@ -78,6 +86,29 @@ public enum PotionAdapter {
 	STRONG_REGEN(PotionType.REGEN, false, true, "strong-regeneration", "strong-regen"),
 	STRONG_STRENGTH(PotionType.STRENGTH, false, true, "strong-strength", "strong-str");
 
+	// adapters by identifier
+	private static final Map<String, PotionAdapter> BY_HANDLE = new HashMap<>();
+
+	// adapters by type, then by extended (1) and upgraded (2) flags
+	private static final Map<PotionType, PotionAdapter[]> BY_DATA = new EnumMap<>(
+			PotionType.class);
+
+	static {
+		for (PotionAdapter pm : values()) {
+			for (String handle : pm.handles) {
+				if (!BY_HANDLE.containsKey(handle)) BY_HANDLE.put(handle, pm);
+			}
+
+			PotionAdapter[] variants = BY_DATA.get(pm.type);
+			if (variants == null) {
+				variants = new PotionAdapter[4];
+				BY_DATA.put(pm.type, variants);
+			}
+			int flags = flags(pm.extended, pm.upgraded);
+			if (variants[flags] == null) variants[flags] = pm;
+		}
+	}
+
 	// attributes
 	private PotionType type;
 	private boolean extended, upgraded;
@@ -155,20 +186,20 @@ public enum PotionAdapter {
 	}
 
 	/**
-	 * Grabs a PotionAdapter enumeration from a given PotionData. Iterates
-	 * through all values to determine if {@code type}, {@code extended} and
-	 * {@code upgraded} are all equivalent and returns the corresponding
-	 * Potionmatcher value.
+	 * Grabs a PotionAdapter enumeration from a given PotionData. Looks up the
+	 * value whose {@code type}, {@code extended} and {@code upgraded} are all
+	 * equivalent and returns the corresponding Potionmatcher value.
 	 * 
 	 * @param data
 	 *            the PotionData to analyze.
 	 * @return a PotionAdapter value.
 	 */
 	public static PotionAdapter matchData(PotionData data) {
-		for (PotionAdapter pm : PotionAdapter.values()) {
-			if (pm.getType() == data.getType()
-					&& pm.isExtended() == data.isExtended()
-					&& pm.isUpgraded() == data.isUpgraded()) return pm;
+		PotionAdapter[] variants = BY_DATA.get(data.getType());
+		if (variants != null) {
+			PotionAdapter pm = variants[flags(data.isExtended(),
+					data.isUpgraded())];
+			if (pm != null) return pm;
 		}
 		// error here would mean there is missing PotionData values
 		Bukkit.getLogger().config("Invalid Potion value ... ");
@@ -176,25 +207,32 @@ public enum PotionAdapter {
 	}
 
 	/**
-	 * Grabs a PotionAdapter value from a String identifier. Iterates through
-	 * all values to determine if the given {@code handle} is a valid
-	 * identifier. If not, a Water Bottle is created in its place.
+	 * Grabs a PotionAdapter value from a String identifier. Looks up the value
+	 * for which the given {@code handle} is a valid identifier, ignoring case
+	 * and treating underscores as dashes. If there is none, a Water Bottle is
+	 * created in its place.
 	 * 
 	 * @param handle
 	 *            the String identifier to parse
 	 * @return a PotionAdapter value
 	 */
 	public static PotionAdapter matchHandle(String handle) {
-		for (PotionAdapter pm : PotionAdapter.values()) {
-			if (pm.getIdentifiers().contains(
-					handle.toLowerCase().replace("_", "-"))) return pm;
-		}
+		PotionAdapter pm = BY_HANDLE.get(handle.toLowerCase().replace("_", "-"));
+		if (pm != null) return pm;
+
 		Bukkit.getLogger().warning(
 				handle + " could not be parsed as a potion!"
 						+ " Water Bottle created ...");
 		return WATER;
 	}
 
+	/**
+	 * Packs the extended and upgraded flags into an index.
+	 */
+	private static int flags(boolean extended, boolean upgraded) {
+		return (extended ? 1 : 0) | (upgraded ? 2 : 0);
+	}
+
 	/**
 	 * Builds a new PotionData object from {@code type}, {@code extended} and
 	 * {@code upgraded}
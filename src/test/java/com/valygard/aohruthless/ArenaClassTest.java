@@ -0,0 +1,119 @@
+/**
+ * ArenaClassTest.java is a part of Joystick
+ *
+ * Copyright (c) 2016 Anand Kumar
+ *
+ * Joystick is a free software: You can redistribute it or modify it
+ * under the terms of the GNU General Public License published by the Free
+ * Software Foundation, either version 3 of the license of any later version.
+ * 
+ * Joystick is distributed in the intent of being useful. However, there
+ * is NO WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You can view a copy of the GNU General Public License at 
+ * <http://www.gnu.org/licenses/> if you have not received a copy.
+ */
+package com.valygard.aohruthless;
+
+import java.util.Arrays;
+
+import org.bukkit.Material;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.PlayerInventory;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import com.valygard.aohruthless.ArenaClass.ArmorType;
+
+/**
+ * @author Anand
+ * 
+ */
+public class ArenaClassTest {
+
+	private ArenaClass arenaClass;
+
+	@Before
+	public void setUp() {
+		arenaClass = new ArenaClass("Archer", true, true);
+		arenaClass.setItems(Arrays.asList(new ItemStack(Material.BOW),
+				new ItemStack(Material.ARROW, 40), new ItemStack(
+						Material.BREAD, 3), new ItemStack(Material.ARROW, 40)));
+		arenaClass.setArmor(Arrays.asList(new ItemStack(
+				Material.LEATHER_BOOTS), new ItemStack(
+				Material.LEATHER_CHESTPLATE), new ItemStack(Material.STONE)));
+		arenaClass.setHelmet(new ItemStack(Material.WOOL, 1, (short) 14));
+	}
+
+	private static Player player(ItemStack[] contents) {
+		PlayerInventory inv = Mockito.mock(PlayerInventory.class);
+		Mockito.when(inv.getContents()).thenReturn(contents);
+		Mockito.when(inv.getArmorContents()).thenReturn(new ItemStack[4]);
+
+		Player player = Mockito.mock(Player.class);
+		Mockito.when(player.getInventory()).thenReturn(inv);
+		return player;
+	}
+
+	@Test
+	public void testLoadoutIsWrittenAtOnce() {
+		Player player = player(new ItemStack[36]);
+		arenaClass.giveItems(player);
+
+		PlayerInventory inv = player.getInventory();
+		ArgumentCaptor<ItemStack[]> contents = ArgumentCaptor
+				.forClass(ItemStack[].class);
+		ArgumentCaptor<ItemStack[]> armor = ArgumentCaptor
+				.forClass(ItemStack[].class);
+		Mockito.verify(inv).setContents(contents.capture());
+		Mockito.verify(inv).setArmorContents(armor.capture());
+		Mockito.verify(inv, Mockito.never()).addItem(
+				Mockito.<ItemStack> anyVararg());
+
+		// the second stack of arrows tops up the first, as addItem would
+		ItemStack[] slots = contents.getValue();
+		Assert.assertEquals(Material.BOW, slots[0].getType());
+		Assert.assertEquals(new ItemStack(Material.ARROW, 64), slots[1]);
+		Assert.assertEquals(new ItemStack(Material.BREAD, 3), slots[2]);
+		Assert.assertEquals(new ItemStack(Material.ARROW, 16), slots[3]);
+		Assert.assertNull(slots[4]);
+
+		ItemStack[] worn = armor.getValue();
+		Assert.assertEquals(Material.LEATHER_BOOTS, worn[0].getType());
+		Assert.assertNull(worn[1]);
+		Assert.assertEquals(Material.LEATHER_CHESTPLATE, worn[2].getType());
+		Assert.assertEquals(Material.WOOL, worn[3].getType());
+	}
+
+	@Test
+	public void testItemsAreAddedAroundExistingContents() {
+		ItemStack[] contents = new ItemStack[36];
+		contents[4] = new ItemStack(Material.COMPASS);
+		Player player = player(contents);
+		arenaClass.giveItems(player);
+
+		PlayerInventory inv = player.getInventory();
+		Mockito.verify(inv, Mockito.never()).setContents(
+				Mockito.any(ItemStack[].class));
+		Mockito.verify(inv, Mockito.times(4)).addItem(
+				Mockito.<ItemStack> anyVararg());
+		Mockito.verify(inv).setHelmet(new ItemStack(Material.WOOL, 1,
+				(short) 14));
+	}
+
+	@Test
+	public void testArmorTypeLookup() {
+		Assert.assertEquals(ArmorType.HELMET,
+				ArmorType.getType(new ItemStack(Material.GOLD_HELMET)));
+		Assert.assertEquals(ArmorType.BOOTS,
+				ArmorType.getType(new ItemStack(Material.CHAINMAIL_BOOTS)));
+		Assert.assertNull(ArmorType.getType(new ItemStack(Material.WOOL)));
+		Assert.assertEquals(3, ArmorType.HELMET.getSlot());
+		Assert.assertEquals(0, ArmorType.BOOTS.getSlot());
+	}
+}
@@ -0,0 +1,79 @@
+/**
+ * ArenaRegistryTest.java is a part of Joystick
+ *
+ * Copyright (c) 2016 Anand Kumar
+ *
+ * Joystick is a free software: You can redistribute it or modify it
+ * under the terms of the GNU General Public License published by the Free
+ * Software Foundation, either version 3 of the license of any later version.
+ * 
+ * Joystick is distributed in the intent of being useful. However, there
+ * is NO WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You can view a copy of the GNU General Public License at 
+ * <http://www.gnu.org/licenses/> if you have not received a copy.
+ */
+package com.valygard.aohruthless;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.valygard.aohruthless.framework.Arena;
+import com.valygard.aohruthless.framework.ArenaRegistry;
+
+/**
+ * @author Anand
+ * 
+ */
+public class ArenaRegistryTest {
+
+	@Test
+	public void testCaseInsensitiveLookup() {
+		ArenaRegistry registry = new ArenaRegistry();
+		Arena arena = mockArena("KotH_Castle");
+		registry.register(arena);
+
+		Assert.assertTrue(registry.get("koth_castle") == arena);
+		Assert.assertTrue(registry.get("KOTH_CASTLE") == arena);
+		Assert.assertTrue(registry.contains("KotH_castle"));
+		Assert.assertNull(registry.get("koth"));
+	}
+
+	@Test
+	public void testInsertionOrder() {
+		ArenaRegistry registry = new ArenaRegistry();
+		Arena first = mockArena("Zeta");
+		Arena second = mockArena("alpha");
+		Arena third = mockArena("Mu");
+		registry.register(first);
+		registry.register(second);
+		registry.register(third);
+
+		List<Arena> list = registry.asList();
+		Assert.assertTrue(list.get(0) == first);
+		Assert.assertTrue(list.get(1) == second);
+		Assert.assertTrue(list.get(2) == third);
+		Assert.assertTrue(registry.first() == first);
+	}
+
+	@Test
+	public void testUnregister() {
+		ArenaRegistry registry = new ArenaRegistry();
+		Arena arena = mockArena("Castle");
+		registry.register(arena);
+
+		Assert.assertFalse(registry.unregister(mockArena("castle")));
+		Assert.assertTrue(registry.unregister(arena));
+		Assert.assertTrue(registry.isEmpty());
+	}
+
+	private static Arena mockArena(String name) {
+		Arena arena = Mockito.mock(Arena.class);
+		Mockito.when(arena.getName()).thenReturn(name);
+		return arena;
+	}
+}
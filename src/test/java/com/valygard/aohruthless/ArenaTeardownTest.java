@@ -0,0 +1,172 @@
+/**
+ * ArenaTeardownTest.java is a part of Joystick
+ *
+ * Copyright (c) 2016 Anand Kumar
+ *
+ * Joystick is a free software: You can redistribute it or modify it
+ * under the terms of the GNU General Public License published by the Free
+ * Software Foundation, either version 3 of the license of any later version.
+ * 
+ * Joystick is distributed in the intent of being useful. However, there
+ * is NO WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You can view a copy of the GNU General Public License at 
+ * <http://www.gnu.org/licenses/> if you have not received a copy.
+ */
+package com.valygard.aohruthless;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+import org.bukkit.Server;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.bukkit.scheduler.BukkitTask;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.valygard.aohruthless.framework.Arena;
+import com.valygard.aohruthless.framework.ArenaTeardown;
+import com.valygard.aohruthless.timer.WorkScheduler;
+
+/**
+ * @author Anand
+ * 
+ */
+public class ArenaTeardownTest {
+
+	// players in the arena when it ends
+	private static final int PLAYERS = 3;
+
+	private WorkScheduler scheduler;
+	private Arena arena;
+	private UUID[] players;
+	private List<UUID> restored;
+
+	@Before
+	public void setUp() {
+		YamlConfiguration config = new YamlConfiguration();
+		config.set("global.work-tick-budget", 0);
+
+		BukkitScheduler bukkit = Mockito.mock(BukkitScheduler.class);
+		Mockito.when(
+				bukkit.runTaskTimer(Mockito.any(Plugin.class),
+						Mockito.any(Runnable.class), Mockito.anyLong(),
+						Mockito.anyLong())).thenReturn(
+				Mockito.mock(BukkitTask.class));
+
+		Server server = Mockito.mock(Server.class);
+		Mockito.when(server.getScheduler()).thenReturn(bukkit);
+
+		Plugin plugin = Mockito.mock(Plugin.class);
+		Mockito.when(plugin.getConfig()).thenReturn(config);
+		Mockito.when(plugin.getServer()).thenReturn(server);
+		Mockito.when(plugin.getLogger()).thenReturn(
+				Logger.getLogger("ArenaTeardownTest"));
+
+		scheduler = new WorkScheduler(plugin);
+
+		arena = Mockito.mock(Arena.class);
+		Mockito.when(arena.getName()).thenReturn("arena");
+
+		players = new UUID[PLAYERS];
+		for (int i = 0; i < PLAYERS; i++) {
+			players[i] = UUID.randomUUID();
+		}
+		restored = new ArrayList<>();
+	}
+
+	/**
+	 * Creates a teardown whose arena queues the restore of every player as it
+	 * ends, as an ArenaTemplate does through restoreData.
+	 */
+	private ArenaTeardown teardown(WorkScheduler scheduler) {
+		final ArenaTeardown teardown = new ArenaTeardown(arena, scheduler);
+		Mockito.doAnswer(new Answer<Void>() {
+
+			@Override
+			public Void answer(InvocationOnMock invocation) {
+				for (final UUID uuid : players) {
+					teardown.defer(uuid, new Runnable() {
+
+						@Override
+						public void run() {
+							restored.add(uuid);
+						}
+					});
+				}
+				return null;
+			}
+		}).when(arena).forceEnd();
+		return teardown;
+	}
+
+	@Test
+	public void testRestoresAreSpreadAcrossTicks() throws Exception {
+		final List<Arena> done = new ArrayList<>();
+		ArenaTeardown teardown = teardown(scheduler);
+		teardown.whenDone(new Runnable() {
+
+			@Override
+			public void run() {
+				done.add(arena);
+			}
+		});
+
+		teardown.start();
+		Mockito.verify(arena).forceEnd();
+		Assert.assertTrue(restored.isEmpty());
+		Assert.assertEquals(PLAYERS, teardown.getPending());
+		Assert.assertEquals(PLAYERS, scheduler.getQueueDepth("arena"));
+
+		// no budget, so one player per tick
+		scheduler.tick();
+		Assert.assertEquals(Arrays.asList(players[0]), restored);
+		Assert.assertFalse(teardown.isDone());
+
+		scheduler.tick();
+		scheduler.tick();
+		Assert.assertEquals(Arrays.asList(players), restored);
+		Assert.assertEquals(0, teardown.getPending());
+		Assert.assertTrue(teardown.isDone());
+		Assert.assertSame(arena, teardown.get());
+		Assert.assertEquals(Arrays.asList(arena), done);
+		Assert.assertFalse(teardown.cancel(true));
+	}
+
+	@Test
+	public void testQueuedPlayerIsRestoredNow() {
+		ArenaTeardown teardown = teardown(scheduler);
+		teardown.start();
+
+		// the last player joins another arena before their turn
+		Assert.assertTrue(teardown.restoreNow(players[2]));
+		Assert.assertFalse(teardown.restoreNow(players[2]));
+		Assert.assertEquals(Arrays.asList(players[2]), restored);
+		Assert.assertEquals(PLAYERS - 1, scheduler.getQueueDepth("arena"));
+
+		scheduler.tick();
+		scheduler.tick();
+		Assert.assertEquals(Arrays.asList(players[2], players[0], players[1]),
+				restored);
+		Assert.assertTrue(teardown.isDone());
+	}
+
+	@Test
+	public void testWithoutSchedulerEverythingRunsAtOnce() {
+		ArenaTeardown teardown = teardown(null);
+		teardown.start();
+
+		Assert.assertEquals(Arrays.asList(players), restored);
+		Assert.assertTrue(teardown.isDone());
+	}
+}
@@ -0,0 +1,250 @@
+/**
+ * CommandHandlerTest.java is a part of Joystick
+ *
+ * Copyright (c) 2016 Anand Kumar
+ *
+ * Joystick is a free software: You can redistribute it or modify it
+ * under the terms of the GNU General Public License published by the Free
+ * Software Foundation, either version 3 of the license of any later version.
+ * 
+ * Joystick is distributed in the intent of being useful. However, there
+ * is NO WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You can view a copy of the GNU General Public License at 
+ * <http://www.gnu.org/licenses/> if you have not received a copy.
+ */
+package com.valygard.aohruthless;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map.Entry;
+
+import org.bukkit.Server;
+import org.bukkit.command.CommandSender;
+import org.bukkit.command.ConsoleCommandSender;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.PluginManager;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.valygard.aohruthless.command.Command;
+import com.valygard.aohruthless.command.CommandHandler;
+import com.valygard.aohruthless.command.CommandInfo;
+import com.valygard.aohruthless.command.CommandPermission;
+import com.valygard.aohruthless.command.CommandUsage;
+import com.valygard.aohruthless.player.OnlinePlayerIndex;
+import com.valygard.aohruthless.utils.PrefixIndex;
+
+/**
+ * @author Anand
+ * 
+ */
+public class CommandHandlerTest {
+
+	private static final List<String> ARGS = Arrays.asList("create", "NEW",
+			"Join", "j", "kick", "KICKALL", "stats", "statistics", "stat",
+			"leave", "", "crea", "spectate", "spec", "\u212Aick");
+
+	@CommandInfo(name = "create", desc = "create an arena",
+			syntax = "(create|new)")
+	@CommandPermission("joystick.create")
+	@CommandUsage("/js create <arena>")
+	public static class CreateCommand extends TestCommand {
+	}
+
+	@CommandInfo(name = "join", desc = "join an arena", syntax = "join|j")
+	@CommandPermission("joystick.join")
+	@CommandUsage("/js join <arena>")
+	public static class JoinCommand extends TestCommand {
+	}
+
+	@CommandInfo(name = "kick", desc = "kick a player", syntax = "kick")
+	@CommandPermission("joystick.kick")
+	@CommandUsage("/js kick <player>")
+	public static class KickCommand extends TestCommand {
+	}
+
+	@CommandInfo(name = "kickall", desc = "kick everyone", syntax = "k.*")
+	@CommandPermission("joystick.kickall")
+	@CommandUsage("/js kickall <arena>")
+	public static class KickAllCommand extends TestCommand {
+	}
+
+	@CommandInfo(name = "stats", desc = "view stats",
+			syntax = "stat(s|istics)?")
+	@CommandPermission("joystick.stats")
+	@CommandUsage("/js stats")
+	public static class StatsCommand extends TestCommand {
+	}
+
+	@CommandInfo(name = "spectate", desc = "spectate an arena",
+			syntax = "spec(tate)?|(kick)")
+	@CommandPermission("joystick.spectate")
+	@CommandUsage("/js spectate <arena>")
+	public static class SpectateCommand extends TestCommand {
+	}
+
+	@CommandInfo(name = "help", desc = "reserved", syntax = "help")
+	@CommandPermission("joystick.help")
+	@CommandUsage("/js help")
+	public static class ReservedCommand extends TestCommand {
+	}
+
+	public static class TestCommand implements Command {
+
+		@Override
+		public boolean execute(CommandSender sender, String[] args) {
+			return true;
+		}
+	}
+
+	private static class TestHandler extends CommandHandler {
+
+		private TestHandler() {
+			super(null, "js");
+		}
+
+		@Override
+		protected boolean execute(Command cmd, CommandSender sender,
+				String[] params) {
+			return cmd.execute(sender, params);
+		}
+
+		@Override
+		public void registerCommands() {
+			register(CreateCommand.class);
+			register(JoinCommand.class);
+			register(KickAllCommand.class);
+			register(KickCommand.class);
+			register(StatsCommand.class);
+			register(SpectateCommand.class);
+			register(ReservedCommand.class);
+		}
+
+		@Override
+		public List<Command> getMatchingCommands(String arg) {
+			return super.getMatchingCommands(arg);
+		}
+
+		@Override
+		public void addCompletions(String placeholder, PrefixIndex index) {
+			super.addCompletions(placeholder, index);
+		}
+
+		/**
+		 * The lookup CommandHandler used before syntaxes were compiled.
+		 */
+		private List<Command> scan(String arg) {
+			List<Command> result = new ArrayList<Command>();
+			for (Entry<String, Command> entry : commands.entrySet()) {
+				if (arg.matches("(?i)" + entry.getKey())) {
+					result.add(entry.getValue());
+				}
+			}
+			return result;
+		}
+	}
+
+	@Test
+	public void testDispatchMatchesRegexPath() {
+		TestHandler handler = new TestHandler();
+		for (String arg : ARGS) {
+			Assert.assertEquals(arg, handler.scan(arg),
+					handler.getMatchingCommands(arg));
+		}
+	}
+
+	@Test
+	public void testRegistrationOrder() {
+		TestHandler handler = new TestHandler();
+		List<Command> kick = handler.getMatchingCommands("KICK");
+		Assert.assertEquals(3, kick.size());
+		Assert.assertTrue(kick.get(0) instanceof KickAllCommand);
+		Assert.assertTrue(kick.get(1) instanceof KickCommand);
+		Assert.assertTrue(kick.get(2) instanceof SpectateCommand);
+
+		// reserved syntaxes are refused
+		Assert.assertTrue(handler.getMatchingCommands("help").isEmpty());
+	}
+
+	@Test
+	public void testTabCompletion() {
+		TestHandler handler = new TestHandler();
+		PrefixIndex arenas = new PrefixIndex();
+		arenas.add("Castle");
+		arenas.add("catacombs");
+		arenas.add("Desert");
+		handler.addCompletions("ARENA", arenas);
+
+		CommandSender console = Mockito.mock(ConsoleCommandSender.class);
+		Assert.assertEquals(Arrays.asList("kick", "kickall"),
+				complete(handler, console, "K"));
+		Assert.assertEquals(Arrays.asList("Castle", "catacombs"),
+				complete(handler, console, "join", "ca"));
+		Assert.assertTrue(complete(handler, console, "join", "castle", "")
+				.isEmpty());
+
+		// names added later are completed too
+		arenas.add("Canyon");
+		Assert.assertEquals(Arrays.asList("Canyon", "Castle", "catacombs"),
+				complete(handler, console, "j", "CA"));
+
+		// subcommands are only offered with permission
+		Player player = Mockito.mock(Player.class);
+		Mockito.when(player.hasPermission("joystick.join")).thenReturn(true);
+		Assert.assertEquals(Arrays.asList("j", "join"),
+				complete(handler, player, ""));
+		Assert.assertTrue(complete(handler, player, "kick", "").isEmpty());
+	}
+
+	@Test
+	public void testHiddenPlayersAreNotCompleted() {
+		Player steve = player("Steve");
+		Player stan = player("Stan");
+
+		Server server = Mockito.mock(Server.class);
+		Mockito.doReturn(Arrays.asList(steve, stan)).when(server)
+				.getOnlinePlayers();
+		Mockito.when(server.getPluginManager()).thenReturn(
+				Mockito.mock(PluginManager.class));
+
+		Plugin plugin = Mockito.mock(Plugin.class);
+		Mockito.when(plugin.getServer()).thenReturn(server);
+
+		OnlinePlayerIndex index = new OnlinePlayerIndex(plugin);
+		TestHandler handler = new TestHandler();
+		handler.addCompletions("player", index);
+
+		// stan has vanished for the kicking player, but not for the console
+		Player kicker = Mockito.mock(Player.class);
+		Mockito.when(kicker.hasPermission("joystick.kick")).thenReturn(true);
+		Mockito.when(kicker.canSee(steve)).thenReturn(true);
+		Assert.assertEquals(Arrays.asList("Steve"),
+				complete(handler, kicker, "kick", "st"));
+
+		CommandSender console = Mockito.mock(ConsoleCommandSender.class);
+		Assert.assertEquals(Arrays.asList("Stan", "Steve"),
+				complete(handler, console, "kick", "st"));
+
+		// names past the limit are not looked at
+		Player admin = Mockito.mock(Player.class);
+		Mockito.when(admin.canSee(Mockito.any(Player.class))).thenReturn(true);
+		Assert.assertEquals(Arrays.asList("Stan"), index.complete(admin, "", 1));
+		Mockito.verify(admin, Mockito.never()).canSee(steve);
+	}
+
+	private static Player player(String name) {
+		Player player = Mockito.mock(Player.class);
+		Mockito.when(player.getName()).thenReturn(name);
+		return player;
+	}
+
+	private static List<String> complete(TestHandler handler,
+			CommandSender sender, String... args) {
+		return handler.onTabComplete(sender, null, "js", args);
+	}
+}
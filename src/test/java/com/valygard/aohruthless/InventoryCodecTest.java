@@ -0,0 +1,133 @@
+/**
+ * InventoryCodecTest.java is a part of Joystick
+ *
+ * Copyright (c) 2016 Anand Kumar
+ *
+ * Joystick is a free software: You can redistribute it or modify it
+ * under the terms of the GNU General Public License published by the Free
+ * Software Foundation, either version 3 of the license of any later version.
+ * 
+ * Joystick is distributed in the intent of being useful. However, there
+ * is NO WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You can view a copy of the GNU General Public License at 
+ * <http://www.gnu.org/licenses/> if you have not received a copy.
+ */
+package com.valygard.aohruthless;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import com.valygard.aohruthless.utils.inventory.InventoryCodec;
+import com.valygard.aohruthless.utils.inventory.InventorySnapshot;
+
+/**
+ * @author Anand
+ * 
+ */
+@RunWith(PowerMockRunner.class)
+public class InventoryCodecTest {
+
+	/**
+	 * Mocks a stack by its serialized map, since the maps of real stacks are
+	 * built by the server's item factory.
+	 */
+	private static ItemStack stack(Material type, int amount, int damage) {
+		Map<String, Object> map = new LinkedHashMap<>();
+		map.put("type", type.name());
+		if (damage != 0) map.put("damage", (short) damage);
+		if (amount != 1) map.put("amount", amount);
+
+		ItemStack stack = PowerMockito.mock(ItemStack.class);
+		Mockito.when(stack.serialize()).thenReturn(map);
+		return stack;
+	}
+
+	private static InventorySnapshot snapshot(UUID uuid) {
+		ItemStack[] items = new ItemStack[36];
+		items[0] = stack(Material.DIAMOND_SWORD, 1, 12);
+		items[1] = stack(Material.ARROW, 64, 0);
+		items[35] = stack(Material.WOOL, 3, 14);
+
+		ItemStack[] armor = new ItemStack[4];
+		armor[3] = stack(Material.IRON_HELMET, 1, 0);
+		return new InventorySnapshot(uuid, "AoH_Ruthless", items, armor);
+	}
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		UUID uuid = UUID.randomUUID();
+		InventorySnapshot decoded = InventoryCodec.decode(InventoryCodec
+				.encode(snapshot(uuid)));
+
+		Assert.assertEquals(uuid, decoded.getUniqueId());
+		Assert.assertEquals("AoH_Ruthless", decoded.getName());
+		Assert.assertEquals(36, decoded.getItems().length);
+		Assert.assertEquals(4, decoded.getArmor().length);
+
+		ItemStack sword = decoded.getItems()[0];
+		Assert.assertEquals(Material.DIAMOND_SWORD, sword.getType());
+		Assert.assertEquals(12, sword.getDurability());
+		Assert.assertEquals(64, decoded.getItems()[1].getAmount());
+		Assert.assertEquals(14, decoded.getItems()[35].getDurability());
+		Assert.assertNull(decoded.getItems()[2]);
+		Assert.assertEquals(Material.IRON_HELMET,
+				decoded.getArmor()[3].getType());
+		Assert.assertNull(decoded.getArmor()[0]);
+	}
+
+	@Test
+	public void testRecordsReadBackToBack() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		UUID first = UUID.randomUUID(), second = UUID.randomUUID();
+		out.write(InventoryCodec.encode(snapshot(first)));
+		out.write(InventoryCodec.encode(snapshot(second)));
+
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(
+				out.toByteArray()));
+		Assert.assertEquals(first, InventoryCodec.read(in).getUniqueId());
+		Assert.assertEquals(second, InventoryCodec.read(in).getUniqueId());
+		Assert.assertEquals(0, in.available());
+	}
+
+	@Test
+	public void testDamagedRecordsAreRefused() throws IOException {
+		byte[] record = InventoryCodec.encode(snapshot(UUID.randomUUID()));
+
+		// cut short, as by a crash during the write
+		try {
+			InventoryCodec.decode(Arrays.copyOf(record, record.length - 7));
+			Assert.fail("Truncated record was decoded");
+		}
+		catch (EOFException e) {
+			// expected
+		}
+
+		// a flipped bit in the payload fails the checksum
+		record[record.length / 2] ^= 0x10;
+		try {
+			InventoryCodec.decode(record);
+			Assert.fail("Damaged record was decoded");
+		}
+		catch (IOException e) {
+			Assert.assertTrue(e.getMessage().contains("checksum"));
+		}
+	}
+}
@@ -0,0 +1,207 @@
+/**
+ * InventoryJournalTest.java is a part of Joystick
+ *
+ * Copyright (c) 2016 Anand Kumar
+ *
+ * Joystick is a free software: You can redistribute it or modify it
+ * under the terms of the GNU General Public License published by the Free
+ * Software Foundation, either version 3 of the license of any later version.
+ * 
+ * Joystick is distributed in the intent of being useful. However, there
+ * is NO WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You can view a copy of the GNU General Public License at 
+ * <http://www.gnu.org/licenses/> if you have not received a copy.
+ */
+package com.valygard.aohruthless;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+import org.bukkit.inventory.ItemStack;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.valygard.aohruthless.utils.inventory.InventoryCodec;
+import com.valygard.aohruthless.utils.inventory.InventoryHandler;
+import com.valygard.aohruthless.utils.inventory.InventoryJournal;
+import com.valygard.aohruthless.utils.inventory.InventorySnapshot;
+
+/**
+ * @author Anand
+ * 
+ */
+public class InventoryJournalTest {
+
+	// players joining an arena in the same tick
+	private static final int PLAYERS = 100;
+
+	private static final Logger LOGGER = Logger.getLogger("Joystick");
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static byte[] record(UUID uuid) throws IOException {
+		return InventoryCodec.encode(new InventorySnapshot(uuid,
+				"AoH_Ruthless", new ItemStack[36], new ItemStack[4]));
+	}
+
+	@Test
+	public void testReplayAfterCrash() throws Exception {
+		File file = new File(folder.getRoot(), "journal.dat");
+		UUID left = UUID.randomUUID(), playing = UUID.randomUUID();
+
+		InventoryJournal journal = new InventoryJournal(file, LOGGER);
+		journal.store(left, record(left));
+		journal.store(playing, record(playing));
+		journal.clear(left);
+		journal.sync().get();
+		journal.close();
+		long length = file.length();
+
+		// an entry cut short by the crash
+		try (DataOutputStream out = new DataOutputStream(new FileOutputStream(
+				file, true))) {
+			out.writeByte(1);
+			out.writeLong(left.getMostSignificantBits());
+			out.writeLong(left.getLeastSignificantBits());
+			out.write(Arrays.copyOf(record(left), 20));
+		}
+
+		journal = new InventoryJournal(file, LOGGER);
+		Assert.assertEquals(length, file.length());
+		Assert.assertEquals(1, journal.getRecovered().size());
+		Assert.assertEquals(playing, InventoryCodec.decode(
+				journal.getRecovered().get(playing)).getUniqueId());
+		journal.close();
+
+		// and the handler gives it back when the player joins
+		InventoryHandler handler = new InventoryHandler(folder.getRoot());
+		Assert.assertEquals(Arrays.asList(playing),
+				handler.getStoredPlayers());
+		Assert.assertFalse(handler.hasInventory(left));
+		handler.close();
+	}
+
+	@Test
+	public void testDamagedEntryIsSkipped() throws Exception {
+		File file = new File(folder.getRoot(), "journal.dat");
+		UUID first = UUID.randomUUID(), damaged = UUID.randomUUID();
+		UUID last = UUID.randomUUID();
+
+		InventoryJournal journal = new InventoryJournal(file, LOGGER);
+		journal.store(first, record(first));
+		journal.store(damaged, record(damaged));
+		journal.store(last, record(last));
+		journal.sync().get();
+		journal.close();
+		long length = file.length();
+
+		// a flipped bit in the payload of the middle entry
+		int entry = 17 + record(first).length;
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.seek(entry + 17 + 13 + 4);
+			int b = raf.read();
+			raf.seek(entry + 17 + 13 + 4);
+			raf.write(b ^ 0x10);
+		}
+
+		// the players after it keep their inventories
+		journal = new InventoryJournal(file, LOGGER);
+		Assert.assertEquals(length, file.length());
+		Assert.assertEquals(2, journal.getRecovered().size());
+		Assert.assertTrue(journal.getRecovered().containsKey(first));
+		Assert.assertTrue(journal.getRecovered().containsKey(last));
+		Assert.assertTrue(new File(folder.getRoot(), "journal.dat.damaged")
+				.exists());
+		journal.close();
+
+		// an entry whose length cannot be read is not skipped
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.seek(entry + 17);
+			raf.writeInt(0);
+		}
+		try {
+			new InventoryJournal(file, LOGGER);
+			Assert.fail("Opened a journal damaged in the middle");
+		}
+		catch (IOException e) {
+			// expected
+		}
+		Assert.assertEquals(length, file.length());
+	}
+
+	@Test
+	public void testGroupCommit() throws Exception {
+		InventoryJournal journal = new InventoryJournal(new File(
+				folder.getRoot(), "journal.dat"), LOGGER);
+
+		UUID[] players = new UUID[PLAYERS];
+		byte[][] records = new byte[PLAYERS][];
+		for (int i = 0; i < PLAYERS; i++) {
+			players[i] = UUID.randomUUID();
+			records[i] = record(players[i]);
+		}
+
+		List<Future<Void>> commits = new ArrayList<>();
+		for (int i = 0; i < PLAYERS; i++) {
+			commits.add(journal.store(players[i], records[i]));
+		}
+		for (Future<Void> commit : commits) {
+			commit.get();
+		}
+
+		// the entries of one tick share a few syncs
+		Assert.assertTrue(journal.getSyncs() < PLAYERS / 10);
+		journal.close();
+	}
+
+	@Test
+	public void testCompaction() throws Exception {
+		File file = new File(folder.getRoot(), "journal.dat");
+		InventoryJournal journal = new InventoryJournal(file, LOGGER);
+
+		List<UUID> players = new ArrayList<>();
+		for (int i = 0; i < PLAYERS; i++) {
+			UUID uuid = UUID.randomUUID();
+			players.add(uuid);
+			journal.store(uuid, record(uuid));
+		}
+		for (UUID uuid : players.subList(1, PLAYERS)) {
+			journal.clear(uuid);
+		}
+		journal.compact().get();
+		Assert.assertEquals(17 + record(players.get(0)).length, file.length());
+
+		// entries are appended to the compacted journal
+		UUID late = UUID.randomUUID();
+		journal.store(late, record(late)).get();
+		journal.close();
+
+		journal = new InventoryJournal(file, LOGGER);
+		Assert.assertEquals(2, journal.getRecovered().size());
+		Assert.assertTrue(journal.getRecovered().containsKey(players.get(0)));
+		Assert.assertTrue(journal.getRecovered().containsKey(late));
+		journal.close();
+
+		try {
+			journal.sync().get();
+			Assert.fail("Closed journal accepted an entry");
+		}
+		catch (Exception e) {
+			// expected
+		}
+	}
+}
@@ -16,7 +16,17 @@
  */
 package com.valygard.aohruthless;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
 import org.bukkit.Material;
+import org.bukkit.enchantments.Enchantment;
 import org.bukkit.inventory.ItemStack;
 import org.hamcrest.CoreMatchers;
 import org.junit.Assert;
@@ -35,6 +45,9 @@ import com.valygard.aohruthless.utils.items.ItemParser;
 @RunWith(PowerMockRunner.class)
 public class ItemParserTest {
 
+	// random stacks written by the serializer fuzz tests
+	private static final int STACKS = 20000;
+
 	@Test
 	public void testMaterialAndAmountToItem() {
 		ItemStack stack = ItemParser.parseItem("wood:2");
@@ -64,6 +77,113 @@ public class ItemParserTest {
 				.getDurability());
 	}
 
+	@Test
+	public void testTemplatesAreCloned() {
+		ItemStack first = ItemParser.parseItem("wool:3:1");
+		first.setAmount(64);
+
+		ItemStack second = ItemParser.parseItem("wool:3:1");
+		Assert.assertNotSame(first, second);
+		Assert.assertEquals(1, second.getAmount());
+		Assert.assertEquals(3, second.getDurability());
+	}
+
+	/**
+	 * Writes random stacks and parses them back. Wool is left out: its data
+	 * is written as the dye color and read back as the wool color, so it
+	 * does not round-trip. Potions and enchanted books need item meta from
+	 * a running server.
+	 */
+	@Test
+	public void testRoundTripFuzz() {
+		List<Material> materials = new ArrayList<>();
+		for (Material m : Material.values()) {
+			if (m == Material.AIR || m == Material.WOOL
+					|| m == Material.ENCHANTED_BOOK
+					|| m.name().contains("POTION")) continue;
+			materials.add(m);
+		}
+
+		Random random = new Random(STACKS);
+		for (int i = 0; i < STACKS; i++) {
+			ItemStack stack = randomStack(random, materials);
+			String item = ItemParser.parseString(stack);
+			Assert.assertEquals(concatenate(stack), item);
+
+			ItemStack parsed = ItemParser.parseItem(item);
+			Assert.assertEquals(item, stack.getType(), parsed.getType());
+			Assert.assertEquals(item, stack.getAmount(), parsed.getAmount());
+			Assert.assertEquals(item, stack.getDurability(),
+					parsed.getDurability());
+		}
+	}
+
+	@Test
+	public void testWoolMatchesConcatenation() {
+		Random random = new Random(STACKS);
+		List<Material> wool = Arrays.asList(Material.WOOL);
+		for (int i = 0; i < STACKS / 10; i++) {
+			ItemStack stack = randomStack(random, wool);
+			Assert.assertEquals(concatenate(stack),
+					ItemParser.parseString(stack));
+		}
+	}
+
+	@Test
+	public void testAppendItems() throws IOException {
+		Enchantment sharpness = PowerMockito.mock(Enchantment.class);
+		Mockito.when(sharpness.getName()).thenReturn("DAMAGE_ALL");
+		Enchantment knockback = PowerMockito.mock(Enchantment.class);
+		Mockito.when(knockback.getName()).thenReturn("KNOCKBACK");
+		Map<Enchantment, Integer> enchants = new LinkedHashMap<>();
+		enchants.put(sharpness, 5);
+		enchants.put(knockback, 2);
+
+		ItemStack sword = PowerMockito.mock(ItemStack.class);
+		Mockito.when(sword.getType()).thenReturn(Material.DIAMOND_SWORD);
+		Mockito.when(sword.getAmount()).thenReturn(1);
+		Mockito.when(sword.getEnchantments()).thenReturn(enchants);
+
+		StringWriter out = new StringWriter();
+		Assert.assertEquals(2, ItemParser.appendItems(out, null, new ItemStack(
+				Material.AIR), sword, new ItemStack(Material.ARROW, 64)));
+		Assert.assertEquals(
+				"diamond_sword DAMAGE_ALL:5;KNOCKBACK:2, arrow:64",
+				out.toString());
+		Assert.assertNull(ItemParser.parseString(new ItemStack(Material.AIR)));
+	}
+
+	private static ItemStack randomStack(Random random, List<Material> types) {
+		Material type = types.get(random.nextInt(types.size()));
+		int amount = 1 + random.nextInt(64);
+		short data = (short) (random.nextBoolean() ? 0 : random
+				.nextInt(Short.MAX_VALUE));
+		return new ItemStack(type, amount, data);
+	}
+
+	/**
+	 * The serialization ItemParser used before it wrote to an Appendable, for
+	 * stacks without potion effects or enchantments.
+	 */
+	private static String concatenate(ItemStack stack) {
+		String type = stack.getType().toString().toLowerCase();
+		short durability = stack.getDurability();
+		short data = (durability > 0 ? durability : 0);
+		if (stack.getType() == Material.WOOL) {
+			data = (byte) (15 - data);
+		}
+		int amount = stack.getAmount();
+
+		String result = type;
+		if (data != 0) {
+			result += ":" + data;
+		}
+		if (amount > 1 || data != 0) {
+			result += ":" + amount;
+		}
+		return result;
+	}
+
 	@Test
 	public void testMaterialAndAmountToString() {
 		Assert.assertThat(
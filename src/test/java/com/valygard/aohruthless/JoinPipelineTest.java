@@ -0,0 +1,165 @@
+/**
+ * JoinPipelineTest.java is a part of Joystick
+ *
+ * Copyright (c) 2016 Anand Kumar
+ *
+ * Joystick is a free software: You can redistribute it or modify it
+ * under the terms of the GNU General Public License published by the Free
+ * Software Foundation, either version 3 of the license of any later version.
+ * 
+ * Joystick is distributed in the intent of being useful. However, there
+ * is NO WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You can view a copy of the GNU General Public License at 
+ * <http://www.gnu.org/licenses/> if you have not received a copy.
+ */
+package com.valygard.aohruthless;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import org.bukkit.Location;
+import org.bukkit.Server;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.PlayerInventory;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.bukkit.scheduler.BukkitTask;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.valygard.aohruthless.player.JoinPipeline;
+import com.valygard.aohruthless.player.PlayerData;
+import com.valygard.aohruthless.player.VisibilityIndex;
+
+/**
+ * @author Anand
+ * 
+ */
+public class JoinPipelineTest {
+
+	private Plugin plugin;
+	private BukkitTask task;
+	private List<Player> online;
+
+	@Before
+	public void setUp() {
+		YamlConfiguration config = new YamlConfiguration();
+		config.set("global.join-tick-budget", 0);
+
+		task = Mockito.mock(BukkitTask.class);
+		BukkitScheduler scheduler = Mockito.mock(BukkitScheduler.class);
+		Mockito.when(
+				scheduler.runTaskTimer(Mockito.any(Plugin.class),
+						Mockito.any(Runnable.class), Mockito.anyLong(),
+						Mockito.anyLong())).thenReturn(task);
+
+		online = new ArrayList<>();
+		Server server = Mockito.mock(Server.class);
+		Mockito.when(server.getScheduler()).thenReturn(scheduler);
+		Mockito.doReturn(online).when(server).getOnlinePlayers();
+
+		plugin = Mockito.mock(Plugin.class);
+		Mockito.when(plugin.getConfig()).thenReturn(config);
+		Mockito.when(plugin.getServer()).thenReturn(server);
+	}
+
+	private Player player() {
+		Player player = Mockito.mock(Player.class);
+		Mockito.when(player.getUniqueId()).thenReturn(UUID.randomUUID());
+		Mockito.when(player.getInventory()).thenReturn(
+				Mockito.mock(PlayerInventory.class));
+		Mockito.when(player.getLocation()).thenReturn(
+				new Location(null, 0, 64, 0));
+		Mockito.when(player.isOnline()).thenReturn(true);
+		Mockito.when(player.canSee(Mockito.any(Player.class))).thenReturn(true);
+		online.add(player);
+		return player;
+	}
+
+	@Test
+	public void testJoinsAreSpreadAcrossTicks() {
+		JoinPipeline pipeline = new JoinPipeline(plugin);
+		final List<Player> joined = new ArrayList<>();
+		JoinPipeline.Callback callback = new JoinPipeline.Callback() {
+
+			@Override
+			public void joined(PlayerData data) {
+				joined.add(data.getPlayer());
+			}
+		};
+
+		Player first = player(), second = player(), third = player();
+		Assert.assertTrue(pipeline.submit(first, callback));
+		Assert.assertTrue(pipeline.submit(second, callback));
+		Assert.assertTrue(pipeline.submit(third, callback));
+		Assert.assertFalse(pipeline.submit(first, callback));
+		Assert.assertTrue(pipeline.cancel(second));
+
+		// no budget, so one capture per tick
+		pipeline.tick();
+		Assert.assertEquals(Arrays.asList(first), joined);
+		Assert.assertTrue(pipeline.isQueued(third));
+
+		pipeline.tick();
+		Assert.assertEquals(Arrays.asList(first, third), joined);
+		Assert.assertEquals(0, pipeline.size());
+		Mockito.verify(task).cancel();
+	}
+
+	@Test
+	public void testVisibilityIsIndexedOncePerBatch() {
+		Player target = player(), other = player();
+		Player viewer = player(), blind = player();
+		Mockito.when(blind.canSee(target)).thenReturn(false);
+
+		VisibilityIndex index = new VisibilityIndex();
+		index.index(Arrays.asList(target, other), online);
+		Assert.assertEquals(2, index.size());
+		Assert.assertTrue(index.isIndexed(target));
+
+		Assert.assertEquals(Arrays.asList(blind), index.remove(target));
+		Assert.assertTrue(index.remove(other).isEmpty());
+		Assert.assertTrue(index.remove(target).isEmpty());
+		Mockito.verify(viewer, Mockito.times(1)).canSee(target);
+
+		JoinPipeline pipeline = new JoinPipeline(plugin);
+		final List<PlayerData> joined = new ArrayList<>();
+		pipeline.submit(target, new JoinPipeline.Callback() {
+
+			@Override
+			public void joined(PlayerData data) {
+				joined.add(data);
+			}
+		});
+		pipeline.tick();
+		Assert.assertEquals(1, joined.size());
+		Assert.assertTrue(joined.get(0).getBlind().contains(blind));
+		Assert.assertFalse(joined.get(0).getBlind().contains(viewer));
+	}
+
+	@Test
+	public void testOnlyCapturedPlayersAreIndexed() {
+		JoinPipeline pipeline = new JoinPipeline(plugin);
+		JoinPipeline.Callback callback = Mockito
+				.mock(JoinPipeline.Callback.class);
+
+		Player viewer = player(), first = player(), second = player();
+		pipeline.submit(first, callback);
+		pipeline.submit(second, callback);
+
+		// no budget, so only the captured player is indexed
+		pipeline.tick();
+		Mockito.verify(viewer).canSee(first);
+		Mockito.verify(viewer, Mockito.never()).canSee(second);
+
+		pipeline.tick();
+		Mockito.verify(viewer).canSee(second);
+	}
+}
@@ -0,0 +1,63 @@
+/**
+ * JsonConfigurationTest.java is a part of Joystick
+ *
+ * Copyright (c) 2016 Anand Kumar
+ *
+ * Joystick is a free software: You can redistribute it or modify it
+ * under the terms of the GNU General Public License published by the Free
+ * Software Foundation, either version 3 of the license of any later version.
+ * 
+ * Joystick is distributed in the intent of being useful. However, there
+ * is NO WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You can view a copy of the GNU General Public License at 
+ * <http://www.gnu.org/licenses/> if you have not received a copy.
+ */
+package com.valygard.aohruthless;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.valygard.aohruthless.utils.config.JsonConfiguration;
+
+/**
+ * @author Anand
+ * 
+ */
+public class JsonConfigurationTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testWriteAndReload() throws Exception {
+		File dir = folder.newFolder();
+		JsonConfiguration config = new JsonConfiguration(dir, "player");
+		config.writeString("name", "AoH_Ruthless").writeInt("kills", 12);
+
+		JsonConfiguration reloaded = new JsonConfiguration(dir, "player.json");
+		Assert.assertEquals("AoH_Ruthless", reloaded.getString("name"));
+		Assert.assertEquals(12L, reloaded.getValue("kills"));
+		Assert.assertFalse(new File(dir, "player.json.tmp").exists());
+	}
+
+	@Test
+	public void testAsyncWritesAreCoalesced() throws Exception {
+		File dir = folder.newFolder();
+		JsonConfiguration config = new JsonConfiguration(dir, "player")
+				.setAsync(true);
+		for (int i = 0; i <= 1000; i++) {
+			config.writeInt("kills", i);
+		}
+		Assert.assertTrue(JsonConfiguration.awaitWrites(10, TimeUnit.SECONDS));
+
+		JsonConfiguration reloaded = new JsonConfiguration(dir, "player");
+		Assert.assertEquals(1000L, reloaded.getValue("kills"));
+	}
+}
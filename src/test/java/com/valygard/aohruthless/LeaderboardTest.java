@@ -0,0 +1,160 @@
+/**
+ * LeaderboardTest.java is a part of Joystick
+ *
+ * Copyright (c) 2016 Anand Kumar
+ *
+ * Joystick is a free software: You can redistribute it or modify it
+ * under the terms of the GNU General Public License published by the Free
+ * Software Foundation, either version 3 of the license of any later version.
+ * 
+ * Joystick is distributed in the intent of being useful. However, there
+ * is NO WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You can view a copy of the GNU General Public License at 
+ * <http://www.gnu.org/licenses/> if you have not received a copy.
+ */
+package com.valygard.aohruthless;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.valygard.aohruthless.player.Leaderboard;
+import com.valygard.aohruthless.player.Leaderboard.Entry;
+import com.valygard.aohruthless.player.LeaderboardType;
+import com.valygard.aohruthless.player.Leaderboards;
+import com.valygard.aohruthless.player.StatsRecord;
+
+/**
+ * @author Anand
+ * 
+ */
+public class LeaderboardTest {
+
+	@Test
+	public void testIncrementalTopMatchesSort() {
+		Random random = new Random(42);
+		Leaderboard board = new Leaderboard(LeaderboardType.KILLS, 10);
+		List<StatsRecord> records = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			StatsRecord record = record("player" + i, random.nextInt(500));
+			records.add(record);
+			board.update(record);
+		}
+
+		// only twice the top is kept
+		Assert.assertEquals(20, board.getRanked());
+
+		// random kills, and losing streaks for the current leaders
+		int rebuilt = 0;
+		for (int i = 0; i < 5000; i++) {
+			StatsRecord record = records.get(random.nextInt(records.size()));
+			record.setKills(random.nextBoolean() ? record.getKills() + 1 : 0);
+			board.update(record);
+
+			// as the stats store does, build an incomplete board again
+			if (!board.isComplete()) {
+				board = new Leaderboard(LeaderboardType.KILLS, 10);
+				for (StatsRecord r : records) {
+					board.update(r);
+				}
+				rebuilt++;
+			}
+			assertTop(board, records);
+		}
+		Assert.assertTrue(rebuilt < 50);
+	}
+
+	@Test
+	public void testDemotionPromotesNextPlayer() {
+		Leaderboard board = new Leaderboard(LeaderboardType.WINSTREAK, 2);
+		StatsRecord first = record("first", 0);
+		StatsRecord second = record("second", 0);
+		StatsRecord third = record("third", 0);
+		first.setWinstreak(9);
+		second.setWinstreak(5);
+		third.setWinstreak(3);
+		board.update(first);
+		board.update(second);
+		board.update(third);
+		Assert.assertEquals("first", board.getEntry(1).getName());
+
+		first.setWinstreak(0);
+		board.update(first);
+		Assert.assertEquals("second", board.getEntry(1).getName());
+		Assert.assertEquals("third", board.getEntry(2).getName());
+		Assert.assertEquals(3, board.getRank(first.getUniqueId()));
+	}
+
+	@Test
+	public void testReadsReuseTop() {
+		Leaderboards leaderboards = new Leaderboards(5);
+		for (int i = 0; i < 100; i++) {
+			leaderboards.update(record("player" + i, i));
+		}
+		List<Entry> top = leaderboards.getTop("arena", LeaderboardType.KILLS);
+		Assert.assertEquals(5, top.size());
+		Assert.assertEquals(99D, top.get(0).getScore(), 0D);
+
+		// changes below the top keep the cached list
+		leaderboards.update(record("newcomer", 3));
+		Assert.assertTrue(top == leaderboards.getTop("arena",
+				LeaderboardType.KILLS));
+		Assert.assertTrue(leaderboards.getTop("other", LeaderboardType.KILLS)
+				.isEmpty());
+	}
+
+	@Test
+	public void testRatingIsRankedOnceForAllArenas() {
+		Leaderboards leaderboards = new Leaderboards(5);
+		UUID uuid = UUID.randomUUID();
+		StatsRecord castle = new StatsRecord(uuid, "castle");
+		StatsRecord desert = new StatsRecord(uuid, "desert");
+		castle.setMMR(1200);
+		leaderboards.update(castle);
+
+		// the rating changed while playing in the desert
+		desert.setMMR(1300);
+		leaderboards.update(desert);
+
+		List<Entry> top = leaderboards.getTop("castle", LeaderboardType.MMR);
+		Assert.assertEquals(1, top.size());
+		Assert.assertEquals(1300D, top.get(0).getScore(), 0D);
+		Assert.assertTrue(top == leaderboards.getTop("desert",
+				LeaderboardType.MMR));
+	}
+
+	private void assertTop(Leaderboard board, List<StatsRecord> records) {
+		List<StatsRecord> sorted = new ArrayList<>(records);
+		Collections.sort(sorted, new Comparator<StatsRecord>() {
+
+			@Override
+			public int compare(StatsRecord a, StatsRecord b) {
+				int result = Integer.compare(b.getKills(), a.getKills());
+				return (result != 0 ? result : a.getUniqueId().compareTo(
+						b.getUniqueId()));
+			}
+		});
+
+		List<Entry> top = board.getTop();
+		Assert.assertEquals(board.getSize(), top.size());
+		for (int i = 0; i < top.size(); i++) {
+			Assert.assertEquals(sorted.get(i).getUniqueId(), top.get(i)
+					.getUniqueId());
+		}
+	}
+
+	private StatsRecord record(String name, int kills) {
+		StatsRecord record = new StatsRecord(UUID.randomUUID(), "arena");
+		record.setPlayerName(name);
+		record.setKills(kills);
+		return record;
+	}
+}
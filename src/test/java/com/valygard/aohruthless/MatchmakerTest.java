@@ -0,0 +1,263 @@
+/**
+ * MatchmakerTest.java is a part of Joystick
+ *
+ * Copyright (c) 2016 Anand Kumar
+ *
+ * Joystick is a free software: You can redistribute it or modify it
+ * under the terms of the GNU General Public License published by the Free
+ * Software Foundation, either version 3 of the license of any later version.
+ * 
+ * Joystick is distributed in the intent of being useful. However, there
+ * is NO WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You can view a copy of the GNU General Public License at 
+ * <http://www.gnu.org/licenses/> if you have not received a copy.
+ */
+package com.valygard.aohruthless;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.bukkit.Server;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.Player;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.PluginManager;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.valygard.aohruthless.framework.Arena;
+import com.valygard.aohruthless.framework.ArenaManager;
+import com.valygard.aohruthless.framework.Matchmaker;
+import com.valygard.aohruthless.framework.Matchmaker.Lobby;
+import com.valygard.aohruthless.player.JoinPipeline;
+import com.valygard.aohruthless.player.PlayerData;
+
+/**
+ * @author Anand
+ * 
+ */
+public class MatchmakerTest {
+
+	private long time;
+	private YamlConfiguration config;
+	private List<Arena> arenas;
+	private List<Lobby> lobbies;
+	private ArenaManager manager;
+	private JoinPipeline joins;
+	private Matchmaker matchmaker;
+
+	@Before
+	public void setUp() {
+		config = new YamlConfiguration();
+		config.set("global.matchmaking.bucket-size", 50);
+		config.set("global.matchmaking.spread", 100);
+		config.set("global.matchmaking.spread-per-second", 10);
+
+		Server server = Mockito.mock(Server.class);
+		Mockito.when(server.getScheduler()).thenReturn(
+				Mockito.mock(BukkitScheduler.class));
+		Mockito.when(server.getPluginManager()).thenReturn(
+				Mockito.mock(PluginManager.class));
+		Plugin plugin = Mockito.mock(Plugin.class);
+		Mockito.when(plugin.getServer()).thenReturn(server);
+		Mockito.when(plugin.getConfig()).thenReturn(new YamlConfiguration());
+		joins = new JoinPipeline(plugin);
+
+		arenas = new ArrayList<>();
+		manager = Mockito.mock(ArenaManager.class);
+		Mockito.when(manager.getConfig()).thenReturn(config);
+		Mockito.when(manager.getPlugin()).thenReturn(plugin);
+		Mockito.when(manager.getEnabledArenas(Mockito.anyListOf(Arena.class)))
+				.thenReturn(arenas);
+		Mockito.when(manager.getJoinPipeline()).thenReturn(joins);
+
+		lobbies = new ArrayList<>();
+		matchmaker = new Matchmaker(manager) {
+
+			@Override
+			protected long now() {
+				return time;
+			}
+		};
+		matchmaker.setCallback(new Matchmaker.Callback() {
+
+			@Override
+			public void matched(Lobby lobby) {
+				lobbies.add(lobby);
+			}
+		});
+	}
+
+	private Arena arena(int min, int max) {
+		Arena arena = Mockito.mock(Arena.class);
+		Mockito.when(arena.getMinPlayers()).thenReturn(min);
+		Mockito.when(arena.getMaxPlayers()).thenReturn(max);
+		Mockito.when(arena.getPlayers()).thenReturn(
+				Collections.<Player> emptySet());
+		arenas.add(arena);
+		return arena;
+	}
+
+	private Player queue(int mmr) {
+		Player player = Mockito.mock(Player.class);
+		Mockito.when(player.getUniqueId()).thenReturn(UUID.randomUUID());
+		Mockito.when(player.isOnline()).thenReturn(true);
+		Assert.assertTrue(matchmaker.enqueue(player, mmr));
+		time += 1000;
+		return player;
+	}
+
+	@Test
+	public void testPlayersAreMatchedByRating() {
+		Arena first = arena(2, 4), second = arena(2, 4);
+		Player p1000 = queue(1000), p1500 = queue(1500), p3000 = queue(3000);
+		Player p1020 = queue(1020), p1510 = queue(1510);
+		Assert.assertFalse(matchmaker.enqueue(p1000, 1000));
+
+		Assert.assertEquals(2, matchmaker.match());
+		Assert.assertEquals(first, lobbies.get(0).getArena());
+		Assert.assertEquals(Arrays.asList(p1020, p1000), lobbies.get(0)
+				.getPlayers());
+		Assert.assertEquals(second, lobbies.get(1).getArena());
+		Assert.assertEquals(Arrays.asList(p1510, p1500), lobbies.get(1)
+				.getPlayers());
+
+		Assert.assertEquals(1, matchmaker.size());
+		Assert.assertTrue(matchmaker.isQueued(p3000));
+		Assert.assertEquals(15D, matchmaker.getAverageSpread(), 0D);
+		Assert.assertEquals(3L,
+				matchmaker.getAverageQueueTime(TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void testSpreadWidensWhileWaiting() {
+		arena(2, 2);
+		queue(1000);
+		queue(1800);
+		Assert.assertEquals(0, matchmaker.match());
+
+		// 100 + 10 per second must reach 800
+		time += 67000;
+		Assert.assertEquals(0, matchmaker.match());
+		time += 1000;
+		Assert.assertEquals(1, matchmaker.match());
+		Assert.assertEquals(800, lobbies.get(0).getSpread());
+		Assert.assertEquals(0L, matchmaker.getLongestWait(TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void testClosestPlayersAreTaken() {
+		arena(3, 3);
+		Player anchor = queue(1000);
+		queue(1090);
+		Player closest = queue(1049), close = queue(950);
+		queue(1100);
+
+		Assert.assertEquals(1, matchmaker.match());
+		Assert.assertEquals(Arrays.asList(closest, anchor, close), lobbies
+				.get(0).getPlayers());
+		Assert.assertEquals(2, matchmaker.size());
+	}
+
+	@Test
+	public void testTeamsAreDraftedInSnakeOrder() {
+		arena(4, 4);
+		Player p4 = queue(1040), p1 = queue(1010);
+		Player p3 = queue(1030), p2 = queue(1020);
+
+		matchmaker.match();
+		List<List<Player>> teams = lobbies.get(0).getTeams(2);
+		Assert.assertEquals(Arrays.asList(p4, p1), teams.get(0));
+		Assert.assertEquals(Arrays.asList(p3, p2), teams.get(1));
+	}
+
+	@Test
+	public void testQuittingPlayersAreDequeued() {
+		arena(2, 2);
+		Player quitter = queue(1000);
+		queue(1010);
+
+		matchmaker.onQuit(new PlayerQuitEvent(quitter, "left"));
+		Assert.assertFalse(matchmaker.isQueued(quitter));
+		Assert.assertEquals(1, matchmaker.size());
+		Assert.assertEquals(0, matchmaker.match());
+	}
+
+	@Test
+	public void testSettingsAreReloaded() {
+		arena(2, 2);
+		Player p1000 = queue(1000), p1400 = queue(1400);
+		Assert.assertEquals(0, matchmaker.match());
+
+		// both players now share one bucket, within the wider spread
+		config.set("global.matchmaking.bucket-size", 1000);
+		config.set("global.matchmaking.spread", 400);
+		matchmaker.reload();
+
+		Assert.assertEquals(1, matchmaker.match());
+		Assert.assertEquals(Arrays.asList(p1400, p1000), lobbies.get(0)
+				.getPlayers());
+	}
+
+	@Test
+	public void testPlayersInAnArenaAreDequeued() {
+		Arena arena = arena(2, 2);
+		config.set("global.matchmaking.anchors", 1);
+		matchmaker.reload();
+
+		// found while picking for the longest waiting player
+		queue(1020);
+		Player playing = queue(1000), joining = queue(1010);
+		Mockito.when(manager.getArenaWithPlayer(playing)).thenReturn(
+				Mockito.mock(Arena.class));
+		joins.submit(joining, null, new JoinPipeline.Callback() {
+
+			@Override
+			public void joined(PlayerData data) {}
+		});
+
+		Assert.assertEquals(0, matchmaker.match());
+		Assert.assertFalse(matchmaker.isQueued(playing));
+		Assert.assertFalse(matchmaker.isQueued(joining));
+		Assert.assertEquals(1, matchmaker.size());
+
+		queue(1030);
+		Assert.assertEquals(1, matchmaker.match());
+		Assert.assertEquals(arena, lobbies.get(0).getArena());
+		Assert.assertFalse(matchmaker.enqueue(playing, 1000));
+	}
+
+	@Test
+	public void testPendingJoinsCountAsPresent() {
+		Arena arena = arena(3, 3);
+		Player joining = Mockito.mock(Player.class);
+		Mockito.when(joining.getUniqueId()).thenReturn(UUID.randomUUID());
+		joins.submit(joining, arena, new JoinPipeline.Callback() {
+
+			@Override
+			public void joined(PlayerData data) {}
+		});
+		Assert.assertEquals(1, joins.getPending(arena));
+
+		// only two places are left
+		queue(1000);
+		queue(1010);
+		queue(1020);
+		Assert.assertEquals(1, matchmaker.match());
+		Assert.assertEquals(2, lobbies.get(0).getPlayers().size());
+		Assert.assertEquals(1, matchmaker.size());
+
+		joins.cancel(joining);
+		Assert.assertEquals(0, joins.getPending(arena));
+	}
+}
@@ -0,0 +1,154 @@
+/**
+ * PlayTimeTrackerTest.java is a part of Joystick
+ *
+ * Copyright (c) 2016 Anand Kumar
+ *
+ * Joystick is a free software: You can redistribute it or modify it
+ * under the terms of the GNU General Public License published by the Free
+ * Software Foundation, either version 3 of the license of any later version.
+ * 
+ * Joystick is distributed in the intent of being useful. However, there
+ * is NO WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You can view a copy of the GNU General Public License at 
+ * <http://www.gnu.org/licenses/> if you have not received a copy.
+ */
+package com.valygard.aohruthless;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.bukkit.entity.Player;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.valygard.aohruthless.framework.Arena;
+import com.valygard.aohruthless.player.PlayTimeTracker;
+import com.valygard.aohruthless.player.PlayerStats;
+import com.valygard.aohruthless.player.StatsCache;
+
+/**
+ * @author Anand
+ * 
+ */
+public class PlayTimeTrackerTest {
+
+	// idle stats are dropped from the arena's cache after a minute
+	private static final long TTL = 60000L;
+
+	private long time;
+
+	private StatsCache cache;
+	private PlayTimeTracker tracker;
+
+	@Before
+	public void setUp() {
+		cache = new StatsCache(256, TTL, TimeUnit.MILLISECONDS) {
+
+			@Override
+			protected long now() {
+				return time;
+			}
+		};
+
+		// the arena looks up cached stats, or loads them again
+		Arena arena = Mockito.mock(Arena.class);
+		Mockito.when(arena.getStats(Mockito.any(Player.class))).thenAnswer(
+				new Answer<PlayerStats>() {
+
+					@Override
+					public PlayerStats answer(InvocationOnMock invocation) {
+						Player player = (Player) invocation.getArguments()[0];
+						PlayerStats stats = cache.get(player.getUniqueId());
+						if (stats == null) {
+							stats = stats(player, true);
+							cache.put(player.getUniqueId(), stats);
+						}
+						return stats;
+					}
+				});
+
+		tracker = new PlayTimeTracker(arena) {
+
+			@Override
+			protected long now() {
+				return time;
+			}
+		};
+	}
+
+	private PlayerStats stats(boolean tracking) {
+		Player player = Mockito.mock(Player.class);
+		Mockito.when(player.getUniqueId()).thenReturn(UUID.randomUUID());
+
+		PlayerStats stats = stats(player, tracking);
+		cache.put(player.getUniqueId(), stats);
+		return stats;
+	}
+
+	private static PlayerStats stats(Player player, boolean tracking) {
+		PlayerStats stats = Mockito.mock(PlayerStats.class);
+		Mockito.when(stats.getPlayer()).thenReturn(player);
+		Mockito.when(stats.isTracking()).thenReturn(tracking);
+		Mockito.when(stats.getRawTimeSpent()).thenReturn(100);
+		return stats;
+	}
+
+	@Test
+	public void testTimeIsCreditedOnStop() {
+		PlayerStats stats = stats(true);
+		UUID uuid = stats.getPlayer().getUniqueId();
+
+		Assert.assertTrue(tracker.start(stats));
+		Assert.assertFalse(tracker.start(stats));
+
+		time += 90500;
+		Assert.assertEquals(190, tracker.getTimeSpent(stats));
+		Assert.assertEquals(90, tracker.stop(uuid));
+		Mockito.verify(stats).addTimeSpent(90);
+
+		Assert.assertFalse(tracker.isTiming(uuid));
+		Assert.assertEquals(0, tracker.stop(uuid));
+		Assert.assertEquals(100, tracker.getTimeSpent(stats));
+	}
+
+	@Test
+	public void testStopAll() {
+		PlayerStats first = stats(true), second = stats(true);
+		PlayerStats untracked = stats(false);
+
+		tracker.start(first);
+		time += 30000;
+		tracker.start(second);
+		Assert.assertFalse(tracker.start(untracked));
+		Assert.assertEquals(2, tracker.size());
+
+		time += 15000;
+		tracker.stopAll();
+		Mockito.verify(first).addTimeSpent(45);
+		Mockito.verify(second).addTimeSpent(15);
+		Assert.assertEquals(0, tracker.size());
+	}
+
+	@Test
+	public void testMatchOutlivesCachedStats() {
+		PlayerStats stats = stats(true);
+		Player player = stats.getPlayer();
+		tracker.start(stats);
+
+		// nobody looks the player up for longer than the cache keeps them
+		time += 2 * TTL;
+		Assert.assertNull(cache.get(player.getUniqueId()));
+
+		tracker.stopAll();
+		PlayerStats reloaded = cache.get(player.getUniqueId());
+		Assert.assertNotSame(stats, reloaded);
+		Mockito.verify(reloaded).addTimeSpent(120);
+		Mockito.verify(stats, Mockito.never()).addTimeSpent(Mockito.anyInt());
+	}
+}
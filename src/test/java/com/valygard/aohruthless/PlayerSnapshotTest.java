@@ -0,0 +1,145 @@
+/**
+ * PlayerSnapshotTest.java is a part of Joystick
+ *
+ * Copyright (c) 2016 Anand Kumar
+ *
+ * Joystick is a free software: You can redistribute it or modify it
+ * under the terms of the GNU General Public License published by the Free
+ * Software Foundation, either version 3 of the license of any later version.
+ * 
+ * Joystick is distributed in the intent of being useful. However, there
+ * is NO WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You can view a copy of the GNU General Public License at 
+ * <http://www.gnu.org/licenses/> if you have not received a copy.
+ */
+package com.valygard.aohruthless;
+
+import java.util.Arrays;
+
+import org.bukkit.GameMode;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.PlayerInventory;
+import org.bukkit.potion.PotionEffect;
+import org.bukkit.potion.PotionEffectType;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.valygard.aohruthless.player.PlayerSnapshot;
+import com.valygard.aohruthless.player.SnapshotPool;
+
+/**
+ * @author Anand
+ * 
+ */
+public class PlayerSnapshotTest {
+
+	private Player player(PlayerInventory inv) {
+		Player player = Mockito.mock(Player.class);
+		Mockito.when(player.getInventory()).thenReturn(inv);
+		Mockito.when(player.getLocation()).thenReturn(
+				new Location(null, 1, 2, 3));
+		Mockito.when(player.getHealth()).thenReturn(15D);
+		Mockito.when(player.getGameMode()).thenReturn(GameMode.SURVIVAL);
+		return player;
+	}
+
+	@Test
+	public void testEqualStacksKeepTheirSlots() {
+		ItemStack arrows = new ItemStack(Material.ARROW, 16);
+		PlayerInventory inv = Mockito.mock(PlayerInventory.class);
+		Mockito.when(inv.getItem(0)).thenReturn(arrows);
+		Mockito.when(inv.getItem(1)).thenReturn(arrows.clone());
+		Player player = player(inv);
+
+		PlayerSnapshot snapshot = new PlayerSnapshot();
+		snapshot.capture(player);
+		Assert.assertEquals(15D, snapshot.getHealth(), 0D);
+
+		snapshot.restore(player, false);
+		Mockito.verify(inv).setItem(0, arrows);
+		Mockito.verify(inv).setItem(1, arrows);
+		Mockito.verify(inv).setItem(2, null);
+		Mockito.verify(player).setHealth(15D);
+		Mockito.verify(player).setGameMode(GameMode.SURVIVAL);
+		Mockito.verify(player, Mockito.never()).teleport(
+				Mockito.any(Location.class));
+	}
+
+	@Test
+	public void testDeltaRestoreOnlySetsChanges() {
+		ItemStack arrows = new ItemStack(Material.ARROW, 16);
+		PlayerInventory inv = Mockito.mock(PlayerInventory.class);
+		Mockito.when(inv.getItem(0)).thenReturn(arrows);
+		Player player = player(inv);
+
+		PlayerSnapshot snapshot = new PlayerSnapshot();
+		snapshot.capture(player);
+
+		// the player picked up dirt and was hurt during the match
+		Mockito.when(inv.getItem(3)).thenReturn(new ItemStack(Material.DIRT));
+		Mockito.when(player.getHealth()).thenReturn(10D);
+
+		Assert.assertEquals(1, snapshot.restore(player, false, true));
+		Mockito.verify(inv).setItem(3, null);
+		Mockito.verify(inv, Mockito.times(1)).setItem(Mockito.anyInt(),
+				Mockito.any(ItemStack.class));
+		Mockito.verify(inv, Mockito.never()).setHelmet(
+				Mockito.any(ItemStack.class));
+		Mockito.verify(player).setHealth(15D);
+		Mockito.verify(player, Mockito.never()).setGameMode(
+				Mockito.any(GameMode.class));
+		Mockito.verify(player, Mockito.never()).setFoodLevel(Mockito.anyInt());
+
+		// a full restore sets every slot
+		Assert.assertEquals(PlayerSnapshot.STORAGE_SIZE + 5,
+				snapshot.restore(player, false, false));
+	}
+
+	@Test
+	public void testDeltaRestoreKeepsRunningEffects() {
+		PotionEffect speed = new PotionEffect(PotionEffectType.SPEED, 600, 1);
+		PotionEffect jump = new PotionEffect(PotionEffectType.JUMP, 600, 0);
+		Player player = player(Mockito.mock(PlayerInventory.class));
+		Mockito.when(player.getActivePotionEffects()).thenReturn(
+				Arrays.asList(speed, jump));
+
+		PlayerSnapshot snapshot = new PlayerSnapshot();
+		snapshot.capture(player);
+
+		// speed ran on with less time left, jump was replaced by a stronger one
+		Mockito.when(player.getActivePotionEffects()).thenReturn(
+				Arrays.asList(new PotionEffect(PotionEffectType.SPEED, 200, 1),
+						new PotionEffect(PotionEffectType.JUMP, 600, 2)));
+
+		snapshot.restore(player, false, true);
+		Mockito.verify(player, Mockito.never()).addPotionEffect(speed);
+		Mockito.verify(player).addPotionEffect(jump);
+	}
+
+	@Test
+	public void testPoolReusesSnapshots() {
+		PlayerInventory inv = Mockito.mock(PlayerInventory.class);
+		Mockito.when(inv.getItem(5)).thenReturn(new ItemStack(Material.WOOD));
+		Player player = player(inv);
+
+		SnapshotPool pool = new SnapshotPool(1);
+		PlayerSnapshot snapshot = pool.acquire();
+		snapshot.capture(player);
+		Assert.assertNotNull(snapshot.getContents()[5]);
+
+		pool.release(snapshot);
+		pool.release(snapshot);
+		Assert.assertEquals(1, pool.size());
+		Assert.assertNull(snapshot.getContents()[5]);
+
+		Assert.assertTrue(pool.acquire() == snapshot);
+		Assert.assertEquals(0, pool.size());
+		Assert.assertFalse(pool.acquire() == snapshot);
+	}
+}
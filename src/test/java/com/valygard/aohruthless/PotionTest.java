@@ -16,6 +16,9 @@
  */
 package com.valygard.aohruthless;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.bukkit.Material;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.potion.PotionData;
@@ -32,6 +35,19 @@ import com.valygard.aohruthless.utils.items.PotionUtils;
  */
 public class PotionTest {
 
+	// the data of every adapter, null where the type does not allow it
+	private static final PotionAdapter[] ADAPTERS = PotionAdapter.values();
+	private static final PotionData[] DATA = new PotionData[ADAPTERS.length];
+
+	static {
+		for (int i = 0; i < ADAPTERS.length; i++) {
+			try {
+				DATA[i] = ADAPTERS[i].buildPotionData();
+			}
+			catch (IllegalArgumentException e) {}
+		}
+	}
+
 	@Test
 	public void testNameMatching() {
 		ItemStack stack = new ItemStack(Material.LINGERING_POTION);
@@ -51,6 +67,76 @@ public class PotionTest {
 				PotionType.INVISIBILITY, true, false)) == PotionAdapter.LONG_INVISIBILITY);
 	}
 
+	@Test
+	public void testEveryAliasResolves() {
+		for (PotionAdapter pm : PotionAdapter.values()) {
+			String handle = pm.name().toLowerCase().replace("_", "-");
+			Assert.assertEquals(pm, PotionAdapter.matchHandle(pm.name()));
+			Assert.assertEquals(pm, PotionAdapter.matchHandle(handle));
+		}
+
+		Object[][] aliases = { { "uncraftable", PotionAdapter.EMPTY },
+				{ "normal", PotionAdapter.MUNDANE },
+				{ "Night", PotionAdapter.NIGHT_VISION },
+				{ "jump", PotionAdapter.LEAPING },
+				{ "SWIFT", PotionAdapter.SWIFTNESS },
+				{ "fire_resist", PotionAdapter.FIRE_RESISTANCE },
+				{ "health", PotionAdapter.INSTANT_HEALTH },
+				{ "damage", PotionAdapter.HARMING },
+				{ "str", PotionAdapter.STRENGTH },
+				{ "fortune", PotionAdapter.LUCK },
+				{ "LONG_VISION", PotionAdapter.LONG_NIGHT_VISION },
+				{ "long-fortune", PotionAdapter.LONG_LUCK },
+				{ "strong-heal", PotionAdapter.STRONG_INSTANT_HEALTH },
+				{ "strong-str", PotionAdapter.STRONG_STRENGTH } };
+		for (Object[] alias : aliases) {
+			Assert.assertEquals((String) alias[0], alias[1],
+					PotionAdapter.matchHandle((String) alias[0]));
+		}
+		Assert.assertEquals(PotionAdapter.WATER,
+				PotionAdapter.matchHandle("not-a-potion"));
+	}
+
+	/**
+	 * Matches every potion a player can hold through the index and by
+	 * scanning every value the way the adapter used to, and parses it back by
+	 * its name.
+	 */
+	@Test
+	public void testRoundTripMatchesScan() {
+		List<PotionData> potions = new ArrayList<>();
+		for (PotionType type : PotionType.values()) {
+			potions.add(new PotionData(type, false, false));
+			if (type.isExtendable()) {
+				potions.add(new PotionData(type, true, false));
+			}
+			if (type.isUpgradeable()) {
+				potions.add(new PotionData(type, false, true));
+			}
+		}
+
+		for (PotionData data : potions) {
+			PotionAdapter pm = PotionAdapter.matchData(data);
+			Assert.assertEquals(data, pm.buildPotionData());
+			Assert.assertEquals(pm, scanData(data));
+			Assert.assertEquals(pm, PotionAdapter.matchHandle(pm.name()));
+		}
+	}
+
+	/**
+	 * The data lookup PotionAdapter used before it was indexed.
+	 */
+	private static PotionAdapter scanData(PotionData data) {
+		for (int i = 0; i < ADAPTERS.length; i++) {
+			PotionData other = DATA[i];
+			if (other != null && other.getType() == data.getType()
+					&& other.isExtended() == data.isExtended()
+					&& other.isUpgraded() == data.isUpgraded())
+				return ADAPTERS[i];
+		}
+		return null;
+	}
+
 	@Test
 	public void testDataBuilder() {
 		Assert.assertTrue(PotionAdapter.LONG_INVISIBILITY.buildPotionData()
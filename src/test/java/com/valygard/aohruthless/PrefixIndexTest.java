@@ -0,0 +1,107 @@
+/**
+ * PrefixIndexTest.java is a part of Joystick
+ *
+ * Copyright (c) 2016 Anand Kumar
+ *
+ * Joystick is a free software: You can redistribute it or modify it
+ * under the terms of the GNU General Public License published by the Free
+ * Software Foundation, either version 3 of the license of any later version.
+ * 
+ * Joystick is distributed in the intent of being useful. However, there
+ * is NO WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You can view a copy of the GNU General Public License at 
+ * <http://www.gnu.org/licenses/> if you have not received a copy.
+ */
+package com.valygard.aohruthless;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.valygard.aohruthless.utils.PrefixIndex;
+
+/**
+ * @author Anand
+ * 
+ */
+public class PrefixIndexTest {
+
+	// random names completed against the linear scan
+	private static final int NAMES = 5000;
+
+	@Test
+	public void testComplete() {
+		PrefixIndex index = new PrefixIndex();
+		index.add("Castle");
+		index.add("castle_2");
+		index.add("Catacombs");
+		index.add("Desert");
+		index.add("CASTLE");
+
+		Assert.assertEquals(4, index.size());
+		Assert.assertEquals(Arrays.asList("CASTLE", "castle_2", "Catacombs"),
+				index.complete("ca", 10));
+		Assert.assertEquals(Arrays.asList("CASTLE"), index.complete("CA", 1));
+		Assert.assertEquals(4, index.complete("", 10).size());
+		Assert.assertTrue(index.complete("castles", 10).isEmpty());
+		Assert.assertTrue(index.complete("z", 10).isEmpty());
+	}
+
+	@Test
+	public void testRemove() {
+		PrefixIndex index = new PrefixIndex();
+		index.add("Castle");
+		index.add("Catacombs");
+
+		Assert.assertTrue(index.remove("CASTLE"));
+		Assert.assertFalse(index.remove("Castle"));
+		Assert.assertFalse(index.contains("castle"));
+		Assert.assertEquals(Arrays.asList("Catacombs"),
+				index.complete("ca", 10));
+
+		index.clear();
+		Assert.assertEquals(0, index.size());
+	}
+
+	/**
+	 * Types random names one keystroke at a time, the way clients ask for
+	 * completions, against the old scan over every name.
+	 */
+	@Test
+	public void testMatchesLinearScan() {
+		Random random = new Random(NAMES);
+		PrefixIndex index = new PrefixIndex();
+		List<String> names = new ArrayList<>(NAMES);
+		for (int i = 0; i < NAMES; i++) {
+			String name = Long.toString(random.nextLong() >>> 1, 36);
+			names.add(name);
+			index.add(name);
+		}
+
+		for (int i = 0; i < 100; i++) {
+			String name = names.get(random.nextInt(NAMES));
+			for (int k = 0; k <= name.length(); k++) {
+				String prefix = name.substring(0, k);
+				Assert.assertEquals(prefix, scan(names, prefix).size(), index
+						.complete(prefix, NAMES).size());
+			}
+		}
+	}
+
+	/**
+	 * The completion of a name list without an index.
+	 */
+	private static List<String> scan(List<String> names, String prefix) {
+		List<String> result = new ArrayList<>();
+		for (String name : names)
+			if (name.regionMatches(true, 0, prefix, 0, prefix.length()))
+				result.add(name);
+		return result;
+	}
+}
@@ -0,0 +1,169 @@
+/**
+ * RatingSystemTest.java is a part of Joystick
+ *
+ * Copyright (c) 2016 Anand Kumar
+ *
+ * Joystick is a free software: You can redistribute it or modify it
+ * under the terms of the GNU General Public License published by the Free
+ * Software Foundation, either version 3 of the license of any later version.
+ * 
+ * Joystick is distributed in the intent of being useful. However, there
+ * is NO WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You can view a copy of the GNU General Public License at 
+ * <http://www.gnu.org/licenses/> if you have not received a copy.
+ */
+package com.valygard.aohruthless;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.Player;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.valygard.aohruthless.framework.Arena;
+import com.valygard.aohruthless.framework.ArenaManager;
+import com.valygard.aohruthless.player.PlayerStats;
+
+/**
+ * @author Anand
+ * 
+ */
+public class RatingSystemTest {
+
+	/**
+	 * Two teams of two: {@code a1, a2} against {@code b1, b2}. Team MMR is
+	 * the mean of the team.
+	 */
+	private static class TeamRating extends RatingSystem {
+
+		private final List<Player> a, b;
+		private final Arena arena;
+		private int teamLookups;
+
+		private TeamRating(ArenaManager manager, Arena arena, List<Player> a,
+				List<Player> b) {
+			super(manager);
+			this.arena = arena;
+			this.a = a;
+			this.b = b;
+		}
+
+		@Override
+		protected Object getTeam(Player player) {
+			return (a.contains(player) ? a : b);
+		}
+
+		@Override
+		protected int getTeamMMR(Player player) {
+			teamLookups++;
+			return mean(a.contains(player) ? a : b);
+		}
+
+		@Override
+		protected int getOpponentMMR(Player player) {
+			return mean(a.contains(player) ? b : a);
+		}
+
+		private int mean(List<Player> team) {
+			int sum = 0;
+			for (Player p : team) {
+				sum += arena.getStats(p).getMMR();
+			}
+			return sum / team.size();
+		}
+	}
+
+	private ArenaManager manager(String system) {
+		YamlConfiguration config = new YamlConfiguration();
+		config.set("global.starting-mmr", 1000);
+		config.set("global.minimum-mmr", 100);
+		config.set("global.rating-system", system);
+
+		ArenaManager manager = Mockito.mock(ArenaManager.class);
+		Mockito.when(manager.getConfig()).thenReturn(config);
+		return manager;
+	}
+
+	private Player player(Arena arena, int mmr, int played) {
+		Player player = Mockito.mock(Player.class);
+		PlayerStats stats = Mockito.mock(PlayerStats.class);
+		Mockito.when(stats.getMMR()).thenReturn(mmr);
+		Mockito.when(stats.getGamesPlayed()).thenReturn(played);
+		Mockito.when(arena.getStats(player)).thenReturn(stats);
+		return player;
+	}
+
+	@Test
+	public void testBatchMatchesSingleRatings() {
+		Arena arena = Mockito.mock(Arena.class);
+		Player a1 = player(arena, 1200, 10), a2 = player(arena, 900, 0);
+		Player b1 = player(arena, 1000, 40), b2 = player(arena, -50, 3);
+		List<Player> a = Arrays.asList(a1, a2), b = Arrays.asList(b1, b2);
+		List<Player> all = Arrays.asList(a1, a2, b1, b2);
+
+		ArenaManager manager = manager("elo");
+		Mockito.when(arena.getWinner()).thenReturn(new HashSet<>(a));
+		for (Player p : all) {
+			Mockito.when(manager.getArenaWithPlayer(p)).thenReturn(arena);
+		}
+
+		TeamRating rating = new TeamRating(manager, arena, a, b);
+		int[] expected = new int[all.size()];
+		for (int i = 0; i < all.size(); i++) {
+			expected[i] = rating.getNewRating(all.get(i));
+		}
+
+		rating.teamLookups = 0;
+		int[] batch = rating.rateMatch(arena, all);
+		Assert.assertArrayEquals(expected, batch);
+		Assert.assertEquals(2, rating.teamLookups);
+		Mockito.verify(arena.getStats(b2)).setMMR(batch[3]);
+	}
+
+	@Test
+	public void testGlickoMovesUncertainPlayersFurther() {
+		Arena arena = Mockito.mock(Arena.class);
+		Player winner = player(arena, 1000, 0), loser = player(arena, 1000, 0);
+		PlayerStats settled = arena.getStats(loser);
+		Mockito.when(settled.getDeviation()).thenReturn(60D);
+		Mockito.when(settled.getVolatility()).thenReturn(0.06D);
+		Mockito.when(arena.getWinner()).thenReturn(
+				Collections.singleton(winner));
+
+		TeamRating rating = new TeamRating(manager("glicko2"), arena,
+				Arrays.asList(winner), Arrays.asList(loser));
+		int[] ratings = rating.rateMatch(arena,
+				Arrays.asList(winner, loser));
+
+		Assert.assertTrue(ratings[0] > 1000);
+		Assert.assertTrue(ratings[1] < 1000);
+		Assert.assertTrue(ratings[0] - 1000 > 1000 - ratings[1]);
+		Mockito.verify(settled).setVolatility(Mockito.anyDouble());
+	}
+
+	@Test
+	public void testGlickoUpdate() {
+		// on this scale, 800 is 1500 and 173.7178 is one unit of glicko-2
+		Glicko2 glicko = new Glicko2(800, 0.5D);
+		double[] mu = { glicko.toMu(900) }, phi = { glicko.toPhi(200) };
+		double[] sigma = { 0.06 }, score = { RatingSystem.WIN };
+		double[] opponentMu = { glicko.toMu(850) };
+		double[] opponentPhi = { glicko.toPhi(100) };
+
+		glicko.update(mu, phi, sigma, opponentMu, opponentPhi, score, 1);
+		Assert.assertEquals(973.314, glicko.toRating(mu[0]), 0.001);
+		Assert.assertEquals(175.903, glicko.toDeviation(phi[0]), 0.001);
+		Assert.assertEquals(0.06, sigma[0], 0.0001);
+		Assert.assertEquals(Glicko2.DEFAULT_DEVIATION,
+				glicko.toDeviation(glicko.toPhi(0D)), 0.000001D);
+		Assert.assertEquals(glicko.toPhi(Glicko2.DEFAULT_DEVIATION),
+				glicko.toPhi(0D), 0D);
+	}
+}
@@ -0,0 +1,170 @@
+/**
+ * RecordStatsBackendTest.java is a part of Joystick
+ *
+ * Copyright (c) 2016 Anand Kumar
+ *
+ * Joystick is a free software: You can redistribute it or modify it
+ * under the terms of the GNU General Public License published by the Free
+ * Software Foundation, either version 3 of the license of any later version.
+ * 
+ * Joystick is distributed in the intent of being useful. However, there
+ * is NO WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You can view a copy of the GNU General Public License at 
+ * <http://www.gnu.org/licenses/> if you have not received a copy.
+ */
+package com.valygard.aohruthless;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.valygard.aohruthless.player.JsonStatsBackend;
+import com.valygard.aohruthless.player.RecordStatsBackend;
+import com.valygard.aohruthless.player.StatsRecord;
+import com.valygard.aohruthless.player.StatsStore;
+
+/**
+ * @author Anand
+ * 
+ */
+public class RecordStatsBackendTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testSaveAndReopen() throws Exception {
+		File file = new File(folder.getRoot(), "stats.db");
+		UUID uuid = UUID.randomUUID();
+
+		RecordStatsBackend backend = new RecordStatsBackend(file);
+		Assert.assertNull(backend.load(uuid, "arena"));
+
+		StatsRecord record = record(uuid, "arena", 7);
+		backend.save(Arrays.asList(record, record(uuid, "other", 3)));
+		record.setKills(8);
+		backend.save(Arrays.asList(record));
+		backend.close();
+
+		// updates are written in place, next to the arena names and the
+		// player's rating
+		Assert.assertEquals(128 + 5 * 128, file.length());
+
+		backend = new RecordStatsBackend(file);
+		Assert.assertEquals(2, backend.size());
+
+		StatsRecord loaded = backend.load(uuid, "arena");
+		Assert.assertEquals(8, loaded.getKills());
+		Assert.assertEquals(1, loaded.getDeaths());
+		Assert.assertEquals(1200, loaded.getMMR());
+		Assert.assertEquals("AoH_Ruthless", loaded.getPlayerName());
+
+		Assert.assertEquals(2, backend.loadAll(null).size());
+		Assert.assertEquals(3, backend.loadAll("other").get(0).getKills());
+		backend.close();
+	}
+
+	@Test
+	public void testImportFromJson() throws Exception {
+		JsonStatsBackend json = new JsonStatsBackend(folder.newFolder("stats"));
+		List<StatsRecord> records = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			records.add(record(UUID.randomUUID(), "arena", i));
+		}
+		json.save(records);
+
+		RecordStatsBackend backend = new RecordStatsBackend(new File(
+				folder.getRoot(), "stats.db"));
+		Assert.assertEquals(100, StatsStore.transfer(json, backend));
+
+		for (StatsRecord record : records) {
+			StatsRecord loaded = backend.load(record.getUniqueId(), "arena");
+			Assert.assertEquals(record.getKills(), loaded.getKills());
+			Assert.assertEquals(record.getMMR(), loaded.getMMR());
+		}
+		backend.close();
+	}
+
+	@Test
+	public void testRatingIsKeptPerPlayer() throws Exception {
+		UUID uuid = UUID.randomUUID();
+		StatsRecord other = record(uuid, "other", 2);
+		other.setMMR(1350);
+		other.setDeviation(80D);
+
+		JsonStatsBackend json = new JsonStatsBackend(folder.newFolder("stats"));
+		json.save(Arrays.asList(record(uuid, "arena", 1)));
+		json.save(Arrays.asList(other));
+		Assert.assertEquals(1350, json.load(uuid, "arena").getMMR());
+
+		RecordStatsBackend backend = new RecordStatsBackend(new File(
+				folder.getRoot(), "stats.db"));
+		backend.save(Arrays.asList(record(uuid, "arena", 1)));
+		backend.save(Arrays.asList(other));
+		Assert.assertEquals(1350, backend.load(uuid, "arena").getMMR());
+		Assert.assertEquals(80D, backend.load(uuid, "arena").getDeviation(),
+				0.001D);
+
+		// both backends agree after an export
+		StatsStore.transfer(backend, json);
+		for (StatsRecord record : json.loadAll(null)) {
+			Assert.assertEquals(1350, record.getMMR());
+		}
+		backend.close();
+	}
+
+	@Test
+	public void testLongArenaName() throws Exception {
+		File file = new File(folder.getRoot(), "stats.db");
+		String name = name(200);
+
+		RecordStatsBackend backend = new RecordStatsBackend(file);
+		backend.save(Arrays.asList(record(UUID.randomUUID(), name, 1)));
+		backend.close();
+
+		backend = new RecordStatsBackend(file);
+		Assert.assertEquals(name, backend.loadAll(null).get(0).getArena());
+		backend.close();
+	}
+
+	@Test
+	public void testUnstorableArenaNameIsSkipped() throws Exception {
+		File file = new File(folder.getRoot(), "stats.db");
+		UUID uuid = UUID.randomUUID();
+
+		RecordStatsBackend backend = new RecordStatsBackend(file);
+		backend.save(Arrays.asList(record(UUID.randomUUID(), name(40000), 1),
+				record(uuid, "arena", 2)));
+		Assert.assertEquals(1, backend.size());
+		backend.close();
+
+		backend = new RecordStatsBackend(file);
+		Assert.assertEquals(2, backend.load(uuid, "arena").getKills());
+		Assert.assertEquals(1, backend.loadAll(null).size());
+		backend.close();
+	}
+
+	private static String name(int length) {
+		char[] name = new char[length];
+		Arrays.fill(name, 'a');
+		return new String(name);
+	}
+
+	private StatsRecord record(UUID uuid, String arena, int kills) {
+		StatsRecord record = new StatsRecord(uuid, arena);
+		record.setPlayerName("AoH_Ruthless");
+		record.setKills(kills);
+		record.setDeaths(1);
+		record.setMMR(1200);
+		return record;
+	}
+}
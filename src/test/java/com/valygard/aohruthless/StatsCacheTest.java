@@ -0,0 +1,104 @@
+/**
+ * StatsCacheTest.java is a part of Joystick
+ *
+ * Copyright (c) 2016 Anand Kumar
+ *
+ * Joystick is a free software: You can redistribute it or modify it
+ * under the terms of the GNU General Public License published by the Free
+ * Software Foundation, either version 3 of the license of any later version.
+ * 
+ * Joystick is distributed in the intent of being useful. However, there
+ * is NO WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You can view a copy of the GNU General Public License at 
+ * <http://www.gnu.org/licenses/> if you have not received a copy.
+ */
+package com.valygard.aohruthless;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.valygard.aohruthless.player.PlayerStats;
+import com.valygard.aohruthless.player.StatsCache;
+
+/**
+ * @author Anand
+ * 
+ */
+public class StatsCacheTest {
+
+	// manual clock
+	private long time = 0;
+
+	private StatsCache cache(int maxSize, long ttl) {
+		return new StatsCache(maxSize, ttl, TimeUnit.MILLISECONDS) {
+
+			@Override
+			protected long now() {
+				return time;
+			}
+		};
+	}
+
+	@Test
+	public void testLeastRecentlyUsedIsDropped() {
+		StatsCache cache = cache(2, 1000);
+		UUID first = UUID.randomUUID();
+		UUID second = UUID.randomUUID();
+		UUID third = UUID.randomUUID();
+		PlayerStats stats = Mockito.mock(PlayerStats.class);
+
+		cache.put(first, stats);
+		cache.put(second, stats);
+		Assert.assertTrue(cache.get(first) == stats);
+
+		// second was used least recently
+		cache.put(third, stats);
+		Assert.assertEquals(2, cache.size());
+		Assert.assertNull(cache.get(second));
+		Assert.assertNotNull(cache.get(first));
+		Assert.assertNotNull(cache.get(third));
+	}
+
+	@Test
+	public void testIdlePlayersExpire() {
+		StatsCache cache = cache(10, 1000);
+		UUID idle = UUID.randomUUID();
+		UUID active = UUID.randomUUID();
+		PlayerStats stats = Mockito.mock(PlayerStats.class);
+
+		cache.put(idle, stats);
+		cache.put(active, stats);
+
+		time = 600;
+		Assert.assertNotNull(cache.get(active));
+
+		time = 1200;
+		Assert.assertNull(cache.get(idle));
+		Assert.assertNotNull(cache.get(active));
+		Assert.assertEquals(1, cache.values().size());
+
+		time = 5000;
+		Assert.assertTrue(cache.values().isEmpty());
+	}
+
+	@Test
+	public void testDroppedStatsAreReleased() {
+		StatsCache cache = cache(1, 1000);
+		PlayerStats first = Mockito.mock(PlayerStats.class);
+		PlayerStats second = Mockito.mock(PlayerStats.class);
+
+		cache.put(UUID.randomUUID(), first);
+		cache.put(UUID.randomUUID(), second);
+		Mockito.verify(first).release();
+		Mockito.verify(second, Mockito.never()).release();
+
+		cache.clear();
+		Mockito.verify(second).release();
+	}
+}
@@ -0,0 +1,73 @@
+/**
+ * StatsRecordTest.java is a part of Joystick
+ *
+ * Copyright (c) 2016 Anand Kumar
+ *
+ * Joystick is a free software: You can redistribute it or modify it
+ * under the terms of the GNU General Public License published by the Free
+ * Software Foundation, either version 3 of the license of any later version.
+ * 
+ * Joystick is distributed in the intent of being useful. However, there
+ * is NO WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You can view a copy of the GNU General Public License at 
+ * <http://www.gnu.org/licenses/> if you have not received a copy.
+ */
+package com.valygard.aohruthless;
+
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+import java.util.UUID;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.valygard.aohruthless.player.StatsRecord;
+
+/**
+ * @author Anand
+ * 
+ */
+public class StatsRecordTest {
+
+	@Test
+	public void testRatio() {
+		Assert.assertEquals(5D, StatsRecord.ratio(5, 0), 0D);
+		Assert.assertEquals(5D, StatsRecord.ratio(5, 1), 0D);
+		Assert.assertEquals(0.667D, StatsRecord.ratio(2, 3), 0D);
+		Assert.assertEquals(0.063D, StatsRecord.ratio(1, 16), 0D);
+		Assert.assertEquals(0D, StatsRecord.ratio(-7, 2), 0D);
+	}
+
+	@Test
+	public void testRatioMatchesDecimalFormat() {
+		DecimalFormat df = new DecimalFormat("#.###",
+				DecimalFormatSymbols.getInstance(Locale.ENGLISH));
+		for (int dividend = 0; dividend <= 500; dividend++) {
+			for (int divisor = 2; divisor <= 500; divisor++) {
+				// exact ties depend on the binary value in DecimalFormat
+				if ((dividend * 1000) % divisor * 2 == divisor) continue;
+
+				double expected = Double.valueOf(df.format(dividend
+						/ (divisor * 1.0)));
+				Assert.assertEquals(dividend + "/" + divisor, expected,
+						StatsRecord.ratio(dividend, divisor), 1e-9);
+			}
+		}
+	}
+
+	@Test
+	public void testRatiosFollowCounters() {
+		StatsRecord record = new StatsRecord(UUID.randomUUID(), "arena");
+		record.setKills(10);
+		record.setDeaths(4);
+		Assert.assertEquals(2.5D, record.getKDR(), 0D);
+
+		record.setWins(3);
+		record.setLosses(2);
+		record.setDraws(2);
+		Assert.assertEquals(0.75D, record.getWLR(), 0D);
+	}
+}
@@ -0,0 +1,250 @@
+/**
+ * StatsStoreTest.java is a part of Joystick
+ *
+ * Copyright (c) 2016 Anand Kumar
+ *
+ * Joystick is a free software: You can redistribute it or modify it
+ * under the terms of the GNU General Public License published by the Free
+ * Software Foundation, either version 3 of the license of any later version.
+ * 
+ * Joystick is distributed in the intent of being useful. However, there
+ * is NO WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You can view a copy of the GNU General Public License at 
+ * <http://www.gnu.org/licenses/> if you have not received a copy.
+ */
+package com.valygard.aohruthless;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import org.bukkit.Server;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import com.valygard.aohruthless.player.JsonStatsBackend;
+import com.valygard.aohruthless.player.LeaderboardType;
+import com.valygard.aohruthless.player.StatsRecord;
+import com.valygard.aohruthless.player.StatsStore;
+
+/**
+ * @author Anand
+ * 
+ */
+public class StatsStoreTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testUpdatesAreWrittenBehind() throws Exception {
+		File dir = folder.newFolder("stats");
+		Plugin plugin = Mockito.mock(Plugin.class);
+		Mockito.when(plugin.getConfig()).thenReturn(new YamlConfiguration());
+
+		StatsStore store = new StatsStore(plugin, new JsonStatsBackend(dir));
+		UUID uuid = UUID.randomUUID();
+
+		StatsRecord record = store.open(uuid, "arena", "AoH_Ruthless");
+		Assert.assertTrue(store.open(uuid, "arena", null) == record);
+		Assert.assertEquals(1000, record.getMMR());
+
+		for (int kills = 1; kills <= 50; kills++) {
+			record.setKills(kills);
+			store.markDirty(record);
+		}
+		Assert.assertTrue(store.isDirty(record));
+		Assert.assertFalse(new File(dir, uuid + ".json").exists());
+
+		store.close();
+		Assert.assertFalse(store.isDirty(record));
+
+		StatsRecord reloaded = new JsonStatsBackend(dir).load(uuid, "arena");
+		Assert.assertEquals(50, reloaded.getKills());
+		Assert.assertEquals(1000, reloaded.getMMR());
+		Assert.assertEquals("AoH_Ruthless", reloaded.getPlayerName());
+		Assert.assertFalse(new File(dir, uuid + ".json.tmp").exists());
+	}
+
+	@Test
+	public void testRatingIsSharedAcrossArenas() throws Exception {
+		Plugin plugin = Mockito.mock(Plugin.class);
+		Mockito.when(plugin.getConfig()).thenReturn(new YamlConfiguration());
+
+		StatsStore store = new StatsStore(plugin, new JsonStatsBackend(
+				folder.newFolder("stats")));
+		UUID uuid = UUID.randomUUID();
+
+		StatsRecord arena = store.open(uuid, "arena", "AoH_Ruthless");
+		arena.setMMR(1234);
+		store.markDirty(arena);
+
+		StatsRecord other = store.open(uuid, "other", null);
+		Assert.assertEquals(1234, other.getMMR());
+		other.setMMR(1250);
+		Assert.assertEquals(1250, arena.getMMR());
+		store.close();
+	}
+
+	@Test
+	public void testPreloadReadsOffTheMainThread() throws Exception {
+		Plugin plugin = Mockito.mock(Plugin.class);
+		Mockito.when(plugin.getConfig()).thenReturn(new YamlConfiguration());
+
+		final List<String> threads = new ArrayList<>();
+		final CountDownLatch loaded = new CountDownLatch(1);
+		StatsStore store = new StatsStore(plugin, new JsonStatsBackend(
+				folder.newFolder("stats")) {
+
+			@Override
+			public synchronized StatsRecord load(UUID uuid, String arena) {
+				threads.add(Thread.currentThread().getName());
+				StatsRecord record = super.load(uuid, arena);
+				loaded.countDown();
+				return record;
+			}
+		});
+		UUID uuid = UUID.randomUUID();
+
+		store.preload(uuid, "arena");
+		Assert.assertTrue(loaded.await(10, TimeUnit.SECONDS));
+
+		StatsRecord record = store.open(uuid, "arena", "AoH_Ruthless");
+		Assert.assertEquals(1000, record.getMMR());
+		Assert.assertTrue(store.isDirty(record));
+		Assert.assertEquals(Arrays.asList("Joystick Stats Writer"), threads);
+		store.close();
+	}
+
+	@Test
+	public void testLeaderboardsAreLoadedOffTheMainThread() throws Exception {
+		BukkitScheduler scheduler = Mockito.mock(BukkitScheduler.class);
+		Server server = Mockito.mock(Server.class);
+		Mockito.when(server.getScheduler()).thenReturn(scheduler);
+		Plugin plugin = Mockito.mock(Plugin.class);
+		Mockito.when(plugin.getConfig()).thenReturn(new YamlConfiguration());
+		Mockito.when(plugin.getServer()).thenReturn(server);
+
+		File dir = folder.newFolder("stats");
+		UUID stored = UUID.randomUUID();
+		StatsRecord record = new StatsRecord(stored, "arena");
+		record.setKills(5);
+		new JsonStatsBackend(dir).save(Arrays.asList(record));
+
+		StatsStore store = new StatsStore(plugin, new JsonStatsBackend(dir));
+		store.loadLeaderboards().get();
+
+		// a player changed before the leaderboards are handed over
+		UUID online = UUID.randomUUID();
+		store.open(online, "arena", "AoH_Ruthless").setKills(9);
+		store.markDirty(store.open(online, "arena", null));
+		Assert.assertEquals(1, store.getLeaderboards()
+				.getLeaderboard("arena", LeaderboardType.KILLS).getRanked());
+
+		ArgumentCaptor<Runnable> handOver = ArgumentCaptor
+				.forClass(Runnable.class);
+		Mockito.verify(scheduler).runTask(Mockito.eq(plugin),
+				handOver.capture());
+		handOver.getValue().run();
+
+		Assert.assertEquals(2, store.getLeaderboards()
+				.getLeaderboard("arena", LeaderboardType.KILLS).getRanked());
+		Assert.assertEquals(online, store.getLeaderboards()
+				.getTop("arena", LeaderboardType.KILLS).get(0).getUniqueId());
+		store.close();
+	}
+
+	@Test
+	public void testFailedFlushIsRetried() throws Exception {
+		Plugin plugin = Mockito.mock(Plugin.class);
+		Mockito.when(plugin.getConfig()).thenReturn(new YamlConfiguration());
+		Mockito.when(plugin.getLogger()).thenReturn(
+				Logger.getLogger("StatsStoreTest"));
+
+		final File dir = folder.newFolder("stats");
+		final List<Integer> saved = new ArrayList<>();
+		StatsStore store = new StatsStore(plugin, new JsonStatsBackend(dir) {
+
+			@Override
+			public synchronized void save(Collection<StatsRecord> records)
+					throws IOException {
+				saved.add(records.size());
+				if (saved.size() == 1) throw new IOException("disk full");
+				super.save(records);
+			}
+		});
+		UUID uuid = UUID.randomUUID();
+
+		StatsRecord record = store.open(uuid, "arena", "AoH_Ruthless");
+		record.setKills(1);
+		store.flush().get();
+		Assert.assertTrue(store.isDirty(record));
+
+		// the retry holds the changes made since the failed flush
+		record.setKills(2);
+		store.flush().get();
+		Assert.assertFalse(store.isDirty(record));
+		Assert.assertEquals(Arrays.asList(1, 1), saved);
+		Assert.assertEquals(2, new JsonStatsBackend(dir).load(uuid, "arena")
+				.getKills());
+		store.close();
+	}
+
+	@Test
+	public void testReleasedRecordsAreEvicted() throws Exception {
+		Plugin plugin = Mockito.mock(Plugin.class);
+		Mockito.when(plugin.getConfig()).thenReturn(new YamlConfiguration());
+
+		final List<String> loads = new ArrayList<>();
+		StatsStore store = new StatsStore(plugin, new JsonStatsBackend(
+				folder.newFolder("stats")) {
+
+			@Override
+			public synchronized StatsRecord load(UUID uuid, String arena) {
+				loads.add(arena);
+				return super.load(uuid, arena);
+			}
+		});
+		UUID uuid = UUID.randomUUID();
+
+		StatsRecord record = store.open(uuid, "arena", "AoH_Ruthless");
+		record.setKills(3);
+		store.flush().get();
+
+		// open records are kept
+		store.evict();
+		store.evict();
+		Assert.assertSame(record, store.open(uuid, "arena", null));
+		Assert.assertEquals(1, loads.size());
+
+		store.release(record);
+		store.release(record);
+		store.evict();
+		Assert.assertSame(record, store.open(uuid, "arena", null));
+		store.release(record);
+
+		store.evict();
+		store.evict();
+		StatsRecord reloaded = store.open(uuid, "arena", null);
+		Assert.assertNotSame(record, reloaded);
+		Assert.assertEquals(3, reloaded.getKills());
+		Assert.assertEquals(2, loads.size());
+		store.close();
+	}
+}
@@ -0,0 +1,136 @@
+/**
+ * TimerWheelTest.java is a part of Joystick
+ *
+ * Copyright (c) 2016 Anand Kumar
+ *
+ * Joystick is a free software: You can redistribute it or modify it
+ * under the terms of the GNU General Public License published by the Free
+ * Software Foundation, either version 3 of the license of any later version.
+ * 
+ * Joystick is distributed in the intent of being useful. However, there
+ * is NO WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You can view a copy of the GNU General Public License at 
+ * <http://www.gnu.org/licenses/> if you have not received a copy.
+ */
+package com.valygard.aohruthless;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.bukkit.Server;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.bukkit.scheduler.BukkitTask;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.valygard.aohruthless.timer.TimerWheel;
+
+/**
+ * @author Anand
+ * 
+ */
+public class TimerWheelTest {
+
+	private Plugin plugin;
+	private TimerWheel wheel;
+	private BukkitTask task;
+	private List<Long> expired;
+
+	private class Probe extends TimerWheel.Timeout {
+
+		@Override
+		protected void expire() {
+			expired.add(wheel.getTick());
+		}
+	}
+
+	@Before
+	public void setUp() {
+		task = Mockito.mock(BukkitTask.class);
+		BukkitScheduler scheduler = Mockito.mock(BukkitScheduler.class);
+		Mockito.when(
+				scheduler.runTaskTimer(Mockito.any(Plugin.class),
+						Mockito.any(Runnable.class), Mockito.anyLong(),
+						Mockito.anyLong())).thenReturn(task);
+
+		Server server = Mockito.mock(Server.class);
+		Mockito.when(server.getScheduler()).thenReturn(scheduler);
+
+		plugin = Mockito.mock(Plugin.class);
+		Mockito.when(plugin.getServer()).thenReturn(server);
+
+		wheel = new TimerWheel(plugin);
+		expired = new ArrayList<>();
+	}
+
+	@Test
+	public void testTimeoutsExpireOnTheirTick() {
+		Random random = new Random(7);
+		List<Long> deadlines = new ArrayList<>();
+		for (int i = 0; i < 500; i++) {
+			long delay = 1 + random.nextInt(300000);
+			wheel.schedule(new Probe(), delay);
+			deadlines.add(delay);
+		}
+
+		while (wheel.size() > 0) {
+			wheel.tick();
+		}
+		Assert.assertEquals(500, expired.size());
+		for (int i = 0; i < expired.size(); i++) {
+			Assert.assertTrue(deadlines.contains(expired.get(i)));
+			if (i > 0) {
+				Assert.assertTrue(expired.get(i - 1) <= expired.get(i));
+			}
+		}
+		Mockito.verify(task).cancel();
+	}
+
+	@Test
+	public void testCancelAndReschedule() {
+		Probe cancelled = new Probe(), moved = new Probe();
+		wheel.schedule(cancelled, 20L);
+		wheel.schedule(moved, 5000L);
+		Assert.assertEquals(2, wheel.size());
+
+		Assert.assertTrue(wheel.cancel(cancelled));
+		Assert.assertFalse(wheel.cancel(cancelled));
+		Assert.assertFalse(cancelled.isScheduled());
+
+		wheel.schedule(moved, 30L);
+		Assert.assertEquals(1, wheel.size());
+		for (int i = 0; i < 5000; i++) {
+			wheel.tick();
+		}
+
+		Assert.assertEquals(1, expired.size());
+		Assert.assertEquals(30L, (long) expired.get(0));
+		Assert.assertFalse(moved.isScheduled());
+	}
+
+	@Test
+	public void testShutdownDropsTheWheel() {
+		TimerWheel shared = TimerWheel.get(plugin);
+		Probe probe = new Probe();
+		shared.schedule(probe, 10L);
+
+		// a disabled plugin's task is cancelled by Bukkit
+		TimerWheel.shutdown(plugin);
+		Mockito.verify(task).cancel();
+		Assert.assertFalse(probe.isScheduled());
+		Assert.assertEquals(0, shared.size());
+
+		// enabled again, the plugin gets a new wheel and task
+		TimerWheel restarted = TimerWheel.get(plugin);
+		Assert.assertNotSame(shared, restarted);
+		restarted.schedule(probe, 10L);
+		Assert.assertTrue(probe.isScheduled());
+		TimerWheel.shutdown(plugin);
+	}
+}
@@ -0,0 +1,156 @@
+/**
+ * WorkSchedulerTest.java is a part of Joystick
+ *
+ * Copyright (c) 2016 Anand Kumar
+ *
+ * Joystick is a free software: You can redistribute it or modify it
+ * under the terms of the GNU General Public License published by the Free
+ * Software Foundation, either version 3 of the license of any later version.
+ * 
+ * Joystick is distributed in the intent of being useful. However, there
+ * is NO WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You can view a copy of the GNU General Public License at 
+ * <http://www.gnu.org/licenses/> if you have not received a copy.
+ */
+package com.valygard.aohruthless;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import org.bukkit.Server;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.bukkit.scheduler.BukkitTask;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.valygard.aohruthless.timer.WorkScheduler;
+import com.valygard.aohruthless.timer.WorkScheduler.Priority;
+import com.valygard.aohruthless.timer.WorkScheduler.Work;
+
+/**
+ * @author Anand
+ * 
+ */
+public class WorkSchedulerTest {
+
+	private WorkScheduler scheduler;
+	private BukkitTask task;
+	private List<String> ran;
+
+	@Before
+	public void setUp() {
+		YamlConfiguration config = new YamlConfiguration();
+		config.set("global.work-tick-budget", 0);
+
+		task = Mockito.mock(BukkitTask.class);
+		BukkitScheduler bukkit = Mockito.mock(BukkitScheduler.class);
+		Mockito.when(
+				bukkit.runTaskTimer(Mockito.any(Plugin.class),
+						Mockito.any(Runnable.class), Mockito.anyLong(),
+						Mockito.anyLong())).thenReturn(task);
+
+		Server server = Mockito.mock(Server.class);
+		Mockito.when(server.getScheduler()).thenReturn(bukkit);
+
+		Plugin plugin = Mockito.mock(Plugin.class);
+		Mockito.when(plugin.getConfig()).thenReturn(config);
+		Mockito.when(plugin.getServer()).thenReturn(server);
+		Mockito.when(plugin.getLogger()).thenReturn(
+				Logger.getLogger("WorkSchedulerTest"));
+
+		scheduler = new WorkScheduler(plugin);
+		ran = new ArrayList<>();
+	}
+
+	private Runnable log(final String name) {
+		return new Runnable() {
+
+			@Override
+			public void run() {
+				ran.add(name);
+			}
+		};
+	}
+
+	@Test
+	public void testWorkIsDeferredPastTheBudget() {
+		scheduler.submit("arena", Priority.LOW, log("low"));
+		scheduler.submit("arena", Priority.NORMAL, log("normal"));
+		scheduler.submit("other", Priority.HIGH, log("high"));
+		Assert.assertEquals(2, scheduler.getQueueDepth("arena"));
+		Assert.assertEquals(3, scheduler.getQueueDepth());
+
+		// no budget, so one piece of work per tick
+		scheduler.tick();
+		Assert.assertEquals(Arrays.asList("high"), ran);
+		Assert.assertEquals(0, scheduler.getQueueDepth("other"));
+
+		scheduler.tick();
+		scheduler.tick();
+		Assert.assertEquals(Arrays.asList("high", "normal", "low"), ran);
+		Assert.assertEquals(0, scheduler.getQueueDepth());
+		Assert.assertEquals(0L,
+				scheduler.getTimeUsed("unknown", TimeUnit.NANOSECONDS));
+		Mockito.verify(task).cancel();
+	}
+
+	@Test
+	public void testDelayedAndCancelledWork() {
+		scheduler.schedule("arena", Priority.HIGH, log("later"), 2L);
+		Work cancelled = scheduler.submit("arena", Priority.NORMAL,
+				log("cancelled"));
+		Assert.assertTrue(cancelled.cancel());
+		Assert.assertFalse(cancelled.cancel());
+		Assert.assertEquals(1, scheduler.getQueueDepth("arena"));
+
+		scheduler.tick();
+		Assert.assertTrue(ran.isEmpty());
+
+		scheduler.tick();
+		Assert.assertEquals(Arrays.asList("later"), ran);
+		Assert.assertEquals(0, scheduler.getQueueDepth("arena"));
+	}
+
+	@Test
+	public void testShutdownRunsReadyWork() {
+		for (int i = 0; i < 5; i++) {
+			scheduler.submit("arena", Priority.NORMAL, log("restore" + i));
+		}
+		scheduler.schedule("arena", Priority.NORMAL, log("dropped"), 100L);
+		scheduler.submit("arena", Priority.NORMAL, new Runnable() {
+
+			@Override
+			public void run() {
+				throw new IllegalStateException();
+			}
+		});
+
+		scheduler.shutdown();
+		Assert.assertEquals(5, ran.size());
+		Assert.assertFalse(ran.contains("dropped"));
+		Assert.assertEquals(0, scheduler.getQueueDepth());
+	}
+
+	@Test
+	public void testShutdownAfterCancellingDelayedWork() {
+		scheduler.schedule("arena", Priority.NORMAL, log("kept"), 100L);
+		Work cancelled = scheduler.schedule("arena", Priority.NORMAL,
+				log("cancelled"), 100L);
+		Assert.assertTrue(cancelled.cancel());
+		Assert.assertEquals(1, scheduler.getQueueDepth("arena"));
+
+		scheduler.shutdown();
+		Assert.assertTrue(ran.isEmpty());
+		Assert.assertEquals(0, scheduler.getQueueDepth("arena"));
+		Assert.assertEquals(0, scheduler.getQueueDepth());
+	}
+}